@@ -0,0 +1,121 @@
+package global.inventory.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times how long each JDBC connection is held, from checkout until it is handed back to the pool, as
+ * {@code db.connection.hold} tagged with the endpoint that held it. Long holds are what drain the pool, so
+ * this is the number to watch when API calls stall waiting for a connection.
+ */
+@Slf4j
+@Component
+public class ConnectionHoldTimeMetrics implements BeanPostProcessor {
+    private static final String METRIC = "db.connection.hold";
+
+    // Looked up lazily: a post-processor must not pull the registry, and what it depends on, in early
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final long warnThresholdMillis;
+
+    public ConnectionHoldTimeMetrics(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${app.db.connection-hold.warn-threshold-ms:2000}") long warnThresholdMillis) {
+        this.meterRegistry = meterRegistry;
+        this.warnThresholdMillis = warnThresholdMillis;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof TimedDataSource)) {
+            return new TimedDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    private void record(long heldNanos) {
+        String endpoint = endpoint();
+        Timer.builder(METRIC)
+                .description("Time a JDBC connection is held between checkout and release")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry.getObject())
+                .record(heldNanos, TimeUnit.NANOSECONDS);
+        long heldMillis = TimeUnit.NANOSECONDS.toMillis(heldNanos);
+        if (warnThresholdMillis > 0 && heldMillis >= warnThresholdMillis) {
+            log.warn("Connection held for {} ms by {}", heldMillis, endpoint);
+        }
+    }
+
+    /**
+     * The matched handler pattern rather than the raw URI, which would give every video id its own timer.
+     */
+    private static String endpoint() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return "background";
+        }
+        HttpServletRequest request = servletAttributes.getRequest();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : "unmapped");
+    }
+
+    private final class TimedDataSource extends DelegatingDataSource {
+        private TimedDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return timed(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return timed(super.getConnection(username, password));
+        }
+
+        private Connection timed(Connection connection) {
+            long acquired = System.nanoTime();
+            boolean[] closed = {false};
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "close":
+                                if (!closed[0]) {
+                                    closed[0] = true;
+                                    record(System.nanoTime() - acquired);
+                                }
+                                break;
+                            default:
+                                break;
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
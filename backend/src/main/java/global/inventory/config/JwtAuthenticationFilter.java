@@ -29,6 +29,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
     private final CustomUserDetailsService customUserDetailsService;
 
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        // Stream requests are authorized by their signed URL, not by a token and user lookup
+        return request.getRequestURI().startsWith(request.getContextPath() + SignedStreamUrlFilter.UPLOADS_PREFIX);
+    }
+
     @Override
     protected void doFilterInternal(
             @NonNull HttpServletRequest request,
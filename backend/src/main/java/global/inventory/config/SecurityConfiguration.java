@@ -28,6 +28,7 @@ import static org.springframework.security.config.http.SessionCreationPolicy.STA
 @EnableMethodSecurity
 public class SecurityConfiguration {
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final SignedStreamUrlFilter signedStreamUrlFilter;
     private final AuthenticationProvider authenticationProvider;
     private final Http401UnauthorizedEntryPoint unauthorizedEntryPoint;
     private final CustomAccessDeniedHandler accessDeniedHandler;
@@ -57,14 +58,17 @@ public class SecurityConfiguration {
                                         "/swagger-ui/**",
                                         "/webjars/**",
                                         "/swagger-ui.html",
-                                        "/api/v1/resource/**"
+                                        "/api/v1/resource/**",
+                                        "/actuator/health/liveness",
+                                        "/actuator/health/readiness"
                                 ).permitAll()
                                 .requestMatchers("/actuator/**").hasRole("ADMIN")
                                 .requestMatchers(HttpMethod.POST,"/api/v1/resource").hasRole("ADMIN")
                                 .anyRequest().authenticated())
                 .sessionManagement(manager -> manager.sessionCreationPolicy(STATELESS))
                 .authenticationProvider(authenticationProvider)
-                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(signedStreamUrlFilter, JwtAuthenticationFilter.class);
         return http.build();
     }
 
@@ -88,13 +92,21 @@ public class SecurityConfiguration {
                 HttpHeaders.ACCEPT,
                 HttpHeaders.RANGE,
                 HttpHeaders.CONTENT_RANGE,
+                HttpHeaders.IF_RANGE,
+                HttpHeaders.IF_NONE_MATCH,
+                HttpHeaders.IF_MODIFIED_SINCE,
                 "Accept-Ranges"
         ));
         config.setExposedHeaders(Arrays.asList(
                 HttpHeaders.CONTENT_RANGE,
                 HttpHeaders.ACCEPT_RANGES,
                 HttpHeaders.CONTENT_LENGTH,
-                HttpHeaders.CONTENT_TYPE
+                HttpHeaders.CONTENT_TYPE,
+                HttpHeaders.ETAG,
+                HttpHeaders.LAST_MODIFIED,
+                HttpHeaders.CACHE_CONTROL,
+                "X-Keyframe-Time",
+                "Upload-Offset"
         ));
         config.setAllowedMethods(Arrays.asList(
                 HttpMethod.GET.name(),
@@ -0,0 +1,82 @@
+package global.inventory.config;
+
+import global.inventory.service.security.StreamUrlSigner;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Lets a request for {@code /uploads/**} through only with a valid, unexpired stream signature. The signed
+ * user id is exposed as a request attribute so streaming code can attribute the request without a lookup.
+ * Enforcement is opt-in: with it off, unsigned requests pass too, which allows clients to be migrated first.
+ * It also stays off while no signing key is configured, since no URL could pass.
+ * <p>
+ * HLS files under {@code /uploads/hls/<storedPath>/} are covered by the signature of the video itself, so one
+ * signed query grants the playlist and every segment it lists.
+ */
+@Slf4j
+@Component
+public class SignedStreamUrlFilter extends OncePerRequestFilter {
+    public static final String UPLOADS_PREFIX = "/uploads/";
+    public static final String HLS_PREFIX = "hls/";
+
+    private final StreamUrlSigner streamUrlSigner;
+    private final boolean enforced;
+
+    public SignedStreamUrlFilter(
+            StreamUrlSigner streamUrlSigner,
+            @Value("${app.video.signing.enforced:false}") boolean enforced) {
+        this.streamUrlSigner = streamUrlSigner;
+        this.enforced = enforced && streamUrlSigner.isEnabled();
+        if (enforced && !this.enforced) {
+            log.warn("Stream URL signing is enforced but no signing key is configured; unsigned requests pass");
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + UPLOADS_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        String storedPath = signedPath(
+                request.getRequestURI().substring(request.getContextPath().length() + UPLOADS_PREFIX.length()));
+        String userId = request.getParameter(StreamUrlSigner.USER_PARAM);
+
+        boolean valid = streamUrlSigner.isValid(storedPath,
+                userId,
+                request.getParameter(StreamUrlSigner.VIDEO_PARAM),
+                request.getParameter(StreamUrlSigner.EXPIRES_PARAM),
+                request.getParameter(StreamUrlSigner.KEY_ID_PARAM),
+                request.getParameter(StreamUrlSigner.SIGNATURE_PARAM));
+
+        if (valid) {
+            request.setAttribute(StreamUrlSigner.STREAM_USER_ATTRIBUTE, userId);
+        } else if (enforced) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static String signedPath(String path) {
+        int fileName = path.lastIndexOf('/');
+        if (path.startsWith(HLS_PREFIX) && fileName > HLS_PREFIX.length()) {
+            return path.substring(HLS_PREFIX.length(), fileName);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,56 @@
+package global.inventory.config;
+
+import global.inventory.service.cache.DiskChunkCache;
+import global.inventory.service.storage.ContentAddressedStore;
+import global.inventory.service.storage.backend.CachingStorageBackend;
+import global.inventory.service.storage.backend.FileSystemStorageBackend;
+import global.inventory.service.storage.backend.S3RequestSigner;
+import global.inventory.service.storage.backend.S3StorageBackend;
+import global.inventory.service.storage.backend.ShardedStorageBackend;
+import global.inventory.service.storage.backend.StorageBackend;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+@Configuration
+public class StorageBackendConfiguration {
+
+    @Bean
+    public StorageBackend storageBackend(
+            @Value("${app.video.storage.backend:local}") String backend,
+            @Value("${app.video.storage.location}") String storageLocation,
+            @Value("${app.video.storage.disks:}") String disks,
+            @Value("${app.video.storage.replicas:1}") int replicas,
+            @Value("${app.video.storage.s3.endpoint:}") String endpoint,
+            @Value("${app.video.storage.s3.bucket:}") String bucket,
+            @Value("${app.video.storage.s3.region:us-east-1}") String region,
+            @Value("${app.video.storage.s3.access-key:}") String accessKey,
+            @Value("${app.video.storage.s3.secret-key:}") String secretKey,
+            @Value("${app.video.storage.s3.timeout-seconds:30}") long timeoutSeconds,
+            DiskChunkCache diskChunkCache,
+            ContentAddressedStore contentStore) {
+        if ("local".equals(backend)) {
+            List<Path> roots = Arrays.stream(disks.split(","))
+                    .map(String::trim)
+                    .filter(disk -> !disk.isEmpty())
+                    .map(Paths::get)
+                    .toList();
+            return roots.isEmpty()
+                    ? new FileSystemStorageBackend(Paths.get(storageLocation))
+                    : new ShardedStorageBackend(roots, Paths.get(storageLocation), replicas, contentStore);
+        }
+        if (!"s3".equals(backend)) {
+            throw new IllegalStateException("Unknown storage backend: " + backend);
+        }
+        StorageBackend remote = new S3StorageBackend(URI.create(endpoint), bucket,
+                new S3RequestSigner(region, accessKey, secretKey), Duration.ofSeconds(timeoutSeconds));
+        return diskChunkCache.isEnabled() ? new CachingStorageBackend(remote, diskChunkCache) : remote;
+    }
+}
@@ -0,0 +1,113 @@
+package global.inventory.controller;
+
+import global.inventory.exception.ResourceNotFoundException;
+import global.inventory.service.hls.HlsPackagingService;
+import global.inventory.service.media.HlsPackager;
+import global.inventory.service.storage.StoredVideo;
+import global.inventory.service.streaming.StreamAdmissionControl;
+import global.inventory.service.streaming.VideoStreamService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves HLS playlists and segments. Segments take the same admission permit and pacer as progressive streams,
+ * so switching a player to HLS does not get it around either.
+ */
+@RestController
+@RequestMapping("/uploads/hls")
+@RequiredArgsConstructor
+@Slf4j
+public class HlsStreamController {
+    private static final String PREFIX = "/uploads/hls/";
+    private static final MediaType PLAYLIST_TYPE = MediaType.parseMediaType("application/vnd.apple.mpegurl");
+    // Segment lines and the URI attribute of EXT-X-MAP
+    private static final Pattern URI = Pattern.compile("(?m)^([^#\\s].*)$|URI=\"([^\"]+)\"");
+
+    private final HlsPackagingService hlsPackagingService;
+    private final VideoStreamService videoStreamService;
+    private final StreamAdmissionControl admissionControl;
+
+    @Value("${app.video.hls.max-age-seconds:31536000}")
+    private long maxAgeSeconds;
+
+    @GetMapping("/**")
+    public void streamHls(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length() + PREFIX.length());
+        int slash = path.lastIndexOf('/');
+        if (slash <= 0) {
+            throw new ResourceNotFoundException("HLS file", "path", path);
+        }
+        String storedPath = path.substring(0, slash);
+        String fileName = path.substring(slash + 1);
+
+        if (fileName.equals(HlsPackager.PLAYLIST)) {
+            String playlist = Files.readString(hlsPackagingService.resolve(storedPath, fileName));
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+            response.setContentType(PLAYLIST_TYPE.toString());
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write(withQuery(playlist, request.getQueryString()));
+            return;
+        }
+
+        StoredVideo segment = hlsPackagingService.loadSegment(storedPath, fileName);
+        StreamAdmissionControl.Permit permit =
+                admissionControl.tryAcquire(StreamAdmissionControl.userKey(request), segment.getSize());
+        if (permit == null) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(admissionControl.retryAfterSeconds()));
+            return;
+        }
+        // Segments never change once written, so any cache may keep them
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic().immutable().getHeaderValue());
+        response.setContentType(segment.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(segment.getSize()));
+        try {
+            // Releases the permit once the segment is sent, which can be after this method returns
+            videoStreamService.writeRange(request, response, segment, 0, segment.getSize(), permit);
+        } catch (IOException e) {
+            if (e.getMessage() == null) {
+                log.debug("Client disconnected while streaming HLS file: {}", path);
+            } else if (!e.getMessage().contains("Broken pipe") &&
+                    !e.getMessage().contains("Connection reset")) {
+                log.error("Error streaming HLS file: {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * Carries the signed query of the playlist request over to every URI it lists, since players resolve
+     * them relative to the playlist and would otherwise drop it.
+     */
+    private static String withQuery(String playlist, String query) {
+        if (query == null || query.isEmpty()) {
+            return playlist;
+        }
+        Matcher matcher = URI.matcher(playlist);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            String replacement = matcher.group(1) != null
+                    ? matcher.group(1) + "?" + query
+                    : "URI=\"" + matcher.group(2) + "?" + query + "\"";
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        return matcher.appendTail(result).toString();
+    }
+}
@@ -0,0 +1,48 @@
+package global.inventory.controller;
+
+import global.inventory.payload.response.ReclaimProgressResponse;
+import global.inventory.payload.response.generic.InventoryResponse;
+import global.inventory.service.storage.ReclaimProgress;
+import global.inventory.service.storage.StorageReclaimService;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/storage")
+@RequiredArgsConstructor
+public class StorageController {
+    private final StorageReclaimService storageReclaimService;
+
+    @Operation(summary = "Start reclaiming the files of deleted videos and orphaned files")
+    @PostMapping("/reclaim")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<InventoryResponse<ReclaimProgressResponse>> startReclaim() {
+        return ResponseEntity.ok(new InventoryResponse<>(toResponse(storageReclaimService.start())));
+    }
+
+    @Operation(summary = "Get the progress of the running or last storage reclaim")
+    @GetMapping("/reclaim")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<InventoryResponse<ReclaimProgressResponse>> getReclaimProgress() {
+        return ResponseEntity.ok(new InventoryResponse<>(toResponse(storageReclaimService.getProgress())));
+    }
+
+    private static ReclaimProgressResponse toResponse(ReclaimProgress progress) {
+        return ReclaimProgressResponse.builder()
+                .running(progress.running())
+                .phase(progress.phase().name())
+                .startedAt(progress.startedAt())
+                .finishedAt(progress.finishedAt())
+                .videosReclaimed(progress.videosReclaimed())
+                .filesScanned(progress.filesScanned())
+                .filesReclaimed(progress.filesReclaimed())
+                .bytesReclaimed(progress.bytesReclaimed())
+                .build();
+    }
+}
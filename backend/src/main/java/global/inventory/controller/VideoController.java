@@ -2,16 +2,24 @@ package global.inventory.controller;
 
 import global.inventory.mapper.VideoAssignmentMapper;
 import global.inventory.mapper.VideoMapper;
+import global.inventory.model.Video;
+import global.inventory.payload.request.UploadSessionRequest;
 import global.inventory.payload.request.VideoUpdateRequest;
 import global.inventory.payload.request.VideoUploadRequest;
+import global.inventory.payload.response.UploadSessionResponse;
 import global.inventory.payload.response.VideoAssignmentResponse;
 import global.inventory.payload.response.VideoResponse;
 import global.inventory.payload.response.generic.InventoryResponse;
 import global.inventory.payload.response.generic.PageInfo;
 import global.inventory.service.ActivityLogService;
 import global.inventory.service.VideoService;
+import global.inventory.service.upload.ResumableUploadService;
+import global.inventory.service.upload.StreamingUploadService;
+import global.inventory.service.upload.UploadSession;
 import global.inventory.util.UtilService;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
@@ -21,6 +29,10 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 
 @RestController
@@ -29,6 +41,8 @@ import java.util.List;
 public class VideoController {
     private final VideoService videoService;
     private final ActivityLogService activityLogService;
+    private final ResumableUploadService resumableUploadService;
+    private final StreamingUploadService streamingUploadService;
 
 
     @Operation(summary = "Upload a new video")
@@ -46,7 +60,70 @@ public class VideoController {
                 .build();
 
         var video = videoService.uploadVideo(request);
-        return ResponseEntity.ok(new InventoryResponse<>(VideoMapper.INSTANCE.videoToDto(video)));
+        return ResponseEntity.ok(new InventoryResponse<>(toResponse(video)));
+    }
+
+    @Operation(summary = "Upload a new video, streamed straight into storage without spooling")
+    @PostMapping(value = "/upload/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<InventoryResponse<VideoResponse>> uploadVideoStream(
+            HttpServletRequest request
+    ) throws IOException {
+        var video = streamingUploadService.upload(request.getInputStream(), request.getContentType());
+        return ResponseEntity.ok(new InventoryResponse<>(toResponse(video)));
+    }
+
+    @Operation(summary = "Start a resumable upload")
+    @PostMapping("/uploads")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<InventoryResponse<UploadSessionResponse>> createUpload(
+            @Valid @RequestBody UploadSessionRequest request
+    ) {
+        var session = resumableUploadService.create(request, UtilService.getRequesterUserIdFromSecurityContext());
+        return uploadResponse(session);
+    }
+
+    @Operation(summary = "Get the committed offset of a resumable upload")
+    @GetMapping("/uploads/{uploadId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<InventoryResponse<UploadSessionResponse>> getUpload(
+            @PathVariable String uploadId
+    ) {
+        var session = resumableUploadService.get(uploadId, UtilService.getRequesterUserIdFromSecurityContext());
+        return uploadResponse(session);
+    }
+
+    @Operation(summary = "Write a chunk of a resumable upload at an offset")
+    @PutMapping(value = "/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<InventoryResponse<UploadSessionResponse>> writeUploadChunk(
+            @PathVariable String uploadId,
+            @RequestParam("offset") long offset,
+            HttpServletRequest request
+    ) throws IOException {
+        var session = resumableUploadService.writeChunk(uploadId, UtilService.getRequesterUserIdFromSecurityContext(),
+                offset, request.getInputStream());
+        return uploadResponse(session);
+    }
+
+    @Operation(summary = "Finish a resumable upload and create the video")
+    @PostMapping("/uploads/{uploadId}/complete")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<InventoryResponse<VideoResponse>> completeUpload(
+            @PathVariable String uploadId
+    ) {
+        var video = resumableUploadService.complete(uploadId, UtilService.getRequesterUserIdFromSecurityContext());
+        return ResponseEntity.ok(new InventoryResponse<>(toResponse(video)));
+    }
+
+    @Operation(summary = "Abort a resumable upload")
+    @DeleteMapping("/uploads/{uploadId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<InventoryResponse<Boolean>> abortUpload(
+            @PathVariable String uploadId
+    ) {
+        resumableUploadService.abort(uploadId, UtilService.getRequesterUserIdFromSecurityContext());
+        return ResponseEntity.ok(new InventoryResponse<>(true));
     }
 
     @Operation(summary = "Assign Video to a User")
@@ -75,7 +152,7 @@ public class VideoController {
         var videos = videoService.getAllVideosForAdmin(pageable);
 
         return ResponseEntity.ok(new InventoryResponse<>(
-                VideoMapper.INSTANCE.videoListToDtoList(videos.getContent()),
+                videos.getContent().stream().map(this::toResponse).toList(),
                 PageInfo.of(videos)
         ));
     }
@@ -86,7 +163,7 @@ public class VideoController {
             @PathVariable Long id
     ) {
         var video = videoService.findById(id);
-        return ResponseEntity.ok(new InventoryResponse<>(VideoMapper.INSTANCE.videoToDto(video)));
+        return ResponseEntity.ok(new InventoryResponse<>(toResponse(video)));
     }
 
     @Operation(summary = "Delete a video by ID")
@@ -106,7 +183,7 @@ public class VideoController {
             @RequestBody VideoUpdateRequest request
     ) {
         var updated = videoService.updateVideo(id, request);
-        return ResponseEntity.ok(new InventoryResponse<>(VideoMapper.INSTANCE.videoToDto(updated)));
+        return ResponseEntity.ok(new InventoryResponse<>(toResponse(updated)));
     }
 
     @GetMapping("/user-videos")
@@ -114,7 +191,7 @@ public class VideoController {
     public ResponseEntity<InventoryResponse<List<VideoResponse>>> getUserVideos(@PageableDefault Pageable pageable) {
         var videos = videoService.getUserVideos(UtilService.getRequesterUserIdFromSecurityContext(), pageable);
         return ResponseEntity.ok(new InventoryResponse<>(
-                VideoMapper.INSTANCE.videoListToDtoList(videos.getContent()),
+                videos.getContent().stream().map(this::toResponse).toList(),
                 PageInfo.of(videos)
         ));
     }
@@ -127,4 +204,28 @@ public class VideoController {
         videoService.removeAssignment(assignmentId);
         return ResponseEntity.ok(new InventoryResponse<>(true));
     }
+
+    private ResponseEntity<InventoryResponse<UploadSessionResponse>> uploadResponse(UploadSession session) {
+        long offset = session.getCommittedOffset();
+        UploadSessionResponse response = UploadSessionResponse.builder()
+                .id(session.getId())
+                .fileName(session.getFileName())
+                .size(session.getSize())
+                .offset(offset)
+                .receivedBytes(session.getReceivedBytes())
+                .chunkSize(resumableUploadService.getChunkSize())
+                .expiresAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(resumableUploadService.expiresAt(session)),
+                        ZoneId.systemDefault()))
+                .build();
+        return ResponseEntity.ok()
+                .header("Upload-Offset", Long.toString(offset))
+                .body(new InventoryResponse<>(response));
+    }
+
+    private VideoResponse toResponse(Video video) {
+        VideoResponse response = VideoMapper.INSTANCE.videoToDto(video);
+        response.setStreamUrl(videoService.getVideoPublicUrl(video));
+        response.setHlsUrl(videoService.getVideoHlsUrl(video));
+        return response;
+    }
 }
@@ -1,115 +1,136 @@
 package global.inventory.controller;
 
+import global.inventory.exception.RangeNotSatisfiableException;
+import global.inventory.service.media.KeyframeIndex;
+import global.inventory.service.storage.StoredVideo;
 import global.inventory.service.storage.VideoStorageService;
+import global.inventory.service.streaming.ByteRange;
+import global.inventory.service.streaming.ChunkSizePolicy;
+import global.inventory.service.streaming.StreamAdmissionControl;
+import global.inventory.service.streaming.StreamCachePolicy;
+import global.inventory.service.streaming.VideoStreamService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.io.*;
+import java.io.IOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/uploads")
 @RequiredArgsConstructor
 @Slf4j
 public class VideoStreamController {
+    private static final String KEYFRAME_TIME_HEADER = "X-Keyframe-Time";
+
     private final VideoStorageService videoStorageService;
-    private static final int BUFFER_SIZE = 8192;
-    private static final long CHUNK_SIZE = 1024 * 1024; // 1MB chunks
+    private final VideoStreamService videoStreamService;
+    private final StreamCachePolicy cachePolicy;
+    private final ChunkSizePolicy chunkSizePolicy;
+    private final StreamAdmissionControl admissionControl;
 
     @GetMapping("/**")
-    public void streamVideo(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    public void streamVideo(@RequestParam(name = "t", required = false) Double seekSeconds,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
         String path = request.getRequestURI().substring("/uploads/".length());
-        Resource video = videoStorageService.loadAsResource(path);
-        File videoFile = video.getFile();
-        long fileSize = videoFile.length();
-
-        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
-        long start = 0;
-        long end = fileSize - 1;
-
-        if (rangeHeader != null) {
-            try {
-                if (rangeHeader.startsWith("bytes=")) {
-                    String[] ranges = rangeHeader.substring(6).split("-");
-                    start = Long.parseLong(ranges[0]);
-
-                    if (ranges.length > 1 && !ranges[1].isEmpty()) {
-                        end = Long.parseLong(ranges[1]);
-                    }
-
-                    if (end > fileSize - 1) {
-                        end = fileSize - 1;
-                    }
-
-                    if (start > end) {
-                        response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
-                        return;
-                    }
-
-                    if (end - start + 1 > CHUNK_SIZE) {
-                        end = start + CHUNK_SIZE - 1;
-                    }
-
-                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
-                }
-            } catch (NumberFormatException e) {
-                response.setStatus(HttpStatus.BAD_REQUEST.value());
-                return;
-            }
+        StoredVideo video = videoStorageService.loadVideo(path);
+        long fileSize = video.getSize();
+        long lastModified = video.getLastModified();
+        String eTag = cachePolicy.eTag(fileSize, lastModified);
+        cachePolicy.applyHeaders(response);
+        if (cachePolicy.checkNotModified(request, response, eTag, lastModified)) {
+            return;
         }
 
-        long contentLength = end - start + 1;
-
-        String contentType = request.getServletContext().getMimeType(videoFile.getAbsolutePath());
-        if (contentType == null) {
-            contentType = "video/mp4";
+        String rangeHeader = cachePolicy.isRangeApplicable(request, eTag, lastModified)
+                ? request.getHeader(HttpHeaders.RANGE)
+                : null;
+
+        List<ByteRange> ranges;
+        try {
+            ranges = rangeHeader == null && seekSeconds != null
+                    ? seek(video, seekSeconds, response)
+                    : ByteRange.parse(rangeHeader, fileSize);
+        } catch (RangeNotSatisfiableException e) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, ByteRange.unsatisfiedContentRange(fileSize));
+            return;
         }
 
-        response.setContentType(contentType);
         response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
-        response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(contentLength));
-        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
-        response.setHeader(HttpHeaders.PRAGMA, "no-cache");
-        response.setHeader(HttpHeaders.EXPIRES, "0");
 
-        if (rangeHeader != null) {
-            response.setHeader(HttpHeaders.CONTENT_RANGE,
-                    String.format("bytes %d-%d/%d", start, end, fileSize));
+        long start = 0;
+        long end = fileSize - 1;
+        if (ranges.size() == 1) {
+            start = ranges.get(0).start();
+            end = ranges.get(0).end();
+            long chunkSize = chunkSizePolicy.chunkSize(ChunkSizePolicy.clientKey(request), video.getBitrate());
+            if (end - start + 1 > chunkSize) {
+                end = start + chunkSize - 1;
+            }
+        }
+        long contentLength = ranges.size() > 1
+                ? ranges.stream().mapToLong(ByteRange::length).sum()
+                : end - start + 1;
+
+        StreamAdmissionControl.Permit permit =
+                admissionControl.tryAcquire(StreamAdmissionControl.userKey(request), contentLength);
+        if (permit == null) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(admissionControl.retryAfterSeconds()));
+            return;
         }
 
-        try (RandomAccessFile raf = new RandomAccessFile(videoFile, "r");
-             OutputStream out = new BufferedOutputStream(response.getOutputStream())) {
-
-            raf.seek(start);
-            byte[] buffer = new byte[BUFFER_SIZE];
-            long remaining = contentLength;
-            int read;
+        // The service releases the permit once a single range is sent, which can be after this method returns
+        boolean handedOff = false;
+        try {
+            if (ranges.size() > 1) {
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                videoStreamService.writeRanges(request, response, video, ranges);
+                return;
+            }
 
-            while (remaining > 0) {
-                read = raf.read(buffer, 0, (int) Math.min(buffer.length, remaining));
-                if (read == -1) {
-                    break;
-                }
-                try {
-                    out.write(buffer, 0, read);
-                    remaining -= read;
-                } catch (IOException e) {
-                    log.debug("Client disconnected while streaming video: {}", path);
-                    return;
-                }
+            if (ranges.size() == 1) {
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, new ByteRange(start, end).toContentRange(fileSize));
             }
+            response.setContentType(video.getContentType());
+            response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(contentLength));
+
+            handedOff = true;
+            videoStreamService.writeRange(request, response, video, start, contentLength, permit);
         } catch (IOException e) {
-            if (!e.getMessage().contains("Broken pipe") &&
+            if (e.getMessage() == null) {
+                log.debug("Client disconnected while streaming video: {}", path);
+            } else if (!e.getMessage().contains("Broken pipe") &&
                     !e.getMessage().contains("Connection reset")) {
                 log.error("Error streaming video: {}", path, e);
             }
+        } finally {
+            if (!handedOff) {
+                permit.close();
+            }
+        }
+    }
+
+    /**
+     * Serves {@code ?t=seconds} from the keyframe at or before that time, so the player can start decoding
+     * right away without probing for the GOP boundary. Videos without an index are served whole.
+     */
+    private static List<ByteRange> seek(StoredVideo video, double seconds, HttpServletResponse response) {
+        KeyframeIndex index = video.getKeyframeIndex();
+        int keyframe = index.floor((long) (seconds * 1000));
+        if (keyframe < 0 || index.offset(keyframe) >= video.getSize()) {
+            return List.of();
         }
+        response.setHeader(KEYFRAME_TIME_HEADER, String.valueOf(index.timeMillis(keyframe) / 1000d));
+        return List.of(new ByteRange(index.offset(keyframe), video.getSize() - 1));
     }
-}
\ No newline at end of file
+}
@@ -150,6 +150,17 @@ public class GlobalControllerExceptionHandler {
         return new ResponseEntity<>(apiError, apiError.getHttpStatus());
     }
 
+    @ExceptionHandler(value = UploadConflictException.class)
+    public ResponseEntity<Object> handleUploadConflictException(Exception ex) {
+        log.warn(ex.getMessage());
+        ApiError apiError = ApiError.builder()
+                .message(ex.getMessage())
+                .httpStatus(HttpStatus.CONFLICT)
+                .createdAt(LocalDateTime.now())
+                .build();
+        return new ResponseEntity<>(apiError, apiError.getHttpStatus());
+    }
+
     @ExceptionHandler(value = ResourceNotModifiedException.class)
     public ResponseEntity<ApiError> handleResourceNotModifiedException(Exception ex) {
         log.error(ex.getMessage(), ex);
@@ -0,0 +1,7 @@
+package global.inventory.exception;
+
+public class MediaFormatException extends RuntimeException {
+    public MediaFormatException(String message) {
+        super(message);
+    }
+}
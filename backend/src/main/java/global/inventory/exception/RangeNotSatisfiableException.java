@@ -0,0 +1,11 @@
+package global.inventory.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+public class RangeNotSatisfiableException extends RuntimeException {
+    public RangeNotSatisfiableException(String range) {
+        super(String.format("Range not satisfiable: %s", range));
+    }
+}
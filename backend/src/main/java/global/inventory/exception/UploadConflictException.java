@@ -0,0 +1,11 @@
+package global.inventory.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class UploadConflictException extends RuntimeException {
+    public UploadConflictException(String message) {
+        super(message);
+    }
+}
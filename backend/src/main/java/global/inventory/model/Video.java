@@ -4,13 +4,14 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
 
+import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
 @EqualsAndHashCode(callSuper = true)
 @Data
 @Entity
-@Table(name = "videos")
+@Table(name = "videos", indexes = @Index(name = "idx_videos_video_url", columnList = "video_url"))
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
@@ -30,8 +31,32 @@ public class Video extends BaseEntity {
     @Column(name = "video_url", nullable = false)
     private String videoUrl;
 
+    @Column(length = 16)
+    private String container;
+
+    @Column(name = "duration_ms")
+    private Long durationMillis;
+
+    private Integer width;
+
+    private Integer height;
+
+    @Column(length = 32)
+    private String videoCodec;
+
+    @Column(length = 32)
+    private String audioCodec;
+
+    private Long bitrate;
+
+    @Column(length = 64)
+    private String checksum;
+
     @OneToMany(mappedBy = "video", cascade = CascadeType.ALL)
     private Set<VideoAssignment> videoAssignments = new HashSet<>();
 
     private boolean deleted = false;
+
+    @Column(name = "files_reclaimed_at")
+    private LocalDateTime filesReclaimedAt;
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package global.inventory.payload.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Request object for starting a resumable video upload")
+public class UploadSessionRequest {
+    @NotBlank(message = "title is required")
+    private String title;
+
+    private String description;
+
+    @NotBlank(message = "fileName is required")
+    private String fileName;
+
+    @Positive(message = "size must be positive")
+    private long size;
+}
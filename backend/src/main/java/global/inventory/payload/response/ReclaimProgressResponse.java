@@ -0,0 +1,19 @@
+package global.inventory.payload.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class ReclaimProgressResponse {
+    private boolean running;
+    private String phase;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long videosReclaimed;
+    private long filesScanned;
+    private long filesReclaimed;
+    private long bytesReclaimed;
+}
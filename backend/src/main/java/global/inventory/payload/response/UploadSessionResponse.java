@@ -0,0 +1,18 @@
+package global.inventory.payload.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class UploadSessionResponse {
+    private String id;
+    private String fileName;
+    private long size;
+    private long offset;
+    private long receivedBytes;
+    private int chunkSize;
+    private LocalDateTime expiresAt;
+}
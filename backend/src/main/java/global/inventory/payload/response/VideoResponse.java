@@ -12,6 +12,16 @@ public class VideoResponse {
     private String title;
     private String description;
     private String videoUrl;
+    private String streamUrl;
+    private String hlsUrl;
+    private String container;
+    private Long durationMillis;
+    private Integer width;
+    private Integer height;
+    private String videoCodec;
+    private String audioCodec;
+    private Long bitrate;
+    private String checksum;
     private LocalDateTime createdAt;
     private LocalDateTime modificationDate;
 }
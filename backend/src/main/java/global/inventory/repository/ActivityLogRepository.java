@@ -1,5 +1,6 @@
 package global.inventory.repository;
 
+import global.inventory.enums.ActivityAction;
 import global.inventory.model.ActivityLog;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -23,4 +24,9 @@ public interface ActivityLogRepository extends JpaRepository<ActivityLog, Long>
     Page<ActivityLog> findByVideo_IdOrderByTimestampDesc(Long videoId, Pageable pageable);
 
     Page<ActivityLog> findByUser_IdOrderByTimestampDesc(Long userId, Pageable pageable);
+
+    @Query("SELECT a.video.videoUrl FROM ActivityLog a " +
+            "WHERE a.action = :action AND a.video.deleted = false " +
+            "GROUP BY a.video.videoUrl ORDER BY COUNT(a) DESC")
+    List<String> findMostActiveVideoUrls(ActivityAction action, Pageable pageable);
 }
@@ -7,6 +7,10 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface VideoRepository extends JpaRepository<Video, Long> {
     @Query("SELECT v FROM Video v WHERE v.deleted = false order by v.createdAt desc")
@@ -16,4 +20,12 @@ public interface VideoRepository extends JpaRepository<Video, Long> {
             "JOIN v.videoAssignments va " +
             "WHERE va.user.id = :userId AND v.deleted = false")
     Page<Video> findByVideoAssignments_User_Id(Long userId, Pageable pageable);
+
+    @Query("SELECT v FROM Video v " +
+            "WHERE v.deleted = true AND v.filesReclaimedAt IS NULL " +
+            "AND v.modificationDate < :deletedBefore AND v.id > :afterId ORDER BY v.id")
+    List<Video> findUnreclaimedDeleted(LocalDateTime deletedBefore, Long afterId, Pageable pageable);
+
+    @Query("SELECT v.videoUrl FROM Video v WHERE v.videoUrl IN :videoUrls")
+    List<String> findExistingVideoUrls(Collection<String> videoUrls);
 }
\ No newline at end of file
@@ -4,12 +4,15 @@ import global.inventory.model.Video;
 import global.inventory.model.VideoAssignment;
 import global.inventory.payload.request.VideoUpdateRequest;
 import global.inventory.payload.request.VideoUploadRequest;
+import global.inventory.service.storage.StoredFile;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 public interface VideoService {
     Video uploadVideo(VideoUploadRequest request);
 
+    Video createVideo(String title, String description, StoredFile stored);
+
     VideoAssignment assignVideoToUser(Long videoId, Long userId);
 
     Page<Video> getUserVideos(Long userId, Pageable pageable);
@@ -22,6 +25,8 @@ public interface VideoService {
 
     String getVideoPublicUrl(Video video);
 
+    String getVideoHlsUrl(Video video);
+
     Video findById(Long id);
 
     Video updateVideo(Long id, VideoUpdateRequest request);
@@ -6,12 +6,16 @@ import global.inventory.model.VideoAssignment;
 import global.inventory.payload.request.VideoUpdateRequest;
 import global.inventory.payload.request.VideoUploadRequest;
 import global.inventory.repository.VideoRepository;
+import global.inventory.service.hls.HlsPackagingService;
+import global.inventory.service.media.MediaInfo;
+import global.inventory.service.storage.StoredFile;
 import global.inventory.service.storage.VideoStorageService;
 import global.inventory.util.UtilService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
@@ -24,19 +28,50 @@ public class VideoServiceImpl implements VideoService {
     private final UserService userService;
     private final VideoStorageService videoStorageService;
     private final VideoAssignmentService videoAssignmentService;
+    private final HlsPackagingService hlsPackagingService;
 
+    /**
+     * Runs without a transaction so no connection is held while the file is copied; only the insert in
+     * {@link #createVideo} takes one. The stored file is removed again if the row cannot be written.
+     */
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Video uploadVideo(VideoUploadRequest request) {
-        String storedPath = videoStorageService.store(request.getFile());
+        StoredFile stored = videoStorageService.store(request.getFile());
+        try {
+            return createVideo(request.getTitle(), request.getDescription(), stored);
+        } catch (RuntimeException e) {
+            videoStorageService.delete(stored.storedPath());
+            throw e;
+        }
+    }
+
+    /**
+     * Saves the row with the metadata probed while the file was stored, in the repository's own short
+     * transaction.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Video createVideo(String title, String description, StoredFile stored) {
+        MediaInfo media = stored.media();
 
         Video video = Video.builder()
-                .title(request.getTitle())
-                .description(request.getDescription())
-                .videoUrl(storedPath)
+                .title(title)
+                .description(description)
+                .videoUrl(stored.storedPath())
+                .container(media.container())
+                .durationMillis(positiveOrNull(media.durationMillis()))
+                .width(positiveOrNull(media.width()))
+                .height(positiveOrNull(media.height()))
+                .videoCodec(media.videoCodec())
+                .audioCodec(media.audioCodec())
+                .bitrate(positiveOrNull(media.bitrate()))
+                .checksum(stored.sha256())
                 .build();
 
-        return videoRepository.save(video);
+        Video saved = videoRepository.save(video);
+        hlsPackagingService.packageAsync(stored.storedPath());
+        return saved;
     }
 
     @Override
@@ -126,7 +161,25 @@ public class VideoServiceImpl implements VideoService {
                 .orElseThrow(() -> new RuntimeException("Video not found or deleted"));
     }
 
+    private static Long positiveOrNull(long value) {
+        return value > 0 ? value : null;
+    }
+
+    private static Integer positiveOrNull(int value) {
+        return value > 0 ? value : null;
+    }
+
     public String getVideoPublicUrl(Video video) {
-        return videoStorageService.generatePublicUrl(video.getVideoUrl());
+        return videoStorageService.generatePublicUrl(video.getVideoUrl(),
+                UtilService.getRequesterUserIdFromSecurityContext(), video.getId(), durationMillis(video));
+    }
+
+    public String getVideoHlsUrl(Video video) {
+        return hlsPackagingService.generatePlaylistUrl(video.getVideoUrl(),
+                UtilService.getRequesterUserIdFromSecurityContext(), video.getId(), durationMillis(video));
+    }
+
+    private static long durationMillis(Video video) {
+        return video.getDurationMillis() != null ? video.getDurationMillis() : 0;
     }
 }
@@ -0,0 +1,188 @@
+package global.inventory.service.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared pool of direct I/O buffers in power-of-two size classes. Released buffers are kept for reuse until
+ * the idle ceiling is reached; requests larger than the biggest class are allocated and dropped unpooled.
+ * <p>
+ * A buffer that becomes unreachable without being released is reported as a leak. With origin tracking on,
+ * the report includes the stack of the code that borrowed it, which costs a stack walk per acquire.
+ */
+@Slf4j
+@Component
+public class DirectBufferPool {
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final int minClassSize;
+    private final int maxClassSize;
+    private final long maxIdleBytes;
+    private final boolean trackLeakOrigins;
+    private final Queue<ByteBuffer>[] classes;
+
+    private final AtomicLong idleBytes = new AtomicLong();
+    private final AtomicLong borrowedBytes = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter leaks;
+
+    @SuppressWarnings("unchecked")
+    public DirectBufferPool(
+            @Value("${app.video.buffer-pool.min-size:8192}") int minSize,
+            @Value("${app.video.buffer-pool.max-size:1048576}") int maxSize,
+            @Value("${app.video.buffer-pool.max-idle-bytes:67108864}") long maxIdleBytes,
+            @Value("${app.video.buffer-pool.track-leak-origins:false}") boolean trackLeakOrigins,
+            MeterRegistry meterRegistry) {
+        this.minClassSize = roundUpToPowerOfTwo(minSize);
+        this.maxClassSize = Math.max(minClassSize, roundUpToPowerOfTwo(maxSize));
+        this.maxIdleBytes = maxIdleBytes;
+        this.trackLeakOrigins = trackLeakOrigins;
+
+        int classCount = Integer.numberOfTrailingZeros(maxClassSize) - Integer.numberOfTrailingZeros(minClassSize) + 1;
+        this.classes = new Queue[classCount];
+        for (int i = 0; i < classCount; i++) {
+            classes[i] = new ConcurrentLinkedQueue<>();
+            int classSize = minClassSize << i;
+            Gauge.builder("video.buffer.pool.idle.buffers", classes[i], Queue::size)
+                    .tag("size", String.valueOf(classSize))
+                    .register(meterRegistry);
+        }
+
+        this.hits = Counter.builder("video.buffer.pool.acquire").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("video.buffer.pool.acquire").tag("result", "miss")
+                .description("Acquires that had to allocate a new direct buffer")
+                .register(meterRegistry);
+        this.leaks = Counter.builder("video.buffer.pool.leaks")
+                .description("Buffers garbage collected without being released")
+                .register(meterRegistry);
+        Gauge.builder("video.buffer.pool.idle", idleBytes, AtomicLong::get)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("video.buffer.pool.borrowed", borrowedBytes, AtomicLong::get)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Borrows a cleared buffer of at least {@code minCapacity} bytes. Its limit is set to {@code minCapacity};
+     * the caller must release it by closing the returned handle.
+     */
+    public PooledBuffer acquire(int minCapacity) {
+        int classIndex = classIndex(minCapacity);
+        ByteBuffer buffer = null;
+        if (classIndex >= 0) {
+            buffer = classes[classIndex].poll();
+        }
+
+        if (buffer != null) {
+            idleBytes.addAndGet(-buffer.capacity());
+            hits.increment();
+        } else {
+            int capacity = classIndex >= 0 ? minClassSize << classIndex : minCapacity;
+            buffer = ByteBuffer.allocateDirect(capacity);
+            misses.increment();
+        }
+
+        buffer.clear().limit(minCapacity);
+        borrowedBytes.addAndGet(buffer.capacity());
+        return new PooledBuffer(this, buffer);
+    }
+
+    private void release(ByteBuffer buffer) {
+        borrowedBytes.addAndGet(-buffer.capacity());
+        int classIndex = classIndex(buffer.capacity());
+        if (classIndex < 0 || (minClassSize << classIndex) != buffer.capacity()) {
+            return;
+        }
+        if (idleBytes.addAndGet(buffer.capacity()) > maxIdleBytes) {
+            idleBytes.addAndGet(-buffer.capacity());
+            return;
+        }
+        classes[classIndex].offer(buffer);
+    }
+
+    private void leaked(int capacity, Throwable origin) {
+        borrowedBytes.addAndGet(-capacity);
+        leaks.increment();
+        if (origin != null) {
+            log.warn("Direct buffer of {} bytes was never released", capacity, origin);
+        } else {
+            log.warn("Direct buffer of {} bytes was never released; enable "
+                    + "app.video.buffer-pool.track-leak-origins to find the caller", capacity);
+        }
+    }
+
+    private int classIndex(int capacity) {
+        if (capacity > maxClassSize) {
+            return -1;
+        }
+        int rounded = Math.max(minClassSize, roundUpToPowerOfTwo(capacity));
+        return Integer.numberOfTrailingZeros(rounded) - Integer.numberOfTrailingZeros(minClassSize);
+    }
+
+    private static int roundUpToPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    /**
+     * A borrowed buffer. Closing it returns the buffer to the pool; it must not be used afterwards.
+     */
+    public static final class PooledBuffer implements AutoCloseable {
+        private final ByteBuffer buffer;
+        private final LeakWatch watch;
+        private final Cleaner.Cleanable cleanable;
+
+        private PooledBuffer(DirectBufferPool pool, ByteBuffer buffer) {
+            this.buffer = buffer;
+            Throwable origin = pool.trackLeakOrigins ? new Throwable("Buffer acquired here") : null;
+            this.watch = new LeakWatch(pool, buffer, origin);
+            this.cleanable = CLEANER.register(this, watch);
+        }
+
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+            if (!watch.released) {
+                watch.released = true;
+                cleanable.clean();
+                watch.pool.release(buffer);
+            }
+        }
+    }
+
+    // Must not reference the PooledBuffer itself, or it would never become unreachable
+    private static final class LeakWatch implements Runnable {
+        private final DirectBufferPool pool;
+        private final int capacity;
+        private final Throwable origin;
+        private volatile boolean released;
+
+        private LeakWatch(DirectBufferPool pool, ByteBuffer buffer, Throwable origin) {
+            this.pool = pool;
+            this.capacity = buffer.capacity();
+            this.origin = origin;
+        }
+
+        @Override
+        public void run() {
+            if (!released) {
+                pool.leaked(capacity, origin);
+            }
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package global.inventory.service.cache;
+
+import global.inventory.service.storage.backend.StorageBackend;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Read-through disk tier in front of a remote storage backend. Each remote object is mirrored by a sparse file
+ * that is filled chunk by chunk as ranges are read, next to a chunk map recording which chunks are present, so
+ * the cache is rebuilt from disk after a restart. Misses on the same chunk share one remote read, and the chunks
+ * following a read are fetched in the background so a viewer playing on finds them on disk.
+ * <p>
+ * The byte budget counts cached chunks. The JDK cannot punch holes into a file, so eviction drops whole objects:
+ * of a random sample, the one read least often according to the frequency sketch, the least recently used on a
+ * tie.
+ */
+@Slf4j
+@Component
+public class DiskChunkCache {
+    private static final String DATA_SUFFIX = ".data";
+    private static final String MAP_SUFFIX = ".chunks";
+    private static final int MAP_MAGIC = 0x43484B31; // "CHK1"
+    private static final int MAP_HEADER_BYTES = 16;
+    private static final int EVICTION_SAMPLE = 8;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int PREFETCH_QUEUE = 256;
+
+    private final boolean enabled;
+    private final Path root;
+    private final long maxBytes;
+    private final int chunkSize;
+    private final int prefetchChunks;
+    private final Map<String, CachedObject> objects = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+    private final AtomicLong residentBytes = new AtomicLong();
+    private final SingleFlight<String, CachedObject> opens;
+    private final SingleFlight<ChunkKey, Boolean> fetches;
+    private final ThreadPoolExecutor prefetcher;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter prefetched;
+
+    public DiskChunkCache(
+            @Value("${app.video.storage.disk-cache.enabled:true}") boolean enabled,
+            @Value("${app.video.storage.disk-cache.directory:uploads/cache}") String directory,
+            @Value("${app.video.storage.disk-cache.max-bytes:10737418240}") long maxBytes,
+            @Value("${app.video.storage.disk-cache.chunk-size:1048576}") int chunkSize,
+            @Value("${app.video.storage.disk-cache.prefetch-chunks:2}") int prefetchChunks,
+            @Value("${app.video.storage.disk-cache.prefetch-threads:2}") int prefetchThreads,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.root = Paths.get(directory).toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+        this.chunkSize = chunkSize;
+        this.prefetchChunks = prefetchChunks;
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, Math.max(1, maxBytes / chunkSize)));
+        this.opens = new SingleFlight<>("disk-cache-open", meterRegistry);
+        this.fetches = new SingleFlight<>("disk-cache", meterRegistry);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("disk-cache-prefetch-");
+        threadFactory.setDaemon(true);
+        int threads = Math.max(1, prefetchThreads);
+        this.prefetcher = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(PREFETCH_QUEUE), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+
+        this.hits = Counter.builder("video.disk.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("video.disk.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("video.disk.cache.evictions").register(meterRegistry);
+        this.prefetched = Counter.builder("video.disk.cache.prefetched")
+                .description("Chunks fetched ahead of the reader")
+                .register(meterRegistry);
+        Gauge.builder("video.disk.cache.resident", residentBytes, AtomicLong::get)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("video.disk.cache.hit.ratio", this, DiskChunkCache::hitRatio)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Rebuilds the index from the chunk maps left by the previous run. Data files without a readable map are
+     * removed, as are maps written with a different chunk size.
+     */
+    @PostConstruct
+    public void initialize() {
+        if (!enabled || !Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(Files::isRegularFile).forEach(this::restore);
+        } catch (IOException e) {
+            log.warn("Could not rebuild disk cache index from {}", root, e);
+        }
+        evictIfNeeded(null);
+        log.info("Disk cache restored {} objects, {} bytes from {}", objects.size(), residentBytes.get(), root);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetcher.shutdownNow();
+        objects.values().forEach(CachedObject::closeChannels);
+    }
+
+    /**
+     * Streams a range of {@code key}, fetching the chunks it covers from {@code origin} unless they are on disk.
+     */
+    public InputStream read(StorageBackend origin, String key, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+        return new ChunkInputStream(origin, open(origin, key), offset, length);
+    }
+
+    public void invalidate(String key) {
+        CachedObject object = objects.get(key);
+        if (object != null) {
+            object.evict();
+            objects.remove(key, object);
+        }
+    }
+
+    private CachedObject open(StorageBackend origin, String key) throws IOException {
+        while (true) {
+            CachedObject object = objects.get(key);
+            if (object == null) {
+                object = opens.execute(key, () -> create(origin, key));
+            }
+            if (object.retain()) {
+                return object;
+            }
+            // Evicted between lookup and retain; the next round sees it gone
+            objects.remove(key, object);
+        }
+    }
+
+    private CachedObject create(StorageBackend origin, String key) throws IOException {
+        CachedObject existing = objects.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        long size = origin.stat(key).size();
+        Path data = resolve(key + DATA_SUFFIX);
+        Path map = resolve(key + MAP_SUFFIX);
+        Files.createDirectories(data.getParent());
+        Files.deleteIfExists(data);
+        ByteBuffer header = ByteBuffer.allocate(MAP_HEADER_BYTES).putInt(MAP_MAGIC).putInt(chunkSize).putLong(size);
+        Files.write(map, header.array());
+
+        CachedObject object = new CachedObject(key, data, map, size, new BitSet(), 0);
+        objects.put(key, object);
+        return object;
+    }
+
+    private void restore(Path map) {
+        String name = map.getFileName().toString();
+        if (!name.endsWith(MAP_SUFFIX) && !name.endsWith(DATA_SUFFIX)) {
+            return;
+        }
+        if (name.endsWith(DATA_SUFFIX)) {
+            Path ownMap = map.resolveSibling(name.substring(0, name.length() - DATA_SUFFIX.length()) + MAP_SUFFIX);
+            if (!Files.exists(ownMap)) {
+                deleteQuietly(map);
+            }
+            return;
+        }
+        String relative = root.relativize(map).toString().replace('\\', '/');
+        String key = relative.substring(0, relative.length() - MAP_SUFFIX.length());
+        Path data = resolve(key + DATA_SUFFIX);
+        try {
+            byte[] bytes = Files.readAllBytes(map);
+            ByteBuffer header = ByteBuffer.wrap(bytes);
+            if (bytes.length < MAP_HEADER_BYTES || header.getInt() != MAP_MAGIC || header.getInt() != chunkSize
+                    || !Files.exists(data)) {
+                deleteQuietly(map);
+                deleteQuietly(data);
+                return;
+            }
+            long size = header.getLong();
+            BitSet present = new BitSet();
+            long cachedBytes = 0;
+            for (int chunk = 0; MAP_HEADER_BYTES + chunk < bytes.length; chunk++) {
+                if (bytes[MAP_HEADER_BYTES + chunk] != 0) {
+                    present.set(chunk);
+                    cachedBytes += chunkLength(size, chunk);
+                }
+            }
+            CachedObject object = new CachedObject(key, data, map, size, present, cachedBytes);
+            long idleNanos = TimeUnit.MILLISECONDS.toNanos(
+                    System.currentTimeMillis() - Files.getLastModifiedTime(map).toMillis());
+            object.lastAccessNanos = System.nanoTime() - Math.max(0, idleNanos);
+            objects.put(key, object);
+            residentBytes.addAndGet(cachedBytes);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Dropping unreadable disk cache entry {}", map, e);
+            deleteQuietly(map);
+            deleteQuietly(data);
+        }
+    }
+
+    private void fetch(StorageBackend origin, CachedObject object, int chunk) throws IOException {
+        if (object.isPresent(chunk)) {
+            return;
+        }
+        fetches.execute(new ChunkKey(object.key, chunk), () -> {
+            // A flight that finished just before this one started may already have filled it
+            if (!object.isPresent(chunk)) {
+                long position = (long) chunk * chunkSize;
+                int length = chunkLength(object.size, chunk);
+                FileChannel channel = object.dataChannel();
+                try (InputStream in = origin.read(object.key, position, length)) {
+                    byte[] buffer = new byte[Math.min(COPY_BUFFER_SIZE, length)];
+                    long written = 0;
+                    while (written < length) {
+                        int read = in.read(buffer, 0, (int) Math.min(buffer.length, length - written));
+                        if (read < 0) {
+                            throw new EOFException("Remote object " + object.key + " ended inside chunk " + chunk);
+                        }
+                        ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                        while (data.hasRemaining()) {
+                            channel.write(data, position + written + data.position());
+                        }
+                        written += read;
+                    }
+                }
+                object.markPresent(chunk, length);
+                evictIfNeeded(object);
+            }
+            return Boolean.TRUE;
+        });
+    }
+
+    private void prefetch(StorageBackend origin, CachedObject object, int chunk) {
+        for (int next = chunk + 1; next <= chunk + prefetchChunks && next < object.chunkCount; next++) {
+            try {
+                if (object.isPresent(next) || !object.retain()) {
+                    continue;
+                }
+            } catch (IOException e) {
+                return;
+            }
+            int target = next;
+            try {
+                prefetcher.execute(() -> {
+                    try {
+                        fetch(origin, object, target);
+                        prefetched.increment();
+                    } catch (IOException | RuntimeException e) {
+                        log.debug("Prefetch of chunk {} of {} failed", target, object.key, e);
+                    } finally {
+                        object.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Prefetching is best effort; the reader fetches the chunk itself if it gets there first
+                object.release();
+            }
+        }
+    }
+
+    /**
+     * Evicts until the budget holds again, never the object that is being filled.
+     */
+    private void evictIfNeeded(CachedObject filling) {
+        while (residentBytes.get() > maxBytes) {
+            CachedObject victim = pickVictim(filling);
+            if (victim == null) {
+                return;
+            }
+            // Files go before the entry, so a reopen of the same key cannot create files the eviction then deletes
+            if (victim.evict()) {
+                evictions.increment();
+                log.debug("Evicted {} from the disk cache", victim.key);
+            }
+            objects.remove(victim.key, victim);
+        }
+    }
+
+    private CachedObject pickVictim(CachedObject filling) {
+        List<CachedObject> candidates = new ArrayList<>(objects.values());
+        candidates.remove(filling);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CachedObject victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+        for (int i = 0; i < Math.min(EVICTION_SAMPLE, candidates.size()); i++) {
+            CachedObject candidate = candidates.get(random.nextInt(candidates.size()));
+            int frequency = sketch.frequency(candidate.key);
+            if (victim == null || frequency < victimFrequency
+                    || (frequency == victimFrequency && candidate.lastAccessNanos < victim.lastAccessNanos)) {
+                victim = candidate;
+                victimFrequency = frequency;
+            }
+        }
+        return victim;
+    }
+
+    private int chunkLength(long size, int chunk) {
+        return (int) Math.min(chunkSize, size - (long) chunk * chunkSize);
+    }
+
+    private Path resolve(String relative) {
+        Path file = root.resolve(relative).normalize();
+        if (!file.startsWith(root) || file.equals(root)) {
+            throw new IllegalArgumentException("Cache key outside cache directory: " + relative);
+        }
+        return file;
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}", file, e);
+        }
+    }
+
+    private record ChunkKey(String key, int chunk) {
+    }
+
+    /**
+     * One remote object on disk. The data file is opened by the first reader and only closed once the object is
+     * evicted and no reader or prefetch holds it any more, so eviction never pulls a file out from under a read.
+     */
+    private final class CachedObject {
+        private final String key;
+        private final Path data;
+        private final Path map;
+        private final long size;
+        private final int chunkCount;
+        private final BitSet present;
+        private long cachedBytes;
+        private FileChannel dataChannel;
+        private FileChannel mapChannel;
+        private int refs;
+        private boolean evicted;
+        private volatile long lastAccessNanos = System.nanoTime();
+
+        private CachedObject(String key, Path data, Path map, long size, BitSet present, long cachedBytes) {
+            this.key = key;
+            this.data = data;
+            this.map = map;
+            this.size = size;
+            this.chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+            this.present = present;
+            this.cachedBytes = cachedBytes;
+        }
+
+        synchronized boolean retain() throws IOException {
+            if (evicted) {
+                return false;
+            }
+            if (dataChannel == null) {
+                dataChannel = FileChannel.open(data, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.SPARSE);
+            }
+            refs++;
+            return true;
+        }
+
+        synchronized void release() {
+            if (--refs == 0 && evicted) {
+                closeChannels();
+            }
+        }
+
+        synchronized boolean isPresent(int chunk) {
+            return present.get(chunk);
+        }
+
+        /**
+         * Only valid while retained; the channel then stays open even if the object is evicted meanwhile.
+         */
+        synchronized FileChannel dataChannel() {
+            return dataChannel;
+        }
+
+        /**
+         * Records a chunk as present only after its bytes are written, so a crash in between costs a refetch
+         * rather than serving a hole.
+         */
+        synchronized void markPresent(int chunk, int length) throws IOException {
+            if (present.get(chunk)) {
+                return;
+            }
+            if (mapChannel == null) {
+                mapChannel = FileChannel.open(map, StandardOpenOption.WRITE);
+            }
+            mapChannel.write(ByteBuffer.wrap(new byte[]{1}), MAP_HEADER_BYTES + chunk);
+            present.set(chunk);
+            cachedBytes += length;
+            if (!evicted) {
+                residentBytes.addAndGet(length);
+            }
+        }
+
+        synchronized boolean evict() {
+            if (evicted) {
+                return false;
+            }
+            evicted = true;
+            residentBytes.addAndGet(-cachedBytes);
+            deleteQuietly(map);
+            deleteQuietly(data);
+            if (refs == 0) {
+                closeChannels();
+            }
+            return true;
+        }
+
+        synchronized void closeChannels() {
+            for (FileChannel channel : new FileChannel[]{dataChannel, mapChannel}) {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        log.debug("Could not close disk cache file of {}", key, e);
+                    }
+                }
+            }
+            dataChannel = null;
+            mapChannel = null;
+        }
+    }
+
+    private final class ChunkInputStream extends InputStream {
+        private final StorageBackend origin;
+        private final CachedObject object;
+        private final long end;
+        private long position;
+        private int currentChunk = -1;
+        private boolean closed;
+
+        private ChunkInputStream(StorageBackend origin, CachedObject object, long offset, long length) {
+            this.origin = origin;
+            this.object = object;
+            this.position = offset;
+            this.end = Math.min(offset + length, object.size);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (position >= end) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            int chunk = (int) (position / chunkSize);
+            if (chunk != currentChunk) {
+                enter(chunk);
+            }
+            long chunkEnd = Math.min((long) (chunk + 1) * chunkSize, end);
+            ByteBuffer buffer = ByteBuffer.wrap(target, offset, (int) Math.min(length, chunkEnd - position));
+            int read = object.dataChannel().read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Disk cache file of " + object.key + " is shorter than chunk " + chunk);
+            }
+            position += read;
+            return read;
+        }
+
+        private void enter(int chunk) throws IOException {
+            currentChunk = chunk;
+            object.lastAccessNanos = System.nanoTime();
+            sketch.increment(object.key);
+            if (object.isPresent(chunk)) {
+                hits.increment();
+            } else {
+                misses.increment();
+                fetch(origin, object, chunk);
+            }
+            prefetch(origin, object, chunk);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                object.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package global.inventory.service.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Count-min sketch of recent access frequency used for TinyLFU admission. Counters saturate at 15 and are
+ * halved once the number of recorded accesses reaches ten times the cache size, so old popularity fades.
+ * Updates are deliberately unsynchronized; an occasionally lost increment does not matter for an estimate.
+ */
+class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xb5ad4ece, 0x7a1c3f55, 0x2f9e6c81};
+
+    private final int[] table;
+    private final int mask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(16, expectedEntries) * 4 - 1) << 1;
+        this.table = new int[width * DEPTH];
+        this.mask = width - 1;
+        this.sampleSize = Math.max(10 * expectedEntries, 100);
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+        if (added && additions.incrementAndGet() >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, table[indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    private synchronized void reset() {
+        if (additions.get() < sampleSize) {
+            return;
+        }
+        for (int i = 0; i < table.length; i++) {
+            table[i] >>>= 1;
+        }
+        additions.set(additions.get() / 2);
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+        h ^= h >>> 16;
+        return row * (mask + 1) + (h & mask);
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        hash ^= hash >>> 11;
+        return hash;
+    }
+}
@@ -0,0 +1,291 @@
+package global.inventory.service.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Off-heap cache of fixed-size file segments keyed by (path, segment index).
+ * <p>
+ * Segments live in a fixed set of direct buffer slots bounded by the memory ceiling; buffers are allocated
+ * on first use and recycled on eviction, never freed. When the cache is full a victim is chosen by sampled
+ * LRU and the newcomer is only admitted if the frequency sketch says it is more popular (TinyLFU), so a
+ * single sequential scan of a cold video cannot flush the hot ones.
+ */
+@Slf4j
+@Component
+public class SegmentCache {
+    private static final int EVICTION_SAMPLE = 8;
+
+    private final boolean enabled;
+    private final int segmentSize;
+    private final Slot[] slots;
+    private final Map<SegmentKey, Slot> index = new ConcurrentHashMap<>();
+    private final Queue<Slot> freeSlots = new ConcurrentLinkedQueue<>();
+    private final FrequencySketch sketch;
+    private final AtomicLong residentBytes = new AtomicLong();
+    private final SingleFlight<SegmentKey, Slot> loads;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter rejections;
+    private final Counter bytesServed;
+
+    public SegmentCache(
+            @Value("${app.video.streaming.segment-cache.enabled:false}") boolean enabled,
+            @Value("${app.video.streaming.segment-cache.segment-size:1048576}") int segmentSize,
+            @Value("${app.video.streaming.segment-cache.max-bytes:268435456}") long maxBytes,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.segmentSize = segmentSize;
+
+        int slotCount = enabled ? (int) Math.max(1, maxBytes / segmentSize) : 0;
+        this.slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Slot();
+            freeSlots.add(slots[i]);
+        }
+        this.sketch = new FrequencySketch(Math.max(slotCount, 1));
+        this.loads = new SingleFlight<>("segment-cache", meterRegistry);
+
+        this.hits = Counter.builder("video.segment.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("video.segment.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("video.segment.cache.evictions").register(meterRegistry);
+        this.rejections = Counter.builder("video.segment.cache.admission.rejected").register(meterRegistry);
+        this.bytesServed = Counter.builder("video.segment.cache.served")
+                .baseUnit("bytes")
+                .description("Bytes written to clients straight from cached segments")
+                .register(meterRegistry);
+        Gauge.builder("video.segment.cache.resident", residentBytes, AtomicLong::get)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("video.segment.cache.hit.ratio", this, SegmentCache::hitRatio)
+                .register(meterRegistry);
+        Gauge.builder("video.segment.cache.capacity", slots, s -> (double) s.length * segmentSize)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        if (enabled) {
+            log.info("Segment cache enabled with {} segments of {} bytes", slotCount, segmentSize);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Returns the pinned segment, loading it from {@code channel} on a miss when it is admitted. Returns
+     * {@code null} when the segment was not admitted; the caller then reads the file directly.
+     */
+    public Segment getOrLoad(String path, long segmentIndex, FileChannel channel, long fileSize) throws IOException {
+        SegmentKey key = new SegmentKey(path, segmentIndex);
+        sketch.increment(key);
+
+        Slot slot = index.get(key);
+        if (slot != null && slot.pin(key)) {
+            hits.increment();
+            slot.lastAccessNanos = System.nanoTime();
+            return new Segment(slot);
+        }
+        misses.increment();
+
+        // Concurrent misses share one read, then each pins the published slot for itself
+        slot = loads.execute(key, () -> load(key, channel, fileSize));
+        if (slot == null || !slot.pin(key)) {
+            return null;
+        }
+        return new Segment(slot);
+    }
+
+    public void recordBytesServed(long bytes) {
+        bytesServed.increment(bytes);
+    }
+
+    public void invalidate(String path) {
+        for (Map.Entry<SegmentKey, Slot> entry : index.entrySet()) {
+            if (entry.getKey().path().equals(path) && index.remove(entry.getKey(), entry.getValue())) {
+                Slot slot = entry.getValue();
+                slot.indexed = false;
+                residentBytes.addAndGet(-slot.length);
+                slot.recycleIfUnpinned();
+            }
+        }
+    }
+
+    private Slot load(SegmentKey key, FileChannel channel, long fileSize) throws IOException {
+        Slot target = freeSlots.poll();
+        if (target == null) {
+            target = evictFor(key);
+            if (target == null) {
+                rejections.increment();
+                return null;
+            }
+        }
+
+        try {
+            read(target, channel, key.index(), fileSize);
+        } catch (IOException | RuntimeException e) {
+            freeSlots.add(target);
+            throw e;
+        }
+        return publish(target, key);
+    }
+
+    private void read(Slot target, FileChannel channel, long segmentIndex, long fileSize) throws IOException {
+        if (target.buffer == null) {
+            target.buffer = ByteBuffer.allocateDirect(segmentSize);
+        }
+        long position = segmentIndex * segmentSize;
+        int length = (int) Math.min(segmentSize, fileSize - position);
+
+        ByteBuffer buffer = target.buffer;
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file while caching segment " + segmentIndex);
+            }
+        }
+        target.length = length;
+    }
+
+    private Slot publish(Slot target, SegmentKey key) {
+        target.key = key;
+        target.lastAccessNanos = System.nanoTime();
+        target.indexed = true;
+        Slot existing = index.putIfAbsent(key, target);
+        if (existing != null) {
+            // Another load got there first; use its copy and give this slot back
+            target.indexed = false;
+            target.key = null;
+            freeSlots.add(target);
+            return existing;
+        }
+        residentBytes.addAndGet(target.length);
+        target.pins.set(0);
+        return target;
+    }
+
+    private Slot evictFor(SegmentKey candidate) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Slot victim = null;
+        for (int i = 0; i < EVICTION_SAMPLE; i++) {
+            Slot slot = slots[random.nextInt(slots.length)];
+            if (slot.indexed && slot.pins.get() == 0
+                    && (victim == null || slot.lastAccessNanos < victim.lastAccessNanos)) {
+                victim = slot;
+            }
+        }
+        if (victim == null) {
+            return null;
+        }
+
+        SegmentKey victimKey = victim.key;
+        if (victimKey == null || sketch.frequency(candidate) <= sketch.frequency(victimKey)) {
+            return null;
+        }
+        if (!victim.pins.compareAndSet(0, -1)) {
+            return null;
+        }
+        // Between sampling and the CAS the slot may have been invalidated, recycled and reloaded with another
+        // segment, so drop whatever it holds now
+        SegmentKey ownedKey = victim.key;
+        if (victim.indexed && ownedKey != null && index.remove(ownedKey, victim)) {
+            residentBytes.addAndGet(-victim.length);
+        }
+        victim.indexed = false;
+        victim.key = null;
+        evictions.increment();
+        return victim;
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private record SegmentKey(String path, long index) {
+    }
+
+    private final class Slot {
+        // -1 while owned exclusively (free, loading or being evicted), otherwise the number of readers
+        private final AtomicInteger pins = new AtomicInteger(-1);
+        private ByteBuffer buffer;
+        private volatile SegmentKey key;
+        private volatile int length;
+        private volatile boolean indexed;
+        private volatile long lastAccessNanos;
+
+        boolean pin(SegmentKey expected) {
+            int current;
+            do {
+                current = pins.get();
+                if (current < 0) {
+                    return false;
+                }
+            } while (!pins.compareAndSet(current, current + 1));
+
+            if (!expected.equals(key)) {
+                unpin();
+                return false;
+            }
+            return true;
+        }
+
+        void unpin() {
+            if (pins.decrementAndGet() == 0 && !indexed) {
+                recycleIfUnpinned();
+            }
+        }
+
+        void recycleIfUnpinned() {
+            if (pins.compareAndSet(0, -1)) {
+                key = null;
+                freeSlots.add(this);
+            }
+        }
+    }
+
+    /**
+     * A pinned, read-only view of a cached segment. Closing it lets the slot be evicted again.
+     */
+    public static final class Segment implements AutoCloseable {
+        private final Slot slot;
+        private final ByteBuffer data;
+
+        private Segment(Slot slot) {
+            this.slot = slot;
+            this.data = slot.buffer.asReadOnlyBuffer();
+            this.data.position(0).limit(slot.length);
+        }
+
+        public ByteBuffer data() {
+            return data;
+        }
+
+        @Override
+        public void close() {
+            slot.unpin();
+        }
+    }
+}
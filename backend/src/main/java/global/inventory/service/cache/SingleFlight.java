@@ -0,0 +1,86 @@
+package global.inventory.service.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Collapses concurrent loads of the same key into one: the first caller runs the loader, callers arriving
+ * while it runs wait for and share its result. Nothing is cached; once the load completes the next caller
+ * starts a new one.
+ * <p>
+ * Reports {@code video.read.coalescing.requests} by role, leader or follower, and the share of followers as
+ * {@code video.read.coalescing.ratio}, both tagged with the layer name.
+ */
+public final class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+
+    public SingleFlight(String layer, MeterRegistry meterRegistry) {
+        this.leaders = Counter.builder("video.read.coalescing.requests")
+                .tag("layer", layer)
+                .tag("role", "leader")
+                .register(meterRegistry);
+        this.followers = Counter.builder("video.read.coalescing.requests")
+                .tag("layer", layer)
+                .tag("role", "follower")
+                .register(meterRegistry);
+        Gauge.builder("video.read.coalescing.ratio", this, SingleFlight::coalescingRatio)
+                .tag("layer", layer)
+                .description("Share of reads served by another caller's in-flight read")
+                .register(meterRegistry);
+    }
+
+    public V execute(K key, Loader<V> loader) throws IOException {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            followers.increment();
+            return await(inFlight);
+        }
+
+        leaders.increment();
+        try {
+            V value = loader.load();
+            flight.complete(value);
+            return value;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) throws IOException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a coalesced read");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Coalesced read failed", e.getCause());
+        }
+    }
+
+    private double coalescingRatio() {
+        double total = leaders.count() + followers.count();
+        return total == 0 ? 0 : followers.count() / total;
+    }
+
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load() throws IOException;
+    }
+}
@@ -0,0 +1,37 @@
+package global.inventory.service.hls;
+
+import global.inventory.service.storage.StoredVideo;
+
+import java.nio.file.Path;
+
+public interface HlsPackagingService {
+    /**
+     * Queues the stored video for packaging. Returns immediately; until packaging finishes the video is only
+     * available as progressive MP4.
+     */
+    void packageAsync(String storedPath);
+
+    boolean isPackaged(String storedPath);
+
+    /**
+     * Removes the video's HLS output, if it has any.
+     */
+    void delete(String storedPath);
+
+    /**
+     * @throws global.inventory.exception.ResourceNotFoundException if the video has no such HLS file
+     */
+    Path resolve(String storedPath, String fileName);
+
+    /**
+     * The init or media segment as a stored video, for the streaming paths progressive files take.
+     *
+     * @throws global.inventory.exception.ResourceNotFoundException if the video has no such HLS file
+     */
+    StoredVideo loadSegment(String storedPath, String fileName);
+
+    /**
+     * @return the signed playlist URL, or {@code null} while the video is not packaged
+     */
+    String generatePlaylistUrl(String storedPath, Long userId, Long videoId, long durationMillis);
+}
@@ -0,0 +1,263 @@
+package global.inventory.service.hls;
+
+import global.inventory.exception.MediaFormatException;
+import global.inventory.exception.ResourceNotFoundException;
+import global.inventory.exception.StorageException;
+import global.inventory.service.cache.SegmentCache;
+import global.inventory.service.media.HlsPackager;
+import global.inventory.service.media.KeyframeIndex;
+import global.inventory.service.media.MediaInfo;
+import global.inventory.service.media.MediaProbeService;
+import global.inventory.service.security.StreamUrlSigner;
+import global.inventory.service.storage.StoredVideo;
+import global.inventory.service.storage.StoredVideoCache;
+import global.inventory.service.storage.backend.StorageBackend;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Packages uploaded MP4s for HLS on a small background pool. Each video gets its own directory under
+ * {@code <storage>/hls/<storedPath>/}, built in a temporary directory and moved into place in one step, so a
+ * directory that exists is always complete. Packages are read from and served off local disk, so packaging
+ * only runs with the {@code local} storage backend; with {@code s3} videos are streamed as progressive MP4.
+ * <p>
+ * Segments are handed out as {@link StoredVideo}s cached like the videos themselves, so they stream through the
+ * same admission control, pacing and write paths, paced at the bitrate of the video they were cut from.
+ */
+@Slf4j
+@Service
+public class HlsPackagingServiceImpl implements HlsPackagingService {
+    public static final String HLS_DIRECTORY = "hls";
+
+    private static final Set<String> MP4_EXTENSIONS = Set.of("mp4", "m4v", "mov");
+    private static final Pattern FILE_NAME = Pattern.compile("index\\.m3u8|init\\.mp4|segment_\\d+\\.m4s");
+
+    private static final String SEGMENT_CONTENT_TYPE = "video/mp4";
+
+    private final Path hlsRoot;
+    private final boolean enabled;
+    private final HlsPackager packager;
+    private final StreamUrlSigner streamUrlSigner;
+    private final StorageBackend storageBackend;
+    private final StoredVideoCache storedVideoCache;
+    private final SegmentCache segmentCache;
+    private final MediaProbeService mediaProbeService;
+    private final ExecutorService executor;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public HlsPackagingServiceImpl(
+            @Value("${app.video.storage.location}") String storageLocation,
+            @Value("${app.video.hls.enabled:true}") boolean enabled,
+            @Value("${app.video.hls.threads:1}") int threads,
+            @Value("${app.video.storage.backend:local}") String backend,
+            HlsPackager packager,
+            StreamUrlSigner streamUrlSigner,
+            StorageBackend storageBackend,
+            StoredVideoCache storedVideoCache,
+            SegmentCache segmentCache,
+            MediaProbeService mediaProbeService) {
+        this.hlsRoot = Paths.get(storageLocation).toAbsolutePath().normalize().resolve(HLS_DIRECTORY);
+        this.enabled = enabled && "local".equals(backend);
+        if (enabled && !this.enabled) {
+            log.info("HLS packaging is disabled: it needs local storage and the backend is {}", backend);
+        }
+        this.packager = packager;
+        this.streamUrlSigner = streamUrlSigner;
+        this.storageBackend = storageBackend;
+        this.storedVideoCache = storedVideoCache;
+        this.segmentCache = segmentCache;
+        this.mediaProbeService = mediaProbeService;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("video-hls-");
+        threadFactory.setDaemon(true);
+        // Packaging is disk-bound; the default single thread keeps it from competing with streaming for I/O
+        this.executor = Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+    @Override
+    public void packageAsync(String storedPath) {
+        String extension = StringUtils.getFilenameExtension(storedPath);
+        if (!enabled || extension == null || !MP4_EXTENSIONS.contains(extension.toLowerCase())) {
+            return;
+        }
+        if (!pending.add(storedPath)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                packageNow(storedPath);
+            } finally {
+                pending.remove(storedPath);
+            }
+        });
+    }
+
+    private void packageNow(String storedPath) {
+        Path target = directory(storedPath);
+        if (Files.isDirectory(target)) {
+            return;
+        }
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            temp = Files.createTempDirectory(target.getParent(), ".hls-");
+            long started = System.nanoTime();
+            int segments = packager.pack(source(storedPath), temp);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Packaged {} for HLS: {} segments in {} ms", storedPath, segments,
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (MediaFormatException e) {
+            log.info("Not packaging {} for HLS: {}", storedPath, e.getMessage());
+            deleteQuietly(temp);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to package {} for HLS", storedPath, e);
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * The uploaded file on whichever of the backend's disks holds it.
+     */
+    private Path source(String storedPath) throws IOException {
+        Path file = storageBackend.primaryFile(storedPath);
+        if (file == null) {
+            throw new NoSuchFileException(storedPath);
+        }
+        return file;
+    }
+
+    @Override
+    public boolean isPackaged(String storedPath) {
+        try {
+            return Files.isDirectory(directory(storedPath));
+        } catch (ResourceNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void delete(String storedPath) {
+        Path directory = directory(storedPath);
+        try {
+            if (Files.isDirectory(directory)) {
+                try (Stream<Path> files = Files.list(directory)) {
+                    files.forEach(file -> {
+                        String key = segmentKey(storedPath, file.getFileName().toString());
+                        storedVideoCache.invalidate(key);
+                        segmentCache.invalidate(key);
+                    });
+                }
+            }
+            FileSystemUtils.deleteRecursively(directory);
+            Path parent = directory.getParent();
+            while (parent != null && !parent.equals(hlsRoot)) {
+                try {
+                    Files.deleteIfExists(parent);
+                } catch (DirectoryNotEmptyException e) {
+                    break;
+                }
+                parent = parent.getParent();
+            }
+        } catch (IOException e) {
+            throw new StorageException("Failed to delete HLS output of " + storedPath, e);
+        }
+    }
+
+    @Override
+    public Path resolve(String storedPath, String fileName) {
+        if (!FILE_NAME.matcher(fileName).matches()) {
+            throw new ResourceNotFoundException("HLS file", "name", fileName);
+        }
+        Path file = directory(storedPath).resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            throw new ResourceNotFoundException("HLS file", "path", storedPath + "/" + fileName);
+        }
+        return file;
+    }
+
+    @Override
+    public StoredVideo loadSegment(String storedPath, String fileName) {
+        Path file = resolve(storedPath, fileName);
+        try {
+            return storedVideoCache.get(segmentKey(storedPath, fileName), key -> {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new StoredVideo(key, file, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                        SEGMENT_CONTENT_TYPE, KeyframeIndex.EMPTY, sourceMedia(storedPath));
+            });
+        } catch (NoSuchFileException e) {
+            throw new ResourceNotFoundException("HLS file", "path", storedPath + "/" + fileName);
+        } catch (IOException e) {
+            throw new StorageException("Could not read HLS file " + storedPath + "/" + fileName, e);
+        }
+    }
+
+    private static String segmentKey(String storedPath, String fileName) {
+        return HLS_DIRECTORY + "/" + storedPath + "/" + fileName;
+    }
+
+    /**
+     * The source video's metadata, for its bitrate; unknown once the source is gone.
+     */
+    private MediaInfo sourceMedia(String storedPath) {
+        Path source = storageBackend.primaryFile(storedPath);
+        return source != null && Files.exists(source) ? mediaProbeService.load(source) : MediaInfo.UNKNOWN;
+    }
+
+    @Override
+    public String generatePlaylistUrl(String storedPath, Long userId, Long videoId, long durationMillis) {
+        if (!isPackaged(storedPath)) {
+            return null;
+        }
+        return ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/uploads/" + HLS_DIRECTORY + "/")
+                .path(storedPath)
+                .path("/" + HlsPackager.PLAYLIST)
+                .query(streamUrlSigner.sign(storedPath, userId, videoId, durationMillis))
+                .toUriString();
+    }
+
+    private Path directory(String storedPath) {
+        Path directory = hlsRoot.resolve(storedPath).normalize();
+        if (!directory.startsWith(hlsRoot) || directory.equals(hlsRoot)) {
+            throw new ResourceNotFoundException("HLS package", "path", storedPath);
+        }
+        return directory;
+    }
+
+    private static void deleteQuietly(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            FileSystemUtils.deleteRecursively(directory);
+        } catch (IOException e) {
+            log.warn("Could not remove {}", directory, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
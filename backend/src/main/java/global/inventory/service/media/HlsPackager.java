@@ -0,0 +1,318 @@
+package global.inventory.service.media;
+
+import global.inventory.exception.MediaFormatException;
+import global.inventory.service.media.IsoBoxes.Box;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Remuxes a progressive MP4 into an HLS presentation of CMAF fragments: an init segment holding the track
+ * headers, one {@code moof}/{@code mdat} segment per group of pictures of roughly the target duration, and a
+ * VOD media playlist. Samples are copied as they are; nothing is decoded or re-encoded.
+ * <p>
+ * Audio and video stay muxed in the same segments. Segments are cut at video keyframes, so their length
+ * depends on the source GOP structure. Edit lists are dropped and composition offsets are shifted so that the
+ * first frame is presented at its decode time.
+ */
+@Component
+public class HlsPackager {
+    public static final String PLAYLIST = "index.m3u8";
+    public static final String INIT_SEGMENT = "init.mp4";
+
+    private static final Set<String> REBUILT_CONTAINERS = Set.of("trak", "mdia", "minf");
+    private static final int TRUN_FLAGS = 0x000001 | 0x000100 | 0x000200 | 0x000400;
+    private static final int TRUN_COMPOSITION_OFFSETS = 0x000800;
+    private static final int TFHD_DEFAULT_BASE_IS_MOOF = 0x020000;
+    private static final int SYNC_SAMPLE_FLAGS = 0x02000000;
+    private static final int NON_SYNC_SAMPLE_FLAGS = 0x01010000;
+
+    private final double segmentSeconds;
+    private final long maxMoovBytes;
+
+    public HlsPackager(
+            @Value("${app.video.hls.segment-seconds:6}") double segmentSeconds,
+            @Value("${app.video.faststart.max-moov-bytes:67108864}") long maxMoovBytes) {
+        this.segmentSeconds = segmentSeconds;
+        this.maxMoovBytes = maxMoovBytes;
+    }
+
+    public static String segmentName(int index) {
+        return String.format(Locale.ROOT, "segment_%05d.m4s", index);
+    }
+
+    /**
+     * Writes the playlist, the init segment and all media segments into {@code directory}.
+     *
+     * @return the number of media segments
+     * @throws MediaFormatException if the source has no audio or video samples to package
+     */
+    public int pack(Path source, Path directory) throws IOException {
+        Mp4Movie movie = Mp4Movie.read(source, maxMoovBytes);
+        List<Mp4Track> tracks = movie.getTracks().stream()
+                .filter(track -> track.isVideo() || track.isAudio())
+                .filter(track -> track.getSampleCount() > 0 && track.getTimescale() > 0)
+                .toList();
+        if (tracks.isEmpty()) {
+            throw new MediaFormatException("No audio or video samples to package");
+        }
+        Mp4Track lead = tracks.stream().filter(Mp4Track::isVideo).findFirst().orElse(tracks.get(0));
+        int[] cuts = cutPoints(lead);
+
+        Files.write(directory.resolve(INIT_SEGMENT), initSegment(movie, tracks));
+
+        double[] durations = new double[cuts.length];
+        int[] next = new int[tracks.size()];
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            for (int segment = 0; segment < cuts.length; segment++) {
+                boolean last = segment + 1 == cuts.length;
+                long startTime = lead.getDecodeTime(cuts[segment]);
+                long endTime = last ? endTime(lead) : lead.getDecodeTime(cuts[segment + 1]);
+
+                int[] from = next.clone();
+                for (int t = 0; t < tracks.size(); t++) {
+                    Mp4Track track = tracks.get(t);
+                    if (track == lead) {
+                        next[t] = last ? lead.getSampleCount() : cuts[segment + 1];
+                        continue;
+                    }
+                    // Everything that starts before the next cut, compared across timescales without rounding
+                    while (next[t] < track.getSampleCount() && (last
+                            || track.getDecodeTime(next[t]) * lead.getTimescale() < endTime * track.getTimescale())) {
+                        next[t]++;
+                    }
+                }
+                writeSegment(in, directory.resolve(segmentName(segment)), segment + 1, tracks, from, next);
+                durations[segment] = (endTime - startTime) / (double) lead.getTimescale();
+            }
+        }
+
+        // Written last: its presence marks the package as complete
+        Files.writeString(directory.resolve(PLAYLIST), playlist(durations));
+        return cuts.length;
+    }
+
+    /**
+     * First sample of every segment: a new one starts at the first keyframe after the target duration.
+     */
+    private int[] cutPoints(Mp4Track lead) {
+        long target = Math.max(1, Math.round(segmentSeconds * lead.getTimescale()));
+        List<Integer> cuts = new ArrayList<>();
+        cuts.add(0);
+        long segmentStart = lead.getDecodeTime(0);
+        for (int i = 1; i < lead.getSampleCount(); i++) {
+            if (lead.isSyncSample(i) && lead.getDecodeTime(i) - segmentStart >= target) {
+                cuts.add(i);
+                segmentStart = lead.getDecodeTime(i);
+            }
+        }
+        return cuts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static long endTime(Mp4Track track) {
+        int last = track.getSampleCount() - 1;
+        return track.getDecodeTime(last) + track.getSampleDuration(last);
+    }
+
+    private String playlist(double[] durations) {
+        double longest = 0;
+        for (double duration : durations) {
+            longest = Math.max(longest, duration);
+        }
+        StringBuilder playlist = new StringBuilder()
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:7\n")
+                .append("#EXT-X-TARGETDURATION:").append((long) Math.ceil(longest)).append('\n')
+                .append("#EXT-X-MEDIA-SEQUENCE:0\n")
+                .append("#EXT-X-PLAYLIST-TYPE:VOD\n")
+                .append("#EXT-X-INDEPENDENT-SEGMENTS\n")
+                .append("#EXT-X-MAP:URI=\"").append(INIT_SEGMENT).append("\"\n");
+        for (int i = 0; i < durations.length; i++) {
+            playlist.append(String.format(Locale.ROOT, "#EXTINF:%.3f,\n", durations[i]))
+                    .append(segmentName(i)).append('\n');
+        }
+        return playlist.append("#EXT-X-ENDLIST\n").toString();
+    }
+
+    private static byte[] initSegment(Mp4Movie movie, List<Mp4Track> tracks) {
+        ByteBuffer moov = movie.moov();
+        byte[] ftyp = box("ftyp", ascii("iso6"), intBytes(0), ascii("iso6"), ascii("cmfc"), ascii("mp41"));
+
+        ByteArrayOutputStream children = new ByteArrayOutputStream();
+        children.writeBytes(copy(moov, IsoBoxes.find(IsoBoxes.children(moov, movie.root()), "mvhd")));
+        ByteArrayOutputStream trex = new ByteArrayOutputStream();
+        for (Mp4Track track : tracks) {
+            children.writeBytes(rebuild(moov, track.trak()));
+            trex.writeBytes(fullBox("trex", 0, 0,
+                    intBytes(track.getTrackId()), intBytes(1), intBytes(0), intBytes(0), intBytes(0)));
+        }
+        children.writeBytes(box("mvex", trex.toByteArray()));
+        return concat(ftyp, box("moov", children.toByteArray()));
+    }
+
+    /**
+     * Copies a track header box by box, leaving out edit lists and emptying the sample table, which in a
+     * fragmented file only keeps the sample descriptions.
+     */
+    private static byte[] rebuild(ByteBuffer moov, Box container) {
+        ByteArrayOutputStream children = new ByteArrayOutputStream();
+        for (Box child : IsoBoxes.children(moov, container)) {
+            switch (child.type()) {
+                case "edts" -> {
+                }
+                case "stbl" -> children.writeBytes(box("stbl",
+                        copy(moov, IsoBoxes.find(IsoBoxes.children(moov, child), "stsd")),
+                        fullBox("stts", 0, 0, intBytes(0)),
+                        fullBox("stsc", 0, 0, intBytes(0)),
+                        fullBox("stsz", 0, 0, intBytes(0), intBytes(0)),
+                        fullBox("stco", 0, 0, intBytes(0))));
+                default -> children.writeBytes(REBUILT_CONTAINERS.contains(child.type())
+                        ? rebuild(moov, child)
+                        : copy(moov, child));
+            }
+        }
+        return box(container.type(), children.toByteArray());
+    }
+
+    private static void writeSegment(FileChannel in, Path file, int sequence, List<Mp4Track> tracks,
+                                     int[] from, int[] to) throws IOException {
+        // The data offsets depend on the size of moof itself, which does not depend on their values
+        byte[] moof = moof(sequence, tracks, from, to, 0);
+        moof = moof(sequence, tracks, from, to, moof.length + 8);
+
+        long mdatSize = 8;
+        for (int t = 0; t < tracks.size(); t++) {
+            mdatSize += sampleBytes(tracks.get(t), from[t], to[t]);
+        }
+        if (mdatSize > 0xFFFFFFFFL) {
+            throw new MediaFormatException("Segment " + sequence + " exceeds 4 GB");
+        }
+
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            write(out, ByteBuffer.wrap(moof));
+            write(out, ByteBuffer.wrap(concat(intBytes((int) mdatSize), ascii("mdat"))));
+            for (int t = 0; t < tracks.size(); t++) {
+                copySamples(in, out, tracks.get(t), from[t], to[t]);
+            }
+        }
+    }
+
+    private static byte[] moof(int sequence, List<Mp4Track> tracks, int[] from, int[] to, long dataOffset) {
+        ByteArrayOutputStream trafs = new ByteArrayOutputStream();
+        long offset = dataOffset;
+        for (int t = 0; t < tracks.size(); t++) {
+            Mp4Track track = tracks.get(t);
+            if (from[t] == to[t]) {
+                continue;
+            }
+            trafs.writeBytes(box("traf",
+                    fullBox("tfhd", 0, TFHD_DEFAULT_BASE_IS_MOOF, intBytes(track.getTrackId())),
+                    fullBox("tfdt", 1, 0, longBytes(track.getDecodeTime(from[t]))),
+                    trun(track, from[t], to[t], (int) offset)));
+            offset += sampleBytes(track, from[t], to[t]);
+        }
+        return box("moof", fullBox("mfhd", 0, 0, intBytes(sequence)), trafs.toByteArray());
+    }
+
+    private static byte[] trun(Mp4Track track, int from, int to, int dataOffset) {
+        boolean composition = track.hasCompositionOffsets();
+        int shift = track.getMinCompositionOffset();
+        int fieldsPerSample = composition ? 4 : 3;
+        ByteBuffer body = ByteBuffer.allocate(8 + (to - from) * fieldsPerSample * 4)
+                .putInt(to - from)
+                .putInt(dataOffset);
+        for (int i = from; i < to; i++) {
+            body.putInt((int) track.getSampleDuration(i))
+                    .putInt(track.getSampleSize(i))
+                    .putInt(track.isSyncSample(i) ? SYNC_SAMPLE_FLAGS : NON_SYNC_SAMPLE_FLAGS);
+            if (composition) {
+                body.putInt(track.getCompositionOffset(i) - shift);
+            }
+        }
+        // Version 1 makes the composition offsets signed
+        return fullBox("trun", composition ? 1 : 0, TRUN_FLAGS | (composition ? TRUN_COMPOSITION_OFFSETS : 0),
+                body.array());
+    }
+
+    private static long sampleBytes(Mp4Track track, int from, int to) {
+        long bytes = 0;
+        for (int i = from; i < to; i++) {
+            bytes += track.getSampleSize(i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Copies samples in runs: samples of one chunk are adjacent in the source and go out in a single transfer.
+     */
+    private static void copySamples(FileChannel in, FileChannel out, Mp4Track track, int from, int to)
+            throws IOException {
+        int i = from;
+        while (i < to) {
+            long start = track.getSampleOffset(i);
+            long end = start + track.getSampleSize(i);
+            i++;
+            while (i < to && track.getSampleOffset(i) == end) {
+                end += track.getSampleSize(i);
+                i++;
+            }
+            IsoBoxes.transfer(in, start, end - start, out);
+        }
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static byte[] copy(ByteBuffer buffer, Box box) {
+        if (box == null) {
+            throw new MediaFormatException("Missing box in track header");
+        }
+        byte[] bytes = new byte[(int) box.size()];
+        buffer.get((int) box.offset(), bytes);
+        return bytes;
+    }
+
+    private static byte[] box(String type, byte[]... payload) {
+        byte[] body = concat(payload);
+        return concat(intBytes(8 + body.length), ascii(type), body);
+    }
+
+    private static byte[] fullBox(String type, int version, int flags, byte[]... payload) {
+        return box(type, intBytes(version << 24 | flags), concat(payload));
+    }
+
+    private static byte[] intBytes(int value) {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    private static byte[] longBytes(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,168 @@
+package global.inventory.service.media;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Low-level helpers for ISO base media file format (MP4, MOV, CMAF) box structures.
+ */
+public final class IsoBoxes {
+    private IsoBoxes() {
+    }
+
+    /**
+     * A box located either in a file (offsets are file positions) or in a buffer (offsets are indexes).
+     */
+    public record Box(String type, long offset, long size, int headerSize) {
+        public long bodyOffset() {
+            return offset + headerSize;
+        }
+
+        public long end() {
+            return offset + size;
+        }
+    }
+
+    /**
+     * Lists the top-level boxes of a file, or returns an empty list when the file is not a well-formed
+     * sequence of boxes.
+     */
+    public static List<Box> readTopLevelBoxes(FileChannel channel) throws IOException {
+        return readBoxes(channel, 0, channel.size());
+    }
+
+    /**
+     * Lists the children of a box in a file by reading their headers only, or returns an empty list when they
+     * are malformed. Unlike {@link #read(FileChannel, Box)}, the box itself is never loaded.
+     */
+    public static List<Box> children(FileChannel channel, Box parent) throws IOException {
+        return readBoxes(channel, parent.bodyOffset(), Math.min(parent.end(), channel.size()));
+    }
+
+    private static List<Box> readBoxes(FileChannel channel, long start, long end) throws IOException {
+        List<Box> boxes = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long offset = start;
+
+        while (offset < end) {
+            if (end - offset < 8) {
+                return List.of();
+            }
+            header.clear().limit((int) Math.min(16, end - offset));
+            readFully(channel, header, offset);
+
+            long size = Integer.toUnsignedLong(header.getInt(0));
+            int headerSize = 8;
+            if (size == 1) {
+                if (header.limit() < 16) {
+                    return List.of();
+                }
+                size = header.getLong(8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - offset;
+            }
+            if (size < headerSize || offset + size > end) {
+                return List.of();
+            }
+            boxes.add(new Box(type(header, 4), offset, size, headerSize));
+            offset += size;
+        }
+        return boxes;
+    }
+
+    /**
+     * Lists the boxes in {@code [start, end)} of a buffer, or returns {@code null} if they are malformed.
+     */
+    public static List<Box> children(ByteBuffer buffer, int start, int end) {
+        List<Box> boxes = new ArrayList<>();
+        int position = start;
+        while (position + 8 <= end) {
+            long size = Integer.toUnsignedLong(buffer.getInt(position));
+            int headerSize = 8;
+            if (size == 1) {
+                if (position + 16 > end) {
+                    return null;
+                }
+                size = buffer.getLong(position + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) {
+                return null;
+            }
+            boxes.add(new Box(type(buffer, position + 4), position, size, headerSize));
+            position += (int) size;
+        }
+        return boxes;
+    }
+
+    public static List<Box> children(ByteBuffer buffer, Box parent) {
+        return children(buffer, (int) parent.bodyOffset(), (int) parent.end());
+    }
+
+    public static Box find(List<Box> boxes, String type) {
+        if (boxes == null) {
+            return null;
+        }
+        for (Box box : boxes) {
+            if (box.type().equals(type)) {
+                return box;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Follows a path of box types from the children of {@code parent}, e.g. {@code "mdia", "minf", "stbl"}.
+     */
+    public static Box path(ByteBuffer buffer, Box parent, String... types) {
+        Box current = parent;
+        for (String type : types) {
+            current = find(children(buffer, current), type);
+            if (current == null) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    public static String type(ByteBuffer buffer, int index) {
+        char[] chars = new char[4];
+        for (int i = 0; i < 4; i++) {
+            chars[i] = (char) (buffer.get(index + i) & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    public static ByteBuffer read(FileChannel channel, Box box) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(box.size()));
+        readFully(channel, buffer, box.offset());
+        buffer.flip();
+        return buffer;
+    }
+
+    public static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    public static void transfer(FileChannel in, long position, long count, FileChannel out) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long transferred = in.transferTo(position, end - position, out);
+            if (transferred <= 0) {
+                throw new EOFException("Unexpected end of file at " + position);
+            }
+            position += transferred;
+        }
+    }
+}
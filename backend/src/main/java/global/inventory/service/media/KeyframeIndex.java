@@ -0,0 +1,140 @@
+package global.inventory.service.media;
+
+import global.inventory.exception.MediaFormatException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Presentation time to byte offset of every keyframe of a video track, sorted by time. Lookups are a binary
+ * search over two primitive arrays and allocate nothing.
+ * <p>
+ * Persisted as a sidecar file: a magic number, the entry count, then all times followed by all offsets.
+ */
+public final class KeyframeIndex {
+    public static final KeyframeIndex EMPTY = new KeyframeIndex(new int[0], new long[0]);
+
+    private static final int MAGIC = 0x4B464931; // "KFI1"
+    private static final int HEADER_BYTES = 8;
+    private static final int ENTRY_BYTES = 12;
+
+    private final int[] timesMillis;
+    private final long[] offsets;
+
+    private KeyframeIndex(int[] timesMillis, long[] offsets) {
+        this.timesMillis = timesMillis;
+        this.offsets = offsets;
+    }
+
+    public static KeyframeIndex of(Mp4Track track) {
+        long timescale = track.getTimescale();
+        if (timescale <= 0) {
+            return EMPTY;
+        }
+        int count = 0;
+        for (int i = 0; i < track.getSampleCount(); i++) {
+            if (track.isSyncSample(i)) {
+                count++;
+            }
+        }
+        int[] times = new int[count];
+        long[] offsets = new long[count];
+        int entry = 0;
+        for (int i = 0; i < track.getSampleCount(); i++) {
+            if (track.isSyncSample(i)) {
+                long millis = Math.max(0, track.getPresentationTime(i)) * 1000 / timescale;
+                times[entry] = (int) Math.min(Integer.MAX_VALUE, millis);
+                offsets[entry++] = track.getSampleOffset(i);
+            }
+        }
+        return new KeyframeIndex(times, offsets);
+    }
+
+    public static KeyframeIndex read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in, Files.size(file), file.toString());
+        }
+    }
+
+    /**
+     * Reads an index of {@code length} bytes from {@code stream}, which the caller closes; {@code source} only
+     * names it in errors. The entry count must account for exactly that length, so a corrupt count cannot
+     * allocate more than the file holds.
+     */
+    public static KeyframeIndex read(InputStream stream, long length, String source) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (length < HEADER_BYTES || in.readInt() != MAGIC) {
+            throw new MediaFormatException("Not a keyframe index: " + source);
+        }
+        int count = in.readInt();
+        if (count < 0 || HEADER_BYTES + (long) count * ENTRY_BYTES != length) {
+            throw new MediaFormatException("Keyframe index " + source + " of " + length + " bytes cannot hold "
+                    + count + " entries");
+        }
+        int[] times = new int[count];
+        long[] offsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = in.readInt();
+        }
+        for (int i = 0; i < count; i++) {
+            offsets[i] = in.readLong();
+        }
+        return new KeyframeIndex(times, offsets);
+    }
+
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(timesMillis.length);
+            for (int time : timesMillis) {
+                out.writeInt(time);
+            }
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+        }
+    }
+
+    public int size() {
+        return timesMillis.length;
+    }
+
+    public boolean isEmpty() {
+        return timesMillis.length == 0;
+    }
+
+    /**
+     * Index of the last keyframe at or before {@code timeMillis}, or of the first keyframe if the time is
+     * earlier than all of them; -1 when the index is empty.
+     */
+    public int floor(long timeMillis) {
+        int low = 0;
+        int high = timesMillis.length - 1;
+        if (high < 0) {
+            return -1;
+        }
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (timesMillis[mid] <= timeMillis) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public int timeMillis(int entry) {
+        return timesMillis[entry];
+    }
+
+    public long offset(int entry) {
+        return offsets[entry];
+    }
+}
@@ -0,0 +1,72 @@
+package global.inventory.service.media;
+
+import global.inventory.exception.MediaFormatException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Builds the keyframe index of an uploaded MP4 once and keeps it in a sidecar file next to the video.
+ */
+@Slf4j
+@Component
+public class KeyframeIndexer {
+    public static final String SIDECAR_SUFFIX = ".kfi";
+
+    private final boolean enabled;
+    private final long maxMoovBytes;
+
+    public KeyframeIndexer(
+            @Value("${app.video.keyframe-index.enabled:true}") boolean enabled,
+            @Value("${app.video.faststart.max-moov-bytes:67108864}") long maxMoovBytes) {
+        this.enabled = enabled;
+        this.maxMoovBytes = maxMoovBytes;
+    }
+
+    public static Path sidecar(Path video) {
+        return video.resolveSibling(video.getFileName() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Writes the sidecar for {@code video}. Files without a parsable video track simply get none.
+     */
+    public void index(Path video) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Mp4Track track = Mp4Movie.read(video, maxMoovBytes).getVideoTrack();
+            if (track == null) {
+                return;
+            }
+            KeyframeIndex index = KeyframeIndex.of(track);
+            index.write(sidecar(video));
+            log.debug("Indexed {} keyframes of {}", index.size(), video);
+        } catch (MediaFormatException e) {
+            log.info("No keyframe index for {}: {}", video, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the stored index, or {@link KeyframeIndex#EMPTY} when the video has none
+     */
+    public KeyframeIndex load(Path video) {
+        try {
+            return KeyframeIndex.read(sidecar(video));
+        } catch (NoSuchFileException e) {
+            return KeyframeIndex.EMPTY;
+        } catch (IOException | MediaFormatException e) {
+            log.warn("Could not read keyframe index of {}", video, e);
+            return KeyframeIndex.EMPTY;
+        }
+    }
+
+    public void delete(Path video) throws IOException {
+        Files.deleteIfExists(sidecar(video));
+    }
+}
@@ -0,0 +1,89 @@
+package global.inventory.service.media;
+
+import global.inventory.exception.MediaFormatException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Technical metadata read from a container's headers. Numbers are 0 and strings {@code null} when unknown.
+ * <p>
+ * Persisted as a sidecar file: a magic number, then every field in declaration order.
+ *
+ * @param container      {@code mp4} or {@code webm}
+ * @param durationMillis playback duration
+ * @param bitrate        average bitrate over the whole file in bits per second
+ */
+public record MediaInfo(String container, long durationMillis, int width, int height,
+                        String videoCodec, String audioCodec, long bitrate) {
+    public static final MediaInfo UNKNOWN = new MediaInfo(null, 0, 0, 0, null, null, 0);
+
+    private static final int MAGIC = 0x4D444931; // "MDI1"
+    // Far more than three short strings and four numbers take, so a corrupt length cannot make a large read
+    private static final int MAX_BYTES = 4096;
+
+    public boolean isKnown() {
+        return container != null;
+    }
+
+    static long bitrate(long bytes, long durationMillis) {
+        return durationMillis > 0 ? bytes * 8 * 1000 / durationMillis : 0;
+    }
+
+    public static MediaInfo read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in, Files.size(file), file.toString());
+        }
+    }
+
+    /**
+     * Reads metadata of {@code length} bytes from {@code stream}, which the caller closes; {@code source} only
+     * names it in errors.
+     */
+    public static MediaInfo read(InputStream stream, long length, String source) throws IOException {
+        if (length > MAX_BYTES) {
+            throw new MediaFormatException("Media metadata " + source + " of " + length + " bytes exceeds limit");
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new MediaFormatException("Not media metadata: " + source);
+            }
+            return new MediaInfo(readString(in), in.readLong(), in.readInt(), in.readInt(), readString(in),
+                    readString(in), in.readLong());
+        } catch (EOFException e) {
+            throw new MediaFormatException("Truncated media metadata: " + source);
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            writeString(out, container);
+            out.writeLong(durationMillis);
+            out.writeInt(width);
+            out.writeInt(height);
+            writeString(out, videoCodec);
+            writeString(out, audioCodec);
+            out.writeLong(bitrate);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package global.inventory.service.media;
+
+import java.nio.file.Path;
+
+public interface MediaProbeService {
+    String SIDECAR_SUFFIX = ".media";
+
+    static Path sidecar(Path video) {
+        return video.resolveSibling(video.getFileName() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Reads container headers only; media data is skipped.
+     *
+     * @return the metadata, or {@link MediaInfo#UNKNOWN} for unsupported or damaged files
+     */
+    MediaInfo probe(Path file);
+
+    /**
+     * Probes {@code video} and keeps the result in a sidecar file next to it, so reading the video again
+     * needs neither a probe nor a database lookup.
+     */
+    MediaInfo probeAndSave(Path video);
+
+    /**
+     * @return the metadata saved by {@link #probeAndSave}, or a fresh probe when the video has no readable sidecar
+     */
+    MediaInfo load(Path video);
+}
@@ -0,0 +1,61 @@
+package global.inventory.service.media;
+
+import global.inventory.exception.MediaFormatException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+@Slf4j
+@Service
+public class MediaProbeServiceImpl implements MediaProbeService {
+    @Override
+    public MediaInfo probe(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < 8) {
+                return MediaInfo.UNKNOWN;
+            }
+            ByteBuffer magic = ByteBuffer.allocate(8);
+            IsoBoxes.readFully(channel, magic, 0);
+            if (magic.getInt(0) == WebmHeaderParser.EBML_MAGIC) {
+                return WebmHeaderParser.read(channel);
+            }
+            return Mp4HeaderParser.read(channel);
+        } catch (MediaFormatException e) {
+            log.info("Could not probe {}: {}", file, e.getMessage());
+            return MediaInfo.UNKNOWN;
+        } catch (IOException e) {
+            log.warn("Could not probe {}", file, e);
+            return MediaInfo.UNKNOWN;
+        }
+    }
+
+    @Override
+    public MediaInfo probeAndSave(Path video) {
+        MediaInfo media = probe(video);
+        try {
+            media.write(MediaProbeService.sidecar(video));
+        } catch (IOException e) {
+            // Reading the video then falls back to probing it again
+            log.warn("Could not save media metadata of {}", video, e);
+        }
+        return media;
+    }
+
+    @Override
+    public MediaInfo load(Path video) {
+        try {
+            return MediaInfo.read(MediaProbeService.sidecar(video));
+        } catch (NoSuchFileException e) {
+            return probe(video);
+        } catch (IOException | MediaFormatException e) {
+            log.warn("Could not read media metadata of {}", video, e);
+            return probe(video);
+        }
+    }
+}
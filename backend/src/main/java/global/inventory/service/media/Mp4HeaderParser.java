@@ -0,0 +1,125 @@
+package global.inventory.service.media;
+
+import global.inventory.exception.MediaFormatException;
+import global.inventory.service.media.IsoBoxes.Box;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Reads {@code mvhd} and, per track, {@code tkhd}, {@code mdhd}, {@code hdlr} and the first {@code stsd} entry of
+ * an MP4 file. Boxes are followed by their headers and the sample tables are never loaded, so a probe costs a few
+ * dozen small reads however long the movie is.
+ */
+final class Mp4HeaderParser {
+    private static final int MAX_HEADER_BOX_BYTES = 64 * 1024;
+    private static final int SAMPLE_ENTRY_BYTES = 32;
+
+    private Mp4HeaderParser() {
+    }
+
+    static MediaInfo read(FileChannel channel) throws IOException {
+        try {
+            return parse(channel);
+        } catch (IndexOutOfBoundsException e) {
+            throw new MediaFormatException("Malformed MP4 header box: " + e.getMessage());
+        }
+    }
+
+    private static MediaInfo parse(FileChannel channel) throws IOException {
+        List<Box> topLevel = IsoBoxes.readTopLevelBoxes(channel);
+        Box moov = IsoBoxes.find(topLevel, "moov");
+        if (moov == null) {
+            throw new MediaFormatException("No moov box found");
+        }
+        List<Box> children = IsoBoxes.children(channel, moov);
+        Box mvhdBox = require(IsoBoxes.find(children, "mvhd"), "mvhd");
+        ByteBuffer mvhd = header(channel, mvhdBox);
+        int body = mvhdBox.headerSize();
+        boolean wide = mvhd.get(body) == 1;
+        long timescale = Integer.toUnsignedLong(mvhd.getInt(body + (wide ? 20 : 12)));
+        long duration = wide ? mvhd.getLong(body + 24) : Integer.toUnsignedLong(mvhd.getInt(body + 16));
+        long durationMillis = timescale > 0 ? duration * 1000 / timescale : 0;
+
+        long longestTrackMillis = 0;
+        Track video = null;
+        Track audio = null;
+        for (Box box : children) {
+            if (!box.type().equals("trak")) {
+                continue;
+            }
+            Track track = track(channel, box);
+            longestTrackMillis = Math.max(longestTrackMillis, track.durationMillis());
+            if (video == null && "vide".equals(track.handlerType())) {
+                video = track;
+            } else if (audio == null && "soun".equals(track.handlerType())) {
+                audio = track;
+            }
+        }
+        if (durationMillis == 0) {
+            durationMillis = longestTrackMillis;
+        }
+
+        long mediaBytes = 0;
+        for (Box box : topLevel) {
+            if (box.type().equals("mdat")) {
+                mediaBytes += box.size() - box.headerSize();
+            }
+        }
+        return new MediaInfo("mp4", durationMillis,
+                video != null ? video.width() : 0,
+                video != null ? video.height() : 0,
+                video != null ? video.codec() : null,
+                audio != null ? audio.codec() : null,
+                MediaInfo.bitrate(mediaBytes > 0 ? mediaBytes : channel.size(), durationMillis));
+    }
+
+    private static Track track(FileChannel channel, Box trak) throws IOException {
+        List<Box> children = IsoBoxes.children(channel, trak);
+        Box tkhdBox = require(IsoBoxes.find(children, "tkhd"), "tkhd");
+        Box mdia = require(IsoBoxes.find(children, "mdia"), "mdia");
+        List<Box> media = IsoBoxes.children(channel, mdia);
+        Box mdhdBox = require(IsoBoxes.find(media, "mdhd"), "mdhd");
+        Box hdlrBox = require(IsoBoxes.find(media, "hdlr"), "hdlr");
+        Box minf = require(IsoBoxes.find(media, "minf"), "minf");
+        Box stbl = require(IsoBoxes.find(IsoBoxes.children(channel, minf), "stbl"), "stbl");
+        Box stsdBox = require(IsoBoxes.find(IsoBoxes.children(channel, stbl), "stsd"), "stsd");
+
+        ByteBuffer tkhd = header(channel, tkhdBox);
+        int width = tkhd.getInt(tkhd.limit() - 8) >>> 16;
+        int height = tkhd.getInt(tkhd.limit() - 4) >>> 16;
+
+        ByteBuffer mdhd = header(channel, mdhdBox);
+        int body = mdhdBox.headerSize();
+        boolean wide = mdhd.get(body) == 1;
+        long timescale = Integer.toUnsignedLong(mdhd.getInt(body + (wide ? 20 : 12)));
+        long duration = wide ? mdhd.getLong(body + 24) : Integer.toUnsignedLong(mdhd.getInt(body + 16));
+
+        String handlerType = IsoBoxes.type(header(channel, hdlrBox), hdlrBox.headerSize() + 8);
+        // Only the first sample entry's type is needed, not its codec configuration
+        ByteBuffer stsd = ByteBuffer.allocate((int) Math.min(stsdBox.size(), SAMPLE_ENTRY_BYTES));
+        IsoBoxes.readFully(channel, stsd, stsdBox.offset());
+        String codec = IsoBoxes.type(stsd, stsdBox.headerSize() + 12);
+
+        return new Track(handlerType, codec, timescale > 0 ? duration * 1000 / timescale : 0, width, height);
+    }
+
+    private static ByteBuffer header(FileChannel channel, Box box) throws IOException {
+        if (box.size() > MAX_HEADER_BOX_BYTES) {
+            throw new MediaFormatException(box.type() + " box of " + box.size() + " bytes exceeds limit");
+        }
+        return IsoBoxes.read(channel, box);
+    }
+
+    private static Box require(Box box, String type) {
+        if (box == null) {
+            throw new MediaFormatException("No " + type + " box found");
+        }
+        return box;
+    }
+
+    private record Track(String handlerType, String codec, long durationMillis, int width, int height) {
+    }
+}
@@ -0,0 +1,295 @@
+package global.inventory.service.media;
+
+import global.inventory.exception.MediaFormatException;
+import global.inventory.service.media.IsoBoxes.Box;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code moov} box of a progressive (non-fragmented) MP4 file, parsed into tracks. Only the box itself is
+ * read; media data is never touched. Edit lists are ignored, so times are media times.
+ */
+public final class Mp4Movie {
+    private final ByteBuffer moov;
+    private final Box root;
+    private final long timescale;
+    private final long duration;
+    private final List<Mp4Track> tracks;
+
+    private Mp4Movie(ByteBuffer moov, Box root, long timescale, long duration, List<Mp4Track> tracks) {
+        this.moov = moov;
+        this.root = root;
+        this.timescale = timescale;
+        this.duration = duration;
+        this.tracks = tracks;
+    }
+
+    public static Mp4Movie read(Path file, long maxMoovBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel, maxMoovBytes);
+        }
+    }
+
+    /**
+     * @throws MediaFormatException if the file has no usable {@code moov} box
+     */
+    public static Mp4Movie read(FileChannel channel, long maxMoovBytes) throws IOException {
+        Box moov = IsoBoxes.find(IsoBoxes.readTopLevelBoxes(channel), "moov");
+        if (moov == null) {
+            throw new MediaFormatException("No moov box found");
+        }
+        if (moov.size() > maxMoovBytes) {
+            throw new MediaFormatException("moov box of " + moov.size() + " bytes exceeds limit");
+        }
+        ByteBuffer data = IsoBoxes.read(channel, moov);
+        Box root = new Box("moov", 0, moov.size(), moov.headerSize());
+        // A table of sample sizes within the moov limit bounds every track's sample count
+        long maxSamples = maxMoovBytes / 4;
+        try {
+            return parse(data, root, maxSamples, channel.size());
+        } catch (IndexOutOfBoundsException | ArithmeticException | NegativeArraySizeException e) {
+            throw new MediaFormatException("Malformed moov box: " + e.getMessage());
+        }
+    }
+
+    private static Mp4Movie parse(ByteBuffer data, Box moov, long maxSamples, long fileSize) {
+        List<Box> children = IsoBoxes.children(data, moov);
+        if (children == null) {
+            throw new MediaFormatException("Malformed moov box");
+        }
+        Box mvhd = require(IsoBoxes.find(children, "mvhd"), "mvhd");
+        int body = (int) mvhd.bodyOffset();
+        boolean wide = data.get(body) == 1;
+        long timescale = Integer.toUnsignedLong(data.getInt(body + (wide ? 20 : 12)));
+        long duration = wide ? data.getLong(body + 24) : Integer.toUnsignedLong(data.getInt(body + 16));
+
+        List<Mp4Track> tracks = new ArrayList<>();
+        for (Box box : children) {
+            if (box.type().equals("trak")) {
+                tracks.add(parseTrack(data, box, maxSamples, fileSize));
+            }
+        }
+        return new Mp4Movie(data, moov, timescale, duration, List.copyOf(tracks));
+    }
+
+    private static Mp4Track parseTrack(ByteBuffer data, Box trak, long maxSamples, long fileSize) {
+        Box tkhd = require(IsoBoxes.path(data, trak, "tkhd"), "tkhd");
+        Box mdhd = require(IsoBoxes.path(data, trak, "mdia", "mdhd"), "mdhd");
+        Box hdlr = require(IsoBoxes.path(data, trak, "mdia", "hdlr"), "hdlr");
+        Box stbl = require(IsoBoxes.path(data, trak, "mdia", "minf", "stbl"), "stbl");
+
+        int tkhdBody = (int) tkhd.bodyOffset();
+        int trackId = data.getInt(tkhdBody + (data.get(tkhdBody) == 1 ? 20 : 12));
+        // Width and height close the box as 16.16 fixed point
+        int width = data.getInt((int) tkhd.end() - 8) >>> 16;
+        int height = data.getInt((int) tkhd.end() - 4) >>> 16;
+
+        int mdhdBody = (int) mdhd.bodyOffset();
+        boolean wide = data.get(mdhdBody) == 1;
+        long timescale = Integer.toUnsignedLong(data.getInt(mdhdBody + (wide ? 20 : 12)));
+        long duration = wide ? data.getLong(mdhdBody + 24) : Integer.toUnsignedLong(data.getInt(mdhdBody + 16));
+        String handlerType = IsoBoxes.type(data, (int) hdlr.bodyOffset() + 8);
+
+        List<Box> tables = IsoBoxes.children(data, stbl);
+        Box stsd = require(IsoBoxes.find(tables, "stsd"), "stsd");
+        String codec = IsoBoxes.type(data, (int) stsd.bodyOffset() + 12);
+
+        Box stts = require(IsoBoxes.find(tables, "stts"), "stts");
+        int[] sampleSizes = sampleSizes(data, require(IsoBoxes.find(tables, "stsz"), "stsz"),
+                Math.min(maxSamples, timedSamples(data, stts)), fileSize);
+        int count = sampleSizes.length;
+        long[] decodeTimes = decodeTimes(data, stts, count);
+        Box ctts = IsoBoxes.find(tables, "ctts");
+        int[] compositionOffsets = ctts != null ? compositionOffsets(data, ctts, count) : null;
+        Box stss = IsoBoxes.find(tables, "stss");
+        boolean[] syncSamples = stss != null ? syncSamples(data, stss, count) : null;
+        long[] chunkOffsets = chunkOffsets(data, tables);
+        long[] sampleOffsets = sampleOffsets(data, require(IsoBoxes.find(tables, "stsc"), "stsc"),
+                chunkOffsets, sampleSizes);
+
+        return new Mp4Track(trak, trackId, handlerType, codec, timescale, duration, width, height,
+                sampleOffsets, sampleSizes, decodeTimes, compositionOffsets, syncSamples);
+    }
+
+    /**
+     * Reads the sample sizes, refusing more samples than {@code maxSamples}. A fixed-size table is only a count,
+     * so it is also checked against the bytes its samples would take up in the file.
+     */
+    private static int[] sampleSizes(ByteBuffer data, Box stsz, long maxSamples, long fileSize) {
+        int body = (int) stsz.bodyOffset();
+        int fixedSize = data.getInt(body + 4);
+        long count = fixedSize == 0
+                ? entryCount(data, body + 8, stsz, 4)
+                : Integer.toUnsignedLong(data.getInt(body + 8));
+        if (count > maxSamples) {
+            throw new MediaFormatException("stsz has " + count + " samples, stts and the moov limit allow "
+                    + maxSamples);
+        }
+        if (fixedSize != 0 && count * Integer.toUnsignedLong(fixedSize) > fileSize) {
+            throw new MediaFormatException("stsz samples of " + Integer.toUnsignedLong(fixedSize)
+                    + " bytes do not fit in the file");
+        }
+        int[] sizes = new int[(int) count];
+        for (int i = 0; i < count; i++) {
+            sizes[i] = fixedSize != 0 ? fixedSize : data.getInt(body + 12 + i * 4);
+        }
+        return sizes;
+    }
+
+    /**
+     * Number of samples the {@code stts} runs give a time to.
+     */
+    private static long timedSamples(ByteBuffer data, Box stts) {
+        int body = (int) stts.bodyOffset();
+        int entries = entryCount(data, body + 4, stts, 8);
+        long samples = 0;
+        for (int i = 0; i < entries; i++) {
+            samples += Integer.toUnsignedLong(data.getInt(body + 8 + i * 8));
+        }
+        return samples;
+    }
+
+    private static long[] decodeTimes(ByteBuffer data, Box stts, int sampleCount) {
+        int body = (int) stts.bodyOffset();
+        int entries = entryCount(data, body + 4, stts, 8);
+        long[] times = new long[sampleCount];
+        long time = 0;
+        int sample = 0;
+        for (int i = 0; i < entries && sample < sampleCount; i++) {
+            long runLength = Integer.toUnsignedLong(data.getInt(body + 8 + i * 8));
+            long delta = Integer.toUnsignedLong(data.getInt(body + 12 + i * 8));
+            for (long j = 0; j < runLength && sample < sampleCount; j++) {
+                times[sample++] = time;
+                time += delta;
+            }
+        }
+        if (sample < sampleCount) {
+            throw new MediaFormatException("stts covers " + sample + " of " + sampleCount + " samples");
+        }
+        return times;
+    }
+
+    private static int[] compositionOffsets(ByteBuffer data, Box ctts, int sampleCount) {
+        int body = (int) ctts.bodyOffset();
+        int entries = entryCount(data, body + 4, ctts, 8);
+        int[] offsets = new int[sampleCount];
+        int sample = 0;
+        for (int i = 0; i < entries && sample < sampleCount; i++) {
+            long runLength = Integer.toUnsignedLong(data.getInt(body + 8 + i * 8));
+            // Signed in version 1; version 0 values beyond 2^31 do not occur in practice
+            int offset = data.getInt(body + 12 + i * 8);
+            for (long j = 0; j < runLength && sample < sampleCount; j++) {
+                offsets[sample++] = offset;
+            }
+        }
+        return offsets;
+    }
+
+    private static boolean[] syncSamples(ByteBuffer data, Box stss, int sampleCount) {
+        int body = (int) stss.bodyOffset();
+        int entries = entryCount(data, body + 4, stss, 4);
+        boolean[] sync = new boolean[sampleCount];
+        for (int i = 0; i < entries; i++) {
+            int sample = data.getInt(body + 8 + i * 4) - 1;
+            if (sample >= 0 && sample < sampleCount) {
+                sync[sample] = true;
+            }
+        }
+        return sync;
+    }
+
+    private static long[] chunkOffsets(ByteBuffer data, List<Box> tables) {
+        Box co64 = IsoBoxes.find(tables, "co64");
+        Box box = co64 != null ? co64 : require(IsoBoxes.find(tables, "stco"), "stco");
+        int body = (int) box.bodyOffset();
+        int entries = entryCount(data, body + 4, box, co64 != null ? 8 : 4);
+        long[] offsets = new long[entries];
+        for (int i = 0; i < entries; i++) {
+            offsets[i] = co64 != null
+                    ? data.getLong(body + 8 + i * 8)
+                    : Integer.toUnsignedLong(data.getInt(body + 8 + i * 4));
+        }
+        return offsets;
+    }
+
+    private static long[] sampleOffsets(ByteBuffer data, Box stsc, long[] chunkOffsets, int[] sampleSizes) {
+        int body = (int) stsc.bodyOffset();
+        int entries = entryCount(data, body + 4, stsc, 12);
+        long[] offsets = new long[sampleSizes.length];
+        int sample = 0;
+        for (int i = 0; i < entries; i++) {
+            int firstChunk = data.getInt(body + 8 + i * 12) - 1;
+            int samplesPerChunk = data.getInt(body + 12 + i * 12);
+            int lastChunk = i + 1 < entries ? data.getInt(body + 8 + (i + 1) * 12) - 1 : chunkOffsets.length;
+            for (int chunk = firstChunk; chunk < lastChunk && chunk < chunkOffsets.length; chunk++) {
+                long offset = chunkOffsets[chunk];
+                for (int j = 0; j < samplesPerChunk && sample < sampleSizes.length; j++) {
+                    offsets[sample] = offset;
+                    offset += sampleSizes[sample++];
+                }
+            }
+        }
+        if (sample < sampleSizes.length) {
+            throw new MediaFormatException("stsc covers " + sample + " of " + sampleSizes.length + " samples");
+        }
+        return offsets;
+    }
+
+    /**
+     * Reads a full box entry count and checks that {@code entrySize}-byte entries fit in the box.
+     */
+    private static int entryCount(ByteBuffer data, int at, Box box, int entrySize) {
+        long count = Integer.toUnsignedLong(data.getInt(at));
+        if (at + 4 + count * entrySize > box.end()) {
+            throw new MediaFormatException(box.type() + " box is truncated");
+        }
+        return (int) count;
+    }
+
+    private static Box require(Box box, String type) {
+        if (box == null) {
+            throw new MediaFormatException("Missing " + type + " box");
+        }
+        return box;
+    }
+
+    /**
+     * The raw {@code moov} box, starting at index 0. Track boxes refer to positions in it.
+     */
+    ByteBuffer moov() {
+        return moov;
+    }
+
+    Box root() {
+        return root;
+    }
+
+    public long getTimescale() {
+        return timescale;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public List<Mp4Track> getTracks() {
+        return tracks;
+    }
+
+    /**
+     * The first video track, or {@code null} for audio-only files.
+     */
+    public Mp4Track getVideoTrack() {
+        return tracks.stream().filter(Mp4Track::isVideo).findFirst().orElse(null);
+    }
+
+    public Mp4Track getAudioTrack() {
+        return tracks.stream().filter(Mp4Track::isAudio).findFirst().orElse(null);
+    }
+}
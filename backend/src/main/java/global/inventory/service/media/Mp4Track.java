@@ -0,0 +1,168 @@
+package global.inventory.service.media;
+
+import global.inventory.service.media.IsoBoxes.Box;
+
+/**
+ * One track of an MP4 movie with its sample table expanded into parallel primitive arrays, indexed by
+ * sample number starting at 0.
+ */
+public final class Mp4Track {
+    private final Box trak;
+    private final int trackId;
+    private final String handlerType;
+    private final String codec;
+    private final long timescale;
+    private final long duration;
+    private final int width;
+    private final int height;
+    private final long[] sampleOffsets;
+    private final int[] sampleSizes;
+    private final long[] decodeTimes;
+    private final int[] compositionOffsets;
+    private final boolean[] syncSamples;
+    private final int minCompositionOffset;
+
+    Mp4Track(Box trak, int trackId, String handlerType, String codec, long timescale, long duration,
+             int width, int height, long[] sampleOffsets, int[] sampleSizes, long[] decodeTimes,
+             int[] compositionOffsets, boolean[] syncSamples) {
+        this.trak = trak;
+        this.trackId = trackId;
+        this.handlerType = handlerType;
+        this.codec = codec;
+        this.timescale = timescale;
+        this.duration = duration;
+        this.width = width;
+        this.height = height;
+        this.sampleOffsets = sampleOffsets;
+        this.sampleSizes = sampleSizes;
+        this.decodeTimes = decodeTimes;
+        this.compositionOffsets = compositionOffsets;
+        this.syncSamples = syncSamples;
+
+        int min = 0;
+        if (compositionOffsets != null && compositionOffsets.length > 0) {
+            min = Integer.MAX_VALUE;
+            for (int offset : compositionOffsets) {
+                min = Math.min(min, offset);
+            }
+        }
+        this.minCompositionOffset = min;
+    }
+
+    /**
+     * The {@code trak} box within {@link Mp4Movie#moov()}.
+     */
+    Box trak() {
+        return trak;
+    }
+
+    public int getTrackId() {
+        return trackId;
+    }
+
+    /**
+     * {@code vide}, {@code soun}, ...
+     */
+    public String getHandlerType() {
+        return handlerType;
+    }
+
+    public boolean isVideo() {
+        return "vide".equals(handlerType);
+    }
+
+    public boolean isAudio() {
+        return "soun".equals(handlerType);
+    }
+
+    /**
+     * Four-character code of the first sample entry, e.g. {@code avc1} or {@code mp4a}.
+     */
+    public String getCodec() {
+        return codec;
+    }
+
+    public long getTimescale() {
+        return timescale;
+    }
+
+    /**
+     * Duration in {@link #getTimescale() timescale} units.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getSampleCount() {
+        return sampleSizes.length;
+    }
+
+    public long getSampleOffset(int sample) {
+        return sampleOffsets[sample];
+    }
+
+    public int getSampleSize(int sample) {
+        return sampleSizes[sample];
+    }
+
+    public long getDecodeTime(int sample) {
+        return decodeTimes[sample];
+    }
+
+    /**
+     * Decode duration; the last sample runs to the end of the track, or repeats the previous duration when the
+     * track duration is missing.
+     */
+    public long getSampleDuration(int sample) {
+        if (sample + 1 < decodeTimes.length) {
+            return decodeTimes[sample + 1] - decodeTimes[sample];
+        }
+        long remaining = duration - decodeTimes[sample];
+        if (remaining > 0 || sample == 0) {
+            return Math.max(remaining, 0);
+        }
+        return decodeTimes[sample] - decodeTimes[sample - 1];
+    }
+
+    public boolean hasCompositionOffsets() {
+        return compositionOffsets != null;
+    }
+
+    /**
+     * Smallest composition offset; an edit list usually skips exactly this much at the start.
+     */
+    public int getMinCompositionOffset() {
+        return minCompositionOffset;
+    }
+
+    public int getCompositionOffset(int sample) {
+        return compositionOffsets == null ? 0 : compositionOffsets[sample];
+    }
+
+    public long getPresentationTime(int sample) {
+        return compositionOffsets == null ? decodeTimes[sample] : decodeTimes[sample] + compositionOffsets[sample];
+    }
+
+    /**
+     * Without a sync sample table every sample is a sync sample.
+     */
+    public boolean isSyncSample(int sample) {
+        return syncSamples == null || syncSamples[sample];
+    }
+
+    public long getTotalSampleBytes() {
+        long total = 0;
+        for (int size : sampleSizes) {
+            total += size;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,246 @@
+package global.inventory.service.media;
+
+import global.inventory.exception.MediaFormatException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the EBML header, {@code Info} and {@code Tracks} of a WebM or Matroska file. Elements are visited in
+ * file order and clusters are skipped by their size, so only a few kilobytes of a typical file are read.
+ */
+final class WebmHeaderParser {
+    static final int EBML_MAGIC = 0x1A45DFA3;
+
+    private static final long SEGMENT = 0x18538067;
+    private static final long INFO = 0x1549A966;
+    private static final long TRACKS = 0x1654AE6B;
+    private static final long CLUSTER = 0x1F43B675;
+    private static final long DOC_TYPE = 0x4282;
+    private static final long TIMECODE_SCALE = 0x2AD7B1;
+    private static final long DURATION = 0x4489;
+    private static final long TRACK_ENTRY = 0xAE;
+    private static final long TRACK_TYPE = 0x83;
+    private static final long CODEC_ID = 0x86;
+    private static final long VIDEO = 0xE0;
+    private static final long PIXEL_WIDTH = 0xB0;
+    private static final long PIXEL_HEIGHT = 0xBA;
+
+    private static final int TRACK_TYPE_VIDEO = 1;
+    private static final int TRACK_TYPE_AUDIO = 2;
+    private static final long UNKNOWN_SIZE = -1;
+    private static final int MAX_HEADER_ELEMENT_BYTES = 1024 * 1024;
+
+    private WebmHeaderParser() {
+    }
+
+    static MediaInfo read(FileChannel channel) throws IOException {
+        try {
+            return parse(channel);
+        } catch (IndexOutOfBoundsException e) {
+            throw new MediaFormatException("Malformed EBML element: " + e.getMessage());
+        }
+    }
+
+    private static MediaInfo parse(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        Element ebml = element(channel, 0);
+        if (ebml.id() != EBML_MAGIC || ebml.size() == UNKNOWN_SIZE) {
+            throw new MediaFormatException("Not an EBML file");
+        }
+        String docType = "webm";
+        ByteBuffer header = body(channel, ebml);
+        for (int at = 0; at < header.limit(); ) {
+            Element child = element(header, at);
+            if (child.id() == DOC_TYPE) {
+                docType = string(header, child);
+            }
+            at = (int) child.end();
+        }
+
+        Element segment = element(channel, ebml.end());
+        if (segment.id() != SEGMENT) {
+            throw new MediaFormatException("No Segment element found");
+        }
+        long segmentEnd = segment.size() == UNKNOWN_SIZE ? fileSize : Math.min(fileSize, segment.end());
+
+        Info info = null;
+        Tracks tracks = null;
+        long position = segment.bodyOffset();
+        while (position < segmentEnd && (info == null || tracks == null)) {
+            Element child = element(channel, position);
+            if (child.id() == INFO) {
+                info = info(body(channel, child));
+            } else if (child.id() == TRACKS) {
+                tracks = tracks(body(channel, child));
+            } else if (child.id() == CLUSTER && (info != null || tracks != null)) {
+                // Both header elements normally come before the first cluster
+                break;
+            }
+            if (child.size() == UNKNOWN_SIZE) {
+                break;
+            }
+            position = child.end();
+        }
+        if (info == null && tracks == null) {
+            throw new MediaFormatException("No Info or Tracks element found");
+        }
+
+        long durationMillis = info != null ? info.durationMillis() : 0;
+        Tracks found = tracks != null ? tracks : new Tracks(0, 0, null, null);
+        return new MediaInfo(docType, durationMillis, found.width(), found.height(), found.videoCodec(),
+                found.audioCodec(), MediaInfo.bitrate(fileSize, durationMillis));
+    }
+
+    private static Info info(ByteBuffer body) {
+        long timecodeScale = 1_000_000;
+        double duration = 0;
+        for (int at = 0; at < body.limit(); ) {
+            Element child = element(body, at);
+            if (child.id() == TIMECODE_SCALE) {
+                timecodeScale = unsigned(body, child);
+            } else if (child.id() == DURATION) {
+                int start = (int) child.bodyOffset();
+                duration = child.size() == 4 ? body.getFloat(start) : body.getDouble(start);
+            }
+            at = (int) child.end();
+        }
+        // Duration is in timecode ticks, each timecodeScale nanoseconds long
+        return new Info((long) (duration * timecodeScale / 1_000_000));
+    }
+
+    private static Tracks tracks(ByteBuffer body) {
+        int width = 0;
+        int height = 0;
+        String videoCodec = null;
+        String audioCodec = null;
+        for (int at = 0; at < body.limit(); ) {
+            Element entry = element(body, at);
+            at = (int) entry.end();
+            if (entry.id() != TRACK_ENTRY) {
+                continue;
+            }
+            long type = 0;
+            String codec = null;
+            int trackWidth = 0;
+            int trackHeight = 0;
+            for (int child = (int) entry.bodyOffset(); child < entry.end(); ) {
+                Element element = element(body, child);
+                if (element.id() == TRACK_TYPE) {
+                    type = unsigned(body, element);
+                } else if (element.id() == CODEC_ID) {
+                    codec = codec(string(body, element));
+                } else if (element.id() == VIDEO) {
+                    for (int video = (int) element.bodyOffset(); video < element.end(); ) {
+                        Element dimension = element(body, video);
+                        if (dimension.id() == PIXEL_WIDTH) {
+                            trackWidth = (int) unsigned(body, dimension);
+                        } else if (dimension.id() == PIXEL_HEIGHT) {
+                            trackHeight = (int) unsigned(body, dimension);
+                        }
+                        video = (int) dimension.end();
+                    }
+                }
+                child = (int) element.end();
+            }
+            if (type == TRACK_TYPE_VIDEO && videoCodec == null) {
+                videoCodec = codec;
+                width = trackWidth;
+                height = trackHeight;
+            } else if (type == TRACK_TYPE_AUDIO && audioCodec == null) {
+                audioCodec = codec;
+            }
+        }
+        return new Tracks(width, height, videoCodec, audioCodec);
+    }
+
+    /**
+     * {@code V_VP9} becomes {@code vp9}, {@code A_OPUS} becomes {@code opus}.
+     */
+    private static String codec(String codecId) {
+        int separator = codecId.indexOf('_');
+        return (separator >= 0 ? codecId.substring(separator + 1) : codecId).toLowerCase();
+    }
+
+    private static Element element(FileChannel channel, long position) throws IOException {
+        long remaining = channel.size() - position;
+        if (remaining < 2) {
+            throw new MediaFormatException("Truncated element at " + position);
+        }
+        ByteBuffer header = ByteBuffer.allocate((int) Math.min(12, remaining));
+        IsoBoxes.readFully(channel, header, position);
+        Element element = element(header, 0);
+        return new Element(element.id(), position, element.headerSize(), element.size());
+    }
+
+    private static Element element(ByteBuffer buffer, int at) {
+        int idLength = length(buffer, at, 4);
+        long id = 0;
+        for (int i = 0; i < idLength; i++) {
+            id = (id << 8) | (buffer.get(at + i) & 0xFF);
+        }
+        int sizeLength = length(buffer, at + idLength, 8);
+        long size = buffer.get(at + idLength) & (0xFF >> sizeLength);
+        boolean unknown = size == (0xFF >> sizeLength);
+        for (int i = 1; i < sizeLength; i++) {
+            int next = buffer.get(at + idLength + i) & 0xFF;
+            size = (size << 8) | next;
+            unknown &= next == 0xFF;
+        }
+        return new Element(id, at, idLength + sizeLength, unknown ? UNKNOWN_SIZE : size);
+    }
+
+    /**
+     * Length of a variable-size integer, given by the position of the first set bit.
+     */
+    private static int length(ByteBuffer buffer, int at, int maxLength) {
+        int first = buffer.get(at) & 0xFF;
+        int length = Integer.numberOfLeadingZeros(first) - 23;
+        if (first == 0 || length > maxLength) {
+            throw new MediaFormatException("Invalid EBML variable-size integer at " + at);
+        }
+        return length;
+    }
+
+    private static ByteBuffer body(FileChannel channel, Element element) throws IOException {
+        if (element.size() == UNKNOWN_SIZE || element.size() > MAX_HEADER_ELEMENT_BYTES) {
+            throw new MediaFormatException("Header element of unsupported size " + element.size());
+        }
+        ByteBuffer body = ByteBuffer.allocate((int) element.size());
+        IsoBoxes.readFully(channel, body, element.bodyOffset());
+        body.flip();
+        return body;
+    }
+
+    private static long unsigned(ByteBuffer buffer, Element element) {
+        long value = 0;
+        for (int i = 0; i < element.size(); i++) {
+            value = (value << 8) | (buffer.get((int) element.bodyOffset() + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private static String string(ByteBuffer buffer, Element element) {
+        byte[] bytes = new byte[(int) element.size()];
+        buffer.get((int) element.bodyOffset(), bytes);
+        return new String(bytes, StandardCharsets.US_ASCII).replace("\0", "");
+    }
+
+    private record Element(long id, long offset, int headerSize, long size) {
+        long bodyOffset() {
+            return offset + headerSize;
+        }
+
+        long end() {
+            return offset + headerSize + size;
+        }
+    }
+
+    private record Info(long durationMillis) {
+    }
+
+    private record Tracks(int width, int height, String videoCodec, String audioCodec) {
+    }
+}
@@ -0,0 +1,26 @@
+package global.inventory.service.security;
+
+public interface StreamUrlSigner {
+    String USER_PARAM = "u";
+    String VIDEO_PARAM = "v";
+    String EXPIRES_PARAM = "exp";
+    String KEY_ID_PARAM = "kid";
+    String SIGNATURE_PARAM = "sig";
+
+    // Request attribute holding the user id of a verified stream URL
+    String STREAM_USER_ATTRIBUTE = StreamUrlSigner.class.getName() + ".user";
+
+    /**
+     * Whether a signing key is configured. Without one, {@link #sign} returns {@code null} and nothing is valid.
+     */
+    boolean isEnabled();
+
+    /**
+     * Returns the query string that authorizes {@code userId} to stream {@code storedPath} until it expires.
+     * The URL stays valid for the configured TTL plus {@code durationMillis}, so a playback that starts within
+     * the TTL can run to the end without its range requests being rejected.
+     */
+    String sign(String storedPath, Long userId, Long videoId, long durationMillis);
+
+    boolean isValid(String storedPath, String userId, String videoId, String expires, String keyId, String signature);
+}
@@ -0,0 +1,136 @@
+package global.inventory.service.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Signs stream URLs with HMAC-SHA256 over key id, stored path, user, video and expiry. Verification needs
+ * nothing but the shared keys, so it runs on every range request without touching the database or JWTs.
+ * <p>
+ * Keys are configured as {@code id:base64-secret} pairs separated by commas. The first key signs new URLs and
+ * all of them verify, so a key can be rotated by prepending its replacement and dropping it after the TTL.
+ * The keys come from the environment. Without any, signing is disabled: URLs go out unsigned and nothing
+ * verifies. A malformed entry fails startup.
+ */
+@Slf4j
+@Service
+public class StreamUrlSignerImpl implements StreamUrlSigner {
+    private static final String ALGORITHM = "HmacSHA256";
+    // The HMAC-SHA256 output size; shorter secrets weaken the signature
+    private static final int MIN_SECRET_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final Map<String, ThreadLocal<Mac>> macsByKeyId = new LinkedHashMap<>();
+    private final String signingKeyId;
+    private final long ttlSeconds;
+
+    public StreamUrlSignerImpl(
+            @Value("${app.video.signing.keys:}") String keys,
+            @Value("${app.video.signing.ttl-seconds:7200}") long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+        if (keys == null || keys.isBlank()) {
+            this.signingKeyId = null;
+            log.warn("No stream signing key configured, stream URLs are issued unsigned; set VIDEO_SIGNING_KEYS "
+                    + "to id:base64-secret, e.g. k1:$(openssl rand -base64 32)");
+            return;
+        }
+        for (String entry : keys.split(",", -1)) {
+            int separator = entry.indexOf(':');
+            String keyId = separator > 0 ? entry.substring(0, separator).trim() : "";
+            if (keyId.isEmpty()) {
+                throw new IllegalArgumentException("Stream signing keys must be id:base64-secret pairs");
+            }
+            byte[] secret;
+            try {
+                secret = Base64.getDecoder().decode(entry.substring(separator + 1).trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Stream signing key '" + keyId + "' is not valid base64");
+            }
+            if (secret.length < MIN_SECRET_BYTES) {
+                throw new IllegalArgumentException("Stream signing key '" + keyId + "' must be at least "
+                        + MIN_SECRET_BYTES + " bytes");
+            }
+            SecretKeySpec spec = new SecretKeySpec(secret, ALGORITHM);
+            if (macsByKeyId.put(keyId, ThreadLocal.withInitial(() -> newMac(spec))) != null) {
+                throw new IllegalArgumentException("Stream signing key id '" + keyId + "' is configured twice");
+            }
+        }
+        this.signingKeyId = macsByKeyId.keySet().iterator().next();
+        log.info("Stream URL signing with key '{}', {} key(s) accepted", signingKeyId, macsByKeyId.size());
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return signingKeyId != null;
+    }
+
+    @Override
+    public String sign(String storedPath, Long userId, Long videoId, long durationMillis) {
+        if (!isEnabled()) {
+            return null;
+        }
+        String user = String.valueOf(userId);
+        String video = String.valueOf(videoId);
+        String expires = String.valueOf(epochSeconds() + ttlSeconds + Math.max(0, (durationMillis + 999) / 1000));
+        byte[] signature = mac(macsByKeyId.get(signingKeyId).get(), signingKeyId, storedPath, user, video, expires);
+
+        return USER_PARAM + "=" + user
+                + "&" + VIDEO_PARAM + "=" + video
+                + "&" + EXPIRES_PARAM + "=" + expires
+                + "&" + KEY_ID_PARAM + "=" + signingKeyId
+                + "&" + SIGNATURE_PARAM + "=" + ENCODER.encodeToString(signature);
+    }
+
+    @Override
+    public boolean isValid(String storedPath, String userId, String videoId, String expires,
+                           String keyId, String signature) {
+        if (storedPath == null || userId == null || videoId == null || expires == null
+                || keyId == null || signature == null) {
+            return false;
+        }
+        ThreadLocal<Mac> mac = macsByKeyId.get(keyId);
+        if (mac == null) {
+            return false;
+        }
+        try {
+            if (Long.parseLong(expires) < epochSeconds()) {
+                return false;
+            }
+            byte[] expected = mac(mac.get(), keyId, storedPath, userId, videoId, expires);
+            return MessageDigest.isEqual(expected, DECODER.decode(signature));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static long epochSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static byte[] mac(Mac mac, String keyId, String storedPath, String userId, String videoId,
+                              String expires) {
+        String payload = keyId + '\n' + storedPath + '\n' + userId + '\n' + videoId + '\n' + expires;
+        return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Mac newMac(SecretKeySpec secret) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secret);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
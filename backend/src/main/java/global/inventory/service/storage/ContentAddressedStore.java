@@ -0,0 +1,220 @@
+package global.inventory.service.storage;
+
+import global.inventory.service.storage.backend.ContentLinker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps one copy of each distinct upload. Stored files become hard links to a blob under {@code .blobs} at the
+ * root of the disk holding them, named by the SHA-256 of the stored bytes, so every video keeps its own stored
+ * path, sidecars and HLS output while identical content takes up disk (and page cache) once. The file system's
+ * link count is the reference count: a blob is reclaimed when its own entry under {@code .blobs} is the last
+ * link left. Copies a sharded backend makes on other disks link to that disk's blob in the same way.
+ */
+@Slf4j
+@Component
+public class ContentAddressedStore implements ContentLinker {
+    public static final String BLOB_DIRECTORY = ".blobs";
+    public static final String SIDECAR_SUFFIX = ".sha256";
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+    private static final int LOCK_STRIPES = 64;
+
+    private final boolean enabled;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public ContentAddressedStore(@Value("${app.video.storage.content-addressed.enabled:false}") boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public static Path sidecar(Path file) {
+        return file.resolveSibling(file.getFileName() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Swaps {@code file} for a link to the blob with the same content, or makes it that blob when it is the
+     * first copy. Blobs are kept per storage {@code root}, since hard links cannot cross file systems. Failing
+     * to link, e.g. on a file system without hard links, just leaves the copy in place.
+     */
+    public void deduplicate(Path root, Path file, String sha256) {
+        if (!enabled || !SHA256.matcher(sha256).matches()) {
+            return;
+        }
+        Path blob = blob(root, sha256);
+        synchronized (lock(sha256)) {
+            try {
+                if (Files.exists(blob)) {
+                    if (Files.size(blob) != Files.size(file)) {
+                        log.warn("Blob {} differs in size from {}, keeping a separate copy", sha256, file);
+                        return;
+                    }
+                    replaceWithLink(file, blob);
+                    log.info("Deduplicated {} against blob {}", file, sha256);
+                } else {
+                    Files.createDirectories(blob.getParent());
+                    Files.createLink(blob, file);
+                }
+                Files.writeString(sidecar(file), sha256);
+            } catch (IOException | UnsupportedOperationException e) {
+                log.warn("Could not link {} to blob {}, keeping a separate copy", file, sha256, e);
+            }
+        }
+    }
+
+    /**
+     * Creates {@code target} as a link to the blob on {@code root} holding the content of {@code source}, read
+     * from the checksum sidecar of {@code source}, instead of copying the bytes.
+     */
+    @Override
+    public boolean link(Path source, Path root, Path target) throws IOException {
+        String sha256 = checksum(source);
+        if (sha256 == null) {
+            return false;
+        }
+        Path blob = blob(root, sha256);
+        synchronized (lock(sha256)) {
+            if (!Files.exists(blob) || Files.size(blob) != Files.size(source)) {
+                return false;
+            }
+            try {
+                Files.createDirectories(target.getParent());
+                replaceWithLink(target, blob);
+            } catch (IOException | UnsupportedOperationException e) {
+                log.warn("Could not link {} to blob {}, copying it", target, sha256, e);
+                return false;
+            }
+            Files.writeString(sidecar(target), sha256);
+        }
+        return true;
+    }
+
+    /**
+     * Makes a byte-for-byte copy the blob of its disk, or links it to the blob already there.
+     */
+    @Override
+    public void copied(Path source, Path root, Path target) throws IOException {
+        String sha256 = checksum(source);
+        if (sha256 != null) {
+            deduplicate(root, target, sha256);
+        }
+    }
+
+    private String checksum(Path file) throws IOException {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            String sha256 = Files.readString(sidecar(file)).trim();
+            return SHA256.matcher(sha256).matches() ? sha256 : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Drops the reference held by {@code file}, which has already been deleted, and reclaims the blob if no
+     * other stored file links to it.
+     */
+    public void release(Path root, Path file) throws IOException {
+        Path sidecar = sidecar(file);
+        String sha256;
+        try {
+            sha256 = Files.readString(sidecar).trim();
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        Files.deleteIfExists(sidecar);
+        if (!SHA256.matcher(sha256).matches()) {
+            return;
+        }
+        Path blob = blob(root, sha256);
+        synchronized (lock(sha256)) {
+            if (linkCount(blob) == 1) {
+                Files.deleteIfExists(blob);
+                deleteIfEmpty(blob.getParent());
+                log.info("Reclaimed blob {}", sha256);
+            }
+        }
+    }
+
+    /**
+     * Deletes {@code blob} when no stored file links to it any more, e.g. after its files were moved to another
+     * disk or removed without going through {@link #release(Path, Path)}.
+     *
+     * @return the bytes freed
+     */
+    public long reclaimUnlinked(Path blob) throws IOException {
+        String sha256 = blob.getFileName().toString();
+        if (!SHA256.matcher(sha256).matches()) {
+            return 0;
+        }
+        synchronized (lock(sha256)) {
+            if (linkCount(blob) != 1) {
+                return 0;
+            }
+            long size = Files.size(blob);
+            Files.delete(blob);
+            deleteIfEmpty(blob.getParent());
+            log.info("Reclaimed unlinked blob {}", sha256);
+            return size;
+        }
+    }
+
+    private static void deleteIfEmpty(Path directory) throws IOException {
+        try {
+            Files.deleteIfExists(directory);
+        } catch (DirectoryNotEmptyException e) {
+            // other blobs share the prefix
+        }
+    }
+
+    private void replaceWithLink(Path file, Path blob) throws IOException {
+        Path link = file.resolveSibling("." + file.getFileName() + ".link");
+        Files.deleteIfExists(link);
+        Files.createLink(link, blob);
+        try {
+            Files.move(link, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(link);
+            throw e;
+        }
+        // The link carries the blob's old mtime, which would make a new upload look like an orphan to the
+        // reclaim sweep before its row exists. Every link to the blob sees the new time, at worst costing
+        // clients of the other videos one revalidation.
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+    }
+
+    /**
+     * Hard links to {@code blob}, or {@code -1} when the file system cannot tell, in which case the blob is kept.
+     */
+    private static int linkCount(Path blob) throws IOException {
+        try {
+            return ((Number) Files.getAttribute(blob, "unix:nlink")).intValue();
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static Path blob(Path root, String sha256) {
+        return root.resolve(BLOB_DIRECTORY).resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private Object lock(String sha256) {
+        return locks[Math.floorMod(sha256.hashCode(), locks.length)];
+    }
+}
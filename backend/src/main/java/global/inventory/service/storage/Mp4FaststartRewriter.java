@@ -0,0 +1,148 @@
+package global.inventory.service.storage;
+
+import global.inventory.service.media.IsoBoxes;
+import global.inventory.service.media.IsoBoxes.Box;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves the {@code moov} box of an ISO-BMFF file (MP4, MOV) in front of its media data so players can start
+ * without first fetching the end of the file. Only {@code moov} is held in memory; everything else is
+ * copied channel to channel into a temporary file that then replaces the original. The chunk offset tables
+ * ({@code stco}/{@code co64}) are shifted by the size of the relocated box.
+ * <p>
+ * Files that are already fast-start, fragmented, or otherwise not safely rewritable are left untouched.
+ */
+@Slf4j
+@Component
+public class Mp4FaststartRewriter {
+    private static final Set<String> CONTAINERS = Set.of("moov", "trak", "mdia", "minf", "stbl");
+    private static final long MAX_STCO_OFFSET = 0xFFFFFFFFL;
+
+    private final boolean enabled;
+    private final long maxMoovBytes;
+
+    public Mp4FaststartRewriter(
+            @Value("${app.video.faststart.enabled:true}") boolean enabled,
+            @Value("${app.video.faststart.max-moov-bytes:67108864}") long maxMoovBytes) {
+        this.enabled = enabled;
+        this.maxMoovBytes = maxMoovBytes;
+    }
+
+    /**
+     * @return whether the file was rewritten
+     */
+    public boolean rewrite(Path file) throws IOException {
+        if (!enabled) {
+            return false;
+        }
+
+        Path temp;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Box> boxes = IsoBoxes.readTopLevelBoxes(in);
+            Box moov = IsoBoxes.find(boxes, "moov");
+            Box firstMdat = IsoBoxes.find(boxes, "mdat");
+            if (moov == null || firstMdat == null || moov.offset() < firstMdat.offset()) {
+                return false;
+            }
+            if (IsoBoxes.find(boxes, "moof") != null) {
+                log.debug("Skipping faststart for fragmented file {}", file);
+                return false;
+            }
+            if (moov.size() > maxMoovBytes) {
+                log.warn("Skipping faststart for {}: moov box of {} bytes exceeds limit", file, moov.size());
+                return false;
+            }
+
+            ByteBuffer moovData = IsoBoxes.read(in, moov);
+            if (!shiftChunkOffsets(moovData, 0, moovData.limit(), firstMdat.offset(), moov.offset(), moov.size())) {
+                log.warn("Skipping faststart for {}: unsupported sample table layout", file);
+                return false;
+            }
+
+            temp = Files.createTempFile(file.getParent(), ".faststart-", ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                for (Box box : boxes) {
+                    if (box == moov) {
+                        continue;
+                    }
+                    if (box == firstMdat) {
+                        moovData.rewind();
+                        while (moovData.hasRemaining()) {
+                            out.write(moovData);
+                        }
+                    }
+                    IsoBoxes.transfer(in, box.offset(), box.size(), out);
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Moved moov box to the front of {}", file);
+        return true;
+    }
+
+    /**
+     * Walks the boxes in {@code [start, end)} of the in-memory {@code moov} and shifts every chunk offset that
+     * points into the region that will move down, i.e. from the first {@code mdat} up to the old {@code moov}.
+     */
+    private static boolean shiftChunkOffsets(ByteBuffer moov, int start, int end,
+                                             long movedFrom, long movedTo, long shift) {
+        List<Box> boxes = IsoBoxes.children(moov, start, end);
+        if (boxes == null) {
+            return false;
+        }
+        for (Box box : boxes) {
+            String type = box.type();
+            int body = (int) box.bodyOffset();
+            int boxEnd = (int) box.end();
+            if (CONTAINERS.contains(type)) {
+                if (!shiftChunkOffsets(moov, body, boxEnd, movedFrom, movedTo, shift)) {
+                    return false;
+                }
+            } else if ("stco".equals(type) || "co64".equals(type)) {
+                boolean wide = "co64".equals(type);
+                if (body + 8 > boxEnd) {
+                    return false;
+                }
+                // Full box: version and flags, then the entry count
+                long entries = Integer.toUnsignedLong(moov.getInt(body + 4));
+                int entrySize = wide ? 8 : 4;
+                if (body + 8 + entries * entrySize > boxEnd) {
+                    return false;
+                }
+                for (int i = 0; i < entries; i++) {
+                    int at = body + 8 + i * entrySize;
+                    long chunkOffset = wide ? moov.getLong(at) : Integer.toUnsignedLong(moov.getInt(at));
+                    if (chunkOffset < movedFrom || chunkOffset >= movedTo) {
+                        continue;
+                    }
+                    long shifted = chunkOffset + shift;
+                    if (wide) {
+                        moov.putLong(at, shifted);
+                    } else if (shifted > MAX_STCO_OFFSET) {
+                        // Would need stco upgraded to co64, which changes the size of moov itself
+                        return false;
+                    } else {
+                        moov.putInt(at, (int) shifted);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,168 @@
+package global.inventory.service.storage;
+
+import global.inventory.enums.ActivityAction;
+import global.inventory.repository.ActivityLogRepository;
+import global.inventory.service.media.IsoBoxes;
+import global.inventory.service.media.IsoBoxes.Box;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pulls the start of the most-watched videos, and their {@code moov} box wherever it sits, into the page cache
+ * after startup and then periodically, so the first viewers after a deploy or restart do not pay for cold disk
+ * reads of the header and opening seconds. Videos are ranked by {@code VIEWED} activity; each pass stops at a
+ * byte budget and runs on a single minimum-priority thread.
+ */
+@Slf4j
+@Component
+public class PageCachePrewarmer {
+    private final boolean enabled;
+    private final int topVideos;
+    private final long headBytes;
+    private final long maxBytes;
+    private final long intervalMinutes;
+    private final ActivityLogRepository activityLogRepository;
+    private final VideoStorageService videoStorageService;
+    private final ScheduledExecutorService executor;
+    private final Counter warmedVideos;
+    private final Counter warmedBytes;
+
+    private volatile boolean completed;
+
+    public PageCachePrewarmer(
+            @Value("${app.video.prewarm.enabled:true}") boolean enabled,
+            @Value("${app.video.prewarm.top-videos:50}") int topVideos,
+            @Value("${app.video.prewarm.head-bytes:8388608}") long headBytes,
+            @Value("${app.video.prewarm.max-bytes:1073741824}") long maxBytes,
+            @Value("${app.video.prewarm.interval-minutes:30}") long intervalMinutes,
+            ActivityLogRepository activityLogRepository,
+            VideoStorageService videoStorageService,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.topVideos = topVideos;
+        this.headBytes = headBytes;
+        this.maxBytes = maxBytes;
+        this.intervalMinutes = intervalMinutes;
+        this.activityLogRepository = activityLogRepository;
+        this.videoStorageService = videoStorageService;
+        this.warmedVideos = Counter.builder("video.prewarm.videos").register(meterRegistry);
+        this.warmedBytes = Counter.builder("video.prewarm.bytes").baseUnit("bytes").register(meterRegistry);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("video-prewarm-");
+        threadFactory.setDaemon(true);
+        threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            completed = true;
+            return;
+        }
+        executor.execute(this::prewarmFirst);
+        if (intervalMinutes > 0) {
+            executor.scheduleWithFixedDelay(this::prewarm, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Whether the first pass after startup has finished, successfully or not.
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    private void prewarmFirst() {
+        try {
+            prewarm();
+        } finally {
+            completed = true;
+        }
+    }
+
+    private void prewarm() {
+        try {
+            long started = System.nanoTime();
+            List<String> storedPaths = activityLogRepository.findMostActiveVideoUrls(
+                    ActivityAction.VIEWED, PageRequest.of(0, topVideos));
+            long budget = maxBytes;
+            int videos = 0;
+            for (String storedPath : storedPaths) {
+                if (budget <= 0 || Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                long warmed = prewarm(storedPath, budget);
+                if (warmed > 0) {
+                    budget -= warmed;
+                    videos++;
+                }
+            }
+            log.info("Prewarmed {} videos, {} bytes in {} ms", videos, maxBytes - budget,
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("Page cache prewarm failed", e);
+        }
+    }
+
+    private long prewarm(String storedPath, long budget) {
+        try {
+            StoredVideo video = videoStorageService.loadVideo(storedPath);
+            if (!video.isLocal()) {
+                return 0;
+            }
+            try (StoredVideo.Lease lease = video.lease()) {
+                FileChannel channel = lease.channel();
+                long head = Math.min(Math.min(headBytes, budget), video.getSize());
+                long warmed = load(channel, 0, head);
+
+                Box moov = IsoBoxes.find(IsoBoxes.readTopLevelBoxes(channel), "moov");
+                long moovEnd = moov != null ? Math.min(moov.end(), video.getSize()) : 0;
+                if (moovEnd > head) {
+                    long from = Math.max(moov.offset(), head);
+                    warmed += load(channel, from, Math.min(moovEnd - from, budget - warmed));
+                }
+                warmedVideos.increment();
+                warmedBytes.increment(warmed);
+                return warmed;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not prewarm {}: {}", storedPath, e.getMessage());
+            return 0;
+        }
+    }
+
+    private static long load(FileChannel channel, long position, long length) throws IOException {
+        if (length <= 0) {
+            return 0;
+        }
+        // load() touches every page of the mapping, faulting it into the page cache without copying it anywhere
+        long loaded = 0;
+        while (loaded < length) {
+            long size = Math.min(length - loaded, Integer.MAX_VALUE);
+            channel.map(FileChannel.MapMode.READ_ONLY, position + loaded, size).load();
+            loaded += size;
+        }
+        return loaded;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,30 @@
+package global.inventory.service.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code prewarm} health, part of the readiness group: out of service until the first page cache prewarm pass
+ * is done when {@code app.video.prewarm.wait-for-readiness} is set, otherwise always up.
+ */
+@Component
+public class PrewarmHealthIndicator implements HealthIndicator {
+    private final boolean waitForReadiness;
+    private final PageCachePrewarmer prewarmer;
+
+    public PrewarmHealthIndicator(
+            @Value("${app.video.prewarm.wait-for-readiness:false}") boolean waitForReadiness,
+            PageCachePrewarmer prewarmer) {
+        this.waitForReadiness = waitForReadiness;
+        this.prewarmer = prewarmer;
+    }
+
+    @Override
+    public Health health() {
+        boolean completed = prewarmer.isCompleted();
+        Health.Builder health = completed || !waitForReadiness ? Health.up() : Health.outOfService();
+        return health.withDetail("completed", completed).build();
+    }
+}
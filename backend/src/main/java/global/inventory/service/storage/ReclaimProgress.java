@@ -0,0 +1,27 @@
+package global.inventory.service.storage;
+
+import java.time.LocalDateTime;
+
+/**
+ * Where the current or last reclaim pass is; counters cover that pass only.
+ */
+public record ReclaimProgress(
+        Phase phase,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt,
+        long videosReclaimed,
+        long filesScanned,
+        long filesReclaimed,
+        long bytesReclaimed) {
+
+    public enum Phase {
+        IDLE,
+        DELETED_VIDEOS,
+        ORPHANED_FILES,
+        UNLINKED_BLOBS
+    }
+
+    public boolean running() {
+        return phase != Phase.IDLE;
+    }
+}
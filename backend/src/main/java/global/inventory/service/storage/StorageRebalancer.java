@@ -0,0 +1,205 @@
+package global.inventory.service.storage;
+
+import global.inventory.service.hls.HlsPackagingServiceImpl;
+import global.inventory.service.media.KeyframeIndexer;
+import global.inventory.service.media.MediaProbeService;
+import global.inventory.service.storage.backend.ShardedStorageBackend;
+import global.inventory.service.storage.backend.StorageBackend;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves stored files onto the disks the hash ring assigns them after disks are added to
+ * {@code app.video.storage.disks}, including files still in the single {@code location} used before disks were
+ * configured, while the node keeps serving. Each file is copied to its new disks before the old copy goes, and its
+ * cached read handle is dropped so the next request opens a current copy. One pass runs after startup on a single
+ * minimum-priority thread, paced to a byte rate so it leaves disk bandwidth to streams.
+ */
+@Slf4j
+@Component
+public class StorageRebalancer {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final long maxBytesPerSecond;
+    private final StorageBackend storageBackend;
+    private final StoredVideoCache storedVideoCache;
+    private final ExecutorService executor;
+    private final Counter movedFiles;
+    private final Counter movedBytes;
+
+    private long startedNanos;
+    private long pacedBytes;
+
+    public StorageRebalancer(
+            @Value("${app.video.storage.rebalance.enabled:true}") boolean enabled,
+            @Value("${app.video.storage.rebalance.max-bytes-per-second:52428800}") long maxBytesPerSecond,
+            StorageBackend storageBackend,
+            StoredVideoCache storedVideoCache,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        this.storageBackend = storageBackend;
+        this.storedVideoCache = storedVideoCache;
+        this.movedFiles = Counter.builder("video.storage.rebalance.files").register(meterRegistry);
+        this.movedBytes = Counter.builder("video.storage.rebalance.bytes").baseUnit("bytes").register(meterRegistry);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("video-rebalance-");
+        threadFactory.setDaemon(true);
+        threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+        this.executor = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled && storageBackend instanceof ShardedStorageBackend sharded) {
+            executor.execute(() -> rebalance(sharded));
+        }
+    }
+
+    private void rebalance(ShardedStorageBackend sharded) {
+        startedNanos = System.nanoTime();
+        pacedBytes = 0;
+        long files = 0;
+        for (Path root : sharded.roots()) {
+            try {
+                files += rebalance(sharded, root);
+            } catch (IOException e) {
+                log.warn("Could not rebalance storage disk {}", root, e);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+        log.info("Rebalanced storage: moved {} files, {} bytes in {} ms", files, pacedBytes,
+                (System.nanoTime() - startedNanos) / 1_000_000);
+    }
+
+    private long rebalance(ShardedStorageBackend sharded, Path root) throws IOException {
+        long[] moved = new long[1];
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                if (directory.equals(root)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                // Blobs, upload sessions and HLS output are not addressed by stored path
+                String name = directory.getFileName().toString();
+                boolean skipped = name.startsWith(".")
+                        || directory.getParent().equals(root) && name.equals(HlsPackagingServiceImpl.HLS_DIRECTORY);
+                return skipped ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return FileVisitResult.TERMINATE;
+                }
+                if (!attributes.isRegularFile() || file.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String key = root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                try {
+                    if (sharded.relocate(key, Paced::new)) {
+                        storedVideoCache.invalidate(videoKey(key));
+                        movedFiles.increment();
+                        moved[0]++;
+                    }
+                } catch (InterruptedIOException e) {
+                    Thread.currentThread().interrupt();
+                    return FileVisitResult.TERMINATE;
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Could not move {} to its disks", key, e);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Deleted since the directory was listed
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return moved[0];
+    }
+
+    private static String videoKey(String key) {
+        for (String suffix : List.of(KeyframeIndexer.SIDECAR_SUFFIX, MediaProbeService.SIDECAR_SUFFIX)) {
+            if (key.endsWith(suffix)) {
+                return key.substring(0, key.length() - suffix.length());
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Sleeps whenever the pass has copied more than the byte rate allows since it started.
+     */
+    private void pace(int bytes) throws InterruptedIOException {
+        pacedBytes += bytes;
+        movedBytes.increment(bytes);
+        if (maxBytesPerSecond <= 0) {
+            return;
+        }
+        long due = startedNanos + (long) ((double) pacedBytes / maxBytesPerSecond * NANOS_PER_SECOND);
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Rebalancing interrupted");
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private final class Paced extends FilterInputStream {
+        private Paced(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0) {
+                pace(1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                pace(read);
+            }
+            return read;
+        }
+    }
+}
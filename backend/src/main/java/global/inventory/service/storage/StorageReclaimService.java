@@ -0,0 +1,12 @@
+package global.inventory.service.storage;
+
+public interface StorageReclaimService {
+    /**
+     * Starts a pass in the background unless one is already running.
+     *
+     * @return the progress of the pass that is now running
+     */
+    ReclaimProgress start();
+
+    ReclaimProgress getProgress();
+}
@@ -0,0 +1,375 @@
+package global.inventory.service.storage;
+
+import global.inventory.model.Video;
+import global.inventory.repository.VideoRepository;
+import global.inventory.service.hls.HlsPackagingService;
+import global.inventory.service.hls.HlsPackagingServiceImpl;
+import global.inventory.service.media.KeyframeIndexer;
+import global.inventory.service.media.MediaProbeService;
+import global.inventory.service.storage.ReclaimProgress.Phase;
+import global.inventory.service.storage.backend.ShardedStorageBackend;
+import global.inventory.service.storage.backend.StorageBackend;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Frees the disk space of videos that are gone. Soft-deleted videos keep their row, so once their grace period
+ * has passed their files, sidecars and HLS output are removed and the row is marked; {@code videos} is scanned
+ * in keyset batches by id. A walk of each storage disk then removes what no row refers to: files of uploads that
+ * failed before their row was saved, sidecars without a video, leftovers of interrupted writes and blobs no
+ * stored file links to any more. Nothing younger than the grace period is touched, which covers uploads in flight.
+ * <p>
+ * Passes run periodically and on demand on one minimum-priority thread, paced to a number of files per second so
+ * the metadata I/O does not queue ahead of streaming reads.
+ */
+@Slf4j
+@Service
+public class StorageReclaimServiceImpl implements StorageReclaimService {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final Duration gracePeriod;
+    private final long intervalMinutes;
+    private final int batchSize;
+    private final long maxFilesPerSecond;
+    private final Path rootLocation;
+    private final VideoRepository videoRepository;
+    private final VideoStorageService videoStorageService;
+    private final HlsPackagingService hlsPackagingService;
+    private final ContentAddressedStore contentStore;
+    private final StorageBackend storageBackend;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService executor;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong videosReclaimed = new AtomicLong();
+    private final AtomicLong filesScanned = new AtomicLong();
+    private final AtomicLong filesReclaimed = new AtomicLong();
+    private final AtomicLong bytesReclaimed = new AtomicLong();
+    private volatile Phase phase = Phase.IDLE;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private long nextPaceNanos;
+
+    public StorageReclaimServiceImpl(
+            @Value("${app.video.reclaim.enabled:true}") boolean enabled,
+            @Value("${app.video.reclaim.grace-hours:24}") long graceHours,
+            @Value("${app.video.reclaim.interval-minutes:360}") long intervalMinutes,
+            @Value("${app.video.reclaim.batch-size:200}") int batchSize,
+            @Value("${app.video.reclaim.max-files-per-second:500}") long maxFilesPerSecond,
+            @Value("${app.video.storage.location}") String storageLocation,
+            VideoRepository videoRepository,
+            VideoStorageService videoStorageService,
+            HlsPackagingService hlsPackagingService,
+            ContentAddressedStore contentStore,
+            StorageBackend storageBackend,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.gracePeriod = Duration.ofHours(graceHours);
+        this.intervalMinutes = intervalMinutes;
+        this.batchSize = batchSize;
+        this.maxFilesPerSecond = maxFilesPerSecond;
+        this.rootLocation = Paths.get(storageLocation).toAbsolutePath().normalize();
+        this.videoRepository = videoRepository;
+        this.videoStorageService = videoStorageService;
+        this.hlsPackagingService = hlsPackagingService;
+        this.contentStore = contentStore;
+        this.storageBackend = storageBackend;
+        this.meterRegistry = meterRegistry;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("video-reclaim-");
+        threadFactory.setDaemon(true);
+        threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void schedule() {
+        if (enabled && intervalMinutes > 0) {
+            executor.scheduleWithFixedDelay(this::start, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @Override
+    public ReclaimProgress start() {
+        if (running.compareAndSet(false, true)) {
+            videosReclaimed.set(0);
+            filesScanned.set(0);
+            filesReclaimed.set(0);
+            bytesReclaimed.set(0);
+            startedAt = LocalDateTime.now();
+            finishedAt = null;
+            phase = Phase.DELETED_VIDEOS;
+            executor.execute(this::reclaim);
+        }
+        return getProgress();
+    }
+
+    @Override
+    public ReclaimProgress getProgress() {
+        return new ReclaimProgress(phase, startedAt, finishedAt, videosReclaimed.get(), filesScanned.get(),
+                filesReclaimed.get(), bytesReclaimed.get());
+    }
+
+    private void reclaim() {
+        try {
+            Instant cutoff = Instant.now().minus(gracePeriod);
+            reclaimDeletedVideos(LocalDateTime.ofInstant(cutoff, ZoneId.systemDefault()));
+            phase = Phase.ORPHANED_FILES;
+            for (Path root : roots()) {
+                reclaimOrphanedFiles(root, cutoff);
+            }
+            phase = Phase.UNLINKED_BLOBS;
+            for (Path root : roots()) {
+                reclaimUnlinkedBlobs(root, cutoff);
+            }
+            log.info("Reclaimed {} deleted videos and {} files, {} bytes", videosReclaimed.get(),
+                    filesReclaimed.get(), bytesReclaimed.get());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Storage reclaim failed", e);
+        } finally {
+            finishedAt = LocalDateTime.now();
+            phase = Phase.IDLE;
+            running.set(false);
+        }
+    }
+
+    private void reclaimDeletedVideos(LocalDateTime deletedBefore) {
+        long afterId = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Video> batch = videoRepository.findUnreclaimedDeleted(deletedBefore, afterId,
+                    PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return;
+            }
+            for (Video video : batch) {
+                afterId = video.getId();
+                pace();
+                String storedPath = video.getVideoUrl();
+                try {
+                    long bytes = storedBytes(storedPath);
+                    videoStorageService.delete(storedPath);
+                    hlsPackagingService.delete(storedPath);
+                    video.setFilesReclaimedAt(LocalDateTime.now());
+                    videoRepository.save(video);
+                    videosReclaimed.incrementAndGet();
+                    reclaimed("deleted", bytes);
+                } catch (RuntimeException e) {
+                    log.warn("Could not reclaim the files of deleted video {}", video.getId(), e);
+                }
+            }
+        }
+    }
+
+    private void reclaimOrphanedFiles(Path root, Instant cutoff) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Map<String, Long> candidates = new LinkedHashMap<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                if (directory.equals(root)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                // Blobs get their own sweep, upload sessions expire on their own and HLS output goes with its video
+                String name = directory.getFileName().toString();
+                boolean skipped = name.startsWith(".")
+                        || directory.getParent().equals(root) && name.equals(HlsPackagingServiceImpl.HLS_DIRECTORY);
+                return skipped ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                if (Thread.currentThread().isInterrupted()) {
+                    return FileVisitResult.TERMINATE;
+                }
+                pace();
+                filesScanned.incrementAndGet();
+                if (!attributes.isRegularFile() || !attributes.lastModifiedTime().toInstant().isBefore(cutoff)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String name = file.getFileName().toString();
+                if (name.startsWith(".")) {
+                    // Temporary files of writes, links and rewrites that never got renamed into place
+                    Files.deleteIfExists(file);
+                    reclaimed("temporary", attributes.size());
+                } else if (name.endsWith(KeyframeIndexer.SIDECAR_SUFFIX)) {
+                    reclaimSidecar(root, file, KeyframeIndexer.SIDECAR_SUFFIX, attributes.size());
+                } else if (name.endsWith(MediaProbeService.SIDECAR_SUFFIX)) {
+                    reclaimSidecar(root, file, MediaProbeService.SIDECAR_SUFFIX, attributes.size());
+                } else if (name.endsWith(ContentAddressedStore.SIDECAR_SUFFIX)) {
+                    reclaimSidecar(root, file, ContentAddressedStore.SIDECAR_SUFFIX, attributes.size());
+                } else {
+                    candidates.put(root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"),
+                            attributes.size());
+                    if (candidates.size() >= batchSize) {
+                        reclaimUnreferenced(candidates);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Deleted since the directory was listed, typically as the sidecar of a reclaimed video
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        reclaimUnreferenced(candidates);
+    }
+
+    private void reclaimSidecar(Path root, Path sidecar, String suffix, long size) throws IOException {
+        String name = sidecar.getFileName().toString();
+        Path video = sidecar.resolveSibling(name.substring(0, name.length() - suffix.length()));
+        if (Files.exists(video)) {
+            return;
+        }
+        if (suffix.equals(ContentAddressedStore.SIDECAR_SUFFIX)) {
+            contentStore.release(root, video);
+        } else {
+            Files.deleteIfExists(sidecar);
+        }
+        reclaimed("orphaned", size);
+    }
+
+    /**
+     * Deletes the files among {@code candidates} that no video row refers to, deleted or not.
+     */
+    private void reclaimUnreferenced(Map<String, Long> candidates) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Set<String> referenced = new HashSet<>(videoRepository.findExistingVideoUrls(candidates.keySet()));
+        candidates.forEach((storedPath, size) -> {
+            if (referenced.contains(storedPath)) {
+                return;
+            }
+            try {
+                videoStorageService.delete(storedPath);
+                hlsPackagingService.delete(storedPath);
+                reclaimed("orphaned", size);
+                log.info("Reclaimed orphaned file {}", storedPath);
+            } catch (RuntimeException e) {
+                log.warn("Could not reclaim orphaned file {}", storedPath, e);
+            }
+        });
+        candidates.clear();
+    }
+
+    private void reclaimUnlinkedBlobs(Path root, Instant cutoff) throws IOException {
+        Path blobRoot = root.resolve(ContentAddressedStore.BLOB_DIRECTORY);
+        if (!Files.isDirectory(blobRoot)) {
+            return;
+        }
+        Files.walkFileTree(blobRoot, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path blob, BasicFileAttributes attributes) throws IOException {
+                if (Thread.currentThread().isInterrupted()) {
+                    return FileVisitResult.TERMINATE;
+                }
+                pace();
+                filesScanned.incrementAndGet();
+                if (attributes.lastModifiedTime().toInstant().isBefore(cutoff)) {
+                    long bytes = contentStore.reclaimUnlinked(blob);
+                    if (bytes > 0) {
+                        reclaimed("blob", bytes);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private List<Path> roots() {
+        return storageBackend instanceof ShardedStorageBackend sharded ? sharded.roots() : List.of(rootLocation);
+    }
+
+    /**
+     * Bytes the video's copies take up. Hard-linked duplicates only free space once their last link goes.
+     */
+    private long storedBytes(String storedPath) {
+        try {
+            List<Path> copies = storageBackend.localCopies(storedPath);
+            if (copies.isEmpty() && storageBackend.primaryFile(storedPath) == null) {
+                return storageBackend.stat(storedPath).size();
+            }
+            long bytes = 0;
+            for (Path copy : copies) {
+                bytes += Files.size(copy);
+            }
+            return bytes;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void reclaimed(String reason, long bytes) {
+        filesReclaimed.incrementAndGet();
+        bytesReclaimed.addAndGet(bytes);
+        Counter.builder("video.reclaim.files").tag("reason", reason).register(meterRegistry).increment();
+        Counter.builder("video.reclaim.bytes").baseUnit("bytes").tag("reason", reason).register(meterRegistry)
+                .increment(bytes);
+    }
+
+    /**
+     * Spaces file operations at least {@code 1 / max-files-per-second} apart; time spent elsewhere is not banked,
+     * so a slow batch query is not followed by a burst.
+     */
+    private void pace() {
+        if (maxFilesPerSecond <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (nextPaceNanos > now) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nextPaceNanos - now);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            now = nextPaceNanos;
+        }
+        nextPaceNanos = now + NANOS_PER_SECOND / maxFilesPerSecond;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
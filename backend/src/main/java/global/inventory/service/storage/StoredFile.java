@@ -0,0 +1,10 @@
+package global.inventory.service.storage;
+
+import global.inventory.service.media.MediaInfo;
+
+/**
+ * A file written into storage, with the size and SHA-256 (hex) computed while it was written and the metadata
+ * probed once it was prepared for streaming.
+ */
+public record StoredFile(String storedPath, long size, String sha256, MediaInfo media) {
+}
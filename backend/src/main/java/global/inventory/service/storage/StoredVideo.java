@@ -0,0 +1,306 @@
+package global.inventory.service.storage;
+
+import global.inventory.service.media.KeyframeIndex;
+import global.inventory.service.media.MediaInfo;
+import global.inventory.service.storage.backend.StorageBackend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Metadata of a stored video file together with read channels shared by every request that streams it.
+ * Stored files are never modified in place, so the metadata stays valid until the file is deleted.
+ * <p>
+ * Positional reads on a {@link FileChannel} are safe to issue concurrently, so all leases of one copy share one
+ * handle. It is opened on first use and closed once the video has been retired and the last lease is released,
+ * or earlier by {@link #closeIfIdle(long)} when the cache needs the descriptor back; the next lease reopens it.
+ * <p>
+ * A video kept on several local disks knows every copy, and each stream asks the backend which one to read
+ * through {@link #beginRead()}, so the choice follows the disks' load rather than whichever copy was picked
+ * when the video was cached. A video that is not on this node's disk has no files and no channel; its ranges
+ * are read from the storage backend instead.
+ */
+public class StoredVideo {
+    private final String storedPath;
+    private final List<Path> files;
+    private final List<Copy> copies;
+    private final long size;
+    private final long lastModified;
+    private final String contentType;
+    private final KeyframeIndex keyframeIndex;
+    private final MediaInfo mediaInfo;
+    private final StorageBackend backend;
+
+    private boolean retired;
+    private volatile Consumer<StoredVideo> onChannelOpened;
+
+    public StoredVideo(String storedPath, Path file, long size, long lastModified, String contentType) {
+        this(storedPath, file, size, lastModified, contentType, KeyframeIndex.EMPTY, MediaInfo.UNKNOWN);
+    }
+
+    public StoredVideo(String storedPath, Path file, long size, long lastModified, String contentType,
+                       KeyframeIndex keyframeIndex, MediaInfo mediaInfo) {
+        this(storedPath, List.of(file), null, size, lastModified, contentType, keyframeIndex, mediaInfo);
+    }
+
+    public StoredVideo(String storedPath, StorageBackend backend, long size, long lastModified, String contentType,
+                       KeyframeIndex keyframeIndex, MediaInfo mediaInfo) {
+        this(storedPath, List.of(), backend, size, lastModified, contentType, keyframeIndex, mediaInfo);
+    }
+
+    /**
+     * @param files the copies on this node's disks, primary first
+     */
+    public StoredVideo(String storedPath, List<Path> files, StorageBackend backend, long size, long lastModified,
+                       String contentType, KeyframeIndex keyframeIndex, MediaInfo mediaInfo) {
+        this.storedPath = storedPath;
+        this.files = List.copyOf(files);
+        this.copies = this.files.stream().map(Copy::new).toList();
+        this.backend = backend;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.contentType = contentType;
+        this.keyframeIndex = keyframeIndex;
+        this.mediaInfo = mediaInfo;
+    }
+
+    public String getStoredPath() {
+        return storedPath;
+    }
+
+    /**
+     * @return the primary copy on this node's disk, or {@code null} when the video is only in remote storage;
+     * streams read the copy their {@link #beginRead()} picked instead
+     */
+    public Path getFile() {
+        return copies.isEmpty() ? null : copies.get(0).file;
+    }
+
+    public boolean isLocal() {
+        return !copies.isEmpty();
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public KeyframeIndex getKeyframeIndex() {
+        return keyframeIndex;
+    }
+
+    public MediaInfo getMediaInfo() {
+        return mediaInfo;
+    }
+
+    /**
+     * Average bitrate in bits per second, or 0 when the container could not be probed.
+     */
+    public long getBitrate() {
+        return mediaInfo.bitrate();
+    }
+
+    /**
+     * Streams a range of a video kept in remote storage; the caller closes the stream. Local videos are read
+     * through a {@link #lease()}.
+     */
+    public InputStream openRange(long start, long length) throws IOException {
+        if (isLocal()) {
+            throw new IOException(storedPath + " is read through its channel");
+        }
+        return backend.read(storedPath, start, length);
+    }
+
+    /**
+     * Starts a stream of the video: picks the local copy to read and counts it towards its disk's load until
+     * {@link Read#end()}.
+     */
+    public Read beginRead() {
+        if (copies.isEmpty() || backend == null) {
+            return new Read(copies.isEmpty() ? null : copies.get(0), () -> {
+            });
+        }
+        Copy copy = copies.get(0);
+        if (copies.size() > 1) {
+            copy = copies.get(Math.max(0, files.indexOf(backend.select(files))));
+        }
+        return new Read(copy, backend.beginRead(copy.file));
+    }
+
+    /**
+     * Leases the primary copy, for reads that are not streams and so need not spread across disks.
+     */
+    public Lease lease() throws IOException {
+        if (copies.isEmpty()) {
+            throw new IOException(storedPath + " is not stored on this node");
+        }
+        return lease(copies.get(0));
+    }
+
+    private Lease lease(Copy copy) throws IOException {
+        Lease lease;
+        boolean opened = false;
+        synchronized (this) {
+            if (retired) {
+                // Evicted while still being looked up; use a private handle rather than reviving the shared one
+                return new Lease(copy, FileChannel.open(copy.file, StandardOpenOption.READ), true);
+            }
+            if (copy.channel == null) {
+                copy.channel = FileChannel.open(copy.file, StandardOpenOption.READ);
+                opened = true;
+            }
+            copy.leases++;
+            lease = new Lease(copy, copy.channel, false);
+        }
+        // Outside the lock: the listener may close other videos' channels
+        Consumer<StoredVideo> listener = onChannelOpened;
+        if (opened && listener != null) {
+            listener.accept(this);
+        }
+        return lease;
+    }
+
+    void onChannelOpened(Consumer<StoredVideo> listener) {
+        this.onChannelOpened = listener;
+    }
+
+    /**
+     * Closes each shared channel no lease has used for {@code idleNanos}.
+     *
+     * @return whether the video no longer holds an open channel
+     */
+    synchronized boolean closeIfIdle(long idleNanos) {
+        boolean closed = true;
+        for (Copy copy : copies) {
+            if (copy.channel == null) {
+                continue;
+            }
+            if (copy.leases > 0 || System.nanoTime() - copy.idleSinceNanos < idleNanos) {
+                closed = false;
+            } else {
+                copy.closeChannel();
+            }
+        }
+        return closed;
+    }
+
+    /**
+     * Marks the video as no longer cached. Shared channels are closed as soon as no lease uses them.
+     */
+    synchronized void retire() {
+        retired = true;
+        for (Copy copy : copies) {
+            if (copy.leases == 0) {
+                copy.closeChannel();
+            }
+        }
+    }
+
+    private synchronized void release(Copy copy) {
+        if (--copy.leases > 0) {
+            return;
+        }
+        copy.idleSinceNanos = System.nanoTime();
+        if (retired) {
+            copy.closeChannel();
+        }
+    }
+
+    /**
+     * One local copy and its shared channel; guarded by the video's lock.
+     */
+    private static final class Copy {
+        private final Path file;
+        private FileChannel channel;
+        private int leases;
+        private long idleSinceNanos;
+
+        private Copy(Path file) {
+            this.file = file;
+        }
+
+        private void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Read-only handle, nothing to flush
+                }
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * One stream of the video and the copy it reads, which stays the same for the whole stream.
+     */
+    public final class Read {
+        private final Copy copy;
+        private final Runnable onEnd;
+
+        private Read(Copy copy, Runnable onEnd) {
+            this.copy = copy;
+            this.onEnd = onEnd;
+        }
+
+        /**
+         * @return the copy this stream reads, or {@code null} when the video is only in remote storage
+         */
+        public Path file() {
+            return copy != null ? copy.file : null;
+        }
+
+        public Lease lease() throws IOException {
+            if (copy == null) {
+                throw new IOException(storedPath + " is not stored on this node");
+            }
+            return StoredVideo.this.lease(copy);
+        }
+
+        public void end() {
+            onEnd.run();
+        }
+    }
+
+    public final class Lease implements AutoCloseable {
+        private final Copy copy;
+        private final FileChannel channel;
+        private final boolean owned;
+        private boolean closed;
+
+        private Lease(Copy copy, FileChannel channel, boolean owned) {
+            this.copy = copy;
+            this.channel = channel;
+            this.owned = owned;
+        }
+
+        public FileChannel channel() {
+            return channel;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (owned) {
+                channel.close();
+            } else {
+                release(copy);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package global.inventory.service.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded LRU of {@link StoredVideo} metadata keyed by stored path, so hot videos are served without
+ * touching the filesystem. Entries leave the cache on eviction or when the file is deleted.
+ * <p>
+ * Metadata is cheap but every open read channel holds a file descriptor, so channels are bounded separately
+ * and far lower: past {@code max-open-files} the least recently used idle channel is closed, and a sweeper
+ * closes channels nobody has leased for {@code idle-file-seconds}. A closed channel reopens on the next lease.
+ */
+@Component
+public class StoredVideoCache {
+    private final int maxEntries;
+    private final int maxOpenFiles;
+    private final long idleFileNanos;
+    private final Map<String, StoredVideo> entries;
+    // Videos whose shared channel may be open, least recently used first; guarded by the entries lock
+    private final Map<StoredVideo, Boolean> openFiles = new LinkedHashMap<>(64, 0.75f, true);
+    private final ScheduledExecutorService sweeper;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public StoredVideoCache(
+            @Value("${app.video.storage.metadata-cache.max-entries:10000}") int maxEntries,
+            @Value("${app.video.storage.metadata-cache.max-open-files:256}") int maxOpenFiles,
+            @Value("${app.video.storage.metadata-cache.idle-file-seconds:60}") long idleFileSeconds,
+            MeterRegistry meterRegistry) {
+        this.maxEntries = maxEntries;
+        this.maxOpenFiles = maxOpenFiles;
+        this.idleFileNanos = TimeUnit.SECONDS.toNanos(idleFileSeconds);
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredVideo> eldest) {
+                if (size() > StoredVideoCache.this.maxEntries) {
+                    openFiles.remove(eldest.getValue());
+                    eldest.getValue().retire();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.hits = Counter.builder("video.metadata.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("video.metadata.cache.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("video.metadata.cache.size", this, StoredVideoCache::size).register(meterRegistry);
+        Gauge.builder("video.metadata.cache.open.files", this, StoredVideoCache::openFileCount)
+                .register(meterRegistry);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("video-file-sweeper-");
+        threadFactory.setDaemon(true);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long sweepSeconds = Math.max(1, idleFileSeconds / 2);
+        this.sweeper.scheduleWithFixedDelay(this::closeIdleFiles, sweepSeconds, sweepSeconds, TimeUnit.SECONDS);
+    }
+
+    public StoredVideo get(String storedPath, Loader loader) throws IOException {
+        synchronized (entries) {
+            StoredVideo cached = entries.get(storedPath);
+            if (cached != null) {
+                hits.increment();
+                openFiles.get(cached);
+                return cached;
+            }
+        }
+
+        // Load outside the lock; a concurrent duplicate load is harmless and the first one wins
+        misses.increment();
+        StoredVideo loaded = loader.load(storedPath);
+        synchronized (entries) {
+            StoredVideo existing = entries.putIfAbsent(storedPath, loaded);
+            if (existing != null) {
+                loaded.retire();
+                return existing;
+            }
+            loaded.onChannelOpened(this::channelOpened);
+        }
+        return loaded;
+    }
+
+    public void invalidate(String storedPath) {
+        StoredVideo removed;
+        synchronized (entries) {
+            removed = entries.remove(storedPath);
+            if (removed != null) {
+                openFiles.remove(removed);
+            }
+        }
+        if (removed != null) {
+            removed.retire();
+        }
+    }
+
+    private void channelOpened(StoredVideo video) {
+        synchronized (entries) {
+            openFiles.put(video, Boolean.TRUE);
+            Iterator<StoredVideo> leastRecentlyUsed = openFiles.keySet().iterator();
+            while (openFiles.size() > maxOpenFiles && leastRecentlyUsed.hasNext()) {
+                if (leastRecentlyUsed.next().closeIfIdle(0)) {
+                    leastRecentlyUsed.remove();
+                }
+            }
+        }
+    }
+
+    private void closeIdleFiles() {
+        synchronized (entries) {
+            openFiles.keySet().removeIf(video -> video.closeIfIdle(idleFileNanos));
+        }
+    }
+
+    private int openFileCount() {
+        synchronized (entries) {
+            return openFiles.size();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        StoredVideo load(String storedPath) throws IOException;
+    }
+}
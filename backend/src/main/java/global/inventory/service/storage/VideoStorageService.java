@@ -3,12 +3,32 @@ package global.inventory.service.storage;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+import java.nio.file.Path;
+
 public interface VideoStorageService {
-    String store(MultipartFile file);
+    StoredFile store(MultipartFile file);
+
+    /**
+     * Moves a fully written file into storage, taking ownership of it.
+     */
+    StoredFile store(Path source, String originalFilename);
+
+    /**
+     * Writes {@code content} straight into its final location, enforcing the size limit as bytes arrive.
+     */
+    StoredFile store(InputStream content, String originalFilename);
 
     Resource loadAsResource(String storedPath);
 
+    StoredVideo loadVideo(String storedPath);
+
     void delete(String storedPath);
 
     String generatePublicUrl(String storedPath);
+
+    /**
+     * @param durationMillis the video's playing time, added to the URL's lifetime; 0 when unknown
+     */
+    String generatePublicUrl(String storedPath, Long userId, Long videoId, long durationMillis);
 }
\ No newline at end of file
@@ -1,11 +1,23 @@
 package global.inventory.service.storage;
 
 import global.inventory.exception.StorageException;
+import global.inventory.service.cache.DirectBufferPool;
+import global.inventory.service.cache.SegmentCache;
+import global.inventory.service.media.KeyframeIndex;
+import global.inventory.service.media.KeyframeIndexer;
+import global.inventory.service.media.MediaInfo;
+import global.inventory.service.media.MediaProbeService;
+import global.inventory.service.security.StreamUrlSigner;
+import global.inventory.service.storage.backend.ObjectStat;
+import global.inventory.service.storage.backend.StorageBackend;
+import global.inventory.service.storage.backend.StorageBackendResource;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.FileSystemUtils;
 import org.springframework.util.StringUtils;
@@ -13,26 +25,75 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @Slf4j
 @Service
 public class VideoStorageServiceImpl implements VideoStorageService {
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+    private static final Set<String> MP4_EXTENSIONS = Set.of("mp4", "m4v", "mov");
+    private static final List<String> SIDECAR_SUFFIXES =
+            List.of(KeyframeIndexer.SIDECAR_SUFFIX, MediaProbeService.SIDECAR_SUFFIX);
 
     private final Path rootLocation;
+    private final boolean hashedLayout;
     private final long maxFileSize;
+    private final DirectBufferPool bufferPool;
+    private final StoredVideoCache storedVideoCache;
+    private final SegmentCache segmentCache;
+    private final StreamUrlSigner streamUrlSigner;
+    private final Mp4FaststartRewriter faststartRewriter;
+    private final KeyframeIndexer keyframeIndexer;
+    private final MediaProbeService mediaProbeService;
+    private final ContentAddressedStore contentStore;
+    private final StorageBackend storageBackend;
 
     public VideoStorageServiceImpl(
             @Value("${app.video.storage.location}") String storageLocation,
-            @Value("${app.video.max-size:524288000}") long maxFileSize) {
+            @Value("${app.video.storage.layout:dated}") String layout,
+            @Value("${app.video.max-size:524288000}") long maxFileSize,
+            DirectBufferPool bufferPool,
+            StoredVideoCache storedVideoCache,
+            SegmentCache segmentCache,
+            StreamUrlSigner streamUrlSigner,
+            Mp4FaststartRewriter faststartRewriter,
+            KeyframeIndexer keyframeIndexer,
+            MediaProbeService mediaProbeService,
+            ContentAddressedStore contentStore,
+            StorageBackend storageBackend) {
         this.rootLocation = Paths.get(storageLocation);
+        if (!"dated".equals(layout) && !"hashed".equals(layout)) {
+            throw new IllegalStateException("Unknown storage layout: " + layout);
+        }
+        this.hashedLayout = "hashed".equals(layout);
         this.maxFileSize = maxFileSize;
+        this.bufferPool = bufferPool;
+        this.storedVideoCache = storedVideoCache;
+        this.segmentCache = segmentCache;
+        this.streamUrlSigner = streamUrlSigner;
+        this.faststartRewriter = faststartRewriter;
+        this.keyframeIndexer = keyframeIndexer;
+        this.mediaProbeService = mediaProbeService;
+        this.contentStore = contentStore;
+        this.storageBackend = storageBackend;
     }
 
     @PostConstruct
@@ -46,34 +107,167 @@ public class VideoStorageServiceImpl implements VideoStorageService {
     }
 
     @Override
-    public String store(MultipartFile file) {
+    public StoredFile store(MultipartFile file) {
         validateFile(file);
 
+        String storedPath = null;
         try {
-            String relativePath = createRelativePath();
-            Path fullPath = rootLocation.resolve(relativePath);
-            Files.createDirectories(fullPath);
+            storedPath = createStoredPath(file.getOriginalFilename());
+            Path destinationFile = workingFile(storedPath);
+            Files.createDirectories(destinationFile.getParent());
+
+            MessageDigest digest = sha256();
+            long size = copy(file.getInputStream(), destinationFile, digest);
+            return finish(storedPath, destinationFile, size, digest);
 
-            String filename = createUniqueFilename(file);
-            Path destinationFile = fullPath.resolve(filename);
+        } catch (StorageException e) {
+            discard(storedPath);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            discard(storedPath);
+            throw new StorageException("Failed to store video file", e);
+        }
+    }
 
-            Files.copy(file.getInputStream(), destinationFile, StandardCopyOption.REPLACE_EXISTING);
+    @Override
+    public StoredFile store(InputStream content, String originalFilename) {
+        validateFilename(originalFilename);
 
-            // Create and return the URL path that will be stored in the database
-            String storedPath = relativePath + "/" + filename;
-            log.info("Stored video file at: {}", storedPath);
+        String storedPath = null;
+        try {
+            storedPath = createStoredPath(originalFilename);
+            Path destinationFile = workingFile(storedPath);
+            Files.createDirectories(destinationFile.getParent());
 
-            return storedPath;
+            MessageDigest digest = sha256();
+            long size = copy(content, destinationFile, digest);
+            validateSize(size);
+            return finish(storedPath, destinationFile, size, digest);
 
-        } catch (IOException e) {
+        } catch (StorageException e) {
+            discard(storedPath);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            discard(storedPath);
             throw new StorageException("Failed to store video file", e);
         }
     }
 
+    @Override
+    public StoredFile store(Path source, String originalFilename) {
+        String storedPath = null;
+        try {
+            long size = Files.size(source);
+            validateFile(size, originalFilename);
+
+            storedPath = createStoredPath(originalFilename);
+            Path destinationFile = workingFile(storedPath);
+            Files.createDirectories(destinationFile.getParent());
+
+            // Chunks arrived out of order, so unlike the other paths the hash needs a pass of its own
+            MessageDigest digest = digest(source);
+            Files.move(source, destinationFile);
+            return finish(storedPath, destinationFile, size, digest);
+
+        } catch (StorageException e) {
+            discard(storedPath);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            // Once moved, the upload only exists here; the caller's session cleanup no longer sees it
+            discard(storedPath);
+            throw new StorageException("Failed to store video file", e);
+        }
+    }
+
+    /**
+     * Prepares the written file for streaming, then shares it with any identical earlier upload. The
+     * checksum is of the bytes as stored: a blob is named by its content, so once the faststart rewrite has
+     * moved the moov box the file is hashed again rather than trusting the digest taken while uploading.
+     */
+    private StoredFile finish(String storedPath, Path destinationFile, long size, MessageDigest digest)
+            throws IOException {
+        if (prepareMp4(destinationFile)) {
+            digest = digest(destinationFile);
+            size = Files.size(destinationFile);
+        }
+        String checksum = HexFormat.of().formatHex(digest.digest());
+        MediaInfo media = mediaProbeService.probeAndSave(destinationFile);
+        if (isLocalBackend(storedPath)) {
+            contentStore.deduplicate(rootOf(destinationFile, storedPath), destinationFile, checksum);
+        }
+
+        publish(storedPath, destinationFile);
+        log.info("Stored video file at: {} ({} bytes)", storedPath, size);
+        return new StoredFile(storedPath, size, checksum, media);
+    }
+
+    /**
+     * Copies a finished upload, its keyframe index and its media metadata to a remote backend, where every node
+     * can stream it, or to the other local disks that keep a replica. Once a remote backend holds them, the
+     * working copy is removed; this node then streams the video by range like every other node.
+     */
+    private void publish(String storedPath, Path file) throws IOException {
+        if (isLocalBackend(storedPath)) {
+            storageBackend.replicate(storedPath);
+            for (String suffix : SIDECAR_SUFFIXES) {
+                if (Files.exists(sidecar(file, suffix))) {
+                    storageBackend.replicate(storedPath + suffix);
+                }
+            }
+            return;
+        }
+        upload(storedPath, file);
+        for (String suffix : SIDECAR_SUFFIXES) {
+            Path sidecar = sidecar(file, suffix);
+            if (Files.exists(sidecar)) {
+                upload(storedPath + suffix, sidecar);
+            }
+            Files.deleteIfExists(sidecar);
+        }
+        Files.deleteIfExists(file);
+    }
+
+    private static Path sidecar(Path file, String suffix) {
+        return file.resolveSibling(file.getFileName() + suffix);
+    }
+
+    private void upload(String key, Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            storageBackend.write(key, in, Files.size(file));
+        }
+    }
+
+    private boolean isLocalBackend(String storedPath) {
+        return storageBackend.primaryFile(storedPath) != null;
+    }
+
+    /**
+     * Where this node reads and writes {@code storedPath}: the backend's file when it keeps objects on local
+     * disks, otherwise the working copy under the storage location.
+     */
+    private Path workingFile(String storedPath) {
+        Path file = storageBackend.primaryFile(storedPath);
+        return file != null ? file : rootLocation.resolve(storedPath);
+    }
+
+    /**
+     * The storage root {@code file} was resolved against, which differs per disk when objects are sharded.
+     */
+    private static Path rootOf(Path file, String storedPath) {
+        Path root = file;
+        for (int i = Paths.get(storedPath).getNameCount(); i > 0; i--) {
+            root = root.getParent();
+        }
+        return root;
+    }
+
     @Override
     public Resource loadAsResource(String storedPath) {
         try {
-            Path file = rootLocation.resolve(storedPath);
+            Path file = workingFile(storedPath);
+            if (!Files.exists(file) && !isLocalBackend(storedPath)) {
+                return new StorageBackendResource(storageBackend, storedPath);
+            }
             Resource resource = new UrlResource(file.toUri());
 
             if (resource.exists() || resource.isReadable()) {
@@ -87,20 +281,49 @@ public class VideoStorageServiceImpl implements VideoStorageService {
         }
     }
 
+    @Override
+    public StoredVideo loadVideo(String storedPath) {
+        try {
+            return storedVideoCache.get(storedPath, this::readVideo);
+        } catch (NoSuchFileException e) {
+            throw new StorageException("Could not read file: " + storedPath);
+        } catch (IOException e) {
+            throw new StorageException("Could not read file: " + storedPath, e);
+        }
+    }
+
     @Override
     public void delete(String storedPath) {
+        storedVideoCache.invalidate(storedPath);
+        segmentCache.invalidate(storedPath);
         try {
-            Path file = rootLocation.resolve(storedPath);
-            FileSystemUtils.deleteRecursively(file);
-
-            // Try to clean up empty parent directories
-            Path parent = file.getParent();
-            while (parent != null && !parent.equals(rootLocation)) {
-                if (isDirEmptyOrNotExists(parent)) {
-                    Files.deleteIfExists(parent);
-                    parent = parent.getParent();
-                } else {
-                    break;
+            List<Path> copies = storageBackend.localCopies(storedPath);
+            if (copies.isEmpty()) {
+                copies = List.of(rootLocation.resolve(storedPath));
+            }
+            for (Path file : copies) {
+                Path root = rootOf(file, storedPath);
+                FileSystemUtils.deleteRecursively(file);
+                for (String suffix : SIDECAR_SUFFIXES) {
+                    Files.deleteIfExists(sidecar(file, suffix));
+                }
+                contentStore.release(root, file);
+
+                // Try to clean up empty parent directories
+                Path parent = file.getParent();
+                while (parent != null && !parent.equals(root)) {
+                    if (isDirEmptyOrNotExists(parent)) {
+                        Files.deleteIfExists(parent);
+                        parent = parent.getParent();
+                    } else {
+                        break;
+                    }
+                }
+            }
+            if (!isLocalBackend(storedPath)) {
+                storageBackend.delete(storedPath);
+                for (String suffix : SIDECAR_SUFFIXES) {
+                    storageBackend.delete(storedPath + suffix);
                 }
             }
 
@@ -118,23 +341,204 @@ public class VideoStorageServiceImpl implements VideoStorageService {
                 .toUriString();
     }
 
+    @Override
+    public String generatePublicUrl(String storedPath, Long userId, Long videoId, long durationMillis) {
+        return ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/uploads/")
+                .path(storedPath)
+                .query(streamUrlSigner.sign(storedPath, userId, videoId, durationMillis))
+                .toUriString();
+    }
+
+    /**
+     * @return whether the faststart rewrite changed the file
+     */
+    private boolean prepareMp4(Path destinationFile) {
+        if (!isMp4(destinationFile)) {
+            return false;
+        }
+        boolean rewritten = false;
+        try {
+            rewritten = faststartRewriter.rewrite(destinationFile);
+        } catch (IOException | RuntimeException e) {
+            // The original upload is still intact and playable, just slower to start
+            log.warn("Could not move moov box to the front of {}", destinationFile, e);
+        }
+        try {
+            // Offsets refer to the final layout, so this has to come after the faststart rewrite
+            keyframeIndexer.index(destinationFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not build keyframe index of {}", destinationFile, e);
+            deleteQuietly(KeyframeIndexer.sidecar(destinationFile));
+        }
+        return rewritten;
+    }
+
+    private static boolean isMp4(Path file) {
+        String extension = StringUtils.getFilenameExtension(file.getFileName().toString());
+        return extension != null && MP4_EXTENSIONS.contains(extension.toLowerCase());
+    }
+
+    /**
+     * Caches every local copy, so each stream can pick the least-loaded one rather than the copy that happened
+     * to be least loaded when the video was first read.
+     */
+    private StoredVideo readVideo(String storedPath) throws IOException {
+        List<Path> copies = storageBackend.readableCopies(storedPath);
+        Path file = copies.isEmpty() ? workingFile(storedPath) : copies.get(0);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            if (isLocalBackend(storedPath)) {
+                throw e;
+            }
+            return readRemoteVideo(storedPath, file);
+        }
+        if (!attributes.isRegularFile()) {
+            throw new NoSuchFileException(storedPath);
+        }
+        return new StoredVideo(storedPath, copies.isEmpty() ? List.of(file) : copies, storageBackend,
+                attributes.size(), attributes.lastModifiedTime().toMillis(), contentType(file),
+                isMp4(file) ? keyframeIndexer.load(file) : KeyframeIndex.EMPTY,
+                mediaProbeService.load(file));
+    }
+
+    /**
+     * A video uploaded through another node. Its ranges are fetched from the backend on demand; the metadata
+     * comes from the sidecar the uploading node published, without which the bitrate stays unknown and the
+     * stream is not paced.
+     */
+    private StoredVideo readRemoteVideo(String storedPath, Path file) throws IOException {
+        ObjectStat stat = storageBackend.stat(storedPath);
+        return new StoredVideo(storedPath, storageBackend, stat.size(), stat.lastModified(), contentType(file),
+                isMp4(file) ? readRemoteKeyframeIndex(storedPath) : KeyframeIndex.EMPTY,
+                readRemoteMedia(storedPath));
+    }
+
+    private MediaInfo readRemoteMedia(String storedPath) {
+        String key = storedPath + MediaProbeService.SIDECAR_SUFFIX;
+        try {
+            ObjectStat stat = storageBackend.stat(key);
+            try (InputStream in = storageBackend.read(key, 0, stat.size())) {
+                return MediaInfo.read(in, stat.size(), key);
+            }
+        } catch (NoSuchFileException e) {
+            return MediaInfo.UNKNOWN;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read media metadata of {}", storedPath, e);
+            return MediaInfo.UNKNOWN;
+        }
+    }
+
+    private KeyframeIndex readRemoteKeyframeIndex(String storedPath) {
+        String key = storedPath + KeyframeIndexer.SIDECAR_SUFFIX;
+        try {
+            ObjectStat stat = storageBackend.stat(key);
+            try (InputStream in = storageBackend.read(key, 0, stat.size())) {
+                return KeyframeIndex.read(in, stat.size(), key);
+            }
+        } catch (NoSuchFileException e) {
+            return KeyframeIndex.EMPTY;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read keyframe index of {}", storedPath, e);
+            return KeyframeIndex.EMPTY;
+        }
+    }
+
+    private static String contentType(Path file) {
+        return MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .map(MediaType::toString)
+                .orElse("video/mp4");
+    }
+
+    /**
+     * @return bytes written; stops with a {@link StorageException} as soon as the limit is passed
+     */
+    private long copy(InputStream source, Path destination, MessageDigest digest) throws IOException {
+        long size = 0;
+        try (ReadableByteChannel in = Channels.newChannel(source);
+             FileChannel out = FileChannel.open(destination, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DirectBufferPool.PooledBuffer pooled = bufferPool.acquire(COPY_BUFFER_SIZE)) {
+            ByteBuffer buffer = pooled.buffer();
+            int read;
+            while ((read = in.read(buffer)) >= 0 || buffer.position() > 0) {
+                size += Math.max(read, 0);
+                if (size > maxFileSize) {
+                    throw new StorageException(String.format("File size exceeds maximum limit of %d bytes",
+                            maxFileSize));
+                }
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                out.write(buffer);
+                buffer.compact();
+            }
+        }
+        return size;
+    }
+
+    private MessageDigest digest(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+             DirectBufferPool.PooledBuffer pooled = bufferPool.acquire(COPY_BUFFER_SIZE)) {
+            ByteBuffer buffer = pooled.buffer();
+            while (in.read(buffer) >= 0) {
+                digest.update(buffer.flip());
+                buffer.clear();
+            }
+        }
+        return digest;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private void validateFile(MultipartFile file) {
-        if (file.isEmpty()) {
+        validateFile(file.getSize(), file.getOriginalFilename());
+    }
+
+    private void validateFile(long size, String originalFilename) {
+        validateSize(size);
+        validateFilename(originalFilename);
+    }
+
+    private void validateSize(long size) {
+        if (size == 0) {
             throw new StorageException("Cannot store empty file");
         }
 
-        if (file.getSize() > maxFileSize) {
+        if (size > maxFileSize) {
             throw new StorageException(String.format("File size %d exceeds maximum limit of %d bytes",
-                    file.getSize(), maxFileSize));
+                    size, maxFileSize));
         }
+    }
 
-        String filename = StringUtils.cleanPath(file.getOriginalFilename() != null ? file.getOriginalFilename() : "");
+    private void validateFilename(String originalFilename) {
+        String filename = StringUtils.cleanPath(originalFilename != null ? originalFilename : "");
         if (filename.contains("..")) {
             throw new StorageException("Cannot store file with relative path outside current directory");
         }
     }
 
-    private String createRelativePath() {
+    private String createStoredPath(String originalFilename) {
+        String filename = createUniqueFilename(originalFilename);
+        return createRelativePath(filename) + "/" + filename;
+    }
+
+    /**
+     * The dated layout puts a whole day's uploads in one directory; the hashed one fans them out over 65536
+     * directories named by the first four hex digits of the random file name.
+     */
+    private String createRelativePath(String filename) {
+        if (hashedLayout) {
+            return filename.substring(0, 2) + "/" + filename.substring(2, 4);
+        }
         LocalDateTime now = LocalDateTime.now();
         return String.format("%d/%02d/%02d",
                 now.getYear(),
@@ -142,15 +546,40 @@ public class VideoStorageServiceImpl implements VideoStorageService {
                 now.getDayOfMonth());
     }
 
-    private String createUniqueFilename(MultipartFile file) {
-        String originalFilename = StringUtils.cleanPath(
-                file.getOriginalFilename() != null ? file.getOriginalFilename() : "");
-        String extension = StringUtils.getFilenameExtension(originalFilename);
+    private String createUniqueFilename(String originalFilename) {
+        String extension = StringUtils.getFilenameExtension(
+                StringUtils.cleanPath(originalFilename != null ? originalFilename : ""));
         String baseFilename = UUID.randomUUID().toString();
 
         return extension != null ? baseFilename + "." + extension : baseFilename;
     }
 
+    /**
+     * Removes everything a failed upload left behind: its file and sidecars on every disk it reached, its
+     * reference to a shared blob, and whatever was already published to a remote backend.
+     */
+    private void discard(String storedPath) {
+        if (storedPath == null) {
+            return;
+        }
+        try {
+            delete(storedPath);
+        } catch (StorageException e) {
+            log.warn("Could not clean up failed upload {}", storedPath, e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}", file, e);
+        }
+    }
+
     private boolean isDirEmptyOrNotExists(Path path) throws IOException {
         if (Files.exists(path)) {
             try (var entries = Files.list(path)) {
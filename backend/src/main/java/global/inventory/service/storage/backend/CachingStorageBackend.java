@@ -0,0 +1,48 @@
+package global.inventory.service.storage.backend;
+
+import global.inventory.service.cache.DiskChunkCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * A remote backend with a {@link DiskChunkCache} in front of its reads, so ranges already on local disk do not
+ * cost a round trip. Writes and deletes go straight through and drop whatever the cache held for the key.
+ */
+public class CachingStorageBackend implements StorageBackend {
+    private final StorageBackend origin;
+    private final DiskChunkCache cache;
+
+    public CachingStorageBackend(StorageBackend origin, DiskChunkCache cache) {
+        this.origin = origin;
+        this.cache = cache;
+    }
+
+    @Override
+    public ObjectStat stat(String key) throws IOException {
+        return origin.stat(key);
+    }
+
+    @Override
+    public InputStream read(String key, long offset, long length) throws IOException {
+        return cache.read(origin, key, offset, length);
+    }
+
+    @Override
+    public void write(String key, InputStream content, long length) throws IOException {
+        cache.invalidate(key);
+        origin.write(key, content, length);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        cache.invalidate(key);
+        origin.delete(key);
+    }
+
+    @Override
+    public Path localFile(String key) {
+        return null;
+    }
+}
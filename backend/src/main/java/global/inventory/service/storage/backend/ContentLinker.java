@@ -0,0 +1,35 @@
+package global.inventory.service.storage.backend;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Lets a backend that keeps files on several local disks place a copy without duplicating content the target
+ * disk already holds.
+ */
+public interface ContentLinker {
+    ContentLinker NONE = new ContentLinker() {
+        @Override
+        public boolean link(Path source, Path root, Path target) {
+            return false;
+        }
+
+        @Override
+        public void copied(Path source, Path root, Path target) {
+        }
+    };
+
+    /**
+     * Creates {@code target} on the disk at {@code root} from content identical to {@code source} that is
+     * already there.
+     *
+     * @return whether {@code target} was created; if not, the caller copies the bytes
+     */
+    boolean link(Path source, Path root, Path target) throws IOException;
+
+    /**
+     * Called once {@code source} has been copied to {@code target} byte for byte, so later copies of the same
+     * content to that disk can link to it.
+     */
+    void copied(Path source, Path root, Path target) throws IOException;
+}
@@ -0,0 +1,102 @@
+package global.inventory.service.storage.backend;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Objects as files under one root directory, the layout the application has always used.
+ */
+public class FileSystemStorageBackend implements StorageBackend {
+    private final Path root;
+
+    public FileSystemStorageBackend(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public ObjectStat stat(String key) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(localFile(key), BasicFileAttributes.class);
+        return new ObjectStat(attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    @Override
+    public InputStream read(String key, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(localFile(key), StandardOpenOption.READ);
+        channel.position(offset);
+        return new LimitedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public void write(String key, InputStream content, long length) throws IOException {
+        Path file = localFile(key);
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), ".write-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                long copied = new LimitedInputStream(content, length).transferTo(out);
+                if (copied != length) {
+                    throw new IOException("Expected " + length + " bytes for " + key + " but got " + copied);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(localFile(key));
+    }
+
+    @Override
+    public Path localFile(String key) {
+        Path file = root.resolve(key).normalize();
+        if (!file.startsWith(root) || file.equals(root)) {
+            throw new IllegalArgumentException("Key outside storage root: " + key);
+        }
+        return file;
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read();
+            if (read >= 0) {
+                remaining--;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
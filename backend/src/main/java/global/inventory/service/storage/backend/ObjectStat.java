@@ -0,0 +1,7 @@
+package global.inventory.service.storage.backend;
+
+/**
+ * Size and last modification time (epoch millis) of a stored object.
+ */
+public record ObjectStat(long size, long lastModified) {
+}
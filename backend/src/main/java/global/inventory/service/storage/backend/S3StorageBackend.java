@@ -0,0 +1,134 @@
+package global.inventory.service.storage.backend;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+/**
+ * Objects in an S3-compatible bucket, addressed path-style ({@code <endpoint>/<bucket>/<key>}) so it also
+ * works against MinIO and similar servers. One shared {@link HttpClient} keeps idle connections alive and reuses
+ * them across requests. Ranged reads return the response body as it arrives, without buffering the range.
+ */
+@Slf4j
+public class S3StorageBackend implements StorageBackend {
+    private final HttpClient client;
+    private final String bucketUri;
+    private final S3RequestSigner signer;
+    private final Duration timeout;
+
+    public S3StorageBackend(URI endpoint, String bucket, S3RequestSigner signer, Duration timeout) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        String base = endpoint.toString();
+        this.bucketUri = (base.endsWith("/") ? base : base + "/") + bucket + "/";
+        this.signer = signer;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public ObjectStat stat(String key) throws IOException {
+        HttpResponse<Void> response = send("HEAD", key, Map.of(), S3RequestSigner.EMPTY_PAYLOAD,
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+        check(response, "HEAD", key, 200);
+        long size = response.headers().firstValueAsLong("Content-Length")
+                .orElseThrow(() -> new IOException("No Content-Length for " + key));
+        long lastModified = response.headers().firstValue("Last-Modified")
+                .map(S3StorageBackend::parseHttpDate)
+                .orElse(0L);
+        return new ObjectStat(size, lastModified);
+    }
+
+    @Override
+    public InputStream read(String key, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+        String range = "bytes=" + offset + "-" + (offset + length - 1);
+        HttpResponse<InputStream> response = send("GET", key, Map.of("Range", range),
+                S3RequestSigner.EMPTY_PAYLOAD, HttpRequest.BodyPublishers.noBody(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        // A server that ignores Range answers 200 with the whole object, which is only usable from the start
+        int status = response.statusCode();
+        if (status != 206 && !(status == 200 && offset == 0)) {
+            response.body().close();
+            check(response, "GET", key, 206);
+        }
+        return response.body();
+    }
+
+    @Override
+    public void write(String key, InputStream content, long length) throws IOException {
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(
+                HttpRequest.BodyPublishers.ofInputStream(() -> content), length);
+        HttpResponse<Void> response = send("PUT", key, Map.of(), S3RequestSigner.UNSIGNED_PAYLOAD, body,
+                HttpResponse.BodyHandlers.discarding());
+        check(response, "PUT", key, 200);
+        log.debug("Wrote {} bytes to {}{}", length, bucketUri, key);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpResponse<Void> response = send("DELETE", key, Map.of(), S3RequestSigner.EMPTY_PAYLOAD,
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 404) {
+            check(response, "DELETE", key, 204);
+        }
+    }
+
+    @Override
+    public Path localFile(String key) {
+        return null;
+    }
+
+    private <T> HttpResponse<T> send(String method, String key, Map<String, String> headers, String payloadHash,
+                                     HttpRequest.BodyPublisher body, HttpResponse.BodyHandler<T> handler)
+            throws IOException {
+        URI uri = URI.create(bucketUri + S3RequestSigner.encodeKey(key));
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .method(method, body);
+        signer.sign(method, uri, headers, payloadHash, Instant.now()).forEach(request::header);
+        try {
+            return client.send(request.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(method + " " + key + " interrupted");
+        }
+    }
+
+    private static void check(HttpResponse<?> response, String method, String key, int expected)
+            throws IOException {
+        int status = response.statusCode();
+        if (status == expected || (expected == 204 && status == 200)) {
+            return;
+        }
+        if (status == 404) {
+            throw new NoSuchFileException(key);
+        }
+        throw new IOException(method + " " + key + " failed with status " + status);
+    }
+
+    private static long parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package global.inventory.service.storage.backend;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.UnaryOperator;
+
+/**
+ * Objects spread over several local disks by consistent hashing. Every disk owns a fixed number of points on
+ * a hash ring and an object lives on the first {@code replicas} distinct disks clockwise of its key, so adding
+ * a disk only moves the objects that now hash to it. Sidecars such as {@code <file>.kfi} hash like
+ * the file they belong to and stay next to it. Lookups check the disks an object hashes to and only search the
+ * others, and the single storage location used before disks were configured, when none of those has it.
+ * <p>
+ * Reads go to the copy on the least-loaded disk: the one with the fewest reads in flight, counting both ranged
+ * {@link #read} calls and streams registered through {@link #beginRead(Path)}, then the one handed out least
+ * often lately. Callers that keep the copies of a video pick one per stream through {@link #select(List)}, so a
+ * popular video spreads across its replicas however long its metadata stays cached. Copies made to
+ * replicate or move a file go through a {@link ContentLinker}, so deduplicated content stays shared on every disk.
+ */
+public class ShardedStorageBackend implements StorageBackend {
+    private static final int VIRTUAL_NODES = 128;
+    private static final int DECAY_INTERVAL = 4096;
+
+    private final List<Path> roots;
+    private final int ringDisks;
+    private final List<FileSystemStorageBackend> disks;
+    private final int replicas;
+    private final ContentLinker linker;
+    private final NavigableMap<Long, Integer> ring = new TreeMap<>();
+    private final AtomicIntegerArray activeReads;
+    private final AtomicLongArray selections;
+    private final AtomicLong selectionCount = new AtomicLong();
+    private final Comparator<Integer> byLoad;
+
+    public ShardedStorageBackend(List<Path> roots, int replicas) {
+        this(roots, replicas, ContentLinker.NONE);
+    }
+
+    public ShardedStorageBackend(List<Path> roots, int replicas, ContentLinker linker) {
+        this(roots, null, replicas, linker);
+    }
+
+    /**
+     * @param legacyRoot the storage location used before disks were configured, or {@code null}; files still
+     *                   there stay readable until the rebalancer has moved them onto the disks
+     */
+    public ShardedStorageBackend(List<Path> roots, Path legacyRoot, int replicas, ContentLinker linker) {
+        if (roots.isEmpty()) {
+            throw new IllegalArgumentException("At least one storage disk is required");
+        }
+        if (replicas < 1 || replicas > roots.size()) {
+            throw new IllegalArgumentException("Replicas must be between 1 and the number of disks, got " + replicas);
+        }
+        List<Path> mounts = roots.stream().map(root -> root.toAbsolutePath().normalize()).toList();
+        if (mounts.stream().distinct().count() != mounts.size()) {
+            throw new IllegalArgumentException("Storage disks must be distinct: " + roots);
+        }
+        List<Path> all = new ArrayList<>(mounts);
+        Path legacy = legacyRoot != null ? legacyRoot.toAbsolutePath().normalize() : null;
+        // A disk inside the legacy location, or the other way round, would show one file under two keys
+        if (legacy != null && mounts.stream().noneMatch(root -> root.startsWith(legacy) || legacy.startsWith(root))) {
+            all.add(legacy);
+        }
+        this.roots = List.copyOf(all);
+        this.ringDisks = mounts.size();
+        this.disks = this.roots.stream().map(FileSystemStorageBackend::new).toList();
+        this.replicas = replicas;
+        this.linker = linker;
+        for (int disk = 0; disk < ringDisks; disk++) {
+            // Points derive from the mount path, so they stay put when other disks come and go
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.putIfAbsent(hash(this.roots.get(disk) + "#" + i), disk);
+            }
+        }
+        this.activeReads = new AtomicIntegerArray(this.roots.size());
+        this.selections = new AtomicLongArray(this.roots.size());
+        this.byLoad = Comparator.<Integer>comparingInt(activeReads::get).thenComparingLong(selections::get);
+    }
+
+    /**
+     * The disks, then the legacy storage location when it is configured apart from them.
+     */
+    public List<Path> roots() {
+        return roots;
+    }
+
+    /**
+     * The files that should hold {@code key}, primary first.
+     */
+    public List<Path> placement(String key) {
+        return placementDisks(key).stream().map(disk -> disks.get(disk).localFile(key)).toList();
+    }
+
+    @Override
+    public ObjectStat stat(String key) throws IOException {
+        List<Integer> copies = copies(key);
+        if (copies.isEmpty()) {
+            throw new NoSuchFileException(key);
+        }
+        return disks.get(copies.get(0)).stat(key);
+    }
+
+    @Override
+    public InputStream read(String key, long offset, long length) throws IOException {
+        List<Integer> copies = copies(key);
+        if (copies.isEmpty()) {
+            throw new NoSuchFileException(key);
+        }
+        int disk = leastLoaded(copies);
+        activeReads.incrementAndGet(disk);
+        try {
+            return new TrackedInputStream(disks.get(disk).read(key, offset, length), disk);
+        } catch (IOException | RuntimeException e) {
+            activeReads.decrementAndGet(disk);
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(String key, InputStream content, long length) throws IOException {
+        disks.get(placementDisks(key).get(0)).write(key, content, length);
+        replicate(key);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        for (FileSystemStorageBackend disk : disks) {
+            disk.delete(key);
+        }
+    }
+
+    /**
+     * The least-loaded copy of {@code key}, or where its primary copy belongs when there is none yet.
+     */
+    @Override
+    public Path localFile(String key) {
+        List<Integer> copies = copies(key);
+        int disk = copies.isEmpty() ? placementDisks(key).get(0) : leastLoaded(copies);
+        return disks.get(disk).localFile(key);
+    }
+
+    /**
+     * The primary copy of {@code key}, or where it belongs when there is none yet.
+     */
+    @Override
+    public Path primaryFile(String key) {
+        List<Integer> copies = copies(key);
+        return disks.get(copies.isEmpty() ? placementDisks(key).get(0) : copies.get(0)).localFile(key);
+    }
+
+    /**
+     * The copy on the least-loaded disk, so streams of one cached video still spread across its replicas.
+     */
+    @Override
+    public Path select(List<Path> files) {
+        if (files.size() == 1) {
+            return files.get(0);
+        }
+        List<Integer> candidates = files.stream().map(this::diskOf).toList();
+        if (candidates.contains(-1)) {
+            return files.get(0);
+        }
+        return files.get(candidates.indexOf(leastLoaded(candidates)));
+    }
+
+    @Override
+    public Runnable beginRead(Path file) {
+        int disk = diskOf(file);
+        if (disk < 0) {
+            return () -> {
+            };
+        }
+        AtomicBoolean ended = new AtomicBoolean();
+        activeReads.incrementAndGet(disk);
+        return () -> {
+            if (ended.compareAndSet(false, true)) {
+                activeReads.decrementAndGet(disk);
+            }
+        };
+    }
+
+    private int diskOf(Path file) {
+        for (int disk = 0; disk < roots.size(); disk++) {
+            if (file.startsWith(roots.get(disk))) {
+                return disk;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public List<Path> localCopies(String key) {
+        return allCopies(key).stream().map(disk -> disks.get(disk).localFile(key)).toList();
+    }
+
+    @Override
+    public List<Path> readableCopies(String key) {
+        return copies(key).stream().map(disk -> disks.get(disk).localFile(key)).toList();
+    }
+
+    @Override
+    public void replicate(String key) throws IOException {
+        copyMissing(key, UnaryOperator.identity());
+    }
+
+    /**
+     * Brings {@code key} to the disks it hashes to, copying through {@code pacing}, and then drops the copies
+     * on any other disk. The file stays readable throughout: new copies appear atomically before old ones go.
+     *
+     * @return whether any copy was added or removed
+     */
+    public boolean relocate(String key, UnaryOperator<InputStream> pacing) throws IOException {
+        boolean changed = copyMissing(key, pacing) > 0;
+        List<Integer> placement = placementDisks(key);
+        for (int disk : allCopies(key)) {
+            if (!placement.contains(disk)) {
+                Path file = disks.get(disk).localFile(key);
+                Files.deleteIfExists(file);
+                deleteEmptyParents(file, roots.get(disk));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return the number of copies added, whether linked or copied
+     */
+    private int copyMissing(String key, UnaryOperator<InputStream> pacing) throws IOException {
+        List<Integer> copies = copies(key);
+        if (copies.isEmpty()) {
+            throw new NoSuchFileException(key);
+        }
+        Path source = disks.get(copies.get(0)).localFile(key);
+        long size = Files.size(source);
+        int added = 0;
+        for (int disk : placementDisks(key)) {
+            if (copies.contains(disk)) {
+                continue;
+            }
+            Path target = disks.get(disk).localFile(key);
+            if (!linker.link(source, roots.get(disk), target)) {
+                try (InputStream in = pacing.apply(Files.newInputStream(source))) {
+                    disks.get(disk).write(key, in, size);
+                }
+                linker.copied(source, roots.get(disk), target);
+            }
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Disks holding {@code key} among those it hashes to, in ring order, or the ones it has yet to move off when
+     * none of those has it. Once the rebalancer has run, a lookup costs one check per replica however many
+     * disks there are.
+     */
+    private List<Integer> copies(String key) {
+        List<Integer> placement = placementDisks(key);
+        List<Integer> copies = placed(key, placement);
+        return copies.isEmpty() ? strays(key, placement) : copies;
+    }
+
+    /**
+     * Every disk holding {@code key}: those it hashes to first, in ring order, then any it has yet to move off.
+     */
+    private List<Integer> allCopies(String key) {
+        List<Integer> placement = placementDisks(key);
+        List<Integer> copies = placed(key, placement);
+        copies.addAll(strays(key, placement));
+        return copies;
+    }
+
+    private List<Integer> placed(String key, List<Integer> placement) {
+        List<Integer> copies = new ArrayList<>(placement.size());
+        for (int disk : placement) {
+            if (Files.isRegularFile(disks.get(disk).localFile(key))) {
+                copies.add(disk);
+            }
+        }
+        return copies;
+    }
+
+    private List<Integer> strays(String key, List<Integer> placement) {
+        List<Integer> copies = new ArrayList<>();
+        for (int disk = 0; disk < disks.size(); disk++) {
+            if (!placement.contains(disk) && Files.isRegularFile(disks.get(disk).localFile(key))) {
+                copies.add(disk);
+            }
+        }
+        return copies;
+    }
+
+    private List<Integer> placementDisks(String key) {
+        long hash = hash(placementKey(key));
+        List<Integer> placement = new ArrayList<>(replicas);
+        collect(ring.tailMap(hash, true).values(), placement);
+        collect(ring.headMap(hash, false).values(), placement);
+        return placement;
+    }
+
+    private void collect(Iterable<Integer> points, List<Integer> placement) {
+        for (Integer disk : points) {
+            if (placement.size() == replicas) {
+                return;
+            }
+            if (!placement.contains(disk)) {
+                placement.add(disk);
+            }
+        }
+    }
+
+    private int leastLoaded(List<Integer> candidates) {
+        int disk = candidates.stream().min(byLoad).orElseThrow();
+        selections.incrementAndGet(disk);
+        if (selectionCount.incrementAndGet() % DECAY_INTERVAL == 0) {
+            // Halving keeps the history recent, so a disk that was busy an hour ago is not avoided forever
+            for (int i = 0; i < selections.length(); i++) {
+                selections.updateAndGet(i, count -> count / 2);
+            }
+        }
+        return disk;
+    }
+
+    /**
+     * The key up to the first dot of its file name, which it shares with its sidecars.
+     */
+    static String placementKey(String key) {
+        int name = key.lastIndexOf('/') + 1;
+        int dot = key.indexOf('.', name);
+        return dot > name ? key.substring(0, dot) : key;
+    }
+
+    private static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteEmptyParents(Path file, Path root) throws IOException {
+        Path parent = file.getParent();
+        while (parent != null && parent.startsWith(root) && !parent.equals(root)) {
+            try {
+                if (!Files.deleteIfExists(parent)) {
+                    return;
+                }
+            } catch (DirectoryNotEmptyException e) {
+                return;
+            }
+            parent = parent.getParent();
+        }
+    }
+
+    private final class TrackedInputStream extends FilterInputStream {
+        private final int disk;
+        private boolean closed;
+
+        private TrackedInputStream(InputStream in, int disk) {
+            super(in);
+            this.disk = disk;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                activeReads.decrementAndGet(disk);
+            }
+            super.close();
+        }
+    }
+}
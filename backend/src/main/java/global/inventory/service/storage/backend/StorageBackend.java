@@ -0,0 +1,89 @@
+package global.inventory.service.storage.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Where stored videos live, addressed by their stored path. Reads are ranged so a player's range request
+ * turns into exactly one backend read, and writes stream, so neither side buffers a whole object.
+ */
+public interface StorageBackend {
+    /**
+     * @throws java.nio.file.NoSuchFileException when there is no object under {@code key}
+     */
+    ObjectStat stat(String key) throws IOException;
+
+    /**
+     * Streams {@code length} bytes starting at {@code offset}. Closing the stream early is allowed and ends
+     * the read.
+     */
+    InputStream read(String key, long offset, long length) throws IOException;
+
+    /**
+     * Streams {@code length} bytes of {@code content} into {@code key}, replacing any object already there.
+     */
+    void write(String key, InputStream content, long length) throws IOException;
+
+    /**
+     * Removes the object; a missing object is not an error.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * The file behind {@code key} when objects are on this node's file system, so it can be memory mapped or
+     * handed to sendfile; {@code null} for remote backends.
+     */
+    Path localFile(String key);
+
+    /**
+     * The file behind {@code key} for callers that do not stream it, e.g. to check where it lives or to write it.
+     * Unlike {@link #localFile(String)}, the lookup never counts towards the load of a copy.
+     */
+    default Path primaryFile(String key) {
+        return localFile(key);
+    }
+
+    /**
+     * The copies a stream of {@code key} may read, primary first. Unlike {@link #localCopies(String)}, a backend
+     * may leave out copies it is about to drop, which keeps the lookup cheap.
+     */
+    default List<Path> readableCopies(String key) {
+        return localCopies(key);
+    }
+
+    /**
+     * Picks which of {@code files}, copies of one object from {@link #readableCopies(String)}, a new stream should
+     * read. Backends with a single copy take the first.
+     */
+    default Path select(List<Path> files) {
+        return files.get(0);
+    }
+
+    /**
+     * Counts a stream of a file returned by {@link #localFile(String)} or {@link #select(List)} towards its disk's
+     * load until the returned callback runs, so backends with several copies can steer new readers to less busy
+     * disks.
+     */
+    default Runnable beginRead(Path file) {
+        return () -> {
+        };
+    }
+
+    /**
+     * Every file on this node holding {@code key}, e.g. one per replica; empty for remote backends.
+     */
+    default List<Path> localCopies(String key) {
+        Path file = localFile(key);
+        return file != null && Files.exists(file) ? List.of(file) : List.of();
+    }
+
+    /**
+     * Copies a file written in place at {@link #localFile(String)} to wherever else the backend keeps
+     * {@code key}. Backends that keep a single copy have nothing to do.
+     */
+    default void replicate(String key) throws IOException {
+    }
+}
@@ -0,0 +1,69 @@
+package global.inventory.service.storage.backend;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * A stored object exposed as a {@link org.springframework.core.io.Resource}; its content is streamed from the
+ * backend each time it is opened.
+ */
+public class StorageBackendResource extends AbstractResource {
+    private final StorageBackend backend;
+    private final String key;
+    private ObjectStat stat;
+
+    public StorageBackendResource(StorageBackend backend, String key) {
+        this.backend = backend;
+        this.key = key;
+    }
+
+    @Override
+    public boolean exists() {
+        try {
+            stat();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return stat().size();
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        return stat().lastModified();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return backend.read(key, 0, stat().size());
+    }
+
+    @Override
+    public String getFilename() {
+        return key.substring(key.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Stored object [" + key + "]";
+    }
+
+    private synchronized ObjectStat stat() throws IOException {
+        if (stat == null) {
+            try {
+                stat = backend.stat(key);
+            } catch (NoSuchFileException e) {
+                throw new FileNotFoundException(getDescription() + " does not exist");
+            }
+        }
+        return stat;
+    }
+}
@@ -0,0 +1,201 @@
+package global.inventory.service.streaming;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Pumps one byte range from an {@link AsynchronousFileChannel} into a non-blocking servlet output stream.
+ * File reads complete on the I/O pool and socket writes resume from {@link #onWritePossible()}, so no
+ * thread is parked while the client drains its buffer. When the stream is paced, the pump pauses and a
+ * scheduler resumes it instead of a thread sleeping. All state changes happen under the instance lock.
+ */
+@Slf4j
+class AsyncRangeTransfer implements WriteListener, AsyncListener, CompletionHandler<Integer, Void> {
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream out;
+    private final AsynchronousFileChannel channel;
+    private final String path;
+    private final byte[] buffer;
+    private final ByteBuffer readBuffer;
+    private final BandwidthScheduler.Pacer pacer;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<AsyncRangeTransfer> onFinished;
+
+    private long position;
+    private long remaining;
+    private int pendingLength;
+    private boolean reading;
+    private boolean finished;
+    private boolean paused;
+    private long bytesWritten;
+    private volatile long lastProgressNanos = System.nanoTime();
+
+    AsyncRangeTransfer(AsyncContext asyncContext, ServletOutputStream out, AsynchronousFileChannel channel,
+                       String path, long start, long length, int bufferSize,
+                       BandwidthScheduler.Pacer pacer, ScheduledExecutorService scheduler,
+                       Consumer<AsyncRangeTransfer> onFinished) {
+        this.asyncContext = asyncContext;
+        this.out = out;
+        this.channel = channel;
+        this.path = path;
+        this.position = start;
+        this.remaining = length;
+        this.buffer = new byte[(int) Math.min(bufferSize, Math.max(length, 1))];
+        this.readBuffer = ByteBuffer.wrap(buffer);
+        this.pacer = pacer;
+        this.scheduler = scheduler;
+        this.onFinished = onFinished;
+    }
+
+    void start() {
+        asyncContext.addListener(this);
+        out.setWriteListener(this);
+    }
+
+    long getLastProgressNanos() {
+        return lastProgressNanos;
+    }
+
+    synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public synchronized void onWritePossible() throws IOException {
+        pump();
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+        log.debug("Client disconnected while streaming video: {}", path);
+        finish();
+    }
+
+    @Override
+    public synchronized void completed(Integer read, Void attachment) {
+        reading = false;
+        if (finished) {
+            return;
+        }
+        if (read == null || read <= 0) {
+            failed(new EOFException("Unexpected end of file"), attachment);
+            return;
+        }
+        pendingLength = read;
+        position += read;
+        remaining -= read;
+        lastProgressNanos = System.nanoTime();
+        try {
+            pump();
+        } catch (IOException e) {
+            log.debug("Client disconnected while streaming video: {}", path);
+            finish();
+        }
+    }
+
+    @Override
+    public synchronized void failed(Throwable exc, Void attachment) {
+        reading = false;
+        log.error("Error streaming video: {}", path, exc);
+        finish();
+    }
+
+    synchronized void abort() {
+        log.debug("Aborting stalled stream: {}", path);
+        finish();
+    }
+
+    private synchronized void resume() {
+        paused = false;
+        lastProgressNanos = System.nanoTime();
+        try {
+            pump();
+        } catch (IOException e) {
+            log.debug("Client disconnected while streaming video: {}", path);
+            finish();
+        }
+    }
+
+    private void pump() throws IOException {
+        while (!finished && !paused) {
+            if (pendingLength > 0) {
+                if (!out.isReady()) {
+                    return;
+                }
+                out.write(buffer, 0, pendingLength);
+                bytesWritten += pendingLength;
+                long delay = pacer.reserve(pendingLength);
+                pendingLength = 0;
+                lastProgressNanos = System.nanoTime();
+                if (delay > 0 && remaining > 0) {
+                    // Waiting for bandwidth is not a stall; keep the watchdog away until the pause ends
+                    paused = true;
+                    lastProgressNanos += delay;
+                    scheduler.schedule(this::resume, delay, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                continue;
+            }
+            if (remaining == 0) {
+                finish();
+                return;
+            }
+            if (!reading) {
+                reading = true;
+                readBuffer.clear().limit((int) Math.min(buffer.length, remaining));
+                channel.read(readBuffer, position, null, this);
+            }
+            return;
+        }
+    }
+
+    private void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close channel for {}", path, e);
+        }
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException e) {
+            log.debug("Async context already completed for {}", path);
+        }
+        onFinished.accept(this);
+    }
+
+    @Override
+    public synchronized void onComplete(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public synchronized void onTimeout(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public synchronized void onError(AsyncEvent event) {
+        finish();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+}
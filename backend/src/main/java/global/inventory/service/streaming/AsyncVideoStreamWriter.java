@@ -0,0 +1,153 @@
+package global.inventory.service.streaming;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+@Slf4j
+@Component
+public class AsyncVideoStreamWriter {
+    private final int bufferSize;
+    private final long writeTimeoutNanos;
+    private final ExecutorService ioExecutor;
+    private final ScheduledExecutorService watchdog;
+    private final Set<AsyncRangeTransfer> inFlight = ConcurrentHashMap.newKeySet();
+    private final Counter completed;
+    private final Counter timedOut;
+
+    public AsyncVideoStreamWriter(
+            @Value("${app.video.streaming.async.buffer-size:65536}") int bufferSize,
+            @Value("${app.video.streaming.async.write-timeout-ms:30000}") long writeTimeoutMs,
+            @Value("${app.video.streaming.async.io-threads:4}") int ioThreads,
+            MeterRegistry meterRegistry) {
+        this.bufferSize = bufferSize;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs);
+        this.ioExecutor = Executors.newFixedThreadPool(ioThreads, daemonThreadFactory("video-async-io-"));
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("video-async-watchdog-"));
+        this.watchdog.scheduleWithFixedDelay(this::abortStalledStreams, 1, 1, TimeUnit.SECONDS);
+
+        Gauge.builder("video.stream.async.inflight", inFlight, Set::size)
+                .description("Async video streams currently in flight")
+                .register(meterRegistry);
+        this.completed = Counter.builder("video.stream.async.completed")
+                .description("Async video streams finished, including aborted ones")
+                .register(meterRegistry);
+        this.timedOut = Counter.builder("video.stream.async.timeouts")
+                .description("Async video streams aborted because the client stopped reading")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts streaming the range asynchronously; {@code onFinished} gets the bytes written once the stream
+     * ends, however it ends.
+     */
+    public void start(HttpServletRequest request, HttpServletResponse response,
+                      File videoFile, long start, long length,
+                      BandwidthScheduler.Pacer pacer, LongConsumer onFinished) throws IOException {
+        AsynchronousFileChannel channel = AsynchronousFileChannel.open(
+                videoFile.toPath(), Set.of(StandardOpenOption.READ), ioExecutor);
+
+        AsyncContext asyncContext;
+        try {
+            asyncContext = startAsync(request, response);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        AsyncRangeTransfer transfer;
+        try {
+            transfer = new AsyncRangeTransfer(asyncContext, response.getOutputStream(), channel,
+                    videoFile.getName(), start, length, bufferSize, pacer, watchdog,
+                    finished -> onFinished(finished, onFinished));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            asyncContext.complete();
+            throw e;
+        }
+        inFlight.add(transfer);
+        try {
+            transfer.start();
+        } catch (RuntimeException e) {
+            // Without a write listener nothing would ever complete the request
+            transfer.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts async processing through Spring's {@link WebAsyncManager} rather than on the raw request, so the
+     * DispatcherServlet, its interceptors and filters see the request as async once the handler returns. The
+     * transfer completes the {@link AsyncContext} itself: there is no result to dispatch back. Should the
+     * container dispatch anyway, on an error, the request counts as handled and nothing is rendered.
+     */
+    private static AsyncContext startAsync(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+        asyncManager.setAsyncWebRequest(WebAsyncUtils.createAsyncWebRequest(request, response));
+        ModelAndViewContainer handled = new ModelAndViewContainer();
+        handled.setRequestHandled(true);
+        try {
+            // Stalls are detected by the watchdog, so the container-wide timeout is disabled
+            asyncManager.startDeferredResultProcessing(new DeferredResult<>(0L), handled);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Could not start async streaming", e);
+        }
+        return request.getAsyncContext();
+    }
+
+    private void onFinished(AsyncRangeTransfer transfer, LongConsumer onFinished) {
+        if (inFlight.remove(transfer)) {
+            completed.increment();
+            onFinished.accept(transfer.getBytesWritten());
+        }
+    }
+
+    private void abortStalledStreams() {
+        long now = System.nanoTime();
+        for (AsyncRangeTransfer transfer : inFlight) {
+            if (now - transfer.getLastProgressNanos() > writeTimeoutNanos) {
+                timedOut.increment();
+                transfer.abort();
+            }
+        }
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory(String prefix) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        ioExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,203 @@
+package global.inventory.service.streaming;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces video streams through a hierarchy of token buckets: one per viewing session (user and video), one
+ * per user, one per video and one for the whole server. A session may send at a multiple of the video's
+ * bitrate after an initial burst for buffering; the shared buckets are plain byte-rate caps, off when 0.
+ * <p>
+ * Sessions keep their bucket between range requests, so splitting a download into many ranges does not
+ * earn a fresh burst each time. Buckets that sat idle and refilled are dropped periodically.
+ */
+@Slf4j
+@Component
+public class BandwidthScheduler {
+    private static final int TOP_BUCKETS = 50;
+
+    private final boolean enabled;
+    private final double burstSeconds;
+    private final long defaultBitrate;
+    private final long idleNanos;
+
+    private volatile double bitrateMultiplier;
+    private volatile long globalBytesPerSecond;
+    private volatile long userBytesPerSecond;
+    private volatile long videoBytesPerSecond;
+
+    private final TokenBucket global;
+    private final Map<String, TokenBucket> users = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> videos = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+
+    public BandwidthScheduler(
+            @Value("${app.video.streaming.bandwidth.enabled:false}") boolean enabled,
+            @Value("${app.video.streaming.bandwidth.bitrate-multiplier:1.5}") double bitrateMultiplier,
+            @Value("${app.video.streaming.bandwidth.burst-seconds:10}") double burstSeconds,
+            @Value("${app.video.streaming.bandwidth.global-bytes-per-second:0}") long globalBytesPerSecond,
+            @Value("${app.video.streaming.bandwidth.user-bytes-per-second:0}") long userBytesPerSecond,
+            @Value("${app.video.streaming.bandwidth.video-bytes-per-second:0}") long videoBytesPerSecond,
+            @Value("${app.video.streaming.bandwidth.idle-seconds:300}") long idleSeconds,
+            @Value("${app.video.streaming.chunk.default-bitrate:2500000}") long defaultBitrate) {
+        this.enabled = enabled;
+        this.bitrateMultiplier = bitrateMultiplier;
+        this.burstSeconds = burstSeconds;
+        this.globalBytesPerSecond = globalBytesPerSecond;
+        this.userBytesPerSecond = userBytesPerSecond;
+        this.videoBytesPerSecond = videoBytesPerSecond;
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        this.defaultBitrate = defaultBitrate;
+        this.global = new TokenBucket(globalBytesPerSecond, globalBytesPerSecond);
+
+        if (enabled) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("video-bandwidth-sweeper-");
+            threadFactory.setDaemon(true);
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            this.sweeper.scheduleWithFixedDelay(this::dropIdleBuckets, 30, 30, TimeUnit.SECONDS);
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param bitrate the video's average bitrate in bits per second, or 0 when unknown
+     */
+    public Pacer pacer(String userKey, String videoKey, long bitrate) {
+        if (!enabled) {
+            return Pacer.UNPACED;
+        }
+        double mediaBytesPerSecond = (bitrate > 0 ? bitrate : defaultBitrate) / 8d;
+        TokenBucket session = sessions.computeIfAbsent(userKey + '|' + videoKey, key -> new TokenBucket(
+                mediaBytesPerSecond * bitrateMultiplier, mediaBytesPerSecond * burstSeconds));
+        TokenBucket user = users.computeIfAbsent(userKey, key -> rateCap(userBytesPerSecond));
+        TokenBucket video = videos.computeIfAbsent(videoKey, key -> rateCap(videoBytesPerSecond));
+        return new Pacer(new TokenBucket[]{session, user, video, global});
+    }
+
+    public synchronized void updateLimits(Double bitrateMultiplier, Long globalBytesPerSecond,
+                                          Long userBytesPerSecond, Long videoBytesPerSecond) {
+        if (bitrateMultiplier != null) {
+            this.bitrateMultiplier = bitrateMultiplier;
+            // Session rates depend on each video's bitrate; new sessions pick the multiplier up
+            sessions.clear();
+        }
+        if (globalBytesPerSecond != null) {
+            this.globalBytesPerSecond = globalBytesPerSecond;
+            global.setRate(globalBytesPerSecond, globalBytesPerSecond);
+        }
+        if (userBytesPerSecond != null) {
+            this.userBytesPerSecond = userBytesPerSecond;
+            users.values().forEach(bucket -> bucket.setRate(userBytesPerSecond, userBytesPerSecond));
+        }
+        if (videoBytesPerSecond != null) {
+            this.videoBytesPerSecond = videoBytesPerSecond;
+            videos.values().forEach(bucket -> bucket.setRate(videoBytesPerSecond, videoBytesPerSecond));
+        }
+        log.info("Bandwidth limits updated: multiplier={}, global={}, user={}, video={} bytes/s",
+                this.bitrateMultiplier, this.globalBytesPerSecond, this.userBytesPerSecond, this.videoBytesPerSecond);
+    }
+
+    public Map<String, Object> snapshot() {
+        return Map.of(
+                "enabled", enabled,
+                "limits", Map.of(
+                        "bitrateMultiplier", bitrateMultiplier,
+                        "burstSeconds", burstSeconds,
+                        "globalBytesPerSecond", globalBytesPerSecond,
+                        "userBytesPerSecond", userBytesPerSecond,
+                        "videoBytesPerSecond", videoBytesPerSecond),
+                "global", global.stats("global"),
+                "sessions", sessions.size(),
+                "users", busiest(users),
+                "videos", busiest(videos));
+    }
+
+    private static List<BandwidthStats> busiest(Map<String, TokenBucket> buckets) {
+        return buckets.entrySet().stream()
+                .map(entry -> entry.getValue().stats(entry.getKey()))
+                .sorted(Comparator.comparingLong(BandwidthStats::grantedBytes).reversed())
+                .limit(TOP_BUCKETS)
+                .toList();
+    }
+
+    private static TokenBucket rateCap(long bytesPerSecond) {
+        return new TokenBucket(bytesPerSecond, bytesPerSecond);
+    }
+
+    private void dropIdleBuckets() {
+        long now = System.nanoTime();
+        sessions.values().removeIf(bucket -> bucket.isIdle(now, idleNanos));
+        users.values().removeIf(bucket -> bucket.isIdle(now, idleNanos));
+        videos.values().removeIf(bucket -> bucket.isIdle(now, idleNanos));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * The buckets one stream draws from. Each reservation is charged to every level and the caller waits
+     * for the slowest of them.
+     */
+    public static final class Pacer {
+        static final Pacer UNPACED = new Pacer(new TokenBucket[0]);
+
+        private final TokenBucket[] buckets;
+
+        private Pacer(TokenBucket[] buckets) {
+            this.buckets = buckets;
+        }
+
+        public boolean isPaced() {
+            return buckets.length > 0;
+        }
+
+        /**
+         * Charges {@code bytes} and returns how many nanoseconds to wait before sending them.
+         */
+        public long reserve(long bytes) {
+            long now = System.nanoTime();
+            long wait = 0;
+            for (TokenBucket bucket : buckets) {
+                wait = Math.max(wait, bucket.reserve(bytes, now));
+            }
+            return wait;
+        }
+
+        /**
+         * Charges {@code bytes} and blocks the calling thread until they may be sent.
+         */
+        public void pace(long bytes) throws InterruptedIOException {
+            long deadline = System.nanoTime() + reserve(bytes);
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException("Interrupted while pacing video stream");
+                }
+            }
+        }
+    }
+}
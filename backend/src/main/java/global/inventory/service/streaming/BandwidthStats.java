@@ -0,0 +1,9 @@
+package global.inventory.service.streaming;
+
+/**
+ * Snapshot of one bandwidth bucket: rate and burst in bytes, tokens currently available (negative while in
+ * debt), total bytes granted and the total time callers were told to wait.
+ */
+public record BandwidthStats(String name, long bytesPerSecond, long burstBytes, long availableBytes,
+                             long grantedBytes, long delayedMillis) {
+}
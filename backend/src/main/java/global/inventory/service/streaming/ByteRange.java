@@ -0,0 +1,124 @@
+package global.inventory.service.streaming;
+
+import global.inventory.exception.RangeNotSatisfiableException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An inclusive byte range of a representation, resolved against its length as described in RFC 7233.
+ */
+public record ByteRange(long start, long end) {
+    private static final String BYTES_UNIT = "bytes=";
+    private static final int MAX_RANGES = 32;
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    public String toContentRange(long totalLength) {
+        return String.format("bytes %d-%d/%d", start, end, totalLength);
+    }
+
+    public static String unsatisfiedContentRange(long totalLength) {
+        return "bytes */" + totalLength;
+    }
+
+    /**
+     * Parses a {@code Range} header into sorted, coalesced ranges. Returns an empty list when the header is
+     * syntactically invalid, in which case it must be ignored and the full representation served.
+     *
+     * @throws RangeNotSatisfiableException when no range overlaps the representation
+     */
+    public static List<ByteRange> parse(String header, long totalLength) {
+        if (header == null || !header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return List.of();
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        boolean anySpec = false;
+        for (String spec : header.substring(BYTES_UNIT.length()).split(",")) {
+            spec = spec.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            anySpec = true;
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return List.of();
+            }
+
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            try {
+                if (first.isEmpty()) {
+                    // suffix-byte-range-spec: the final N bytes
+                    long suffixLength = parsePosition(last);
+                    if (suffixLength == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, totalLength - suffixLength);
+                    end = totalLength - 1;
+                } else {
+                    start = parsePosition(first);
+                    end = last.isEmpty() ? Long.MAX_VALUE : parsePosition(last);
+                    if (end < start) {
+                        return List.of();
+                    }
+                    end = Math.min(end, totalLength - 1);
+                }
+            } catch (NumberFormatException e) {
+                return List.of();
+            }
+
+            if (start < totalLength) {
+                ranges.add(new ByteRange(start, end));
+            }
+        }
+
+        if (!anySpec) {
+            return List.of();
+        }
+        if (ranges.isEmpty()) {
+            throw new RangeNotSatisfiableException(header);
+        }
+
+        List<ByteRange> coalesced = coalesce(ranges);
+        if (coalesced.size() > MAX_RANGES) {
+            throw new RangeNotSatisfiableException(header);
+        }
+        return coalesced;
+    }
+
+    /**
+     * Merges overlapping and adjacent ranges so that no byte is sent twice.
+     */
+    public static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(ByteRange::start));
+
+        List<ByteRange> merged = new ArrayList<>();
+        ByteRange current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            ByteRange next = sorted.get(i);
+            if (next.start() <= current.end() + 1) {
+                current = new ByteRange(current.start(), Math.max(current.end(), next.end()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    private static long parsePosition(String value) {
+        if (value.isEmpty() || value.charAt(0) == '+' || value.charAt(0) == '-') {
+            throw new NumberFormatException("Invalid byte position: " + value);
+        }
+        return Long.parseLong(value);
+    }
+}
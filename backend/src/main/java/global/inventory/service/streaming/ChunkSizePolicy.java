@@ -0,0 +1,112 @@
+package global.inventory.service.streaming;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sizes open-ended range responses. A response should cover a few seconds of what the client can actually
+ * download, and never less than a buffer-ahead window of media at the video's bitrate, so that fast clients
+ * need far fewer round trips than with a fixed cap. Under load every client gets proportionally less.
+ */
+@Component
+public class ChunkSizePolicy {
+    private static final int MAX_TRACKED_CLIENTS = 10_000;
+    private static final double SMOOTHING = 0.3;
+
+    private final long minBytes;
+    private final long maxBytes;
+    private final double targetSeconds;
+    private final double bufferAheadSeconds;
+    private final long defaultBitrate;
+    private final int loadThreshold;
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final Map<String, Double> throughputByClient = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+                    return size() > MAX_TRACKED_CLIENTS;
+                }
+            });
+
+    public ChunkSizePolicy(
+            @Value("${app.video.streaming.chunk.min-bytes:1048576}") long minBytes,
+            @Value("${app.video.streaming.chunk.max-bytes:33554432}") long maxBytes,
+            @Value("${app.video.streaming.chunk.target-seconds:4}") double targetSeconds,
+            @Value("${app.video.streaming.chunk.buffer-ahead-seconds:10}") double bufferAheadSeconds,
+            @Value("${app.video.streaming.chunk.default-bitrate:2500000}") long defaultBitrate,
+            @Value("${app.video.streaming.chunk.load-threshold:200}") int loadThreshold) {
+        this.minBytes = minBytes;
+        this.maxBytes = Math.max(minBytes, maxBytes);
+        this.targetSeconds = targetSeconds;
+        this.bufferAheadSeconds = bufferAheadSeconds;
+        this.defaultBitrate = defaultBitrate;
+        this.loadThreshold = loadThreshold;
+    }
+
+    public static String clientKey(HttpServletRequest request) {
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * @param bitrate the video's average bitrate in bits per second, or 0 when unknown
+     */
+    public long chunkSize(String clientKey, long bitrate) {
+        double mediaBytesPerSecond = (bitrate > 0 ? bitrate : defaultBitrate) / 8d;
+        double size = mediaBytesPerSecond * bufferAheadSeconds;
+
+        Double throughput = throughputByClient.get(clientKey);
+        if (throughput != null) {
+            size = Math.max(size, throughput * targetSeconds);
+        }
+
+        size = Math.min(size, maxBytes);
+        int active = activeStreams.get();
+        if (active > loadThreshold) {
+            size = size * loadThreshold / active;
+        }
+
+        return Math.max(minBytes, (long) size);
+    }
+
+    public void streamStarted() {
+        activeStreams.incrementAndGet();
+    }
+
+    public void streamFinished(String clientKey, long bytes, long elapsedNanos) {
+        activeStreams.decrementAndGet();
+        recordThroughput(clientKey, bytes, elapsedNanos);
+    }
+
+    /**
+     * Folds a finished transfer of {@code bytes} into the client's throughput estimate.
+     */
+    public void recordThroughput(String clientKey, long bytes, long elapsedNanos) {
+        // Very short transfers only measure the socket buffer, not the client
+        if (bytes < minBytes / 4 || elapsedNanos <= 0) {
+            return;
+        }
+        double observed = bytes / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+        throughputByClient.merge(clientKey, observed,
+                (previous, sample) -> previous + SMOOTHING * (sample - previous));
+    }
+
+    /**
+     * The client's smoothed throughput in bytes per second, or 0 when none has been measured.
+     */
+    public double throughput(String clientKey) {
+        Double throughput = throughputByClient.get(clientKey);
+        return throughput != null ? throughput : 0;
+    }
+
+    public int getActiveStreams() {
+        return activeStreams.get();
+    }
+}
@@ -0,0 +1,71 @@
+package global.inventory.service.streaming;
+
+import global.inventory.service.cache.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads video ranges in aligned chunks through a {@link SingleFlight}, so viewers who ask for the same part of
+ * the same file at the same moment share one disk read. A chunk is read into a fresh array that every caller
+ * of the flight only reads from; it is left to the garbage collector since any of them may still be writing it.
+ */
+@Component
+public class CoalescingChunkReader {
+    private final boolean enabled;
+    private final int chunkSize;
+    private final SingleFlight<ChunkKey, byte[]> reads;
+
+    public CoalescingChunkReader(
+            @Value("${app.video.streaming.coalescing.enabled:false}") boolean enabled,
+            @Value("${app.video.streaming.coalescing.chunk-size:262144}") int chunkSize,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.reads = new SingleFlight<>("chunk", meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void copy(String path, FileChannel channel, long fileSize, OutputStream out, long start, long length,
+                     BandwidthScheduler.Pacer pacer) throws IOException {
+        long position = start;
+        long end = start + length;
+        while (position < end) {
+            long chunkIndex = position / chunkSize;
+            int offset = (int) (position - chunkIndex * chunkSize);
+            int count = (int) Math.min(chunkSize - offset, end - position);
+
+            pacer.pace(count);
+            byte[] chunk = reads.execute(new ChunkKey(path, chunkIndex), () -> read(channel, chunkIndex, fileSize));
+            if (chunk.length < offset + count) {
+                throw new EOFException("Unexpected end of file at " + (chunkIndex * chunkSize + chunk.length));
+            }
+            out.write(chunk, offset, count);
+            position += count;
+        }
+    }
+
+    private byte[] read(FileChannel channel, long chunkIndex, long fileSize) throws IOException {
+        long position = chunkIndex * chunkSize;
+        byte[] chunk = new byte[(int) Math.max(0, Math.min(chunkSize, fileSize - position))];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        return chunk;
+    }
+
+    private record ChunkKey(String path, long index) {
+    }
+}
@@ -0,0 +1,137 @@
+package global.inventory.service.streaming;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Follows ranges handed to the connector's sendfile, which writes them after the servlet returns and reports
+ * nothing back. On HTTP/1.1 the connector reads nothing more from a connection until its sendfile is done, so
+ * the next request on that connection marks the transfer finished and gives a lower bound of the client's
+ * throughput. A client may never send one, so a transfer also counts as finished once it has had time to
+ * drain at the client's measured throughput, or at {@code assumed-bytes-per-second} when there is none yet.
+ * Being an estimate, it only holds a stream slot; the range's bytes leave admission control at hand-off.
+ */
+@Component
+public class SendfileTracker {
+    private static final String HTTP_1_1 = "HTTP/1.1";
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long assumedBytesPerSecond;
+    private final long maxTrackedNanos;
+    private final ChunkSizePolicy chunkSizePolicy;
+    private final Map<String, Transfer> byConnection = new ConcurrentHashMap<>();
+    private final Set<Transfer> draining = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService sweeper;
+
+    public SendfileTracker(
+            @Value("${app.video.streaming.sendfile-tracking.assumed-bytes-per-second:2097152}")
+            long assumedBytesPerSecond,
+            @Value("${app.video.streaming.sendfile-tracking.max-seconds:30}") long maxSeconds,
+            ChunkSizePolicy chunkSizePolicy,
+            MeterRegistry meterRegistry) {
+        this.assumedBytesPerSecond = Math.max(1, assumedBytesPerSecond);
+        this.maxTrackedNanos = TimeUnit.SECONDS.toNanos(maxSeconds);
+        this.chunkSizePolicy = chunkSizePolicy;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("video-sendfile-sweeper-");
+        threadFactory.setDaemon(true);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.sweeper.scheduleWithFixedDelay(this::sweep, 100, 100, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("video.stream.sendfile.draining", draining, Set::size)
+                .description("Ranges handed to sendfile that are not yet known or assumed to be sent")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Call for every stream request before anything is written, so a sendfile still pending on its connection
+     * is finished first.
+     */
+    public void requestStarted(HttpServletRequest request) {
+        String connection = connectionId(request);
+        Transfer previous = connection != null ? byConnection.remove(connection) : null;
+        if (previous != null) {
+            long elapsedNanos = System.nanoTime() - previous.startNanos;
+            previous.release();
+            chunkSizePolicy.recordThroughput(previous.clientKey, previous.length, elapsedNanos);
+        }
+    }
+
+    /**
+     * Registers {@code length} bytes the connector will send for {@code request}; {@code onFinished} runs once
+     * they are known or assumed to be sent.
+     */
+    public void handedOff(HttpServletRequest request, long length, Runnable onFinished) {
+        String clientKey = ChunkSizePolicy.clientKey(request);
+        double throughput = chunkSizePolicy.throughput(clientKey);
+        double bytesPerSecond = throughput > 0 ? throughput : assumedBytesPerSecond;
+        long drainNanos = Math.min(maxTrackedNanos, (long) (length / bytesPerSecond * NANOS_PER_SECOND));
+
+        Transfer transfer = new Transfer(clientKey, length, drainNanos, onFinished);
+        draining.add(transfer);
+        String connection = connectionId(request);
+        if (connection != null) {
+            Transfer previous = byConnection.put(connection, transfer);
+            if (previous != null) {
+                previous.release();
+            }
+        }
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        for (Transfer transfer : draining) {
+            if (now - transfer.startNanos >= transfer.drainNanos) {
+                transfer.release();
+            }
+        }
+        // Kept past the drain estimate for the throughput sample, until the connection is assumed gone
+        byConnection.values().removeIf(transfer -> now - transfer.startNanos >= maxTrackedNanos);
+    }
+
+    private static String connectionId(HttpServletRequest request) {
+        // HTTP/2 multiplexes streams, so a new request says nothing about the others on the connection
+        return HTTP_1_1.equals(request.getProtocol()) ? request.getServletConnection().getConnectionId() : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    private final class Transfer {
+        private final String clientKey;
+        private final long length;
+        private final long startNanos = System.nanoTime();
+        private final long drainNanos;
+        private final Runnable onFinished;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Transfer(String clientKey, long length, long drainNanos, Runnable onFinished) {
+            this.clientKey = clientKey;
+            this.length = length;
+            this.drainNanos = drainNanos;
+            this.onFinished = onFinished;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                draining.remove(this);
+                onFinished.run();
+            }
+        }
+    }
+}
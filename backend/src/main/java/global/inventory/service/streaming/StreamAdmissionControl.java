@@ -0,0 +1,235 @@
+package global.inventory.service.streaming;
+
+import global.inventory.service.security.StreamUrlSigner;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps concurrent video streams globally, per user and by bytes in flight so a burst of viewers cannot take
+ * every container thread from the API. All counters are updated with compare-and-set, never past their cap,
+ * and a request that does not fit is turned away immediately instead of queueing. A cap needs an exact count
+ * to compare against, so each is one counter rather than striped cells, whose sum cannot be checked and raised
+ * in a single step; per-user counters already spread the contention across users.
+ * <p>
+ * A permit covers a stream until its bytes are sent, so for sendfile and async responses it outlives the
+ * request thread. Sendfile ranges count towards the stream caps only: the connector reports nothing back, so
+ * their bytes are given back at hand-off rather than held for a guessed drain time, and
+ * {@code max-bytes-in-flight} bounds the streams the application writes itself. There is no queue to report;
+ * the limit gauges next to the usage gauges show the headroom.
+ */
+@Component
+public class StreamAdmissionControl {
+    // A user counter that dropped to zero is marked dead before removal so a racing acquire starts over
+    private static final int RETIRED = -1;
+
+    private final boolean enabled;
+    private final int maxStreams;
+    private final long maxBytesInFlight;
+    private final int maxStreamsPerUser;
+    private final int retryAfterSeconds;
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicLong bytesInFlight = new AtomicLong();
+    private final Map<String, AtomicInteger> streamsByUser = new ConcurrentHashMap<>();
+
+    private final Counter admitted;
+    private final Counter rejectedStreams;
+    private final Counter rejectedBytes;
+    private final Counter rejectedUser;
+
+    public StreamAdmissionControl(
+            @Value("${app.video.streaming.admission.enabled:true}") boolean enabled,
+            @Value("${app.video.streaming.admission.max-streams:500}") int maxStreams,
+            @Value("${app.video.streaming.admission.max-bytes-in-flight:8589934592}") long maxBytesInFlight,
+            @Value("${app.video.streaming.admission.max-streams-per-user:4}") int maxStreamsPerUser,
+            @Value("${app.video.streaming.admission.retry-after-seconds:2}") int retryAfterSeconds,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxStreams = maxStreams;
+        this.maxBytesInFlight = maxBytesInFlight;
+        this.maxStreamsPerUser = maxStreamsPerUser;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        this.admitted = Counter.builder("video.stream.admission.admitted").register(meterRegistry);
+        this.rejectedStreams = rejectedCounter(meterRegistry, "streams");
+        this.rejectedBytes = rejectedCounter(meterRegistry, "bytes");
+        this.rejectedUser = rejectedCounter(meterRegistry, "user");
+        Gauge.builder("video.stream.admission.active", activeStreams, AtomicInteger::get)
+                .register(meterRegistry);
+        Gauge.builder("video.stream.admission.bytes.in.flight", bytesInFlight, AtomicLong::get)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("video.stream.admission.limit", () -> maxStreams).tag("resource", "streams")
+                .register(meterRegistry);
+        Gauge.builder("video.stream.admission.limit", () -> maxBytesInFlight).tag("resource", "bytes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("video.stream.admission.users", streamsByUser, Map::size)
+                .description("Users with at least one admitted stream")
+                .register(meterRegistry);
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("video.stream.admission.rejected").tag("reason", reason).register(meterRegistry);
+    }
+
+    public static String userKey(HttpServletRequest request) {
+        Object signedUser = request.getAttribute(StreamUrlSigner.STREAM_USER_ATTRIBUTE);
+        if (signedUser != null) {
+            return signedUser.toString();
+        }
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? principal.getName() : request.getRemoteAddr();
+    }
+
+    /**
+     * Admits a stream of {@code bytes}, or returns {@code null} when any cap is reached.
+     */
+    public Permit tryAcquire(String userKey, long bytes) {
+        if (!enabled) {
+            return unlimited();
+        }
+
+        AtomicInteger userStreams = acquireUser(userKey);
+        if (userStreams == null) {
+            rejectedUser.increment();
+            return null;
+        }
+        if (!increment(activeStreams, maxStreams)) {
+            releaseUser(userKey, userStreams);
+            rejectedStreams.increment();
+            return null;
+        }
+        if (!add(bytesInFlight, bytes, maxBytesInFlight)) {
+            activeStreams.decrementAndGet();
+            releaseUser(userKey, userStreams);
+            rejectedBytes.increment();
+            return null;
+        }
+
+        admitted.increment();
+        return new Permit(() -> bytesInFlight.addAndGet(-bytes), () -> {
+            activeStreams.decrementAndGet();
+            releaseUser(userKey, userStreams);
+        });
+    }
+
+    /**
+     * A permit that holds no capacity, for streams admission control does not cover.
+     */
+    public static Permit unlimited() {
+        return new Permit(() -> {
+        }, () -> {
+        });
+    }
+
+    /**
+     * Seconds to put in {@code Retry-After}, spread out so rejected clients do not all come back at once.
+     */
+    public int retryAfterSeconds() {
+        return retryAfterSeconds + ThreadLocalRandom.current().nextInt(retryAfterSeconds + 1);
+    }
+
+    public int getActiveStreams() {
+        return activeStreams.get();
+    }
+
+    public long getBytesInFlight() {
+        return bytesInFlight.get();
+    }
+
+    public int getStreams(String userKey) {
+        AtomicInteger counter = streamsByUser.get(userKey);
+        return counter != null ? Math.max(0, counter.get()) : 0;
+    }
+
+    private AtomicInteger acquireUser(String userKey) {
+        while (true) {
+            AtomicInteger counter = streamsByUser.computeIfAbsent(userKey, key -> new AtomicInteger());
+            int current = counter.get();
+            if (current == RETIRED) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (current >= maxStreamsPerUser) {
+                return null;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                return counter;
+            }
+        }
+    }
+
+    private void releaseUser(String userKey, AtomicInteger counter) {
+        if (counter.decrementAndGet() == 0 && counter.compareAndSet(0, RETIRED)) {
+            streamsByUser.remove(userKey, counter);
+        }
+    }
+
+    private static boolean increment(AtomicInteger counter, int max) {
+        int current;
+        do {
+            current = counter.get();
+            if (current >= max) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private static boolean add(AtomicLong counter, long delta, long max) {
+        long current;
+        do {
+            current = counter.get();
+            // Always let one stream through so a single response larger than the cap is not refused forever
+            if (current > 0 && current + delta > max) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current + delta));
+        return true;
+    }
+
+    /**
+     * An admitted stream. Closing it gives the capacity back; closing more than once has no effect.
+     */
+    public static final class Permit implements AutoCloseable {
+        private final AtomicBoolean bytesReleased = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+        private final Runnable onReleaseBytes;
+        private final Runnable onRelease;
+
+        private Permit(Runnable onReleaseBytes, Runnable onRelease) {
+            this.onReleaseBytes = onReleaseBytes;
+            this.onRelease = onRelease;
+        }
+
+        /**
+         * Gives back the bytes in flight but keeps the stream slots until {@link #close()}.
+         */
+        public void releaseBytes() {
+            if (bytesReleased.compareAndSet(false, true)) {
+                onReleaseBytes.run();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                releaseBytes();
+                onRelease.run();
+            }
+        }
+    }
+}
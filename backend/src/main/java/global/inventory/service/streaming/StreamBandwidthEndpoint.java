@@ -0,0 +1,36 @@
+package global.inventory.service.streaming;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code /actuator/streambandwidth}: current limits and live bucket stats, and a POST to change limits at
+ * runtime without a restart.
+ */
+@Component
+@Endpoint(id = "streambandwidth")
+@RequiredArgsConstructor
+public class StreamBandwidthEndpoint {
+    private final BandwidthScheduler bandwidthScheduler;
+
+    @ReadOperation
+    public Map<String, Object> bandwidth() {
+        return bandwidthScheduler.snapshot();
+    }
+
+    @WriteOperation
+    public Map<String, Object> updateLimits(@Nullable Double bitrateMultiplier,
+                                            @Nullable Long globalBytesPerSecond,
+                                            @Nullable Long userBytesPerSecond,
+                                            @Nullable Long videoBytesPerSecond) {
+        bandwidthScheduler.updateLimits(bitrateMultiplier, globalBytesPerSecond, userBytesPerSecond,
+                videoBytesPerSecond);
+        return bandwidthScheduler.snapshot();
+    }
+}
@@ -0,0 +1,89 @@
+package global.inventory.service.streaming;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how video responses may be cached. Stored files are written once under a unique name and never
+ * modified, so in {@code immutable} mode they carry strong validators and a long-lived cache lifetime.
+ */
+@Component
+public class StreamCachePolicy {
+    private static final String IMMUTABLE = "immutable";
+
+    private final boolean cacheable;
+    private final String cacheControl;
+
+    public StreamCachePolicy(
+            @Value("${app.video.streaming.cache.policy:no-store}") String policy,
+            @Value("${app.video.streaming.cache.max-age-seconds:31536000}") long maxAgeSeconds,
+            @Value("${app.video.streaming.cache.public:false}") boolean sharedCaches) {
+        this.cacheable = IMMUTABLE.equalsIgnoreCase(policy);
+
+        if (cacheable) {
+            CacheControl control = CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).immutable();
+            this.cacheControl = (sharedCaches ? control.cachePublic() : control.cachePrivate()).getHeaderValue();
+        } else {
+            this.cacheControl = "no-cache, no-store, must-revalidate";
+        }
+    }
+
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public String eTag(long fileSize, long lastModified) {
+        return "\"" + Long.toHexString(fileSize) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    public void applyHeaders(HttpServletResponse response) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        if (!cacheable) {
+            response.setHeader(HttpHeaders.PRAGMA, "no-cache");
+            response.setHeader(HttpHeaders.EXPIRES, "0");
+        }
+    }
+
+    /**
+     * Evaluates {@code If-None-Match} and {@code If-Modified-Since}, answering {@code 304 Not Modified} when the
+     * client's copy is current. {@code If-None-Match} uses weak comparison, so {@code W/} validators match too.
+     */
+    public boolean checkNotModified(HttpServletRequest request, HttpServletResponse response,
+                                    String eTag, long lastModified) {
+        return cacheable && new ServletWebRequest(request, response).checkNotModified(eTag, lastModified);
+    }
+
+    /**
+     * Evaluates {@code If-Range}: a range may only be served if the validator still matches the file,
+     * otherwise the whole representation has to be sent.
+     */
+    public boolean isRangeApplicable(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (!cacheable) {
+            return false;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(eTag);
+        }
+        if (ifRange.startsWith("W/")) {
+            // If-Range requires strong comparison, which a weak validator never passes
+            return false;
+        }
+        try {
+            // HTTP dates have second precision
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified / 1000 * 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package global.inventory.service.streaming;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Byte-rate bucket that lends against future refill: a reservation always succeeds and returns how long the
+ * caller has to wait before sending, so concurrent streams sharing a bucket queue up behind each other's debt.
+ * A non-positive rate means unlimited.
+ */
+class TokenBucket {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private double rate;
+    private double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+    private long grantedBytes;
+    private long delayedNanos;
+    private volatile long lastUsedNanos;
+
+    TokenBucket(double rate, double capacity) {
+        long now = System.nanoTime();
+        this.rate = rate;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefillNanos = now;
+        this.lastUsedNanos = now;
+    }
+
+    synchronized long reserve(long bytes, long now) {
+        lastUsedNanos = now;
+        grantedBytes += bytes;
+        if (rate <= 0) {
+            return 0;
+        }
+        refill(now);
+        tokens -= bytes;
+        if (tokens >= 0) {
+            return 0;
+        }
+        long wait = (long) (-tokens / rate * NANOS_PER_SECOND);
+        delayedNanos += wait;
+        return wait;
+    }
+
+    synchronized void setRate(double rate, double capacity) {
+        refill(System.nanoTime());
+        this.rate = rate;
+        this.capacity = capacity;
+        this.tokens = Math.min(tokens, capacity);
+    }
+
+    /**
+     * Idle buckets that have refilled completely carry no state worth keeping.
+     */
+    synchronized boolean isIdle(long now, long idleNanos) {
+        refill(now);
+        return now - lastUsedNanos > idleNanos && (rate <= 0 || tokens >= capacity);
+    }
+
+    synchronized BandwidthStats stats(String name) {
+        refill(System.nanoTime());
+        return new BandwidthStats(name, (long) rate, (long) capacity, (long) tokens, grantedBytes,
+                TimeUnit.NANOSECONDS.toMillis(delayedNanos));
+    }
+
+    private void refill(long now) {
+        if (rate > 0 && now > lastRefillNanos) {
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / NANOS_PER_SECOND * rate);
+        }
+        lastRefillNanos = now;
+    }
+}
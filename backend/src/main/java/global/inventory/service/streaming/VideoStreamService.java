@@ -0,0 +1,21 @@
+package global.inventory.service.streaming;
+
+import global.inventory.service.storage.StoredVideo;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface VideoStreamService {
+    /**
+     * Writes one range of the video and closes {@code permit} when the bytes have been sent or the stream
+     * failed; for the async and sendfile paths that is after this method returns. A range handed to sendfile
+     * gives its bytes back right away, see {@link StreamAdmissionControl}.
+     */
+    void writeRange(HttpServletRequest request, HttpServletResponse response, StoredVideo video,
+                    long start, long length, StreamAdmissionControl.Permit permit) throws IOException;
+
+    void writeRanges(HttpServletRequest request, HttpServletResponse response, StoredVideo video,
+                     List<ByteRange> ranges) throws IOException;
+}
@@ -0,0 +1,314 @@
+package global.inventory.service.streaming;
+
+import global.inventory.service.cache.DirectBufferPool;
+import global.inventory.service.cache.SegmentCache;
+import global.inventory.service.storage.StoredVideo;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
+
+@Slf4j
+@Service
+public class VideoStreamServiceImpl implements VideoStreamService {
+    private static final int BUFFER_SIZE = 65536;
+
+    // Request attributes understood by Tomcat's NIO/NIO2 connectors (see DefaultServlet)
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private final boolean sendfile;
+    private final boolean async;
+    private final AsyncVideoStreamWriter asyncWriter;
+    private final ChunkSizePolicy chunkSizePolicy;
+    private final SegmentCache segmentCache;
+    private final DirectBufferPool bufferPool;
+    private final BandwidthScheduler bandwidthScheduler;
+    private final CoalescingChunkReader coalescingReader;
+    private final SendfileTracker sendfileTracker;
+
+    public VideoStreamServiceImpl(
+            @Value("${app.video.streaming.sendfile:true}") boolean sendfile,
+            @Value("${app.video.streaming.async.enabled:false}") boolean async,
+            AsyncVideoStreamWriter asyncWriter,
+            ChunkSizePolicy chunkSizePolicy,
+            SegmentCache segmentCache,
+            DirectBufferPool bufferPool,
+            BandwidthScheduler bandwidthScheduler,
+            CoalescingChunkReader coalescingReader,
+            SendfileTracker sendfileTracker) {
+        this.sendfile = sendfile;
+        this.async = async;
+        this.asyncWriter = asyncWriter;
+        this.chunkSizePolicy = chunkSizePolicy;
+        this.segmentCache = segmentCache;
+        this.bufferPool = bufferPool;
+        this.bandwidthScheduler = bandwidthScheduler;
+        this.coalescingReader = coalescingReader;
+        this.sendfileTracker = sendfileTracker;
+    }
+
+    @Override
+    public void writeRange(HttpServletRequest request, HttpServletResponse response,
+                           StoredVideo video, long start, long length, StreamAdmissionControl.Permit permit)
+            throws IOException {
+        sendfileTracker.requestStarted(request);
+        StoredVideo.Read read = video.beginRead();
+        LongConsumer finished = finisher(request, () -> {
+            read.end();
+            permit.close();
+        });
+        long written = 0;
+        boolean handedOff = false;
+        try {
+            boolean local = video.isLocal();
+            boolean cached = local && segmentCache.isEnabled();
+            boolean coalesced = local && !cached && coalescingReader.isEnabled();
+            // Both share reads between viewers in user space, which the kernel-side paths would bypass
+            boolean shared = cached || coalesced;
+            BandwidthScheduler.Pacer pacer = bandwidthScheduler.pacer(
+                    StreamAdmissionControl.userKey(request), video.getStoredPath(), video.getBitrate());
+            if (local && !shared && !pacer.isPaced() && sendfile && isSendfileSupported(request)) {
+                writeSendfile(request, read, start, length);
+                // When the connector is done is only guessed, too loosely to hold bytes in flight against
+                permit.releaseBytes();
+                sendfileTracker.handedOff(request, length, () -> finished.accept(0));
+                handedOff = true;
+            } else if (local && !shared && async && request.isAsyncSupported()) {
+                asyncWriter.start(request, response, read.file().toFile(), start, length, pacer, finished);
+                handedOff = true;
+            } else {
+                if (cached) {
+                    writeSegmented(response, video, read, start, length, pacer);
+                } else if (coalesced) {
+                    writeCoalesced(response, video, read, start, length, pacer);
+                } else if (local) {
+                    writeBlocking(response, read, start, length, pacer);
+                } else {
+                    writeRemote(response, video, start, length, pacer);
+                }
+                written = length;
+            }
+        } finally {
+            if (!handedOff) {
+                finished.accept(written);
+            }
+        }
+    }
+
+    @Override
+    public void writeRanges(HttpServletRequest request, HttpServletResponse response, StoredVideo video,
+                            List<ByteRange> ranges) throws IOException {
+        sendfileTracker.requestStarted(request);
+        StoredVideo.Read read = video.beginRead();
+        LongConsumer finished = finisher(request, read::end);
+        long written = 0;
+        try {
+            written = writeMultipart(response, video, read, ranges);
+        } finally {
+            finished.accept(written);
+        }
+    }
+
+    /**
+     * Counts a stream as active for the chunk-size policy until the returned callback gets the bytes it wrote,
+     * then runs {@code onFinished}; later calls are ignored.
+     */
+    private LongConsumer finisher(HttpServletRequest request, Runnable onFinished) {
+        String clientKey = ChunkSizePolicy.clientKey(request);
+        long startNanos = System.nanoTime();
+        AtomicBoolean finished = new AtomicBoolean();
+        chunkSizePolicy.streamStarted();
+        return written -> {
+            if (finished.compareAndSet(false, true)) {
+                chunkSizePolicy.streamFinished(clientKey, written, System.nanoTime() - startNanos);
+                onFinished.run();
+            }
+        };
+    }
+
+    private long writeMultipart(HttpServletResponse response, StoredVideo video, StoredVideo.Read read,
+                                List<ByteRange> ranges) throws IOException {
+        long fileSize = video.getSize();
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+
+        for (ByteRange range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + video.getContentType() + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.toContentRange(fileSize) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range.length();
+        }
+        byte[] closeDelimiter = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closeDelimiter.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+
+        OutputStream out = response.getOutputStream();
+        if (!video.isLocal()) {
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                try (InputStream in = video.openRange(ranges.get(i).start(), ranges.get(i).length())) {
+                    copyStream(in, out, ranges.get(i).length(), BandwidthScheduler.Pacer.UNPACED);
+                }
+            }
+            out.write(closeDelimiter);
+            out.flush();
+            return contentLength;
+        }
+        try (StoredVideo.Lease lease = read.lease()) {
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                copyRange(lease.channel(), out, ranges.get(i).start(), ranges.get(i).length(),
+                        BandwidthScheduler.Pacer.UNPACED);
+            }
+            out.write(closeDelimiter);
+        }
+        out.flush();
+        return contentLength;
+    }
+
+    private boolean isSendfileSupported(HttpServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR));
+    }
+
+    private void writeSendfile(HttpServletRequest request, StoredVideo.Read read, long start, long length) {
+        // The connector writes the region itself once the servlet returns without touching the body
+        request.setAttribute(SENDFILE_FILENAME_ATTR, read.file().toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START_ATTR, start);
+        request.setAttribute(SENDFILE_END_ATTR, start + length);
+    }
+
+    private void writeBlocking(HttpServletResponse response, StoredVideo.Read read, long start, long length,
+                               BandwidthScheduler.Pacer pacer) throws IOException {
+        OutputStream out = response.getOutputStream();
+        try (StoredVideo.Lease lease = read.lease()) {
+            copyRange(lease.channel(), out, start, length, pacer);
+        }
+        out.flush();
+    }
+
+    /**
+     * One ranged read against the storage backend per request, streamed through as it arrives.
+     */
+    private void writeRemote(HttpServletResponse response, StoredVideo video, long start, long length,
+                             BandwidthScheduler.Pacer pacer) throws IOException {
+        OutputStream out = response.getOutputStream();
+        try (InputStream in = video.openRange(start, length)) {
+            copyStream(in, out, length, pacer);
+        }
+        out.flush();
+    }
+
+    private void writeCoalesced(HttpServletResponse response, StoredVideo video, StoredVideo.Read read,
+                                long start, long length, BandwidthScheduler.Pacer pacer) throws IOException {
+        OutputStream out = response.getOutputStream();
+        try (StoredVideo.Lease lease = read.lease()) {
+            coalescingReader.copy(video.getStoredPath(), lease.channel(), video.getSize(), out, start, length, pacer);
+        }
+        out.flush();
+    }
+
+    private void writeSegmented(HttpServletResponse response, StoredVideo video, StoredVideo.Read read,
+                                long start, long length, BandwidthScheduler.Pacer pacer) throws IOException {
+        OutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        String key = video.getStoredPath();
+        long fileSize = video.getSize();
+        int segmentSize = segmentCache.getSegmentSize();
+
+        try (StoredVideo.Lease lease = read.lease()) {
+            FileChannel channel = lease.channel();
+            long position = start;
+            long end = start + length;
+            while (position < end) {
+                long segmentIndex = position / segmentSize;
+                int offset = (int) (position - segmentIndex * segmentSize);
+                int count = (int) Math.min(segmentSize - offset, end - position);
+
+                pacer.pace(count);
+                try (SegmentCache.Segment segment = segmentCache.getOrLoad(key, segmentIndex, channel, fileSize)) {
+                    if (segment == null) {
+                        copyRange(channel, out, position, count, BandwidthScheduler.Pacer.UNPACED);
+                    } else {
+                        ByteBuffer data = segment.data();
+                        data.limit(offset + count).position(offset);
+                        while (data.hasRemaining()) {
+                            target.write(data);
+                        }
+                        segmentCache.recordBytesServed(count);
+                    }
+                }
+                position += count;
+            }
+        }
+        out.flush();
+    }
+
+    private static void copyStream(InputStream in, OutputStream out, long length, BandwidthScheduler.Pacer pacer)
+            throws IOException {
+        byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(length, 1))];
+        long remaining = length;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new EOFException("Stored object ended " + remaining + " bytes short of the range");
+            }
+            pacer.pace(read);
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    /**
+     * The servlet stream exposes no socket channel, so this always copies through user space; only the
+     * connector's sendfile keeps the bytes in the kernel.
+     */
+    private void copyRange(FileChannel channel, OutputStream out, long start, long length,
+                           BandwidthScheduler.Pacer pacer) throws IOException {
+        long position = start;
+        long remaining = length;
+        WritableByteChannel target = Channels.newChannel(out);
+
+        try (DirectBufferPool.PooledBuffer pooled = bufferPool.acquire((int) Math.min(BUFFER_SIZE, remaining))) {
+            ByteBuffer buffer = pooled.buffer();
+            while (remaining > 0) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                int read = channel.read(buffer, position);
+                if (read == -1) {
+                    break;
+                }
+                pacer.pace(read);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                position += read;
+                remaining -= read;
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package global.inventory.service.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Incremental {@code multipart/form-data} reader: parts are handed out one at a time with a body stream that
+ * reads straight from the request, so nothing is buffered beyond a fixed window and no part is spooled to
+ * disk. A part's body must be consumed, or skipped by moving to the next part, in order.
+ */
+public final class MultipartStream {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final int MAX_HEADER_BYTES = 8192;
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int head;
+    private int tail;
+    private boolean eof;
+    private boolean finished;
+    private Part current;
+
+    public MultipartStream(InputStream in, String boundary, int bufferSize) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        this.buffer = new byte[Math.max(bufferSize, 2 * delimiter.length + MAX_HEADER_BYTES)];
+        // The first boundary has no line break in front of it; pretend it does so every boundary looks alike
+        buffer[tail++] = '\r';
+        buffer[tail++] = '\n';
+        this.current = new Part(null, null, null);
+    }
+
+    /**
+     * The boundary of a {@code multipart/...} content type, or {@code null} when there is none.
+     */
+    public static String boundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) {
+            return null;
+        }
+        String boundary = parameters(contentType).get("boundary");
+        return boundary == null || boundary.isEmpty() || boundary.length() > 70 ? null : boundary;
+    }
+
+    /**
+     * Skips whatever is left of the current part and returns the next one, or {@code null} after the last.
+     */
+    public Part next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        current.body.skipToEnd();
+
+        ensure(2);
+        if (tail - head >= 2 && buffer[head] == '-' && buffer[head + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        String headers = readHeaders();
+        Map<String, String> disposition = Map.of();
+        String contentType = null;
+        for (String line : headers.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if ("content-disposition".equals(name)) {
+                disposition = parameters(value);
+            } else if ("content-type".equals(name)) {
+                contentType = value;
+            }
+        }
+        current = new Part(disposition.get("name"), disposition.get("filename"), contentType);
+        return current;
+    }
+
+    /**
+     * Reads the line break after a boundary, then header lines up to the empty line that ends them.
+     */
+    private String readHeaders() throws IOException {
+        ensure(MAX_HEADER_BYTES + CRLF.length);
+        // Transport padding may follow the boundary before its line break
+        while (head < tail && (buffer[head] == ' ' || buffer[head] == '\t')) {
+            head++;
+        }
+        if (tail - head < 2 || buffer[head] != '\r' || buffer[head + 1] != '\n') {
+            throw new MalformedMultipartException("Expected a line break after the boundary");
+        }
+        head += 2;
+        if (tail - head >= 2 && buffer[head] == '\r' && buffer[head + 1] == '\n') {
+            head += 2;
+            return "";
+        }
+        int end = indexOf(new byte[]{'\r', '\n', '\r', '\n'}, head, tail);
+        if (end < 0) {
+            throw new MalformedMultipartException("Part headers are missing or longer than " + MAX_HEADER_BYTES);
+        }
+        String headers = new String(buffer, head, end - head, StandardCharsets.UTF_8);
+        head = end + 4;
+        return headers;
+    }
+
+    /**
+     * Tries to have at least {@code count} unread bytes in the window, fewer only at the end of the input.
+     */
+    private void ensure(int count) throws IOException {
+        while (tail - head < count && !eof) {
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        if (head > 0) {
+            System.arraycopy(buffer, head, buffer, 0, tail - head);
+            tail -= head;
+            head = 0;
+        }
+        int read = in.read(buffer, tail, buffer.length - tail);
+        if (read < 0) {
+            eof = true;
+        } else {
+            tail += read;
+        }
+    }
+
+    private int indexOf(byte[] pattern, int from, int to) {
+        outer:
+        for (int i = from; i <= to - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static Map<String, String> parameters(String header) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        for (String parameter : header.split(";")) {
+            int equals = parameter.indexOf('=');
+            if (equals <= 0) {
+                continue;
+            }
+            String name = parameter.substring(0, equals).trim().toLowerCase(Locale.ROOT);
+            String value = parameter.substring(equals + 1).trim();
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            parameters.putIfAbsent(name, value);
+        }
+        return parameters;
+    }
+
+    public final class Part {
+        private final String name;
+        private final String fileName;
+        private final String contentType;
+        private final Body body = new Body();
+
+        private Part(String name, String fileName, String contentType) {
+            this.name = name;
+            this.fileName = fileName;
+            this.contentType = contentType;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public boolean isFile() {
+            return fileName != null;
+        }
+
+        public InputStream getInputStream() {
+            return body;
+        }
+
+        /**
+         * Reads a form field value, failing when it is longer than {@code maxBytes}.
+         */
+        public String readString(int maxBytes) throws IOException {
+            byte[] value = body.readNBytes(maxBytes + 1);
+            if (value.length > maxBytes) {
+                throw new MalformedMultipartException("Field " + name + " is longer than " + maxBytes + " bytes");
+            }
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * A part's body: everything up to the next delimiter. Bytes are only handed out once it is certain they
+     * cannot be the start of the delimiter.
+     */
+    private final class Body extends InputStream {
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (done) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            int available;
+            while (true) {
+                int found = indexOf(delimiter, head, tail);
+                if (found == head) {
+                    head += delimiter.length;
+                    done = true;
+                    return -1;
+                }
+                // Up to the delimiter, or short of a partial delimiter at the end of the window
+                available = found >= 0 ? found - head : tail - head - (delimiter.length - 1);
+                if (available > 0) {
+                    break;
+                }
+                if (eof) {
+                    throw new MalformedMultipartException("Input ended inside a part");
+                }
+                fill();
+            }
+            int count = Math.min(length, available);
+            System.arraycopy(buffer, head, target, offset, count);
+            head += count;
+            return count;
+        }
+
+        private void skipToEnd() throws IOException {
+            byte[] skip = new byte[8192];
+            while (read(skip, 0, skip.length) >= 0) {
+                // discard
+            }
+        }
+    }
+
+    public static class MalformedMultipartException extends IOException {
+        public MalformedMultipartException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package global.inventory.service.upload;
+
+import global.inventory.model.Video;
+import global.inventory.payload.request.UploadSessionRequest;
+
+import java.io.InputStream;
+
+public interface ResumableUploadService {
+    UploadSession create(UploadSessionRequest request, Long ownerId);
+
+    UploadSession get(String id, Long ownerId);
+
+    /**
+     * Writes {@code body} into the upload at {@code offset}. Chunks may arrive in any order and concurrently;
+     * a chunk sent again overwrites the same bytes.
+     */
+    UploadSession writeChunk(String id, Long ownerId, long offset, InputStream body);
+
+    Video complete(String id, Long ownerId);
+
+    void abort(String id, Long ownerId);
+
+    int getChunkSize();
+
+    long expiresAt(UploadSession session);
+}
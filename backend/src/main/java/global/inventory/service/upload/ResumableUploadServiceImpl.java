@@ -0,0 +1,356 @@
+package global.inventory.service.upload;
+
+import global.inventory.exception.ResourceNotFoundException;
+import global.inventory.exception.StorageException;
+import global.inventory.exception.UploadConflictException;
+import global.inventory.model.Video;
+import global.inventory.payload.request.UploadSessionRequest;
+import global.inventory.service.VideoService;
+import global.inventory.service.cache.DirectBufferPool;
+import global.inventory.service.storage.StoredFile;
+import global.inventory.service.storage.VideoStorageService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Resumable uploads: the file is preallocated at its final size when the session is created and each chunk
+ * is written straight to its offset with positional {@link FileChannel} writes, so parallel chunks never
+ * contend on a shared position and nothing is reassembled at the end. Sessions live in memory and a sweeper
+ * expires them after {@code app.video.upload.session-ttl-minutes} without activity. Because every session
+ * holds its full size on disk from the start, each owner may keep only {@code max-sessions-per-owner} open
+ * and all of them together only {@code max-preallocated-bytes}.
+ */
+@Slf4j
+@Service
+public class ResumableUploadServiceImpl implements ResumableUploadService {
+    private static final String PART_SUFFIX = ".part";
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+    private static final long MAX_SWEEP_MILLIS = 60_000;
+
+    private final Path uploadDirectory;
+    private final long maxFileSize;
+    private final int chunkSize;
+    private final long sessionTtlMillis;
+    private final int maxSessionsPerOwner;
+    private final long maxPreallocatedBytes;
+    private final VideoStorageService videoStorageService;
+    private final VideoService videoService;
+    private final DirectBufferPool bufferPool;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+
+    // Guarded by itself; sessions are counted from reservation, before their file exists
+    private final Map<Long, Integer> sessionsByOwner = new HashMap<>();
+    private long preallocatedBytes;
+
+    public ResumableUploadServiceImpl(
+            @Value("${app.video.storage.location}") String storageLocation,
+            @Value("${app.video.max-size:524288000}") long maxFileSize,
+            @Value("${app.video.upload.chunk-size:8388608}") int chunkSize,
+            @Value("${app.video.upload.session-ttl-minutes:1440}") long sessionTtlMinutes,
+            @Value("${app.video.upload.max-sessions-per-owner:4}") int maxSessionsPerOwner,
+            @Value("${app.video.upload.max-preallocated-bytes:10737418240}") long maxPreallocatedBytes,
+            VideoStorageService videoStorageService,
+            VideoService videoService,
+            DirectBufferPool bufferPool) {
+        // Inside the storage root so finalizing is a rename on the same file system
+        this.uploadDirectory = Paths.get(storageLocation).resolve(".uploads");
+        this.maxFileSize = maxFileSize;
+        this.chunkSize = chunkSize;
+        this.sessionTtlMillis = sessionTtlMinutes * 60_000;
+        this.maxSessionsPerOwner = maxSessionsPerOwner;
+        this.maxPreallocatedBytes = maxPreallocatedBytes;
+        this.videoStorageService = videoStorageService;
+        this.videoService = videoService;
+        this.bufferPool = bufferPool;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("upload-session-sweeper-");
+        threadFactory.setDaemon(true);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long sweepMillis = Math.max(1000, Math.min(MAX_SWEEP_MILLIS, sessionTtlMillis / 4));
+        this.sweeper.scheduleWithFixedDelay(this::expireIdleSessions, sweepMillis, sweepMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PostConstruct
+    public void initialize() {
+        try {
+            Files.createDirectories(uploadDirectory);
+            // Sessions do not survive a restart, so neither do their files
+            try (var parts = Files.newDirectoryStream(uploadDirectory, "*" + PART_SUFFIX)) {
+                for (Path part : parts) {
+                    Files.deleteIfExists(part);
+                }
+            }
+        } catch (IOException e) {
+            throw new StorageException("Could not initialize upload location", e);
+        }
+    }
+
+    @Override
+    public UploadSession create(UploadSessionRequest request, Long ownerId) {
+        if (request.getSize() > maxFileSize) {
+            throw new StorageException(String.format("File size %d exceeds maximum limit of %d bytes",
+                    request.getSize(), maxFileSize));
+        }
+        String fileName = StringUtils.cleanPath(request.getFileName());
+        if (fileName.contains("..")) {
+            throw new StorageException("Cannot store file with relative path outside current directory");
+        }
+
+        reserve(ownerId, request.getSize());
+        String id = UUID.randomUUID().toString();
+        Path file = uploadDirectory.resolve(id + PART_SUFFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(request.getSize());
+        } catch (IOException e) {
+            deleteQuietly(file);
+            release(ownerId, request.getSize());
+            throw new StorageException("Could not allocate upload of " + request.getSize() + " bytes", e);
+        }
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            UploadSession session = new UploadSession(id, ownerId, request.getTitle(), request.getDescription(),
+                    fileName, request.getSize(), file, channel);
+            sessions.put(id, session);
+            log.info("Started upload {} of {} ({} bytes)", id, fileName, request.getSize());
+            return session;
+        } catch (IOException e) {
+            deleteQuietly(file);
+            release(ownerId, request.getSize());
+            throw new StorageException("Could not open upload " + id, e);
+        }
+    }
+
+    private void reserve(Long ownerId, long size) {
+        synchronized (sessionsByOwner) {
+            int owned = sessionsByOwner.getOrDefault(ownerId, 0);
+            if (owned >= maxSessionsPerOwner) {
+                throw new UploadConflictException(String.format("%d uploads are already in progress; complete "
+                        + "or abort one first", owned));
+            }
+            if (preallocatedBytes + size > maxPreallocatedBytes) {
+                throw new UploadConflictException("Not enough upload space for " + size + " bytes; try again later");
+            }
+            sessionsByOwner.put(ownerId, owned + 1);
+            preallocatedBytes += size;
+        }
+    }
+
+    private void release(Long ownerId, long size) {
+        synchronized (sessionsByOwner) {
+            sessionsByOwner.computeIfPresent(ownerId, (owner, owned) -> owned > 1 ? owned - 1 : null);
+            preallocatedBytes -= size;
+        }
+    }
+
+    /**
+     * Ends a session's hold on its owner's quota and the upload space, once however many paths reach it.
+     */
+    private void remove(UploadSession session) {
+        if (sessions.remove(session.getId(), session)) {
+            release(session.getOwnerId(), session.getSize());
+        }
+    }
+
+    @Override
+    public UploadSession get(String id, Long ownerId) {
+        UploadSession session = sessions.get(id);
+        if (session == null || !Objects.equals(session.getOwnerId(), ownerId)) {
+            throw new ResourceNotFoundException("Upload", "id", id);
+        }
+        return session;
+    }
+
+    @Override
+    public UploadSession writeChunk(String id, Long ownerId, long offset, InputStream body) {
+        UploadSession session = get(id, ownerId);
+        if (offset < 0 || offset >= session.getSize()) {
+            throw new UploadConflictException(String.format("Offset %d is outside the upload of %d bytes",
+                    offset, session.getSize()));
+        }
+
+        Lock lock = session.lock().readLock();
+        lock.lock();
+        try {
+            if (session.isClosed()) {
+                throw new ResourceNotFoundException("Upload", "id", id);
+            }
+            session.touch();
+            long written = write(session, offset, body);
+            if (written < 0) {
+                throw new UploadConflictException(String.format("Chunk at offset %d runs past the end of the "
+                        + "upload of %d bytes", offset, session.getSize()));
+            }
+            return session;
+        } catch (IOException e) {
+            throw new StorageException("Failed to write chunk of upload " + id, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return bytes written, or -1 when the body is longer than the rest of the file; whatever arrived before
+     *         a failure is still recorded so the client only needs to resend the remainder
+     */
+    private long write(UploadSession session, long offset, InputStream body) throws IOException {
+        FileChannel channel = session.channel();
+        long limit = session.getSize() - offset;
+        long position = offset;
+        ReadableByteChannel in = Channels.newChannel(body);
+        try (DirectBufferPool.PooledBuffer pooled = bufferPool.acquire((int) Math.min(COPY_BUFFER_SIZE, limit + 1))) {
+            ByteBuffer buffer = pooled.buffer();
+            while (true) {
+                buffer.clear();
+                if (buffer.capacity() > limit - (position - offset)) {
+                    // One byte past the end tells an oversized body apart from one that ends exactly there
+                    buffer.limit((int) (limit - (position - offset)) + 1);
+                }
+                int read = in.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                buffer.flip();
+                if (position - offset + buffer.remaining() > limit) {
+                    return -1;
+                }
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+        } finally {
+            session.markReceived(offset, position);
+        }
+        return position - offset;
+    }
+
+    @Override
+    public Video complete(String id, Long ownerId) {
+        UploadSession session = get(id, ownerId);
+        Lock lock = session.lock().writeLock();
+        lock.lock();
+        try {
+            if (session.isClosed()) {
+                throw new ResourceNotFoundException("Upload", "id", id);
+            }
+            if (!session.isComplete()) {
+                throw new UploadConflictException(String.format("Upload %s has %d of %d bytes from the start",
+                        id, session.getCommittedOffset(), session.getSize()));
+            }
+            session.close();
+            remove(session);
+            session.channel().force(false);
+            session.channel().close();
+        } catch (IOException e) {
+            discard(session);
+            throw new StorageException("Failed to finalize upload " + id, e);
+        } finally {
+            lock.unlock();
+        }
+
+        StoredFile stored;
+        try {
+            stored = videoStorageService.store(session.file(), session.getFileName());
+        } catch (RuntimeException e) {
+            deleteQuietly(session.file());
+            throw e;
+        }
+        try {
+            Video video = videoService.createVideo(session.getTitle(), session.getDescription(), stored);
+            log.info("Completed upload {} as {}", id, stored.storedPath());
+            return video;
+        } catch (RuntimeException e) {
+            videoStorageService.delete(stored.storedPath());
+            throw e;
+        }
+    }
+
+    @Override
+    public void abort(String id, Long ownerId) {
+        UploadSession session = get(id, ownerId);
+        Lock lock = session.lock().writeLock();
+        lock.lock();
+        try {
+            discard(session);
+        } finally {
+            lock.unlock();
+        }
+        log.info("Aborted upload {}", id);
+    }
+
+    @Override
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public long expiresAt(UploadSession session) {
+        return session.getLastActivity() + sessionTtlMillis;
+    }
+
+    private void expireIdleSessions() {
+        long now = System.currentTimeMillis();
+        for (UploadSession session : sessions.values()) {
+            if (expiresAt(session) < now && session.lock().writeLock().tryLock()) {
+                try {
+                    discard(session);
+                    log.info("Expired idle upload {}", session.getId());
+                } finally {
+                    session.lock().writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    private void discard(UploadSession session) {
+        session.close();
+        remove(session);
+        try {
+            session.channel().close();
+        } catch (IOException e) {
+            log.debug("Could not close upload {}", session.getId(), e);
+        }
+        deleteQuietly(session.file());
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}", file, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        sessions.values().forEach(this::discard);
+    }
+}
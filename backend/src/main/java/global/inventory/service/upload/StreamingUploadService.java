@@ -0,0 +1,13 @@
+package global.inventory.service.upload;
+
+import global.inventory.model.Video;
+
+import java.io.InputStream;
+
+public interface StreamingUploadService {
+    /**
+     * Reads a {@code multipart/form-data} upload with {@code title}, optional {@code description} and one
+     * {@code file} part, writing the file once, directly into storage.
+     */
+    Video upload(InputStream body, String contentType);
+}
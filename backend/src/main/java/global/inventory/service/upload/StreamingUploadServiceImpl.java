@@ -0,0 +1,94 @@
+package global.inventory.service.upload;
+
+import global.inventory.exception.StorageException;
+import global.inventory.model.Video;
+import global.inventory.service.VideoService;
+import global.inventory.service.storage.StoredFile;
+import global.inventory.service.storage.VideoStorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Multipart uploads without spooling: the request body is parsed as it arrives and the file part is copied
+ * once, straight into its final location, with its size limit and checksum applied on the way. Form fields
+ * may come before or after the file.
+ */
+@Slf4j
+@Service
+public class StreamingUploadServiceImpl implements StreamingUploadService {
+    private static final int MAX_FIELD_BYTES = 64 * 1024;
+
+    private final int bufferSize;
+    private final VideoStorageService videoStorageService;
+    private final VideoService videoService;
+
+    public StreamingUploadServiceImpl(
+            @Value("${app.video.upload.stream-buffer-size:65536}") int bufferSize,
+            VideoStorageService videoStorageService,
+            VideoService videoService) {
+        this.bufferSize = bufferSize;
+        this.videoStorageService = videoStorageService;
+        this.videoService = videoService;
+    }
+
+    @Override
+    public Video upload(InputStream body, String contentType) {
+        String boundary = MultipartStream.boundary(contentType);
+        if (boundary == null) {
+            throw new StorageException("Expected a multipart request with a boundary");
+        }
+
+        String title = null;
+        String description = null;
+        StoredFile stored = null;
+        try {
+            MultipartStream multipart = new MultipartStream(body, boundary, bufferSize);
+            MultipartStream.Part part;
+            while ((part = multipart.next()) != null) {
+                if ("file".equals(part.getName()) && part.isFile()) {
+                    if (stored != null) {
+                        throw new StorageException("Only one file can be uploaded per request");
+                    }
+                    stored = videoStorageService.store(part.getInputStream(), part.getFileName());
+                } else if ("title".equals(part.getName())) {
+                    title = part.readString(MAX_FIELD_BYTES);
+                } else if ("description".equals(part.getName())) {
+                    description = part.readString(MAX_FIELD_BYTES);
+                }
+            }
+        } catch (IOException e) {
+            discard(stored);
+            throw new StorageException("Failed to read upload", e);
+        } catch (RuntimeException e) {
+            discard(stored);
+            throw e;
+        }
+
+        if (stored == null) {
+            throw new StorageException("Cannot store empty file");
+        }
+        if (!StringUtils.hasText(title)) {
+            discard(stored);
+            throw new StorageException("title is required");
+        }
+        try {
+            Video video = videoService.createVideo(title, description, stored);
+            log.info("Streamed upload {} ({} bytes, sha256 {})", stored.storedPath(), stored.size(), stored.sha256());
+            return video;
+        } catch (RuntimeException e) {
+            discard(stored);
+            throw e;
+        }
+    }
+
+    private void discard(StoredFile stored) {
+        if (stored != null) {
+            videoStorageService.delete(stored.storedPath());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package global.inventory.service.upload;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A resumable upload in progress: a preallocated file that chunks are written into at their own offsets, in
+ * any order and in parallel, plus the set of byte ranges that have been fully written so far. Chunk writers
+ * share the read side of {@link #lock()}; finalizing takes the write side so no chunk is still landing in the
+ * file when it moves into storage.
+ */
+public class UploadSession {
+    private final String id;
+    private final Long ownerId;
+    private final String title;
+    private final String description;
+    private final String fileName;
+    private final long size;
+    private final Path file;
+    private final FileChannel channel;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Disjoint, non-adjacent written ranges, start to end
+    private final NavigableMap<Long, Long> received = new TreeMap<>();
+    private long receivedBytes;
+    private volatile long lastActivity = System.currentTimeMillis();
+    private volatile boolean closed;
+
+    UploadSession(String id, Long ownerId, String title, String description, String fileName, long size,
+                  Path file, FileChannel channel) {
+        this.id = id;
+        this.ownerId = ownerId;
+        this.title = title;
+        this.description = description;
+        this.fileName = fileName;
+        this.size = size;
+        this.file = file;
+        this.channel = channel;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getOwnerId() {
+        return ownerId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * End of the written prefix of the file: a client that lost track of its chunks resumes from here.
+     */
+    public synchronized long getCommittedOffset() {
+        Map.Entry<Long, Long> first = received.firstEntry();
+        return first != null && first.getKey() == 0 ? first.getValue() : 0;
+    }
+
+    public synchronized long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    public synchronized boolean isComplete() {
+        return getCommittedOffset() == size;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    FileChannel channel() {
+        return channel;
+    }
+
+    ReadWriteLock lock() {
+        return lock;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        closed = true;
+    }
+
+    void touch() {
+        lastActivity = System.currentTimeMillis();
+    }
+
+    synchronized void markReceived(long start, long end) {
+        if (start >= end) {
+            return;
+        }
+        Map.Entry<Long, Long> before = received.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+        Map.Entry<Long, Long> next = received.ceilingEntry(start);
+        while (next != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            receivedBytes -= next.getValue() - next.getKey();
+            received.remove(next.getKey());
+            next = received.ceilingEntry(start);
+        }
+        received.put(start, end);
+        receivedBytes += end - start;
+    }
+}
@@ -0,0 +1,231 @@
+package global.inventory;
+
+import global.inventory.service.streaming.AsyncVideoStreamWriter;
+import global.inventory.service.streaming.BandwidthScheduler;
+import global.inventory.service.streaming.StreamAdmissionControl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncVideoStreamWriterTest {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int FILE_SIZE = 100_000;
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StreamAdmissionControl admission = new StreamAdmissionControl(true, 10, FILE_SIZE, 4, 2,
+            meterRegistry);
+    private final BandwidthScheduler.Pacer unpaced = new BandwidthScheduler(false, 1.5, 10, 0, 0, 0, 300, 2_500_000)
+            .pacer("alice", "video.mp4", 0);
+    private final AtomicLong finishedBytes = new AtomicLong(-1);
+
+    private byte[] content;
+    private Path video;
+    private MockHttpServletRequest request;
+    private ClientStream client;
+    private MockHttpServletResponse response;
+    private AsyncVideoStreamWriter writer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+        video = Files.write(directory.resolve("video.mp4"), content);
+        request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        client = new ClientStream();
+        response = new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return client;
+            }
+        };
+        writer = new AsyncVideoStreamWriter(BUFFER_SIZE, 30_000, 2, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should resume after every partial write until the range is sent, then complete and release")
+    void partialWrites() throws Exception {
+        StreamAdmissionControl.Permit permit = admission.tryAcquire("alice", 50_000);
+        writer.start(request, response, video.toFile(), 1000, 50_000, unpaced, bytes -> {
+            finishedBytes.set(bytes);
+            permit.close();
+        });
+        assertThat(request.isAsyncStarted()).isTrue();
+        assertThat(WebAsyncUtils.getAsyncManager(request).isConcurrentHandlingStarted()).isTrue();
+
+        client.listener.onWritePossible();
+        for (int i = 0; i < 5000 && finishedBytes.get() < 0; i++) {
+            if (client.blocked) {
+                client.blocked = false;
+                client.listener.onWritePossible();
+            }
+            Thread.sleep(1);
+        }
+
+        assertThat(finishedBytes.get()).isEqualTo(50_000);
+        assertThat(client.content.toByteArray()).isEqualTo(Arrays.copyOfRange(content, 1000, 51_000));
+        assertThat(client.writes).isEqualTo(4);
+        assertThat(request.isAsyncStarted()).isFalse();
+        assertThat(admission.getActiveStreams()).isZero();
+        assertThat(meterRegistry.get("video.stream.async.completed").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("video.stream.async.inflight").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should stop, complete the request and release the permit when the client goes away")
+    void clientError() throws Exception {
+        StreamAdmissionControl.Permit permit = admission.tryAcquire("alice", FILE_SIZE);
+        writer.start(request, response, video.toFile(), 0, FILE_SIZE, unpaced, bytes -> {
+            finishedBytes.set(bytes);
+            permit.close();
+        });
+
+        client.listener.onWritePossible();
+        awaitBlocked();
+        client.listener.onError(new IOException("Connection reset"));
+
+        assertThat(finishedBytes.get()).isEqualTo(BUFFER_SIZE);
+        assertThat(request.isAsyncStarted()).isFalse();
+        assertThat(admission.getActiveStreams()).isZero();
+
+        client.blocked = false;
+        client.listener.onWritePossible();
+        assertThat(client.writes).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should release the permit once when the container ends the request first")
+    void containerCompletion() throws Exception {
+        AtomicLong calls = new AtomicLong();
+        writer.start(request, response, video.toFile(), 0, FILE_SIZE, unpaced, bytes -> {
+            finishedBytes.set(bytes);
+            calls.incrementAndGet();
+        });
+
+        client.listener.onWritePossible();
+        awaitBlocked();
+        MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        assertThat(finishedBytes.get()).isEqualTo(BUFFER_SIZE);
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should abort a stream whose client stops reading")
+    void stalledClient() throws Exception {
+        writer.shutdown();
+        writer = new AsyncVideoStreamWriter(BUFFER_SIZE, 100, 2, meterRegistry);
+        writer.start(request, response, video.toFile(), 0, FILE_SIZE, unpaced, finishedBytes::set);
+
+        client.listener.onWritePossible();
+        awaitBlocked();
+        for (int i = 0; i < 300 && finishedBytes.get() < 0; i++) {
+            Thread.sleep(10);
+        }
+
+        assertThat(finishedBytes.get()).isEqualTo(BUFFER_SIZE);
+        assertThat(request.isAsyncStarted()).isFalse();
+        assertThat(meterRegistry.get("video.stream.async.timeouts").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should complete the request and release the permit when no write listener can be set")
+    void listenerRejected() {
+        StreamAdmissionControl.Permit permit = admission.tryAcquire("alice", FILE_SIZE);
+        client.rejectListener = true;
+
+        assertThatThrownBy(() -> writer.start(request, response, video.toFile(), 0, FILE_SIZE, unpaced,
+                bytes -> {
+                    finishedBytes.set(bytes);
+                    permit.close();
+                }))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(finishedBytes.get()).isZero();
+        assertThat(request.isAsyncStarted()).isFalse();
+        assertThat(admission.getActiveStreams()).isZero();
+        assertThat(meterRegistry.get("video.stream.async.inflight").gauge().value()).isZero();
+    }
+
+    private void awaitBlocked() throws InterruptedException {
+        for (int i = 0; i < 500 && !client.blocked; i++) {
+            Thread.sleep(1);
+        }
+        assertThat(client.blocked).isTrue();
+    }
+
+    /**
+     * A client whose socket buffer fills after every write, so each write is followed by a wait for
+     * {@link WriteListener#onWritePossible()}.
+     */
+    private static final class ClientStream extends ServletOutputStream {
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private volatile WriteListener listener;
+        private volatile boolean full;
+        private volatile boolean blocked;
+        private volatile boolean rejectListener;
+        private volatile int writes;
+
+        @Override
+        public boolean isReady() {
+            if (full) {
+                full = false;
+                blocked = true;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            if (rejectListener) {
+                throw new IllegalStateException("Write listener already set");
+            }
+            listener = writeListener;
+        }
+
+        @Override
+        public void write(int b) {
+            content.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            content.write(bytes, offset, length);
+            writes++;
+            full = true;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package global.inventory;
+
+import global.inventory.service.streaming.BandwidthScheduler;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class BandwidthSchedulerTest {
+    private static final long MEGABYTE = 1_000_000;
+    // 8 Mbit/s is 1 MB/s of media, so a session may send 1.5 MB/s after a 2 MB burst
+    private static final long BITRATE = 8_000_000;
+
+    @Test
+    @DisplayName("Should let the initial burst through and then pace at a multiple of the bitrate")
+    void burstThenPace() {
+        BandwidthScheduler scheduler = new BandwidthScheduler(true, 1.5, 2, 0, 0, 0, 300, 2_500_000);
+        BandwidthScheduler.Pacer pacer = scheduler.pacer("user", "video.mp4", BITRATE);
+
+        assertThat(pacer.reserve(2 * MEGABYTE)).isZero();
+        assertThat(seconds(pacer.reserve(3 * MEGABYTE / 2))).isCloseTo(1.0, within(0.05));
+        scheduler.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should keep a session's bucket across range requests")
+    void sessionSurvivesRequests() {
+        BandwidthScheduler scheduler = new BandwidthScheduler(true, 1.5, 2, 0, 0, 0, 300, 2_500_000);
+
+        assertThat(scheduler.pacer("user", "video.mp4", BITRATE).reserve(2 * MEGABYTE)).isZero();
+        assertThat(scheduler.pacer("user", "video.mp4", BITRATE).reserve(MEGABYTE)).isPositive();
+        assertThat(scheduler.pacer("other", "video.mp4", BITRATE).reserve(MEGABYTE)).isZero();
+        scheduler.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should make streams sharing a capped user bucket wait for each other")
+    void userCapIsShared() {
+        BandwidthScheduler scheduler = new BandwidthScheduler(true, 100, 100, 0, MEGABYTE, 0, 300, 2_500_000);
+
+        assertThat(scheduler.pacer("user", "a.mp4", BITRATE).reserve(MEGABYTE)).isZero();
+        assertThat(seconds(scheduler.pacer("user", "b.mp4", BITRATE).reserve(MEGABYTE)))
+                .isCloseTo(1.0, within(0.05));
+        scheduler.shutdown();
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+}
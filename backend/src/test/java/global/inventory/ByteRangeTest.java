@@ -0,0 +1,52 @@
+package global.inventory;
+
+import global.inventory.exception.RangeNotSatisfiableException;
+import global.inventory.service.streaming.ByteRange;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ByteRangeTest {
+    private static final long LENGTH = 10_000;
+
+    @Test
+    @DisplayName("Should resolve closed, open-ended and suffix ranges")
+    void parseSingleRanges() {
+        assertThat(ByteRange.parse("bytes=0-499", LENGTH)).containsExactly(new ByteRange(0, 499));
+        assertThat(ByteRange.parse("bytes=9500-", LENGTH)).containsExactly(new ByteRange(9500, 9999));
+        assertThat(ByteRange.parse("bytes=-500", LENGTH)).containsExactly(new ByteRange(9500, 9999));
+        assertThat(ByteRange.parse("bytes=-20000", LENGTH)).containsExactly(new ByteRange(0, 9999));
+        assertThat(ByteRange.parse("bytes=9000-20000", LENGTH)).containsExactly(new ByteRange(9000, 9999));
+    }
+
+    @Test
+    @DisplayName("Should coalesce overlapping and adjacent ranges in order")
+    void parseMultipleRanges() {
+        assertThat(ByteRange.parse("bytes=500-599, 0-99, 50-149, 150-199, -100", LENGTH))
+                .containsExactly(new ByteRange(0, 199), new ByteRange(500, 599), new ByteRange(9900, 9999));
+        assertThat(ByteRange.parse("bytes=0-0,-1", LENGTH))
+                .containsExactly(new ByteRange(0, 0), new ByteRange(9999, 9999));
+    }
+
+    @Test
+    @DisplayName("Should ignore syntactically invalid range headers")
+    void ignoreInvalidRanges() {
+        assertThat(ByteRange.parse(null, LENGTH)).isEmpty();
+        assertThat(ByteRange.parse("items=0-10", LENGTH)).isEmpty();
+        assertThat(ByteRange.parse("bytes=abc-10", LENGTH)).isEmpty();
+        assertThat(ByteRange.parse("bytes=10-5", LENGTH)).isEmpty();
+        assertThat(ByteRange.parse("bytes=10", LENGTH)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should reject ranges that lie entirely outside the file")
+    void rejectUnsatisfiableRanges() {
+        assertThatThrownBy(() -> ByteRange.parse("bytes=10000-", LENGTH))
+                .isInstanceOf(RangeNotSatisfiableException.class);
+        assertThatThrownBy(() -> ByteRange.parse("bytes=-0", LENGTH))
+                .isInstanceOf(RangeNotSatisfiableException.class);
+        assertThat(ByteRange.parse("bytes=20000-30000,0-9", LENGTH)).containsExactly(new ByteRange(0, 9));
+    }
+}
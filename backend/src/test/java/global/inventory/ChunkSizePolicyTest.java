@@ -0,0 +1,66 @@
+package global.inventory;
+
+import global.inventory.service.streaming.ChunkSizePolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChunkSizePolicyTest {
+    private static final long MB = 1024 * 1024;
+    private static final long FILE_SIZE = 500 * MB;
+    private static final String CLIENT = "10.0.0.1";
+
+    private ChunkSizePolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        policy = new ChunkSizePolicy(MB, 32 * MB, 4, 10, 2_500_000, 200);
+    }
+
+    @Test
+    @DisplayName("Should need far fewer requests than a fixed 1MB cap for a fast client")
+    void fastClientRequestCount() {
+        int fixedRequests = (int) (FILE_SIZE / MB);
+        int adaptiveRequests = simulateDownload(CLIENT, 40 * MB);
+
+        assertThat(adaptiveRequests).isLessThan(fixedRequests / 10);
+    }
+
+    @Test
+    @DisplayName("Should keep at least a buffer-ahead window of media for slow clients")
+    void slowClientStaysAboveBitrateWindow() {
+        simulateDownload(CLIENT, 256 * 1024);
+
+        // 8 Mbit/s for 10 seconds
+        assertThat(policy.chunkSize(CLIENT, 8_000_000)).isEqualTo(10_000_000);
+        assertThat(policy.chunkSize(CLIENT, 100_000)).isEqualTo(MB);
+    }
+
+    @Test
+    @DisplayName("Should shrink responses towards the floor when the server is overloaded")
+    void shrinkUnderLoad() {
+        simulateDownload(CLIENT, 40 * MB);
+        long unloaded = policy.chunkSize(CLIENT, 0);
+
+        for (int i = 0; i < 800; i++) {
+            policy.streamStarted();
+        }
+
+        assertThat(policy.chunkSize(CLIENT, 0)).isLessThanOrEqualTo(unloaded / 4).isGreaterThanOrEqualTo(MB);
+    }
+
+    private int simulateDownload(String client, long bytesPerSecond) {
+        int requests = 0;
+        for (long offset = 0; offset < FILE_SIZE; requests++) {
+            long size = Math.min(policy.chunkSize(client, 0), FILE_SIZE - offset);
+            policy.streamStarted();
+            policy.streamFinished(client, size, TimeUnit.SECONDS.toNanos(1) * size / bytesPerSecond);
+            offset += size;
+        }
+        return requests;
+    }
+}
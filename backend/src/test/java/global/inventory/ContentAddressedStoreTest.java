@@ -0,0 +1,67 @@
+package global.inventory;
+
+import global.inventory.service.storage.ContentAddressedStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentAddressedStoreTest {
+    private static final String SHA256 = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @TempDir
+    Path root;
+
+    @Test
+    @DisplayName("Should share one blob between identical uploads and reclaim it with the last reference")
+    void deduplicate() throws IOException {
+        ContentAddressedStore store = new ContentAddressedStore(true);
+        Path first = write("2026/10/16/a.mp4");
+        Path second = write("2026/10/17/b.mp4");
+        Path blob = root.resolve(ContentAddressedStore.BLOB_DIRECTORY).resolve("9f").resolve(SHA256);
+
+        store.deduplicate(root, first, SHA256);
+        store.deduplicate(root, second, SHA256);
+        assertThat(Files.isSameFile(first, second)).isTrue();
+        assertThat(Files.isSameFile(first, blob)).isTrue();
+
+        Files.delete(first);
+        store.release(root, first);
+        assertThat(blob).exists();
+        assertThat(Files.readString(second)).isEqualTo("test");
+
+        Files.delete(second);
+        store.release(root, second);
+        assertThat(blob).doesNotExist();
+        assertThat(ContentAddressedStore.sidecar(second)).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Should give a freshly linked upload a new mtime so the reclaim sweep does not take it for an orphan")
+    void linkTouchesFile() throws IOException {
+        ContentAddressedStore store = new ContentAddressedStore(true);
+        Path first = write("2026/10/16/a.mp4");
+        store.deduplicate(root, first, SHA256);
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(30)));
+        Files.setLastModifiedTime(first, old);
+
+        Path second = write("2026/10/17/b.mp4");
+        store.deduplicate(root, second, SHA256);
+        assertThat(Files.isSameFile(first, second)).isTrue();
+        assertThat(Files.getLastModifiedTime(second).toMillis()).isGreaterThan(old.toMillis());
+    }
+
+    private Path write(String storedPath) throws IOException {
+        Path file = root.resolve(storedPath);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, "test");
+    }
+}
@@ -0,0 +1,153 @@
+package global.inventory;
+
+import global.inventory.service.cache.DiskChunkCache;
+import global.inventory.service.storage.backend.ObjectStat;
+import global.inventory.service.storage.backend.StorageBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiskChunkCacheTest {
+    private static final int CHUNK = 4096;
+
+    @TempDir
+    Path directory;
+
+    private final RemoteBackend remote = new RemoteBackend();
+
+    @Test
+    @DisplayName("Should serve repeated reads from disk and keep them across a restart")
+    void readThrough() throws IOException {
+        byte[] video = content(10 * CHUNK + 123);
+        remote.objects.put("2026/10/18/a.mp4", video);
+
+        DiskChunkCache cache = cache(0);
+        assertThat(read(cache, "2026/10/18/a.mp4", CHUNK - 10, 2 * CHUNK))
+                .isEqualTo(Arrays.copyOfRange(video, CHUNK - 10, 3 * CHUNK - 10));
+        assertThat(remote.reads.get()).isEqualTo(3);
+
+        assertThat(read(cache, "2026/10/18/a.mp4", CHUNK, CHUNK))
+                .isEqualTo(Arrays.copyOfRange(video, CHUNK, 2 * CHUNK));
+        assertThat(remote.reads.get()).isEqualTo(3);
+        cache.shutdown();
+
+        DiskChunkCache restarted = cache(0);
+        restarted.initialize();
+        assertThat(read(restarted, "2026/10/18/a.mp4", 0, 3 * CHUNK))
+                .isEqualTo(Arrays.copyOfRange(video, 0, 3 * CHUNK));
+        assertThat(remote.reads.get()).isEqualTo(3);
+        assertThat(read(restarted, "2026/10/18/a.mp4", 10 * CHUNK, 123))
+                .isEqualTo(Arrays.copyOfRange(video, 10 * CHUNK, video.length));
+        assertThat(remote.reads.get()).isEqualTo(4);
+        restarted.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should fetch the chunks after a read in the background")
+    void prefetch() throws Exception {
+        remote.objects.put("b.mp4", content(8 * CHUNK));
+        DiskChunkCache cache = cache(2);
+
+        read(cache, "b.mp4", 0, 100);
+        for (int i = 0; i < 500 && remote.reads.get() < 3; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(remote.reads.get()).isEqualTo(3);
+
+        read(cache, "b.mp4", CHUNK, 2 * CHUNK);
+        assertThat(remote.reads.get()).isLessThanOrEqualTo(5);
+        cache.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should evict whole objects to stay under the byte budget")
+    void eviction() throws IOException {
+        DiskChunkCache cache = new DiskChunkCache(true, directory.toString(), 4L * CHUNK, CHUNK, 0, 1,
+                new SimpleMeterRegistry());
+        for (int i = 0; i < 4; i++) {
+            remote.objects.put("v" + i + ".mp4", content(2 * CHUNK));
+            read(cache, "v" + i + ".mp4", 0, 2 * CHUNK);
+        }
+        int before = remote.reads.get();
+        read(cache, "v3.mp4", 0, 2 * CHUNK);
+        assertThat(remote.reads.get()).isEqualTo(before);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.filter(file -> file.toString().endsWith(".data")).count()).isLessThanOrEqualTo(2);
+        }
+        cache.shutdown();
+    }
+
+    private DiskChunkCache cache(int prefetchChunks) {
+        return new DiskChunkCache(true, directory.toString(), 1024L * CHUNK, CHUNK, prefetchChunks, 1,
+                new SimpleMeterRegistry());
+    }
+
+    private byte[] read(DiskChunkCache cache, String key, long offset, long length) throws IOException {
+        try (InputStream in = cache.read(remote, key, offset, length)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 31 % 251);
+        }
+        return content;
+    }
+
+    private static final class RemoteBackend implements StorageBackend {
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        private final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public ObjectStat stat(String key) throws IOException {
+            return new ObjectStat(get(key).length, 0);
+        }
+
+        @Override
+        public InputStream read(String key, long offset, long length) throws IOException {
+            reads.incrementAndGet();
+            return new ByteArrayInputStream(get(key), (int) offset, (int) length);
+        }
+
+        @Override
+        public void write(String key, InputStream content, long length) throws IOException {
+            objects.put(key, content.readAllBytes());
+        }
+
+        @Override
+        public void delete(String key) {
+            objects.remove(key);
+        }
+
+        @Override
+        public Path localFile(String key) {
+            return null;
+        }
+
+        private byte[] get(String key) throws NoSuchFileException {
+            byte[] object = objects.get(key);
+            if (object == null) {
+                throw new NoSuchFileException(key);
+            }
+            return object;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package global.inventory;
+
+import global.inventory.service.media.HlsPackager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HlsPackagerTest {
+    private static final int SAMPLES = 10;
+    private static final int SAMPLE_DELTA_MS = 500;
+    private static final int[] SYNC_SAMPLES = {1, 5, 9};
+
+    @TempDir
+    Path tempDir;
+
+    private final HlsPackager packager = new HlsPackager(1.5, 1024 * 1024);
+
+    @Test
+    @DisplayName("Should cut segments at keyframes and list them in a VOD playlist")
+    void packageIntoSegments() throws Exception {
+        Path source = Files.write(tempDir.resolve("video.mp4"), mp4());
+        Path output = Files.createDirectory(tempDir.resolve("hls"));
+
+        assertThat(packager.pack(source, output)).isEqualTo(3);
+
+        String playlist = Files.readString(output.resolve(HlsPackager.PLAYLIST));
+        assertThat(playlist).contains("#EXT-X-TARGETDURATION:2\n");
+        assertThat(playlist).contains("#EXT-X-MAP:URI=\"init.mp4\"\n");
+        assertThat(playlist).contains("#EXTINF:2.000,\nsegment_00000.m4s\n#EXTINF:2.000,\nsegment_00001.m4s\n"
+                + "#EXTINF:1.000,\nsegment_00002.m4s\n#EXT-X-ENDLIST\n");
+
+        String init = new String(Files.readAllBytes(output.resolve(HlsPackager.INIT_SEGMENT)),
+                StandardCharsets.ISO_8859_1);
+        assertThat(init).contains("mvex");
+        assertThat(init).contains("trex");
+        assertThat(init).contains("avc1");
+    }
+
+    @Test
+    @DisplayName("Should point each fragment's data offset at its own samples")
+    void fragmentCarriesSamples() throws Exception {
+        Path source = Files.write(tempDir.resolve("video.mp4"), mp4());
+        Path output = Files.createDirectory(tempDir.resolve("hls"));
+        packager.pack(source, output);
+
+        ByteBuffer segment = ByteBuffer.wrap(Files.readAllBytes(output.resolve(HlsPackager.segmentName(1))));
+        assertThat(typeAt(segment, 0)).isEqualTo("moof");
+        int moofSize = segment.getInt(0);
+        assertThat(typeAt(segment, moofSize)).isEqualTo("mdat");
+
+        int trun = indexOf(segment, "trun") - 4;
+        int sampleCount = segment.getInt(trun + 12);
+        int dataOffset = segment.getInt(trun + 16);
+        assertThat(sampleCount).isEqualTo(4);
+        assertThat(dataOffset).isEqualTo(moofSize + 8);
+        // Sample 4 of the source is filled with its own index
+        assertThat(segment.get(dataOffset)).isEqualTo((byte) 4);
+        assertThat(segment.limit()).isEqualTo(moofSize + 8 + sampleSize(4) + sampleSize(5) + sampleSize(6)
+                + sampleSize(7));
+    }
+
+    private static byte[] mp4() {
+        byte[] ftyp = box("ftyp", "isom\0\0\0\0".getBytes(StandardCharsets.US_ASCII));
+        long mdatData = ftyp.length + moov(0).length + 8;
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        for (int i = 0; i < SAMPLES; i++) {
+            byte[] sample = new byte[sampleSize(i)];
+            Arrays.fill(sample, (byte) i);
+            payload.writeBytes(sample);
+        }
+        return concat(ftyp, moov(mdatData), box("mdat", payload.toByteArray()));
+    }
+
+    private static byte[] moov(long mdatData) {
+        int duration = SAMPLES * SAMPLE_DELTA_MS;
+        byte[] mvhd = box("mvhd", ByteBuffer.allocate(100).putInt(12, 1000).putInt(16, duration).array());
+        byte[] tkhd = box("tkhd", ByteBuffer.allocate(84)
+                .putInt(12, 1).putInt(76, 1280 << 16).putInt(80, 720 << 16).array());
+        byte[] mdhd = box("mdhd", ByteBuffer.allocate(24).putInt(12, 1000).putInt(16, duration).array());
+        byte[] hdlr = box("hdlr", ByteBuffer.allocate(25).put(8, "vide".getBytes(StandardCharsets.US_ASCII)).array());
+
+        byte[] stsd = box("stsd", concat(ByteBuffer.allocate(8).putInt(4, 1).array(), box("avc1", new byte[78])));
+        byte[] stts = box("stts", ByteBuffer.allocate(16)
+                .putInt(4, 1).putInt(8, SAMPLES).putInt(12, SAMPLE_DELTA_MS).array());
+        ByteBuffer stss = ByteBuffer.allocate(8 + SYNC_SAMPLES.length * 4).putInt(0).putInt(SYNC_SAMPLES.length);
+        for (int sample : SYNC_SAMPLES) {
+            stss.putInt(sample);
+        }
+        ByteBuffer stsz = ByteBuffer.allocate(12 + SAMPLES * 4).putInt(0).putInt(0).putInt(SAMPLES);
+        for (int i = 0; i < SAMPLES; i++) {
+            stsz.putInt(sampleSize(i));
+        }
+        // One chunk per sample
+        byte[] stsc = box("stsc", ByteBuffer.allocate(20)
+                .putInt(4, 1).putInt(8, 1).putInt(12, 1).putInt(16, 1).array());
+        ByteBuffer stco = ByteBuffer.allocate(8 + SAMPLES * 4).putInt(0).putInt(SAMPLES);
+        long offset = mdatData;
+        for (int i = 0; i < SAMPLES; i++) {
+            stco.putInt((int) offset);
+            offset += sampleSize(i);
+        }
+
+        byte[] stbl = box("stbl", concat(stsd, stts, box("stss", stss.array()), stsc, box("stsz", stsz.array()),
+                box("stco", stco.array())));
+        byte[] minf = box("minf", concat(box("vmhd", new byte[12]), stbl));
+        byte[] mdia = box("mdia", concat(mdhd, hdlr, minf));
+        return box("moov", concat(mvhd, box("trak", concat(tkhd, box("edts", new byte[0]), mdia))));
+    }
+
+    private static int sampleSize(int sample) {
+        return 100 + sample;
+    }
+
+    private static int indexOf(ByteBuffer buffer, String type) {
+        return new String(buffer.array(), StandardCharsets.ISO_8859_1).indexOf(type);
+    }
+
+    private static String typeAt(ByteBuffer buffer, int offset) {
+        return new String(buffer.array(), offset + 4, 4, StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(8 + payload.length)
+                .put(type.getBytes(StandardCharsets.US_ASCII))
+                .put(payload)
+                .array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,198 @@
+package global.inventory;
+
+import global.inventory.exception.MediaFormatException;
+import global.inventory.service.media.KeyframeIndex;
+import global.inventory.service.media.KeyframeIndexer;
+import global.inventory.service.media.Mp4Movie;
+import global.inventory.service.media.Mp4Track;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyframeIndexTest {
+    private static final int SAMPLES = 10;
+    private static final int SAMPLES_PER_CHUNK = 5;
+    private static final int SAMPLE_DELTA_MS = 500;
+    private static final int[] SYNC_SAMPLES = {1, 5, 9};
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should map keyframe times to sample byte offsets from the sample tables")
+    void buildsIndexFromSampleTables() throws Exception {
+        Path file = Files.write(tempDir.resolve("video.mp4"), mp4());
+        long mdatData = Files.size(file) - payloadSize();
+
+        Mp4Track track = Mp4Movie.read(file, 1024 * 1024).getVideoTrack();
+        assertThat(track.getSampleCount()).isEqualTo(SAMPLES);
+        assertThat(track.getCodec()).isEqualTo("avc1");
+        assertThat(track.getWidth()).isEqualTo(1280);
+        assertThat(track.getHeight()).isEqualTo(720);
+
+        KeyframeIndex index = KeyframeIndex.of(track);
+        assertThat(index.size()).isEqualTo(SYNC_SAMPLES.length);
+        for (int i = 0; i < SYNC_SAMPLES.length; i++) {
+            int sample = SYNC_SAMPLES[i] - 1;
+            assertThat(index.timeMillis(i)).isEqualTo(sample * SAMPLE_DELTA_MS);
+            assertThat(index.offset(i)).isEqualTo(mdatData + offsetInPayload(sample));
+        }
+    }
+
+    @Test
+    @DisplayName("Should find the last keyframe at or before the requested time")
+    void floorLookup() throws Exception {
+        Path file = Files.write(tempDir.resolve("video.mp4"), mp4());
+        KeyframeIndexer indexer = new KeyframeIndexer(true, 1024 * 1024);
+        indexer.index(file);
+        KeyframeIndex index = indexer.load(file);
+
+        assertThat(index.floor(-1)).isEqualTo(0);
+        assertThat(index.floor(0)).isEqualTo(0);
+        assertThat(index.floor(1999)).isEqualTo(0);
+        assertThat(index.floor(2000)).isEqualTo(1);
+        assertThat(index.floor(3500)).isEqualTo(1);
+        assertThat(index.floor(Long.MAX_VALUE)).isEqualTo(2);
+        assertThat(KeyframeIndex.EMPTY.floor(1000)).isEqualTo(-1);
+    }
+
+    @Test
+    @DisplayName("Should have no index for files that are not MP4")
+    void notMp4() throws Exception {
+        Path file = Files.write(tempDir.resolve("video.mp4"), "not an mp4".getBytes(StandardCharsets.US_ASCII));
+        KeyframeIndexer indexer = new KeyframeIndexer(true, 1024 * 1024);
+        indexer.index(file);
+
+        assertThat(Files.exists(KeyframeIndexer.sidecar(file))).isFalse();
+        assertThat(indexer.load(file).isEmpty()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should reject a fixed-size sample table claiming more samples than the file holds")
+    void rejectsOversizedSampleCount() throws Exception {
+        byte[] mp4 = mp4();
+        int stsz = indexOf(mp4, "stsz") + 4;
+        KeyframeIndexer indexer = new KeyframeIndexer(true, 1024 * 1024);
+        // Fixed size and sample count follow version and flags
+        for (int[] table : new int[][]{{100, -1}, {100, SAMPLES + 1}, {1_000_000, SAMPLES}}) {
+            ByteBuffer.wrap(mp4).putInt(stsz + 4, table[0]).putInt(stsz + 8, table[1]);
+            Path file = Files.write(tempDir.resolve("video.mp4"), mp4);
+
+            assertThatThrownBy(() -> Mp4Movie.read(file, 1024 * 1024)).isInstanceOf(MediaFormatException.class);
+            indexer.index(file);
+            assertThat(Files.exists(KeyframeIndexer.sidecar(file))).isFalse();
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject a stored index whose entry count does not match its length")
+    void rejectsCorruptIndex() throws Exception {
+        Path file = Files.write(tempDir.resolve("video.mp4"), mp4());
+        KeyframeIndexer indexer = new KeyframeIndexer(true, 1024 * 1024);
+        indexer.index(file);
+        Path sidecar = KeyframeIndexer.sidecar(file);
+        byte[] index = Files.readAllBytes(sidecar);
+
+        Files.write(sidecar, ByteBuffer.wrap(index.clone()).putInt(4, Integer.MAX_VALUE).array());
+        assertThatThrownBy(() -> KeyframeIndex.read(sidecar)).isInstanceOf(MediaFormatException.class);
+        assertThat(indexer.load(file).isEmpty()).isTrue();
+
+        Files.write(sidecar, ByteBuffer.wrap(index.clone()).putInt(4, -1).array());
+        assertThatThrownBy(() -> KeyframeIndex.read(sidecar)).isInstanceOf(MediaFormatException.class);
+
+        Files.write(sidecar, Arrays.copyOf(index, index.length - 1));
+        assertThatThrownBy(() -> KeyframeIndex.read(sidecar)).isInstanceOf(MediaFormatException.class);
+    }
+
+    private static int indexOf(byte[] data, String type) {
+        byte[] pattern = type.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            if (Arrays.equals(data, i, i + pattern.length, pattern, 0, pattern.length)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No " + type + " box");
+    }
+
+    private static byte[] mp4() {
+        byte[] ftyp = box("ftyp", "isom\0\0\0\0".getBytes(StandardCharsets.US_ASCII));
+        // The moov size does not depend on the offsets, so lay it out once to find where mdat starts
+        long mdatData = ftyp.length + moov(0).length + 8;
+        return concat(ftyp, moov(mdatData), box("mdat", new byte[payloadSize()]));
+    }
+
+    private static byte[] moov(long mdatData) {
+        int duration = SAMPLES * SAMPLE_DELTA_MS;
+        byte[] mvhd = box("mvhd", ByteBuffer.allocate(100).putInt(12, 1000).putInt(16, duration).array());
+        byte[] tkhd = box("tkhd", ByteBuffer.allocate(84)
+                .putInt(12, 1).putInt(76, 1280 << 16).putInt(80, 720 << 16).array());
+        byte[] mdhd = box("mdhd", ByteBuffer.allocate(24).putInt(12, 1000).putInt(16, duration).array());
+        byte[] hdlr = box("hdlr", ByteBuffer.allocate(25).put(8, "vide".getBytes(StandardCharsets.US_ASCII)).array());
+
+        byte[] stsd = box("stsd", concat(ByteBuffer.allocate(8).putInt(4, 1).array(), box("avc1", new byte[78])));
+        byte[] stts = box("stts", ByteBuffer.allocate(16)
+                .putInt(4, 1).putInt(8, SAMPLES).putInt(12, SAMPLE_DELTA_MS).array());
+        ByteBuffer stss = ByteBuffer.allocate(8 + SYNC_SAMPLES.length * 4).putInt(0).putInt(SYNC_SAMPLES.length);
+        for (int sample : SYNC_SAMPLES) {
+            stss.putInt(sample);
+        }
+        ByteBuffer stsz = ByteBuffer.allocate(12 + SAMPLES * 4).putInt(0).putInt(0).putInt(SAMPLES);
+        for (int i = 0; i < SAMPLES; i++) {
+            stsz.putInt(sampleSize(i));
+        }
+        byte[] stsc = box("stsc", ByteBuffer.allocate(20)
+                .putInt(4, 1).putInt(8, 1).putInt(12, SAMPLES_PER_CHUNK).putInt(16, 1).array());
+        int chunks = SAMPLES / SAMPLES_PER_CHUNK;
+        ByteBuffer stco = ByteBuffer.allocate(8 + chunks * 4).putInt(0).putInt(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            stco.putInt((int) (mdatData + offsetInPayload(chunk * SAMPLES_PER_CHUNK)));
+        }
+
+        byte[] stbl = box("stbl", concat(stsd, stts, box("stss", stss.array()), stsc, box("stsz", stsz.array()),
+                box("stco", stco.array())));
+        byte[] mdia = box("mdia", concat(mdhd, hdlr, box("minf", stbl)));
+        return box("moov", concat(mvhd, box("trak", concat(tkhd, mdia))));
+    }
+
+    private static int sampleSize(int sample) {
+        return 100 + sample;
+    }
+
+    private static long offsetInPayload(int sample) {
+        long offset = 0;
+        for (int i = 0; i < sample; i++) {
+            offset += sampleSize(i);
+        }
+        return offset;
+    }
+
+    private static int payloadSize() {
+        return (int) offsetInPayload(SAMPLES);
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(8 + payload.length)
+                .put(type.getBytes(StandardCharsets.US_ASCII))
+                .put(payload)
+                .array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,142 @@
+package global.inventory;
+
+import global.inventory.service.media.MediaInfo;
+import global.inventory.service.media.MediaProbeService;
+import global.inventory.service.media.MediaProbeServiceImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MediaProbeServiceTest {
+    @TempDir
+    Path tempDir;
+
+    private final MediaProbeServiceImpl probe = new MediaProbeServiceImpl();
+
+    @Test
+    @DisplayName("Should read duration, codecs and resolution from WebM headers")
+    void probeWebm() throws Exception {
+        byte[] ebml = element(0x1A45DFA3, element(0x4282, ascii("webm")));
+        byte[] info = element(0x1549A966, concat(
+                element(0x2AD7B1, new byte[]{0x0F, 0x42, 0x40}),
+                element(0x4489, ByteBuffer.allocate(8).putDouble(4000).array())));
+        byte[] videoTrack = element(0xAE, concat(
+                element(0x83, new byte[]{1}),
+                element(0x86, ascii("V_VP9")),
+                element(0xE0, concat(
+                        element(0xB0, new byte[]{0x02, (byte) 0x80}),
+                        element(0xBA, new byte[]{0x01, 0x68})))));
+        byte[] audioTrack = element(0xAE, concat(element(0x83, new byte[]{2}), element(0x86, ascii("A_OPUS"))));
+        byte[] cluster = element(0x1F43B675, new byte[4000]);
+        // A live-style segment with unknown size
+        byte[] segmentHeader = {0x18, 0x53, (byte) 0x80, 0x67, (byte) 0xFF};
+        byte[] segment = concat(segmentHeader, info, element(0x1654AE6B, concat(videoTrack, audioTrack)), cluster);
+        Path file = Files.write(tempDir.resolve("video.webm"), concat(ebml, segment));
+
+        MediaInfo media = probe.probe(file);
+
+        assertThat(media.container()).isEqualTo("webm");
+        assertThat(media.durationMillis()).isEqualTo(4000);
+        assertThat(media.width()).isEqualTo(640);
+        assertThat(media.height()).isEqualTo(360);
+        assertThat(media.videoCodec()).isEqualTo("vp9");
+        assertThat(media.audioCodec()).isEqualTo("opus");
+        assertThat(media.bitrate()).isEqualTo(Files.size(file) * 8 / 4);
+    }
+
+    @Test
+    @DisplayName("Should read duration, codecs and resolution from MP4 header boxes without the sample tables")
+    void probeMp4() throws Exception {
+        byte[] mvhd = box("mvhd", ByteBuffer.allocate(100).putInt(12, 1000).putInt(16, 4000).array());
+        byte[] video = box("trak", concat(
+                box("tkhd", ByteBuffer.allocate(84).putInt(76, 640 << 16).putInt(80, 360 << 16).array()),
+                mdia("vide", "avc1")));
+        byte[] audio = box("trak", concat(box("tkhd", new byte[84]), mdia("soun", "mp4a")));
+        byte[] mdat = box("mdat", new byte[5000]);
+        Path file = Files.write(tempDir.resolve("video.mp4"), concat(box("moov", concat(mvhd, video, audio)), mdat));
+
+        MediaInfo media = probe.probe(file);
+
+        assertThat(media.container()).isEqualTo("mp4");
+        assertThat(media.durationMillis()).isEqualTo(4000);
+        assertThat(media.width()).isEqualTo(640);
+        assertThat(media.height()).isEqualTo(360);
+        assertThat(media.videoCodec()).isEqualTo("avc1");
+        assertThat(media.audioCodec()).isEqualTo("mp4a");
+        assertThat(media.bitrate()).isEqualTo(5000L * 8 / 4);
+    }
+
+    @Test
+    @DisplayName("Should load saved metadata from the sidecar and probe again only without a readable one")
+    void saveAndLoad() throws Exception {
+        MediaInfo saved = new MediaInfo("webm", 1500, 1280, 720, "V_VP9", null, 800_000);
+        Path file = Files.write(tempDir.resolve("video.webm"), ascii("not a video at all"));
+
+        saved.write(MediaProbeService.sidecar(file));
+        assertThat(probe.load(file)).isEqualTo(saved);
+
+        Files.write(MediaProbeService.sidecar(file), ascii("garbage"));
+        assertThat(probe.load(file)).isEqualTo(MediaInfo.UNKNOWN);
+
+        assertThat(probe.probeAndSave(file)).isEqualTo(MediaInfo.UNKNOWN);
+        assertThat(MediaInfo.read(MediaProbeService.sidecar(file))).isEqualTo(MediaInfo.UNKNOWN);
+    }
+
+    @Test
+    @DisplayName("Should report unknown metadata for files it cannot parse")
+    void probeUnknown() throws Exception {
+        Path file = Files.write(tempDir.resolve("video.mp4"), ascii("not a video at all"));
+
+        assertThat(probe.probe(file)).isEqualTo(MediaInfo.UNKNOWN);
+    }
+
+    private static byte[] element(int id, byte[] payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            if ((id >>> shift) != 0) {
+                out.write(id >>> shift);
+            }
+        }
+        // Eight-byte size so every payload length fits
+        out.writeBytes(ByteBuffer.allocate(8).putLong(payload.length).put(0, (byte) 0x01).array());
+        out.writeBytes(payload);
+        return out.toByteArray();
+    }
+
+    private static byte[] mdia(String handlerType, String codec) {
+        byte[] mdhd = box("mdhd", ByteBuffer.allocate(24).putInt(12, 1000).putInt(16, 4000).array());
+        byte[] hdlr = box("hdlr", ByteBuffer.allocate(25).put(8, ascii(handlerType)).array());
+        byte[] stsd = box("stsd", concat(ByteBuffer.allocate(8).putInt(4, 1).array(), box(codec, new byte[78])));
+        // A sample size table claiming more samples than the file holds; only a full parse would read it
+        byte[] stsz = box("stsz", ByteBuffer.allocate(12).putInt(8, Integer.MAX_VALUE).array());
+        return box("mdia", concat(mdhd, hdlr, box("minf", box("stbl", concat(stsd, stsz)))));
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(8 + payload.length)
+                .put(ascii(type))
+                .put(payload)
+                .array();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,120 @@
+package global.inventory;
+
+import global.inventory.service.storage.Mp4FaststartRewriter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Mp4FaststartRewriterTest {
+    private static final byte[] SAMPLES = "first-chunk|second-chunk|third-chunk".getBytes(StandardCharsets.US_ASCII);
+    private static final int[] CHUNK_STARTS = {0, 12, 25};
+
+    @TempDir
+    Path tempDir;
+
+    private final Mp4FaststartRewriter rewriter = new Mp4FaststartRewriter(true, 64 * 1024 * 1024);
+
+    @Test
+    @DisplayName("Should move moov before mdat and shift stco and co64 offsets by its size")
+    void relocateMoov() throws Exception {
+        byte[] ftyp = box("ftyp", "isom\0\0\0\0isommp41".getBytes(StandardCharsets.US_ASCII));
+        byte[] mdat = box("mdat", SAMPLES);
+        long mdatData = ftyp.length + 8;
+        byte[] moov = moov(mdatData);
+        Path file = Files.write(tempDir.resolve("video.mp4"), concat(ftyp, mdat, moov));
+
+        assertThat(rewriter.rewrite(file)).isTrue();
+
+        ByteBuffer rewritten = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertThat(rewritten.limit()).isEqualTo(ftyp.length + mdat.length + moov.length);
+        assertThat(typeAt(rewritten, ftyp.length)).isEqualTo("moov");
+        assertThat(typeAt(rewritten, ftyp.length + moov.length)).isEqualTo("mdat");
+
+        long[] stco = chunkOffsets(rewritten, "stco");
+        long[] co64 = chunkOffsets(rewritten, "co64");
+        for (int i = 0; i < CHUNK_STARTS.length; i++) {
+            assertThat(stco[i]).isEqualTo(mdatData + moov.length + CHUNK_STARTS[i]);
+            assertThat(co64[i]).isEqualTo(stco[i]);
+            assertThat(rewritten.get((int) stco[i])).isEqualTo(SAMPLES[CHUNK_STARTS[i]]);
+        }
+    }
+
+    @Test
+    @DisplayName("Should leave files that already start with moov untouched")
+    void alreadyFaststart() throws Exception {
+        byte[] ftyp = box("ftyp", "isom\0\0\0\0".getBytes(StandardCharsets.US_ASCII));
+        byte[] moov = moov(0);
+        byte[] original = concat(ftyp, moov, box("mdat", SAMPLES));
+        Path file = Files.write(tempDir.resolve("video.mp4"), original);
+
+        assertThat(rewriter.rewrite(file)).isFalse();
+        assertThat(Files.readAllBytes(file)).isEqualTo(original);
+    }
+
+    @Test
+    @DisplayName("Should leave files that are not ISO-BMFF untouched")
+    void notMp4() throws Exception {
+        byte[] original = "definitely not an mp4 file".getBytes(StandardCharsets.US_ASCII);
+        Path file = Files.write(tempDir.resolve("video.mp4"), original);
+
+        assertThat(rewriter.rewrite(file)).isFalse();
+        assertThat(Files.readAllBytes(file)).isEqualTo(original);
+    }
+
+    private static byte[] moov(long mdatData) {
+        ByteBuffer stco = ByteBuffer.allocate(8 + CHUNK_STARTS.length * 4).putInt(0).putInt(CHUNK_STARTS.length);
+        ByteBuffer co64 = ByteBuffer.allocate(8 + CHUNK_STARTS.length * 8).putInt(0).putInt(CHUNK_STARTS.length);
+        for (int start : CHUNK_STARTS) {
+            stco.putInt((int) (mdatData + start));
+            co64.putLong(mdatData + start);
+        }
+        byte[] mvhd = box("mvhd", new byte[100]);
+        byte[] videoTrak = trak(box("stco", stco.array()));
+        byte[] audioTrak = trak(box("co64", co64.array()));
+        return box("moov", concat(mvhd, videoTrak, audioTrak));
+    }
+
+    private static byte[] trak(byte[] chunkOffsets) {
+        byte[] stbl = box("stbl", concat(box("stsd", new byte[16]), chunkOffsets));
+        return box("trak", box("mdia", box("minf", stbl)));
+    }
+
+    private static long[] chunkOffsets(ByteBuffer file, String type) {
+        String content = new String(file.array(), StandardCharsets.ISO_8859_1);
+        int body = content.indexOf(type) + 4;
+        int entries = file.getInt(body + 4);
+        long[] offsets = new long[entries];
+        for (int i = 0; i < entries; i++) {
+            offsets[i] = "co64".equals(type) ? file.getLong(body + 8 + i * 8) : file.getInt(body + 8 + i * 4);
+        }
+        return offsets;
+    }
+
+    private static String typeAt(ByteBuffer file, int offset) {
+        return new String(file.array(), offset + 4, 4, StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(8 + payload.length)
+                .put(type.getBytes(StandardCharsets.US_ASCII))
+                .put(payload)
+                .array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
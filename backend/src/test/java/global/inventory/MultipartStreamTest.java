@@ -0,0 +1,100 @@
+package global.inventory;
+
+import global.inventory.service.upload.MultipartStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MultipartStreamTest {
+    private static final String BOUNDARY = "----formdata-boundary-7d2";
+
+    @Test
+    @DisplayName("Should stream fields and a file part whose content contains near-boundaries")
+    void parseParts() throws IOException {
+        byte[] file = new byte[200_000];
+        for (int i = 0; i < file.length; i++) {
+            file[i] = (byte) (i % 251);
+        }
+        // Looks like a boundary until the last byte
+        byte[] trap = ("\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1) + "X")
+                .getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(trap, 0, file, 100_000, trap.length);
+
+        byte[] body = concat(
+                "preamble\r\n--" + BOUNDARY + "\r\n"
+                        + "Content-Disposition: form-data; name=\"title\"\r\n\r\n"
+                        + "Ocean waves\r\n--" + BOUNDARY + "\r\n"
+                        + "Content-Disposition: form-data; name=\"file\"; filename=\"waves.mp4\"\r\n"
+                        + "Content-Type: video/mp4\r\n\r\n",
+                file,
+                "\r\n--" + BOUNDARY + "\r\n"
+                        + "Content-Disposition: form-data; name=\"description\"\r\n\r\n"
+                        + "\r\n--" + BOUNDARY + "--\r\n");
+
+        // Tiny reads make every delimiter straddle window refills
+        MultipartStream multipart = new MultipartStream(trickle(body), BOUNDARY, 1024);
+
+        MultipartStream.Part title = multipart.next();
+        assertThat(title.getName()).isEqualTo("title");
+        assertThat(title.isFile()).isFalse();
+        assertThat(title.readString(100)).isEqualTo("Ocean waves");
+
+        MultipartStream.Part upload = multipart.next();
+        assertThat(upload.getFileName()).isEqualTo("waves.mp4");
+        assertThat(upload.getContentType()).isEqualTo("video/mp4");
+        assertThat(upload.getInputStream().readAllBytes()).isEqualTo(file);
+
+        MultipartStream.Part description = multipart.next();
+        assertThat(description.readString(100)).isEmpty();
+        assertThat(multipart.next()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should skip unread parts and fail on a body that ends inside a part")
+    void truncated() throws IOException {
+        byte[] body = ("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"a\"\r\n\r\nskipped\r\n--"
+                + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"b\"\r\n\r\ncut off")
+                .getBytes(StandardCharsets.US_ASCII);
+        MultipartStream multipart = new MultipartStream(new ByteArrayInputStream(body), BOUNDARY, 1024);
+
+        assertThat(multipart.next().getName()).isEqualTo("a");
+        MultipartStream.Part b = multipart.next();
+        assertThat(b.getName()).isEqualTo("b");
+        assertThatThrownBy(() -> b.getInputStream().readAllBytes())
+                .isInstanceOf(MultipartStream.MalformedMultipartException.class);
+    }
+
+    @Test
+    @DisplayName("Should read the boundary from the content type")
+    void boundary() {
+        assertThat(MultipartStream.boundary("multipart/form-data; boundary=\"abc\"")).isEqualTo("abc");
+        assertThat(MultipartStream.boundary("multipart/form-data; charset=utf-8; boundary=xyz")).isEqualTo("xyz");
+        assertThat(MultipartStream.boundary("application/json")).isNull();
+    }
+
+    private static InputStream trickle(byte[] body) {
+        return new FilterInputStream(new ByteArrayInputStream(body)) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 7));
+            }
+        };
+    }
+
+    private static byte[] concat(String head, byte[] content, String tail) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(head.getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(content);
+        out.writeBytes(tail.getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+}
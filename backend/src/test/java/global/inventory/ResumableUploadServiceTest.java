@@ -0,0 +1,160 @@
+package global.inventory;
+
+import global.inventory.exception.ResourceNotFoundException;
+import global.inventory.exception.UploadConflictException;
+import global.inventory.model.Video;
+import global.inventory.payload.request.UploadSessionRequest;
+import global.inventory.service.VideoService;
+import global.inventory.service.cache.DirectBufferPool;
+import global.inventory.service.media.MediaInfo;
+import global.inventory.service.storage.StoredFile;
+import global.inventory.service.storage.VideoStorageService;
+import global.inventory.service.upload.ResumableUploadServiceImpl;
+import global.inventory.service.upload.UploadSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResumableUploadServiceTest {
+    private static final Long OWNER = 1L;
+    private static final int CHUNK = 1000;
+
+    @TempDir
+    Path tempDir;
+
+    private final VideoStorageService videoStorageService = mock(VideoStorageService.class);
+    private final VideoService videoService = mock(VideoService.class);
+    private DirectBufferPool bufferPool;
+    private ResumableUploadServiceImpl uploadService;
+    private byte[] content;
+
+    @AfterEach
+    void tearDown() {
+        uploadService.shutdown();
+    }
+
+    @BeforeEach
+    void setUp() {
+        bufferPool = new DirectBufferPool(8192, 1024 * 1024, 64 * 1024 * 1024, false, new SimpleMeterRegistry());
+        uploadService = new ResumableUploadServiceImpl(tempDir.toString(), 1024 * 1024, CHUNK, 60, 2,
+                10 * CHUNK, videoStorageService, videoService, bufferPool);
+        uploadService.initialize();
+
+        content = new byte[3 * CHUNK + 123];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+    }
+
+    @Test
+    @DisplayName("Should assemble chunks written out of order and hand the file to storage on completion")
+    void outOfOrderChunks() {
+        UploadSession session = uploadService.create(request(), OWNER);
+
+        write(session, 2);
+        write(session, 0);
+        assertThat(session.getCommittedOffset()).isEqualTo(CHUNK);
+        write(session, 3);
+        write(session, 1);
+        assertThat(session.getCommittedOffset()).isEqualTo(content.length);
+
+        AtomicReference<byte[]> stored = new AtomicReference<>();
+        StoredFile storedFile = new StoredFile("2026/10/17/clip.mp4", content.length, "c0ffee", MediaInfo.UNKNOWN);
+        when(videoStorageService.store(any(Path.class), eq("clip.mp4"))).thenAnswer(invocation -> {
+            stored.set(Files.readAllBytes(invocation.getArgument(0)));
+            return storedFile;
+        });
+        Video video = Video.builder().id(7L).build();
+        when(videoService.createVideo("Clip", "desc", storedFile)).thenReturn(video);
+
+        assertThat(uploadService.complete(session.getId(), OWNER)).isSameAs(video);
+        assertThat(stored.get()).isEqualTo(content);
+        verify(videoService).createVideo("Clip", "desc", storedFile);
+    }
+
+    @Test
+    @DisplayName("Should refuse to complete while a gap remains and reject chunks past the end")
+    void incompleteUpload() {
+        UploadSession session = uploadService.create(request(), OWNER);
+        write(session, 0);
+        write(session, 2);
+
+        assertThatThrownBy(() -> uploadService.complete(session.getId(), OWNER))
+                .isInstanceOf(UploadConflictException.class);
+        assertThatThrownBy(() -> uploadService.writeChunk(session.getId(), OWNER, content.length - 10,
+                new ByteArrayInputStream(new byte[20])))
+                .isInstanceOf(UploadConflictException.class);
+        assertThat(session.getReceivedBytes()).isEqualTo(2L * CHUNK);
+    }
+
+    @Test
+    @DisplayName("Should cap open uploads per owner and the space they preallocate together")
+    void sessionLimits() {
+        UploadSession first = uploadService.create(request(), OWNER);
+        uploadService.create(request(), OWNER);
+        assertThatThrownBy(() -> uploadService.create(request(), OWNER))
+                .isInstanceOf(UploadConflictException.class);
+
+        uploadService.create(request(), 2L);
+        assertThatThrownBy(() -> uploadService.create(request(), 2L))
+                .isInstanceOf(UploadConflictException.class);
+
+        uploadService.abort(first.getId(), OWNER);
+        assertThat(part(first)).doesNotExist();
+        assertThat(part(uploadService.create(request(), OWNER))).exists();
+    }
+
+    @Test
+    @DisplayName("Should discard idle uploads without waiting for another upload to start")
+    void idleExpiry() throws Exception {
+        uploadService.shutdown();
+        uploadService = new ResumableUploadServiceImpl(tempDir.toString(), 1024 * 1024, CHUNK, 0, 1,
+                10 * CHUNK, videoStorageService, videoService, bufferPool);
+        UploadSession session = uploadService.create(request(), OWNER);
+
+        for (int i = 0; i < 300 && Files.exists(part(session)); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(part(session)).doesNotExist();
+        assertThatThrownBy(() -> uploadService.get(session.getId(), OWNER))
+                .isInstanceOf(ResourceNotFoundException.class);
+        // The owner's only slot was freed with it
+        uploadService.create(request(), OWNER);
+    }
+
+    private void write(UploadSession session, int chunk) {
+        int from = chunk * CHUNK;
+        byte[] body = Arrays.copyOfRange(content, from, Math.min(from + CHUNK, content.length));
+        uploadService.writeChunk(session.getId(), OWNER, from, new ByteArrayInputStream(body));
+    }
+
+    private Path part(UploadSession session) {
+        return tempDir.resolve(".uploads").resolve(session.getId() + ".part");
+    }
+
+    private UploadSessionRequest request() {
+        return UploadSessionRequest.builder()
+                .title("Clip")
+                .description("desc")
+                .fileName("clip.mp4")
+                .size(content.length)
+                .build();
+    }
+}
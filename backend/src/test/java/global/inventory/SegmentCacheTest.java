@@ -0,0 +1,166 @@
+package global.inventory;
+
+import global.inventory.service.cache.SegmentCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentCacheTest {
+    private static final int SEGMENT_SIZE = 1024;
+    private static final int SEGMENTS = 8;
+    private static final String KEY = "video.mp4";
+
+    @TempDir
+    Path tempDir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SegmentCache cache;
+    private FileChannel channel;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        byte[] content = new byte[SEGMENT_SIZE * SEGMENTS];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i / SEGMENT_SIZE);
+        }
+        Path file = Files.write(tempDir.resolve(KEY), content);
+        channel = FileChannel.open(file);
+
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new SegmentCache(true, SEGMENT_SIZE, 2L * SEGMENT_SIZE, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        channel.close();
+    }
+
+    @Test
+    @DisplayName("Should serve a loaded segment from memory on the next request")
+    void hitAfterLoad() throws IOException {
+        load(3);
+        try (SegmentCache.Segment segment = cache.getOrLoad(KEY, 3, channel, channel.size())) {
+            ByteBuffer data = segment.data();
+            assertThat(data.remaining()).isEqualTo(SEGMENT_SIZE);
+            assertThat(data.get(0)).isEqualTo((byte) 3);
+            assertThat(data.isReadOnly()).isTrue();
+        }
+
+        assertThat(requests("hit")).isEqualTo(1);
+        assertThat(requests("miss")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not let a one-off segment evict popular ones")
+    void admissionFavoursFrequentSegments() throws IOException {
+        load(1);
+        for (int i = 0; i < 5; i++) {
+            load(0);
+        }
+
+        try (SegmentCache.Segment rejected = cache.getOrLoad(KEY, 7, channel, channel.size())) {
+            assertThat(rejected).isNull();
+        }
+
+        // Once it has been requested often enough it replaces the least popular segment
+        boolean admitted = false;
+        for (int i = 0; i < 10 && !admitted; i++) {
+            try (SegmentCache.Segment segment = cache.getOrLoad(KEY, 7, channel, channel.size())) {
+                admitted = segment != null;
+            }
+        }
+        assertThat(admitted).isTrue();
+
+        double hitsBefore = requests("hit");
+        load(0);
+        assertThat(requests("hit")).isEqualTo(hitsBefore + 1);
+    }
+
+    @Test
+    @DisplayName("Should drop every segment of an invalidated file")
+    void invalidate() throws IOException {
+        load(0);
+        load(1);
+
+        cache.invalidate(KEY);
+        load(0);
+
+        assertThat(requests("hit")).isZero();
+        assertThat(requests("miss")).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should only ever hand out the requested segment while evictions race reloads")
+    void concurrentEvictionAndReload() throws Exception {
+        AtomicInteger wrongSegments = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            boolean invalidates = thread == 0;
+            workers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 10_000; i++) {
+                    if (invalidates && i % 1000 == 0) {
+                        cache.invalidate(KEY);
+                    }
+                    // Skewed towards low segments so admission lets some of them evict others
+                    int segmentIndex = random.nextInt(1 + random.nextInt(SEGMENTS));
+                    try (SegmentCache.Segment segment = cache.getOrLoad(KEY, segmentIndex, channel, channel.size())) {
+                        if (segment != null && (segment.data().get(0) != segmentIndex
+                                || segment.data().get(SEGMENT_SIZE - 1) != segmentIndex)) {
+                            wrongSegments.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+
+        assertThat(wrongSegments.get()).isZero();
+        assertThat(meterRegistry.get("video.segment.cache.evictions").counter().count()).isPositive();
+        // An eviction that dropped a stale key would leave the slot indexed twice and counted twice
+        assertThat(meterRegistry.get("video.segment.cache.resident").gauge().value())
+                .isLessThanOrEqualTo(2 * SEGMENT_SIZE);
+
+        // Every slot must be free again, so both fit while held at once
+        cache.invalidate(KEY);
+        assertThat(meterRegistry.get("video.segment.cache.resident").gauge().value()).isZero();
+        try (SegmentCache.Segment first = cache.getOrLoad(KEY, 5, channel, channel.size());
+             SegmentCache.Segment second = cache.getOrLoad(KEY, 6, channel, channel.size())) {
+            assertThat(first).isNotNull();
+            assertThat(second).isNotNull();
+        }
+    }
+
+    private void load(long segmentIndex) throws IOException {
+        try (SegmentCache.Segment ignored = cache.getOrLoad(KEY, segmentIndex, channel, channel.size())) {
+            // only populate
+        }
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("video.segment.cache.requests").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,192 @@
+package global.inventory;
+
+import global.inventory.service.media.KeyframeIndex;
+import global.inventory.service.media.MediaInfo;
+import global.inventory.service.storage.ContentAddressedStore;
+import global.inventory.service.storage.StoredVideo;
+import global.inventory.service.storage.backend.ContentLinker;
+import global.inventory.service.storage.backend.ShardedStorageBackend;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedStorageBackendTest {
+    private static final String SHA256 = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should keep each object and its sidecars on distinct replica disks")
+    void replicas() throws IOException {
+        ShardedStorageBackend backend = new ShardedStorageBackend(disks(3), 2);
+        write(backend, "ab/cd/abcd-1.mp4", "video");
+        write(backend, "ab/cd/abcd-1.mp4.kfi", "index");
+
+        List<Path> copies = backend.localCopies("ab/cd/abcd-1.mp4");
+        assertThat(copies).hasSize(2);
+        assertThat(copies).isEqualTo(backend.placement("ab/cd/abcd-1.mp4"));
+        assertThat(copies.get(0).getParent().getParent().getParent())
+                .isNotEqualTo(copies.get(1).getParent().getParent().getParent());
+        for (Path copy : copies) {
+            assertThat(copy.resolveSibling("abcd-1.mp4.kfi")).exists();
+        }
+        assertThat(backend.localFile("ab/cd/abcd-1.mp4")).isIn(copies);
+        try (InputStream in = backend.read("ab/cd/abcd-1.mp4", 1, 3)) {
+            assertThat(new String(in.readAllBytes())).isEqualTo("ide");
+        }
+
+        backend.delete("ab/cd/abcd-1.mp4");
+        assertThat(backend.localCopies("ab/cd/abcd-1.mp4")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should move only the objects that hash to an added disk")
+    void addDisk() throws IOException {
+        List<Path> disks = disks(4);
+        ShardedStorageBackend before = new ShardedStorageBackend(disks.subList(0, 3), 1);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            keys.add("2026/10/18/video-" + i + ".mp4");
+            write(before, keys.get(i), "video " + i);
+        }
+
+        ShardedStorageBackend after = new ShardedStorageBackend(disks, 1);
+        int moved = 0;
+        for (String key : keys) {
+            if (after.relocate(key, UnaryOperator.identity())) {
+                moved++;
+                assertThat(after.placement(key).get(0)).startsWith(disks.get(3));
+            }
+            assertThat(after.localCopies(key)).isEqualTo(after.placement(key));
+            assertThat(Files.readString(after.localFile(key))).isEqualTo("video " + keys.indexOf(key));
+        }
+        assertThat(moved).isBetween(30, 150);
+    }
+
+    @Test
+    @DisplayName("Should steer readers away from a disk with streams in flight and not count plain lookups")
+    void readLoad() throws IOException {
+        ShardedStorageBackend backend = new ShardedStorageBackend(disks(2), 2);
+        write(backend, "ab/cd/abcd-1.mp4", "video");
+        List<Path> copies = backend.localCopies("ab/cd/abcd-1.mp4");
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(backend.primaryFile("ab/cd/abcd-1.mp4")).isEqualTo(copies.get(0));
+        }
+        Runnable endRead = backend.beginRead(backend.localFile("ab/cd/abcd-1.mp4"));
+        assertThat(backend.localFile("ab/cd/abcd-1.mp4")).isEqualTo(copies.get(1));
+        assertThat(backend.localFile("ab/cd/abcd-1.mp4")).isEqualTo(copies.get(1));
+
+        endRead.run();
+        assertThat(backend.localFile("ab/cd/abcd-1.mp4")).isEqualTo(copies.get(0));
+    }
+
+    @Test
+    @DisplayName("Should pick a replica for each stream of a cached video rather than the one it was cached with")
+    void readPerStream() throws IOException {
+        ShardedStorageBackend backend = new ShardedStorageBackend(disks(2), 2);
+        write(backend, "ab/cd/abcd-1.mp4", "video");
+        List<Path> copies = backend.localCopies("ab/cd/abcd-1.mp4");
+        StoredVideo video = new StoredVideo("ab/cd/abcd-1.mp4", copies, backend, 5, 0, "video/mp4",
+                KeyframeIndex.EMPTY, MediaInfo.UNKNOWN);
+
+        StoredVideo.Read first = video.beginRead();
+        StoredVideo.Read second = video.beginRead();
+        assertThat(first.file()).isIn(copies);
+        assertThat(second.file()).isIn(copies).isNotEqualTo(first.file());
+        try (StoredVideo.Lease lease = second.lease()) {
+            assertThat(lease.channel().size()).isEqualTo(5);
+        }
+
+        first.end();
+        assertThat(video.beginRead().file()).isEqualTo(first.file());
+    }
+
+    @Test
+    @DisplayName("Should keep videos under the old single location readable until they are moved onto the disks")
+    void legacyLocation() throws IOException {
+        Path legacy = directory.resolve("videos");
+        Path old = legacy.resolve("ab/cd/abcd-1.mp4");
+        Files.createDirectories(old.getParent());
+        Files.writeString(old, "video");
+        List<Path> disks = disks(2);
+        ShardedStorageBackend backend = new ShardedStorageBackend(disks, legacy, 1, ContentLinker.NONE);
+
+        assertThat(backend.roots()).containsExactly(disks.get(0).toAbsolutePath(), disks.get(1).toAbsolutePath(),
+                legacy.toAbsolutePath());
+        assertThat(backend.readableCopies("ab/cd/abcd-1.mp4")).containsExactly(old.toAbsolutePath());
+        assertThat(backend.stat("ab/cd/abcd-1.mp4").size()).isEqualTo(5);
+
+        assertThat(backend.relocate("ab/cd/abcd-1.mp4", UnaryOperator.identity())).isTrue();
+        assertThat(old).doesNotExist();
+        assertThat(backend.localCopies("ab/cd/abcd-1.mp4")).isEqualTo(backend.placement("ab/cd/abcd-1.mp4"));
+        assertThat(Files.readString(backend.localFile("ab/cd/abcd-1.mp4"))).isEqualTo("video");
+    }
+
+    @Test
+    @DisplayName("Should look a placed object up on its own disks and leave strays to the full listing")
+    void placedLookup() throws IOException {
+        List<Path> disks = disks(3);
+        ShardedStorageBackend backend = new ShardedStorageBackend(disks, 1);
+        write(backend, "ab/cd/abcd-1.mp4", "video");
+        Path placed = backend.placement("ab/cd/abcd-1.mp4").get(0);
+        Path stray = disks.stream().map(disk -> disk.toAbsolutePath().resolve("ab/cd/abcd-1.mp4"))
+                .filter(file -> !file.equals(placed)).findFirst().orElseThrow();
+        Files.createDirectories(stray.getParent());
+        Files.writeString(stray, "video");
+
+        assertThat(backend.readableCopies("ab/cd/abcd-1.mp4")).containsExactly(placed);
+        assertThat(backend.localCopies("ab/cd/abcd-1.mp4")).containsExactly(placed, stray);
+    }
+
+    @Test
+    @DisplayName("Should link replicas of deduplicated content to the blob on each disk instead of copying")
+    void linkedReplicas() throws IOException {
+        List<Path> disks = disks(2);
+        ContentAddressedStore contentStore = new ContentAddressedStore(true);
+        ShardedStorageBackend backend = new ShardedStorageBackend(disks, 2, contentStore);
+        List<String> keys = List.of("2026/10/16/a.mp4", "2026/10/17/b.mp4");
+        for (String key : keys) {
+            // As an upload does: written to its primary disk, deduplicated there, then replicated
+            Path file = backend.primaryFile(key);
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, "test");
+            Path root = disks.stream().filter(file::startsWith).findFirst().orElseThrow();
+            contentStore.deduplicate(root, file, SHA256);
+            backend.replicate(key);
+        }
+
+        for (Path disk : disks) {
+            Path blob = disk.resolve(ContentAddressedStore.BLOB_DIRECTORY).resolve("9f").resolve(SHA256);
+            for (String key : keys) {
+                assertThat(Files.isSameFile(disk.resolve(key), blob)).isTrue();
+                assertThat(ContentAddressedStore.sidecar(disk.resolve(key))).hasContent(SHA256);
+            }
+        }
+    }
+
+    private List<Path> disks(int count) {
+        List<Path> disks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            disks.add(directory.resolve("disk" + i));
+        }
+        return disks;
+    }
+
+    private static void write(ShardedStorageBackend backend, String key, String content) throws IOException {
+        byte[] bytes = content.getBytes();
+        backend.write(key, new ByteArrayInputStream(bytes), bytes.length);
+    }
+}
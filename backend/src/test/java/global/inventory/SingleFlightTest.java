@@ -0,0 +1,79 @@
+package global.inventory;
+
+import global.inventory.service.cache.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+    private static final int CALLERS = 8;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, byte[]> flight = new SingleFlight<>("test", meterRegistry);
+
+    @Test
+    @DisplayName("Should run one load for callers that arrive while it is in flight and share its result")
+    void coalesceConcurrentLoads() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> flight.execute("video.mp4#0", () -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                    return new byte[]{42};
+                })));
+            }
+            while (requests("leader") + requests("follower") < CALLERS) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            byte[] first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<byte[]> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(first);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(requests("follower")).isEqualTo(CALLERS - 1);
+        assertThat(meterRegistry.get("video.read.coalescing.ratio").gauge().value())
+                .isEqualTo((CALLERS - 1) / (double) CALLERS);
+    }
+
+    @Test
+    @DisplayName("Should start a new load once the previous one completed")
+    void noCachingAfterCompletion() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        flight.execute("video.mp4#0", () -> new byte[loads.incrementAndGet()]);
+        flight.execute("video.mp4#0", () -> new byte[loads.incrementAndGet()]);
+
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(requests("follower")).isZero();
+    }
+
+    private double requests(String role) {
+        return meterRegistry.get("video.read.coalescing.requests").tag("role", role).counter().count();
+    }
+}
@@ -0,0 +1,122 @@
+package global.inventory;
+
+import global.inventory.model.Video;
+import global.inventory.repository.VideoRepository;
+import global.inventory.service.hls.HlsPackagingService;
+import global.inventory.service.storage.ContentAddressedStore;
+import global.inventory.service.storage.ReclaimProgress;
+import global.inventory.service.storage.StorageReclaimServiceImpl;
+import global.inventory.service.storage.VideoStorageService;
+import global.inventory.service.storage.backend.FileSystemStorageBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StorageReclaimServiceTest {
+    private static final String SHA256 = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @TempDir
+    Path root;
+
+    @Mock
+    private VideoRepository videoRepository;
+
+    @Mock
+    private VideoStorageService videoStorageService;
+
+    @Mock
+    private HlsPackagingService hlsPackagingService;
+
+    private StorageReclaimServiceImpl reclaimService;
+
+    @BeforeEach
+    void setUp() {
+        reclaimService = new StorageReclaimServiceImpl(true, 24, 0, 2, 0, root.toString(), videoRepository,
+                videoStorageService, hlsPackagingService, new ContentAddressedStore(true),
+                new FileSystemStorageBackend(root), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        reclaimService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should reclaim deleted videos and unreferenced files past the grace period")
+    void reclaim() throws Exception {
+        Video deleted = Video.builder().id(7L).videoUrl("2026/01/01/deleted.mp4").deleted(true).build();
+        when(videoRepository.findUnreclaimedDeleted(any(), any(), any())).thenReturn(List.of(deleted), List.of());
+        when(videoRepository.findExistingVideoUrls(any())).thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).stream()
+                        .filter(storedPath -> storedPath.contains("kept") || storedPath.contains("deleted"))
+                        .toList());
+
+        write("2026/01/01/deleted.mp4", true);
+        write("2026/01/01/kept.mp4", true);
+        write("2026/01/01/orphan.mp4", true);
+        write("2026/01/01/other.webm", true);
+        write("2026/10/18/uploading.mp4", false);
+        Path temporary = write("2026/01/01/.write-1.tmp", true);
+        Path sidecar = write("2026/01/01/gone.mp4.kfi", true);
+        Path media = write("2026/01/01/gone.mp4.media", true);
+        Path blob = write(ContentAddressedStore.BLOB_DIRECTORY + "/9f/" + SHA256, true);
+        Path hls = write("hls/2026/01/01/orphan.mp4/index.m3u8", true);
+
+        reclaimService.start();
+        ReclaimProgress progress = reclaimService.getProgress();
+        for (int i = 0; i < 500 && progress.running(); i++) {
+            Thread.sleep(10);
+            progress = reclaimService.getProgress();
+        }
+
+        assertThat(progress.running()).isFalse();
+        assertThat(progress.videosReclaimed()).isEqualTo(1L);
+        assertThat(progress.filesReclaimed()).isEqualTo(7L);
+        assertThat(progress.bytesReclaimed()).isEqualTo(7L * "test".length());
+        verify(videoStorageService).delete("2026/01/01/deleted.mp4");
+        verify(videoRepository).save(argThat(video -> video.getFilesReclaimedAt() != null));
+        verify(videoStorageService).delete("2026/01/01/orphan.mp4");
+        verify(videoStorageService).delete("2026/01/01/other.webm");
+        verify(hlsPackagingService).delete("2026/01/01/orphan.mp4");
+        verify(videoStorageService, never()).delete("2026/01/01/kept.mp4");
+        verify(videoStorageService, never()).delete("2026/10/18/uploading.mp4");
+        assertThat(temporary).doesNotExist();
+        assertThat(sidecar).doesNotExist();
+        assertThat(media).doesNotExist();
+        assertThat(blob).doesNotExist();
+        assertThat(hls).exists();
+    }
+
+    private Path write(String path, boolean old) throws IOException {
+        Path file = root.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "test");
+        if (old) {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofDays(30))));
+        }
+        return file;
+    }
+}
@@ -0,0 +1,126 @@
+package global.inventory;
+
+import global.inventory.service.storage.StoredVideo;
+import global.inventory.service.storage.StoredVideoCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StoredVideoCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private StoredVideoCache cache;
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should share one channel between leases and close it once evicted and released")
+    void leaseAndEviction() throws IOException {
+        cache = new StoredVideoCache(1, 10, 60, meterRegistry);
+        StoredVideo first = cache.get("first.mp4", this::load);
+
+        StoredVideo.Lease lease = first.lease();
+        FileChannel channel = lease.channel();
+        try (StoredVideo.Lease second = first.lease()) {
+            assertThat(second.channel()).isSameAs(channel);
+        }
+        assertThat(cache.get("first.mp4", this::load)).isSameAs(first);
+
+        cache.get("second.mp4", this::load);
+        assertThat(channel.isOpen()).isTrue();
+        lease.close();
+        assertThat(channel.isOpen()).isFalse();
+
+        // A lookup that loses the race against eviction still gets a working, private channel
+        try (StoredVideo.Lease late = first.lease()) {
+            assertThat(late.channel()).isNotSameAs(channel);
+            assertThat(late.channel().isOpen()).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Should close the least recently used idle channel past the open file limit")
+    void openFileLimit() throws IOException {
+        cache = new StoredVideoCache(100, 2, 60, meterRegistry);
+        FileChannel first = leaseAndRelease("first.mp4");
+        FileChannel second = leaseAndRelease("second.mp4");
+        leaseAndRelease("first.mp4");
+        FileChannel third = leaseAndRelease("third.mp4");
+
+        assertThat(second.isOpen()).isFalse();
+        assertThat(first.isOpen()).isTrue();
+        assertThat(third.isOpen()).isTrue();
+        assertThat(openFiles()).isEqualTo(2);
+
+        // Only the handle went; the metadata is still cached and the next lease reopens the file
+        double misses = requests("miss");
+        FileChannel reopened = leaseAndRelease("second.mp4");
+        assertThat(reopened).isNotSameAs(second);
+        assertThat(requests("miss")).isEqualTo(misses);
+    }
+
+    @Test
+    @DisplayName("Should never close a channel that is leased")
+    void leasedChannelsStayOpen() throws IOException {
+        cache = new StoredVideoCache(100, 1, 60, meterRegistry);
+        try (StoredVideo.Lease first = cache.get("first.mp4", this::load).lease();
+             StoredVideo.Lease second = cache.get("second.mp4", this::load).lease()) {
+            assertThat(first.channel().isOpen()).isTrue();
+            assertThat(second.channel().isOpen()).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Should close channels that sit idle and those of invalidated videos")
+    void idleAndInvalidated() throws Exception {
+        cache = new StoredVideoCache(100, 10, 0, meterRegistry);
+        FileChannel idle = leaseAndRelease("idle.mp4");
+        StoredVideo.Lease lease = cache.get("leased.mp4", this::load).lease();
+
+        for (int i = 0; i < 300 && idle.isOpen(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(idle.isOpen()).isFalse();
+        assertThat(lease.channel().isOpen()).isTrue();
+
+        cache.invalidate("leased.mp4");
+        lease.close();
+        assertThat(lease.channel().isOpen()).isFalse();
+        assertThat(openFiles()).isZero();
+    }
+
+    private FileChannel leaseAndRelease(String storedPath) throws IOException {
+        try (StoredVideo.Lease lease = cache.get(storedPath, this::load).lease()) {
+            return lease.channel();
+        }
+    }
+
+    private StoredVideo load(String storedPath) throws IOException {
+        Path file = directory.resolve(storedPath);
+        Files.writeString(file, storedPath);
+        return new StoredVideo(storedPath, file, Files.size(file), 0, "video/mp4");
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("video.metadata.cache.requests").tag("result", result).counter().count();
+    }
+
+    private double openFiles() {
+        return meterRegistry.get("video.metadata.cache.open.files").gauge().value();
+    }
+}
@@ -0,0 +1,115 @@
+package global.inventory;
+
+import global.inventory.service.streaming.StreamAdmissionControl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamAdmissionControlTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Should never admit past the stream, byte and per-user caps under concurrent acquires")
+    void concurrentAcquiresStayWithinCaps() throws Exception {
+        StreamAdmissionControl control = new StreamAdmissionControl(true, 8, 800, 3, 2, meterRegistry);
+        AtomicInteger peakStreams = new AtomicInteger();
+        AtomicInteger peakUserStreams = new AtomicInteger();
+        AtomicInteger peakBytes = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                String user = "user-" + i % 4;
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 2_000; j++) {
+                        StreamAdmissionControl.Permit permit = control.tryAcquire(user, 100);
+                        if (permit != null) {
+                            peakStreams.accumulateAndGet(control.getActiveStreams(), Math::max);
+                            peakUserStreams.accumulateAndGet(control.getStreams(user), Math::max);
+                            peakBytes.accumulateAndGet((int) control.getBytesInFlight(), Math::max);
+                            permit.close();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(peakStreams.get()).isBetween(1, 8);
+        assertThat(peakUserStreams.get()).isBetween(1, 3);
+        assertThat(peakBytes.get()).isBetween(100, 800);
+        assertThat(control.getActiveStreams()).isZero();
+        assertThat(control.getBytesInFlight()).isZero();
+        assertThat(meterRegistry.get("video.stream.admission.users").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should reject streams over each cap and count the reason")
+    void rejectOverCaps() {
+        StreamAdmissionControl control = new StreamAdmissionControl(true, 3, 1000, 2, 2, meterRegistry);
+
+        assertThat(control.tryAcquire("alice", 100)).isNotNull();
+        assertThat(control.tryAcquire("alice", 100)).isNotNull();
+        assertThat(control.tryAcquire("alice", 100)).isNull();
+        assertThat(control.tryAcquire("bob", 700)).isNotNull();
+        assertThat(control.tryAcquire("carol", 100)).isNull();
+
+        assertThat(rejected("user")).isEqualTo(1);
+        assertThat(rejected("streams")).isEqualTo(1);
+        assertThat(control.getActiveStreams()).isEqualTo(3);
+        assertThat(control.getBytesInFlight()).isEqualTo(900);
+
+        StreamAdmissionControl bytes = new StreamAdmissionControl(true, 10, 1000, 10, 2, new SimpleMeterRegistry());
+        // A response larger than the whole budget still gets through alone
+        StreamAdmissionControl.Permit oversized = bytes.tryAcquire("alice", 5000);
+        assertThat(oversized).isNotNull();
+        assertThat(bytes.tryAcquire("bob", 1)).isNull();
+        oversized.close();
+        assertThat(bytes.tryAcquire("bob", 1)).isNotNull();
+        assertThat(control.retryAfterSeconds()).isBetween(2, 4);
+    }
+
+    @Test
+    @DisplayName("Should give capacity back once per permit and forget users without streams")
+    void releaseOncePerPermit() {
+        StreamAdmissionControl control = new StreamAdmissionControl(true, 2, 1000, 1, 2, meterRegistry);
+        StreamAdmissionControl.Permit permit = control.tryAcquire("alice", 400);
+        assertThat(control.tryAcquire("alice", 100)).isNull();
+
+        permit.releaseBytes();
+        assertThat(control.getBytesInFlight()).isZero();
+        assertThat(control.getActiveStreams()).isEqualTo(1);
+        permit.close();
+        permit.close();
+
+        assertThat(control.getActiveStreams()).isZero();
+        assertThat(control.getBytesInFlight()).isZero();
+        assertThat(control.getStreams("alice")).isZero();
+        assertThat(meterRegistry.get("video.stream.admission.users").gauge().value()).isZero();
+        assertThat(control.tryAcquire("alice", 100)).isNotNull();
+        assertThat(meterRegistry.get("video.stream.admission.admitted").counter().count()).isEqualTo(2);
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("video.stream.admission.rejected").tag("reason", reason).counter().count();
+    }
+}
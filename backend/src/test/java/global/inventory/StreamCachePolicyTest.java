@@ -0,0 +1,92 @@
+package global.inventory;
+
+import global.inventory.service.streaming.StreamCachePolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamCachePolicyTest {
+    private static final long SIZE = 1_048_576;
+    // HTTP dates drop the milliseconds, which must not make the file look modified
+    private static final long LAST_MODIFIED = Instant.parse("2026-10-18T10:00:00.250Z").toEpochMilli();
+
+    private final StreamCachePolicy immutable = new StreamCachePolicy("immutable", 31_536_000, false);
+    private final StreamCachePolicy noStore = new StreamCachePolicy("no-store", 31_536_000, false);
+    private final String eTag = immutable.eTag(SIZE, LAST_MODIFIED);
+
+    @Test
+    @DisplayName("Should serve the range when If-Range matches the current file")
+    void matchingIfRange() {
+        assertThat(immutable.isRangeApplicable(request(HttpHeaders.IF_RANGE, eTag), eTag, LAST_MODIFIED)).isTrue();
+        assertThat(immutable.isRangeApplicable(request(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED)),
+                eTag, LAST_MODIFIED)).isTrue();
+        assertThat(immutable.isRangeApplicable(new MockHttpServletRequest("GET", "/uploads/video.mp4"),
+                eTag, LAST_MODIFIED)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should send the whole file when If-Range names an older version")
+    void staleIfRange() {
+        String staleETag = immutable.eTag(SIZE, LAST_MODIFIED - 60_000);
+        assertThat(immutable.isRangeApplicable(request(HttpHeaders.IF_RANGE, staleETag), eTag, LAST_MODIFIED))
+                .isFalse();
+        assertThat(immutable.isRangeApplicable(request(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED - 60_000)),
+                eTag, LAST_MODIFIED)).isFalse();
+        assertThat(immutable.isRangeApplicable(request(HttpHeaders.IF_RANGE, "not a date"), eTag, LAST_MODIFIED))
+                .isFalse();
+        assertThat(noStore.isRangeApplicable(request(HttpHeaders.IF_RANGE, eTag), eTag, LAST_MODIFIED)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should never serve a range against a weak If-Range validator")
+    void weakIfRange() {
+        assertThat(immutable.isRangeApplicable(request(HttpHeaders.IF_RANGE, "W/" + eTag), eTag, LAST_MODIFIED))
+                .isFalse();
+    }
+
+    @Test
+    @DisplayName("Should answer 304 when If-None-Match holds the current validator, weak or strong")
+    void ifNoneMatch() {
+        MockHttpServletResponse strong = new MockHttpServletResponse();
+        assertThat(immutable.checkNotModified(request(HttpHeaders.IF_NONE_MATCH, eTag), strong, eTag,
+                LAST_MODIFIED)).isTrue();
+        assertThat(strong.getStatus()).isEqualTo(304);
+
+        MockHttpServletResponse weak = new MockHttpServletResponse();
+        assertThat(immutable.checkNotModified(request(HttpHeaders.IF_NONE_MATCH, "W/" + eTag), weak, eTag,
+                LAST_MODIFIED)).isTrue();
+        assertThat(weak.getStatus()).isEqualTo(304);
+
+        MockHttpServletResponse stale = new MockHttpServletResponse();
+        assertThat(immutable.checkNotModified(request(HttpHeaders.IF_NONE_MATCH,
+                immutable.eTag(SIZE, LAST_MODIFIED - 60_000)), stale, eTag, LAST_MODIFIED)).isFalse();
+        assertThat(stale.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("Should always send uncacheable responses in full")
+    void noStoreNeverNotModified() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThat(noStore.checkNotModified(request(HttpHeaders.IF_NONE_MATCH, eTag), response, eTag,
+                LAST_MODIFIED)).isFalse();
+        assertThat(response.getStatus()).isEqualTo(200);
+    }
+
+    private static MockHttpServletRequest request(String header, String value) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/uploads/video.mp4");
+        request.addHeader(header, value);
+        return request;
+    }
+
+    private static String httpDate(long epochMillis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(epochMillis).atZone(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,144 @@
+package global.inventory;
+
+import global.inventory.service.security.StreamUrlSigner;
+import global.inventory.service.security.StreamUrlSignerImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamUrlSignerTest {
+    private static final String PATH = "2024/01/15/video.mp4";
+    private static final String OLD_KEY = "k1:c2VjcmV0LWtleS1vbmUtZm9yLXN0cmVhbS1zaWduaW5n";
+    private static final String NEW_KEY = "k2:c2Vjb25kLXNlY3JldC1rZXktZm9yLXN0cmVhbS11cmxz";
+
+    @Test
+    @DisplayName("Should accept an untampered signed URL")
+    void acceptsValidSignature() {
+        StreamUrlSigner signer = new StreamUrlSignerImpl(OLD_KEY, 60);
+
+        assertThat(verify(signer, PATH, signer.sign(PATH, 7L, 42L, 0))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should reject a URL whose path, user or signature was changed")
+    void rejectsTampering() {
+        StreamUrlSigner signer = new StreamUrlSignerImpl(OLD_KEY, 60);
+        String query = signer.sign(PATH, 7L, 42L, 0);
+
+        assertThat(verify(signer, "2024/01/15/other.mp4", query)).isFalse();
+        assertThat(verify(signer, PATH, query.replace("u=7", "u=8"))).isFalse();
+        assertThat(verify(signer, PATH, query.replace("sig=", "sig=A"))).isFalse();
+        assertThat(verify(signer, PATH, query.replace("sig=", "sig=%%"))).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should reject an expired URL")
+    void rejectsExpired() {
+        StreamUrlSigner signer = new StreamUrlSignerImpl(OLD_KEY, -1);
+
+        assertThat(verify(signer, PATH, signer.sign(PATH, 7L, 42L, 0))).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should keep a URL valid for the TTL plus the video's duration")
+    void coversDuration() {
+        StreamUrlSigner signer = new StreamUrlSignerImpl(OLD_KEY, -1);
+        long now = System.currentTimeMillis() / 1000;
+
+        Map<String, String> params = params(signer.sign(PATH, 7L, 42L, 3 * 3_600_000L + 1));
+
+        assertThat(isValid(signer, PATH, params)).isTrue();
+        assertThat(Long.parseLong(params.get(StreamUrlSigner.EXPIRES_PARAM))).isBetween(now + 10_800, now + 10_801);
+    }
+
+    @Test
+    @DisplayName("Should keep verifying URLs signed with a rotated-out key")
+    void verifiesRotatedKeys() {
+        StreamUrlSigner before = new StreamUrlSignerImpl(OLD_KEY, 60);
+        StreamUrlSigner after = new StreamUrlSignerImpl(NEW_KEY + "," + OLD_KEY, 60);
+        StreamUrlSigner retired = new StreamUrlSignerImpl(NEW_KEY, 60);
+        String issuedBefore = before.sign(PATH, 7L, 42L, 0);
+
+        assertThat(after.sign(PATH, 7L, 42L, 0)).contains("kid=k2");
+        assertThat(verify(after, PATH, issuedBefore)).isTrue();
+        assertThat(verify(retired, PATH, issuedBefore)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should start disabled without a signing key and accept nothing")
+    void disabledWithoutKeys() {
+        StreamUrlSigner signer = new StreamUrlSignerImpl("  ", 60);
+
+        assertThat(signer.isEnabled()).isFalse();
+        assertThat(signer.sign(PATH, 7L, 42L, 0)).isNull();
+        assertThat(signer.isValid(PATH, "7", "42", String.valueOf(Long.MAX_VALUE), "k1", "c2ln")).isFalse();
+        assertThat(new StreamUrlSignerImpl(OLD_KEY, 60).isEnabled()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should reject malformed, short and duplicate keys")
+    void rejectsBadKeys() {
+        assertThatThrownBy(() -> new StreamUrlSignerImpl("c2VjcmV0LWtleS1vbmUtZm9yLXN0cmVhbS1zaWduaW5n", 60))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new StreamUrlSignerImpl(":c2VjcmV0LWtleS1vbmUtZm9yLXN0cmVhbS1zaWduaW5n", 60))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new StreamUrlSignerImpl("k1:not base64!", 60))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new StreamUrlSignerImpl("k1:c2hvcnQ=", 60))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new StreamUrlSignerImpl(OLD_KEY + "," + OLD_KEY, 60))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new StreamUrlSignerImpl(OLD_KEY + ",", 60))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = "BENCHMARK", matches = "true")
+    @DisplayName("Should report the cost of verifying a signed URL")
+    void verificationBenchmark() {
+        StreamUrlSigner signer = new StreamUrlSignerImpl(NEW_KEY + "," + OLD_KEY, 60);
+        Map<String, String> params = params(signer.sign(PATH, 7L, 42L, 0));
+        int iterations = 1_000_000;
+
+        for (int i = 0; i < iterations; i++) {
+            isValid(signer, PATH, params);
+        }
+        long start = System.nanoTime();
+        int valid = 0;
+        for (int i = 0; i < iterations; i++) {
+            valid += isValid(signer, PATH, params) ? 1 : 0;
+        }
+        double micros = (System.nanoTime() - start) / 1000d / iterations;
+
+        assertThat(valid).isEqualTo(iterations);
+        System.out.printf("verify   : %.2f us per request%n", micros);
+    }
+
+    private static boolean verify(StreamUrlSigner signer, String path, String query) {
+        return isValid(signer, path, params(query));
+    }
+
+    private static boolean isValid(StreamUrlSigner signer, String path, Map<String, String> params) {
+        return signer.isValid(path,
+                params.get(StreamUrlSigner.USER_PARAM),
+                params.get(StreamUrlSigner.VIDEO_PARAM),
+                params.get(StreamUrlSigner.EXPIRES_PARAM),
+                params.get(StreamUrlSigner.KEY_ID_PARAM),
+                params.get(StreamUrlSigner.SIGNATURE_PARAM));
+    }
+
+    private static Map<String, String> params(String query) {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            params.put(pair.substring(0, separator), pair.substring(separator + 1));
+        }
+        return params;
+    }
+}
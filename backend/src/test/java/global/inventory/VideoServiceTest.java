@@ -9,6 +9,9 @@ import global.inventory.repository.VideoRepository;
 import global.inventory.service.UserService;
 import global.inventory.service.VideoAssignmentService;
 import global.inventory.service.VideoServiceImpl;
+import global.inventory.service.hls.HlsPackagingService;
+import global.inventory.service.media.MediaInfo;
+import global.inventory.service.storage.StoredFile;
 import global.inventory.service.storage.VideoStorageService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -30,6 +33,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -48,6 +52,9 @@ class VideoServiceTest {
     @Mock
     private VideoAssignmentService videoAssignmentService;
 
+    @Mock
+    private HlsPackagingService hlsPackagingService;
+
     @InjectMocks
     private VideoServiceImpl videoService;
 
@@ -88,7 +95,9 @@ class VideoServiceTest {
                 "video/mp4",
                 "test video content".getBytes()
         );
-        when(videoStorageService.store(any(MultipartFile.class))).thenReturn("stored-path");
+        MediaInfo media = new MediaInfo("mp4", 10_000, 1280, 720, "avc1", "mp4a", 2_000_000);
+        when(videoStorageService.store(any(MultipartFile.class)))
+                .thenReturn(new StoredFile("stored-path", 18, "c0ffee", media));
         when(videoRepository.save(any(Video.class))).thenReturn(testVideo);
 
         // Act
@@ -102,7 +111,12 @@ class VideoServiceTest {
         assertNotNull(result);
         assertEquals("Test Video", result.getTitle());
         verify(videoStorageService).store(any(MultipartFile.class));
-        verify(videoRepository).save(any(Video.class));
+        verify(hlsPackagingService).packageAsync("stored-path");
+        verify(videoRepository).save(argThat(video -> video.getBitrate() == 2_000_000L
+                && video.getDurationMillis() == 10_000L
+                && video.getWidth() == 1280
+                && "avc1".equals(video.getVideoCodec())
+                && "c0ffee".equals(video.getChecksum())));
     }
 
     @Test
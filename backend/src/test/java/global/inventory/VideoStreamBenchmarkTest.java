@@ -0,0 +1,211 @@
+package global.inventory;
+
+import global.inventory.service.storage.StoredVideo;
+import global.inventory.service.streaming.ByteRange;
+import global.inventory.service.streaming.StreamAdmissionControl;
+import global.inventory.service.streaming.VideoStreamServiceImpl;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares CPU time per GB served by the buffered copy loop and the sendfile path, and measures
+ * multi-range throughput. For sendfile the test does what Tomcat's NIO connector does with the request
+ * attributes the service sets: {@code FileChannel.transferTo} straight into the socket channel.
+ * Run with {@code BENCHMARK=true ./gradlew test --tests VideoStreamBenchmarkTest}.
+ */
+@EnabledIfEnvironmentVariable(named = "BENCHMARK", matches = "true")
+class VideoStreamBenchmarkTest {
+    private static final long FILE_SIZE = 64L * 1024 * 1024;
+    private static final long BYTES_PER_RUN = 2L * 1024 * 1024 * 1024;
+    private static final double GB = 1024d * 1024 * 1024;
+
+    private Path videoFile;
+    private StoredVideo storedVideo;
+    private ServerSocket server;
+    private SocketChannel client;
+    private Socket sink;
+    private final AtomicLong drained = new AtomicLong();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        videoFile = Files.createTempFile("benchmark", ".mp4");
+        byte[] block = new byte[1024 * 1024];
+        try (OutputStream out = Files.newOutputStream(videoFile)) {
+            for (long written = 0; written < FILE_SIZE; written += block.length) {
+                out.write(block);
+            }
+        }
+        storedVideo = new StoredVideo(videoFile.getFileName().toString(), videoFile, FILE_SIZE, 0, "video/mp4");
+
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        client = SocketChannel.open(new InetSocketAddress(server.getInetAddress(), server.getLocalPort()));
+        sink = server.accept();
+
+        Thread drainer = new Thread(() -> {
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = sink.getInputStream()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    drained.addAndGet(read);
+                }
+            } catch (IOException ignored) {
+            }
+        });
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        sink.close();
+        server.close();
+        Files.deleteIfExists(videoFile);
+    }
+
+    @Test
+    @DisplayName("Should report CPU time per GB for buffered and sendfile streaming")
+    void compareCpuPerGigabyte() throws IOException {
+        // Warm up both paths before measuring
+        serve(new VideoStreamServiceBuilder().build(), FILE_SIZE * 4);
+        serve(new VideoStreamServiceBuilder().sendfile(true).build(), FILE_SIZE * 4);
+
+        double bufferedMillis = serve(new VideoStreamServiceBuilder().build(), BYTES_PER_RUN);
+        double sendfileMillis = serve(new VideoStreamServiceBuilder().sendfile(true).build(), BYTES_PER_RUN);
+
+        System.out.printf("buffered: %.1f ms CPU/GB%n", bufferedMillis / (BYTES_PER_RUN / GB));
+        System.out.printf("sendfile: %.1f ms CPU/GB%n", sendfileMillis / (BYTES_PER_RUN / GB));
+    }
+
+    @Test
+    @DisplayName("Should report multi-range parsing and multipart/byteranges throughput")
+    void multiRangeThroughput() throws IOException {
+        String header = "bytes=0-65535, 1048576-1114111, 1000000-1100000, -262144";
+        int iterations = 20_000;
+
+        long parseStart = System.nanoTime();
+        List<ByteRange> ranges = null;
+        for (int i = 0; i < iterations; i++) {
+            ranges = ByteRange.parse(header, FILE_SIZE);
+        }
+        double parseMicros = (System.nanoTime() - parseStart) / 1000d / iterations;
+
+        VideoStreamServiceImpl service = new VideoStreamServiceBuilder().build();
+        MockHttpServletResponse response = socketResponse();
+        long before = drained.get();
+        long writeStart = System.nanoTime();
+        for (int i = 0; i < 2_000; i++) {
+            service.writeRanges(new MockHttpServletRequest(), response, storedVideo, ranges);
+        }
+        double seconds = (System.nanoTime() - writeStart) / 1e9;
+
+        System.out.printf("parse    : %.2f us per header%n", parseMicros);
+        System.out.printf("multipart: %.0f responses/s, %.1f MB/s%n",
+                2_000 / seconds, (drained.get() - before) / seconds / (1024 * 1024));
+    }
+
+    private MockHttpServletResponse socketResponse() throws IOException {
+        ServletOutputStream socketStream = new SocketServletOutputStream(client.socket().getOutputStream());
+        return new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return socketStream;
+            }
+        };
+    }
+
+    private double serve(VideoStreamServiceImpl service, long totalBytes) throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MockHttpServletResponse response = socketResponse();
+
+        long before = drained.get();
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        try (FileChannel file = FileChannel.open(videoFile)) {
+            for (long served = 0; served < totalBytes; served += FILE_SIZE) {
+                MockHttpServletRequest request = new MockHttpServletRequest();
+                request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+                service.writeRange(request, response, storedVideo, 0, FILE_SIZE, StreamAdmissionControl.unlimited());
+                sendfile(request, file);
+            }
+        }
+        long cpuNanos = threads.getCurrentThreadCpuTime() - cpuStart;
+
+        while (drained.get() - before < totalBytes) {
+            Thread.onSpinWait();
+        }
+        assertEquals(totalBytes, drained.get() - before);
+        return cpuNanos / 1_000_000d;
+    }
+
+    /**
+     * Transfers the region the service handed to the connector, if it did.
+     */
+    private void sendfile(MockHttpServletRequest request, FileChannel file) throws IOException {
+        Object start = request.getAttribute("org.apache.tomcat.sendfile.start");
+        if (start == null) {
+            return;
+        }
+        long position = (Long) start;
+        long end = (Long) request.getAttribute("org.apache.tomcat.sendfile.end");
+        while (position < end) {
+            position += file.transferTo(position, end - position, client);
+        }
+    }
+
+    private static class SocketServletOutputStream extends ServletOutputStream {
+        private final OutputStream delegate;
+
+        SocketServletOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            // Keep the socket open across iterations
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
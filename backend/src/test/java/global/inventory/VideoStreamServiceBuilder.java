@@ -0,0 +1,72 @@
+package global.inventory;
+
+import global.inventory.service.cache.DirectBufferPool;
+import global.inventory.service.cache.SegmentCache;
+import global.inventory.service.streaming.AsyncVideoStreamWriter;
+import global.inventory.service.streaming.BandwidthScheduler;
+import global.inventory.service.streaming.ChunkSizePolicy;
+import global.inventory.service.streaming.CoalescingChunkReader;
+import global.inventory.service.streaming.SendfileTracker;
+import global.inventory.service.streaming.VideoStreamServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Builds a {@link VideoStreamServiceImpl} with every optional path switched off, so each test turns on only
+ * the one it exercises.
+ */
+class VideoStreamServiceBuilder {
+    private static final long MB = 1024 * 1024;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private boolean sendfile;
+    private AsyncVideoStreamWriter asyncWriter;
+    private ChunkSizePolicy chunkSizePolicy = new ChunkSizePolicy(MB, 32 * MB, 4, 10, 2_500_000, 200);
+    private SegmentCache segmentCache = new SegmentCache(false, (int) MB, 0, meterRegistry);
+    private BandwidthScheduler bandwidthScheduler = new BandwidthScheduler(false, 1.5, 10, 0, 0, 0, 300, 2_500_000);
+    private CoalescingChunkReader coalescingReader = new CoalescingChunkReader(false, 262144, meterRegistry);
+    private SendfileTracker sendfileTracker;
+
+    VideoStreamServiceBuilder sendfile(boolean sendfile) {
+        this.sendfile = sendfile;
+        return this;
+    }
+
+    VideoStreamServiceBuilder async(AsyncVideoStreamWriter asyncWriter) {
+        this.asyncWriter = asyncWriter;
+        return this;
+    }
+
+    VideoStreamServiceBuilder chunkSizePolicy(ChunkSizePolicy chunkSizePolicy) {
+        this.chunkSizePolicy = chunkSizePolicy;
+        return this;
+    }
+
+    VideoStreamServiceBuilder segmentCache(SegmentCache segmentCache) {
+        this.segmentCache = segmentCache;
+        return this;
+    }
+
+    VideoStreamServiceBuilder bandwidthScheduler(BandwidthScheduler bandwidthScheduler) {
+        this.bandwidthScheduler = bandwidthScheduler;
+        return this;
+    }
+
+    VideoStreamServiceBuilder coalescingReader(CoalescingChunkReader coalescingReader) {
+        this.coalescingReader = coalescingReader;
+        return this;
+    }
+
+    VideoStreamServiceBuilder sendfileTracker(SendfileTracker sendfileTracker) {
+        this.sendfileTracker = sendfileTracker;
+        return this;
+    }
+
+    VideoStreamServiceImpl build() {
+        DirectBufferPool bufferPool = new DirectBufferPool(8192, (int) MB, 64 * MB, false, meterRegistry);
+        if (sendfileTracker == null) {
+            sendfileTracker = new SendfileTracker(2 * MB, 30, chunkSizePolicy, meterRegistry);
+        }
+        return new VideoStreamServiceImpl(sendfile, asyncWriter != null, asyncWriter, chunkSizePolicy,
+                segmentCache, bufferPool, bandwidthScheduler, coalescingReader, sendfileTracker);
+    }
+}
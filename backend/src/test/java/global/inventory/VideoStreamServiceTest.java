@@ -0,0 +1,182 @@
+package global.inventory;
+
+import global.inventory.service.storage.StoredVideo;
+import global.inventory.service.streaming.ByteRange;
+import global.inventory.service.streaming.ChunkSizePolicy;
+import global.inventory.service.streaming.SendfileTracker;
+import global.inventory.service.streaming.StreamAdmissionControl;
+import global.inventory.service.streaming.VideoStreamServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VideoStreamServiceTest {
+    private static final long MB = 1024 * 1024;
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+
+    @TempDir
+    Path directory;
+
+    private final ChunkSizePolicy chunkSizePolicy = new ChunkSizePolicy(MB, 32 * MB, 4, 10, 2_500_000, 200);
+
+    @Test
+    @DisplayName("Should write every range as a multipart/byteranges part")
+    void writeMultipartByteRanges() throws Exception {
+        Path video = directory.resolve("video.mp4");
+        Files.writeString(video, "0123456789abcdefghij");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-2,-3", 20);
+
+        StoredVideo storedVideo = new StoredVideo("video.mp4", video, 20, 0, "video/mp4");
+        new VideoStreamServiceBuilder().build().writeRanges(new MockHttpServletRequest(), response, storedVideo, ranges);
+
+        String boundary = response.getContentType().substring("multipart/byteranges; boundary=".length());
+        String expected = "\r\n--" + boundary + "\r\n"
+                + "Content-Type: video/mp4\r\n"
+                + "Content-Range: bytes 0-2/20\r\n\r\n"
+                + "012"
+                + "\r\n--" + boundary + "\r\n"
+                + "Content-Type: video/mp4\r\n"
+                + "Content-Range: bytes 17-19/20\r\n\r\n"
+                + "hij"
+                + "\r\n--" + boundary + "--\r\n";
+        assertThat(response.getContentAsString(StandardCharsets.US_ASCII)).isEqualTo(expected);
+        assertThat(response.getContentLengthLong()).isEqualTo(expected.length());
+    }
+
+    @Test
+    @DisplayName("Should count a blocking stream as active until written and learn the client's throughput")
+    void blockingStreamReportsToChunkSizePolicy() throws Exception {
+        StoredVideo video = video(MB);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new VideoStreamServiceBuilder().chunkSizePolicy(chunkSizePolicy).build()
+                .writeRange(request, response, video, 0, MB, StreamAdmissionControl.unlimited());
+
+        assertThat(response.getContentAsByteArray().length).isEqualTo((int) MB);
+        assertThat(chunkSizePolicy.getActiveStreams()).isZero();
+        assertThat(chunkSizePolicy.throughput(ChunkSizePolicy.clientKey(request))).isPositive();
+    }
+
+    @Test
+    @DisplayName("Should count a sendfile stream as active until the next request on its connection")
+    void sendfileStreamFinishesOnNextRequest() throws Exception {
+        StoredVideo video = video(MB);
+        SendfileTracker tracker = new SendfileTracker(1, 30, chunkSizePolicy, new SimpleMeterRegistry());
+        VideoStreamServiceImpl service = new VideoStreamServiceBuilder().sendfile(true)
+                .chunkSizePolicy(chunkSizePolicy).sendfileTracker(tracker).build();
+
+        MockHttpServletRequest first = sendfileRequest();
+        service.writeRange(first, new MockHttpServletResponse(), video, 0, MB, StreamAdmissionControl.unlimited());
+        assertThat(first.getAttribute("org.apache.tomcat.sendfile.end")).isEqualTo(MB);
+        assertThat(chunkSizePolicy.getActiveStreams()).isEqualTo(1);
+        assertThat(chunkSizePolicy.throughput(ChunkSizePolicy.clientKey(first))).isZero();
+
+        service.writeRange(sendfileRequest(), new MockHttpServletResponse(), video, 0, MB,
+                StreamAdmissionControl.unlimited());
+        assertThat(chunkSizePolicy.getActiveStreams()).isEqualTo(1);
+        assertThat(chunkSizePolicy.throughput(ChunkSizePolicy.clientKey(first))).isPositive();
+        tracker.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should finish a sendfile stream once it had time to drain when no request follows")
+    void sendfileStreamFinishesAfterDrainTime() throws Exception {
+        StoredVideo video = video(MB);
+        SendfileTracker tracker = new SendfileTracker(10 * MB, 30, chunkSizePolicy, new SimpleMeterRegistry());
+        VideoStreamServiceImpl service = new VideoStreamServiceBuilder().sendfile(true)
+                .chunkSizePolicy(chunkSizePolicy).sendfileTracker(tracker).build();
+
+        service.writeRange(sendfileRequest(), new MockHttpServletResponse(), video, 0, MB,
+                StreamAdmissionControl.unlimited());
+        assertThat(chunkSizePolicy.getActiveStreams()).isEqualTo(1);
+        for (int i = 0; i < 100 && chunkSizePolicy.getActiveStreams() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertThat(chunkSizePolicy.getActiveStreams()).isZero();
+        tracker.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should hold the stream slot until the connector is done with a sendfile range, not its bytes")
+    void sendfileHoldsPermit() throws Exception {
+        StoredVideo video = video(MB);
+        StreamAdmissionControl admission = new StreamAdmissionControl(true, 10, 10 * MB, 4, 2,
+                new SimpleMeterRegistry());
+        SendfileTracker tracker = new SendfileTracker(1, 30, chunkSizePolicy, new SimpleMeterRegistry());
+        VideoStreamServiceImpl service = new VideoStreamServiceBuilder().sendfile(true)
+                .chunkSizePolicy(chunkSizePolicy).sendfileTracker(tracker).build();
+
+        StreamAdmissionControl.Permit first = admission.tryAcquire("alice", MB);
+        service.writeRange(sendfileRequest(), new MockHttpServletResponse(), video, 0, MB, first);
+        assertThat(admission.getActiveStreams()).isEqualTo(1);
+        assertThat(admission.getBytesInFlight()).isZero();
+
+        StreamAdmissionControl.Permit second = admission.tryAcquire("alice", MB);
+        service.writeRange(sendfileRequest(), new MockHttpServletResponse(), video, 0, MB, second);
+        assertThat(admission.getActiveStreams()).isEqualTo(1);
+        tracker.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should release the admission permit when a blocking range fails")
+    void failedStreamReleasesPermit() throws Exception {
+        StoredVideo video = video(MB);
+        StreamAdmissionControl admission = new StreamAdmissionControl(true, 10, 10 * MB, 4, 2,
+                new SimpleMeterRegistry());
+        ServletOutputStream reset = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Connection reset");
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+        MockHttpServletResponse response = new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return reset;
+            }
+        };
+
+        StreamAdmissionControl.Permit permit = admission.tryAcquire("alice", MB);
+        assertThatThrownBy(() -> new VideoStreamServiceBuilder().build()
+                .writeRange(new MockHttpServletRequest(), response, video, 0, MB, permit))
+                .isInstanceOf(IOException.class);
+        assertThat(admission.getActiveStreams()).isZero();
+    }
+
+    private StoredVideo video(long size) throws IOException {
+        Path file = directory.resolve("video.mp4");
+        Files.write(file, new byte[(int) size]);
+        return new StoredVideo("video.mp4", file, size, 0, "video/mp4");
+    }
+
+    private static MockHttpServletRequest sendfileRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(SENDFILE_SUPPORTED, Boolean.TRUE);
+        return request;
+    }
+}
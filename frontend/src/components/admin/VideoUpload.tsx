@@ -7,7 +7,7 @@ import { Label } from "@/components/ui/label"
 import { Textarea } from "@/components/ui/textarea"
 import { Upload, Loader2 } from "lucide-react"
 import { useToast } from "@/components/ui/use-toast"
-import { apiClient } from "@/lib/api-client"
+import { resumableUpload } from "@/lib/resumable-upload"
 import { Progress } from "@/components/ui/progress"
 import { useQueryClient } from "@tanstack/react-query"
 
@@ -37,12 +37,12 @@ export function VideoUpload() {
     try {
       setUploadState({ isUploading: true, progress: 0 })
 
-      const formData = new FormData()
-      formData.append('title', title)
-      formData.append('description', description)
-      formData.append('file', file)
-
-      const response = await apiClient.upload<{ id: string }>('/videos/upload', formData)
+      const response = await resumableUpload({
+        title,
+        description,
+        file,
+        onProgress: (progress) => setUploadState({ isUploading: true, progress }),
+      })
 
       if (response.success) {
         await queryClient.invalidateQueries({ queryKey: ['videos'] })
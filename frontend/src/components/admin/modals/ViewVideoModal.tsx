@@ -50,7 +50,7 @@ export const ViewVideoModal = memo(function ViewVideoModal({
 
         <div className="p-4 space-y-4">
           <VideoPlayer
-            src={video.videoUrl}
+            src={video.hlsUrl || video.streamUrl || video.videoUrl}
             title={video.title}
             videoId={video.id}
             onNext={onNext}
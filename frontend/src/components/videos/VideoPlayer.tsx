@@ -127,6 +127,11 @@ export function VideoPlayer({
   }, [src])
 
   const getVideoUrl = (videoUrl: string) => {
+    // Signed stream URLs from the API are already absolute
+    if (/^https?:\/\//.test(videoUrl)) {
+      return videoUrl
+    }
+
     const DEFAULT_SERVER_URL = 'http://backend:8080'
     const DEFAULT_CLIENT_URL = 'http://localhost:8080'
     
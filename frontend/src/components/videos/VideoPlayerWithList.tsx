@@ -59,7 +59,7 @@ export function VideoPlayerWithList({
       <div className="lg:col-span-3 space-y-4">
         <VideoPlayer
           key={selectedVideo.id}
-          src={selectedVideo.videoUrl}
+          src={selectedVideo.hlsUrl || selectedVideo.streamUrl || selectedVideo.videoUrl}
           title={selectedVideo.title}
           videoId={selectedVideo.id}
           onNext={handleNext}
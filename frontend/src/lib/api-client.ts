@@ -85,6 +85,18 @@ export const apiClient = {
     return handleResponse<T>(response);
   },
 
+  putBinary: async <T>(endpoint: string, data: Blob, params?: QueryParams): Promise<ApiResponse<T>> => {
+    const response = await fetch(buildUrl(endpoint, params), {
+      method: 'PUT',
+      credentials: 'include',
+      headers: {
+        'Content-Type': 'application/octet-stream',
+      },
+      body: data,
+    });
+    return handleResponse<T>(response);
+  },
+
   upload: async <T>(endpoint: string, formData: FormData, params?: QueryParams): Promise<ApiResponse<T>> => {
     const response = await fetch(buildUrl(endpoint, params), {
       method: 'POST',
@@ -0,0 +1,60 @@
+import { apiClient } from '@/lib/api-client';
+import type { UploadSession, Video } from '@/types/api';
+
+const PARALLEL_CHUNKS = 3;
+const MAX_ATTEMPTS = 5;
+
+interface ResumableUploadOptions {
+  title: string;
+  description: string;
+  file: File;
+  onProgress?: (percent: number) => void;
+}
+
+const delay = (ms: number) => new Promise((resolve) => setTimeout(resolve, ms));
+
+// Sends the file in chunks, a few at a time, retrying each one on its own so a dropped connection only
+// costs that chunk instead of the whole upload.
+export async function resumableUpload({ title, description, file, onProgress }: ResumableUploadOptions) {
+  const created = await apiClient.post<UploadSession>('/videos/uploads', {
+    title,
+    description,
+    fileName: file.name,
+    size: file.size,
+  });
+  const { id, chunkSize } = created.data;
+
+  const offsets: number[] = [];
+  for (let offset = 0; offset < file.size; offset += chunkSize) {
+    offsets.push(offset);
+  }
+
+  let sent = 0;
+  const sendChunk = async (offset: number) => {
+    const chunk = file.slice(offset, Math.min(offset + chunkSize, file.size));
+    for (let attempt = 1; ; attempt++) {
+      try {
+        await apiClient.putBinary<UploadSession>(`/videos/uploads/${id}`, chunk, { offset });
+        sent += chunk.size;
+        onProgress?.(Math.round((sent / file.size) * 100));
+        return;
+      } catch (error) {
+        if (attempt >= MAX_ATTEMPTS) throw error;
+        await delay(500 * 2 ** attempt);
+      }
+    }
+  };
+
+  try {
+    const workers = Array.from({ length: PARALLEL_CHUNKS }, async () => {
+      while (offsets.length > 0) {
+        await sendChunk(offsets.shift() as number);
+      }
+    });
+    await Promise.all(workers);
+    return await apiClient.post<Video>(`/videos/uploads/${id}/complete`);
+  } catch (error) {
+    await apiClient.delete(`/videos/uploads/${id}`).catch(() => undefined);
+    throw error;
+  }
+}
@@ -9,6 +9,16 @@ export interface User {
     title: string;
     description: string;
     videoUrl: string;
+    streamUrl?: string;
+    hlsUrl?: string;
+    container?: string;
+    durationMillis?: number;
+    width?: number;
+    height?: number;
+    videoCodec?: string;
+    audioCodec?: string;
+    bitrate?: number;
+    checksum?: string;
     createdAt: string;
     modificationDate: string;
   }
@@ -48,6 +58,16 @@ export interface User {
 
   export type LoginResponse = AuthenticationResponse;
   
+  export interface UploadSession {
+    id: string;
+    fileName: string;
+    size: number;
+    offset: number;
+    receivedBytes: number;
+    chunkSize: number;
+    expiresAt: string;
+  }
+
   export interface VideoAssignment {
     id: string;
     videoId: string;